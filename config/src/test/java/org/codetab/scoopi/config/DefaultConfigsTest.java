@@ -14,7 +14,7 @@ import org.junit.Test;
 
 public class DefaultConfigsTest {
 
-    private static int totalConfigs = 56;
+    private static int totalConfigs = 69;
 
     private static XMLConfiguration defaults;
     private static int counter;
@@ -124,9 +124,10 @@ public class DefaultConfigsTest {
         ImmutableConfiguration confs =
                 defaults.immutableSubset("scoopi.appender");
 
-        int configCount = 2;
+        int configCount = 3;
         assertThat(confs.size()).isEqualTo(configCount);
-        assertThat(confs.getInt("queueSize")).isEqualTo(4096);
+        assertThat(confs.getInt("queueBytes")).isEqualTo(33554432);
+        assertThat(confs.getInt("backpressure.maxWait")).isEqualTo(1000);
         assertThat(confs.getString("file.baseDir")).isEqualTo("");
         counter -= configCount;
     }
@@ -161,7 +162,7 @@ public class DefaultConfigsTest {
         ImmutableConfiguration confs =
                 defaults.immutableSubset("scoopi.cluster");
 
-        int configCount = 7;
+        int configCount = 12;
         assertThat(confs.size()).isEqualTo(configCount);
         assertThat(confs.getBoolean("enable")).isFalse();
         assertThat(confs.getInt("tx.timeout")).isEqualTo(10);
@@ -172,6 +173,11 @@ public class DefaultConfigsTest {
                 .isEqualTo("SECONDS");
         assertThat(confs.getInt("startCrashCleaner.minThreshold"))
                 .isEqualTo(10);
+        assertThat(confs.getInt("crashCleaner.batchSize")).isEqualTo(100);
+        assertThat(confs.getString("jobStore")).isEqualTo("tx");
+        assertThat(confs.getBoolean("locality.enable")).isFalse();
+        assertThat(confs.getInt("locality.leaseTime")).isEqualTo(30000);
+        assertThat(confs.getInt("locality.maxLeased")).isEqualTo(10000);
         counter -= configCount;
     }
 
@@ -179,11 +185,14 @@ public class DefaultConfigsTest {
     public void testJob() {
         ImmutableConfiguration confs = defaults.immutableSubset("scoopi.job");
 
-        int configCount = 3;
+        int configCount = 6;
         assertThat(confs.size()).isEqualTo(configCount);
         assertThat(confs.getInt("takeLimit")).isEqualTo(4);
         assertThat(confs.getInt("takeTimeout")).isEqualTo(1000);
         assertThat(confs.getInt("takeRetryDelay")).isEqualTo(50);
+        assertThat(confs.getInt("takeBatchSize")).isEqualTo(4);
+        assertThat(confs.getInt("idBlockSize")).isEqualTo(1000);
+        assertThat(confs.getInt("queue.maxBytes")).isEqualTo(67108864);
         counter -= configCount;
     }
 
@@ -191,9 +200,11 @@ public class DefaultConfigsTest {
     public void testTask() {
         ImmutableConfiguration confs = defaults.immutableSubset("scoopi.task");
 
-        int configCount = 1;
+        int configCount = 3;
         assertThat(confs.size()).isEqualTo(configCount);
         assertThat(confs.getInt("takeTimeout")).isEqualTo(500);
+        assertThat(confs.getInt("queue.maxBytes")).isEqualTo(67108864);
+        assertThat(confs.getBoolean("fuse.enable")).isFalse();
         counter -= configCount;
     }
 
@@ -213,10 +224,11 @@ public class DefaultConfigsTest {
         ImmutableConfiguration confs =
                 defaults.immutableSubset("scoopi.loader");
 
-        int configCount = 2;
+        int configCount = 3;
         assertThat(confs.size()).isEqualTo(configCount);
         assertThat(confs.getInt("fetch.parallelism")).isEqualTo(1);
         assertThat(confs.getInt("fetch.delay")).isEqualTo(1000);
+        assertThat(confs.getInt("fetch.leaseSize")).isEqualTo(4);
         counter -= configCount;
     }
 
@@ -225,11 +237,12 @@ public class DefaultConfigsTest {
         ImmutableConfiguration confs =
                 defaults.immutableSubset("scoopi.metrics");
 
-        int configCount = 3;
+        int configCount = 4;
         assertThat(confs.size()).isEqualTo(configCount);
         assertThat(confs.getBoolean("server.enable")).isTrue();
         assertThat(confs.getInt("server.port")).isEqualTo(9010);
         assertThat(confs.getInt("serializer.period")).isEqualTo(5);
+        assertThat(confs.getInt("serializer.keyframe")).isEqualTo(12);
         counter -= configCount;
     }
 
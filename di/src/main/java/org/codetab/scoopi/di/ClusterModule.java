@@ -2,11 +2,18 @@ package org.codetab.scoopi.di;
 
 import javax.inject.Singleton;
 
+import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.store.IBarricade;
 import org.codetab.scoopi.store.ICluster;
 import org.codetab.scoopi.store.IJobStore;
+import org.codetab.scoopi.store.IRateLimiter;
 import org.codetab.scoopi.store.IShutdown;
 import org.codetab.scoopi.store.IStore;
+import org.codetab.scoopi.store.cluster.hz.CasJobStore;
+import org.codetab.scoopi.store.cluster.hz.JobStore;
+
+import com.google.inject.Injector;
+import com.google.inject.Provides;
 
 public class ClusterModule extends BaseModule {
 
@@ -20,15 +27,29 @@ public class ClusterModule extends BaseModule {
                 .in(Singleton.class);
         bind(IStore.class).to(org.codetab.scoopi.store.cluster.hz.Store.class)
                 .in(Singleton.class);
-        bind(IJobStore.class)
-                .to(org.codetab.scoopi.store.cluster.hz.JobStore.class)
-                .in(Singleton.class);
         bind(IShutdown.class)
                 .to(org.codetab.scoopi.store.cluster.hz.ClusterShutdown.class)
                 .in(Singleton.class);
+        bind(IRateLimiter.class)
+                .to(org.codetab.scoopi.store.cluster.hz.RateLimiter.class)
+                .in(Singleton.class);
 
         bind(IBarricade.class)
                 .to(org.codetab.scoopi.store.cluster.hz.Barricade.class);
     }
 
+    /**
+     * Job store is selected by config scoopi.cluster.jobStore, tx - default
+     * transactional store or cas - store without distributed transactions.
+     */
+    @Provides
+    @Singleton
+    IJobStore provideJobStore(final Configs configs, final Injector injector) {
+        String jobStore = configs.getConfig("scoopi.cluster.jobStore", "tx");
+        if (jobStore.equalsIgnoreCase("cas")) {
+            return injector.getInstance(CasJobStore.class);
+        }
+        return injector.getInstance(JobStore.class);
+    }
+
 }
@@ -1,6 +1,7 @@
 package org.codetab.scoopi.di;
 
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import com.google.inject.AbstractModule;
@@ -25,6 +26,18 @@ public class DInjector {
         return injector.getInstance(clz);
     }
 
+    /**
+     * <p>
+     * Get provider of class. Provider skips binding lookup of instance()
+     * and callers creating many instances of a class should hold on to it.
+     * @param clz
+     *            class
+     * @return provider
+     */
+    public <T> Provider<T> provider(final Class<T> clz) {
+        return injector.getProvider(clz);
+    }
+
     public <T> T instance(final String clzName, final Class<T> clz)
             throws ClassNotFoundException {
         Class<?> clzz = Class.forName(clzName);
@@ -5,6 +5,7 @@ import javax.inject.Singleton;
 import org.codetab.scoopi.store.IBarricade;
 import org.codetab.scoopi.store.ICluster;
 import org.codetab.scoopi.store.IJobStore;
+import org.codetab.scoopi.store.IRateLimiter;
 import org.codetab.scoopi.store.IShutdown;
 import org.codetab.scoopi.store.IStore;
 
@@ -24,6 +25,9 @@ public class SoloModule extends BaseModule {
         bind(IShutdown.class)
                 .to(org.codetab.scoopi.store.solo.simple.SoloShutdown.class)
                 .in(Singleton.class);
+        bind(IRateLimiter.class)
+                .to(org.codetab.scoopi.store.solo.simple.RateLimiter.class)
+                .in(Singleton.class);
 
         // solo - dummy cluster, barricade
         bind(ICluster.class)
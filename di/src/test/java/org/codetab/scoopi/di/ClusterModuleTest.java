@@ -2,9 +2,12 @@ package org.codetab.scoopi.di;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Properties;
+
 import org.codetab.scoopi.store.IBarricade;
 import org.codetab.scoopi.store.ICluster;
 import org.codetab.scoopi.store.IJobStore;
+import org.codetab.scoopi.store.IRateLimiter;
 import org.codetab.scoopi.store.IShutdown;
 import org.codetab.scoopi.store.IStore;
 import org.junit.BeforeClass;
@@ -28,6 +31,8 @@ public class ClusterModuleTest {
         cluster.start("server", null);
         store.open();
         clusterModule.setStore(store);
+        // job store is selected by config
+        store.put("configs", new Properties());
     }
 
     @Test
@@ -63,6 +68,15 @@ public class ClusterModuleTest {
         assertThat(obj1).isSameAs(obj2);
     }
 
+    @Test
+    public void testRateLimiter() {
+        IRateLimiter obj1 = injector.getInstance(IRateLimiter.class);
+        IRateLimiter obj2 = injector.getInstance(IRateLimiter.class);
+        assertThat(obj1).isInstanceOf(
+                org.codetab.scoopi.store.cluster.hz.RateLimiter.class);
+        assertThat(obj1).isSameAs(obj2);
+    }
+
     @Test
     public void testCluster() {
         ICluster obj1 = injector.getInstance(ICluster.class);
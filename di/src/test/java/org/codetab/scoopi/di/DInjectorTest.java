@@ -5,6 +5,8 @@ import static org.junit.Assert.assertThrows;
 
 import java.util.Date;
 
+import javax.inject.Provider;
+
 import org.codetab.scoopi.store.IStore;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -60,6 +62,16 @@ public class DInjectorTest {
                 .isInstanceOf(org.codetab.scoopi.store.solo.simple.Store.class);
     }
 
+    @Test
+    public void testProvider() {
+        SoloModule module = new SoloModule();
+        DInjector dInjector = new DInjector(module);
+        Provider<IStore> provider = dInjector.provider(IStore.class);
+        assertThat(provider.get())
+                .isInstanceOf(org.codetab.scoopi.store.solo.simple.Store.class);
+        assertThat(provider.get()).isSameAs(dInjector.instance(IStore.class));
+    }
+
     @Test
     public void testInstanceStringClassOfT() throws ClassNotFoundException {
         SoloModule module = new SoloModule();
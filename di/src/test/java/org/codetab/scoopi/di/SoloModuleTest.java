@@ -2,9 +2,12 @@ package org.codetab.scoopi.di;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Properties;
+
 import org.codetab.scoopi.store.IBarricade;
 import org.codetab.scoopi.store.ICluster;
 import org.codetab.scoopi.store.IJobStore;
+import org.codetab.scoopi.store.IRateLimiter;
 import org.codetab.scoopi.store.IShutdown;
 import org.codetab.scoopi.store.IStore;
 import org.junit.BeforeClass;
@@ -19,7 +22,14 @@ public class SoloModuleTest {
 
     @BeforeClass
     public static void setUpBeforeClass() throws Exception {
-        injector = Guice.createInjector(new SoloModule());
+        SoloModule module = new SoloModule();
+        injector = Guice.createInjector(module);
+
+        // solo job store injects configs
+        IStore store = injector.getInstance(IStore.class);
+        store.open();
+        module.setStore(store);
+        store.put("configs", new Properties());
     }
 
     @Test
@@ -55,6 +65,15 @@ public class SoloModuleTest {
         assertThat(obj1).isSameAs(obj2);
     }
 
+    @Test
+    public void testRateLimiter() {
+        IRateLimiter obj1 = injector.getInstance(IRateLimiter.class);
+        IRateLimiter obj2 = injector.getInstance(IRateLimiter.class);
+        assertThat(obj1).isInstanceOf(
+                org.codetab.scoopi.store.solo.simple.RateLimiter.class);
+        assertThat(obj1).isSameAs(obj2);
+    }
+
     @Test
     public void testCluster() {
         ICluster obj1 = injector.getInstance(ICluster.class);
@@ -47,6 +47,7 @@ public class ScoopiEngine {
             clusterModule.initCluster();
 
             mediatorModule.initJobMediator();
+            mediatorModule.initTaskMediator();
 
             clusterModule.initClusterListeners();
 
@@ -19,6 +19,10 @@ public class MediatorModule {
         jobMediator.init();
     }
 
+    public void initTaskMediator() {
+        taskMediator.init();
+    }
+
     public void startJobMediator() {
         jobMediator.start();
     }
@@ -48,8 +48,10 @@ public class MetricsModule {
         LOG.debug("start and schedule metrics serializer");
         int period = Integer.parseInt(
                 configs.getConfig("scoopi.metrics.serializer.period", "5"));
-        metricsSerializer = metricsHelper
-                .startJsonSerializer(cluster.getMemberId(), metricsMap, period);
+        int keyframe =
+                configs.getInt("scoopi.metrics.serializer.keyframe", "12");
+        metricsSerializer = metricsHelper.startJsonSerializer(
+                cluster.getMemberId(), metricsMap, period, keyframe);
 
         if (configs.isMetricsServerEnabled()) {
             LOG.debug("start metrics server");
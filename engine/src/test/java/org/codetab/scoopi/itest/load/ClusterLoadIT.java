@@ -0,0 +1,71 @@
+package org.codetab.scoopi.itest.load;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Cluster load tests, see {@link LoadHarness} for settings. Run with mvn
+ * verify -pl engine -Dit.test=ClusterLoadIT -Dload.members=4 ..., results
+ * are in engine/target/load.
+ * @author m
+ *
+ */
+public class ClusterLoadIT {
+
+    @Test
+    public void testHttpLocators() throws Exception {
+        LoadHarness harness = new LoadHarness();
+        harness.setLocators("http");
+
+        Map<String, Object> result = harness.run("http-locators");
+
+        assertAllDone(harness, result);
+        assertThat(harness.getCompleted().values())
+                .allMatch(c -> c.get() == 1);
+    }
+
+    @Test
+    public void testFileLocators() throws Exception {
+        LoadHarness harness = new LoadHarness();
+        harness.setLocators("file");
+
+        Map<String, Object> result = harness.run("file-locators");
+
+        assertAllDone(harness, result);
+    }
+
+    @Test
+    public void testCasJobStore() throws Exception {
+        LoadHarness harness = new LoadHarness();
+        harness.setJobStore("cas");
+
+        Map<String, Object> result = harness.run("cas-job-store");
+
+        assertAllDone(harness, result);
+    }
+
+    @Test
+    public void testMemberKill() throws Exception {
+        LoadHarness harness = new LoadHarness();
+        harness.setKillAfter(0.3);
+
+        Map<String, Object> result = harness.run("member-kill");
+
+        assertThat(result.get("finished")).isEqualTo(true);
+        assertThat(result.get("fetchErrors")).isEqualTo(0);
+        assertThat(harness.getCompleted().size()
+                + harness.getCommittedByCrashed().size())
+                        .isEqualTo(harness.getTotalJobs());
+        assertThat(result).containsKey("kill");
+    }
+
+    private void assertAllDone(final LoadHarness harness,
+            final Map<String, Object> result) {
+        assertThat(result.get("finished")).isEqualTo(true);
+        assertThat(result.get("fetchErrors")).isEqualTo(0);
+        assertThat(harness.getCompleted()).hasSize(harness.getTotalJobs());
+    }
+}
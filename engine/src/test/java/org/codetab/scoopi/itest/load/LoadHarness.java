@@ -0,0 +1,406 @@
+package org.codetab.scoopi.itest.load;
+
+import static org.codetab.scoopi.store.cluster.hz.ClusterStoreHelper.createStore;
+import static org.codetab.scoopi.store.cluster.hz.ClusterStoreHelper.inject;
+import static org.codetab.scoopi.store.cluster.hz.ClusterStoreHelper.startMember;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.exception.JobStateException;
+import org.codetab.scoopi.exception.TransactionException;
+import org.codetab.scoopi.helper.Snooze;
+import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.model.Document;
+import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.Locator;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.step.mediator.JobMediator;
+import org.codetab.scoopi.store.cluster.IClusterJobStore;
+import org.mockito.Mockito;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * <p>
+ * Load test harness. Starts embedded hazelcast members in this JVM, each
+ * with its own job store and job mediator, and workers on each member take
+ * jobs and run them: parent job fetches its locator page, from Jetty or
+ * local file, and pushes children that hold the document; child job is
+ * finished. Optionally, a member is terminated once killAfter fraction of
+ * jobs are done and survivors recover its jobs.
+ * <p>
+ * Settings default to system properties load.members, load.threads,
+ * load.parents, load.children, load.pageSize, load.jobStore (tx or cas),
+ * load.locators (http or file) and load.killAfter (0 - no kill). Result is
+ * written as json to target/load/name.json.
+ * @author m
+ *
+ */
+public class LoadHarness {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final long DEADLINE = TimeUnit.MINUTES.toMillis(5);
+    private static final int TAKE_BATCH = 4;
+    private static final int RETRY_DELAY = 50;
+
+    private int memberCount = Integer.getInteger("load.members", 3);
+    private int threads = Integer.getInteger("load.threads", 4);
+    private int parents = Integer.getInteger("load.parents", 200);
+    private int children = Integer.getInteger("load.children", 8);
+    private int pageSize = Integer.getInteger("load.pageSize", 16 * 1024);
+    private String jobStore = System.getProperty("load.jobStore", "tx");
+    private String locators = System.getProperty("load.locators", "http");
+    private double killAfter =
+            Double.parseDouble(System.getProperty("load.killAfter", "0"));
+
+    private final ObjectFactory factory = new ObjectFactory();
+    private final Snooze snooze = new Snooze();
+    private final List<Member> members = new ArrayList<>();
+
+    private final Map<Long, Boolean> parentIds = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> completed =
+            new ConcurrentHashMap<>();
+    private final Histogram takeLatency =
+            new Histogram(new UniformReservoir(100_000));
+    private final AtomicInteger fetchErrors = new AtomicInteger();
+    private final AtomicInteger conflicts = new AtomicInteger();
+
+    private final Set<Long> lostJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicLong killedAt = new AtomicLong();
+    private final AtomicLong rerunAt = new AtomicLong();
+    private final AtomicInteger rerunJobs = new AtomicInteger();
+    private int lostCount;
+
+    private PageServer pageServer;
+
+    /**
+     * <p>
+     * Run load test.
+     * @param name
+     *            name of result file
+     * @return result
+     */
+    public Map<String, Object> run(final String name) throws Exception {
+        pageServer = new PageServer(pageSize);
+        try {
+            pageServer.start();
+            startMembers();
+            seed(members.get(0));
+
+            long start = System.nanoTime();
+            // workers and killer
+            ExecutorService pool =
+                    Executors.newFixedThreadPool(memberCount * threads + 1);
+            for (Member member : members) {
+                for (int i = 0; i < threads; i++) {
+                    pool.execute(() -> work(member));
+                }
+            }
+            if (killAfter > 0) {
+                pool.execute(this::killMember);
+            }
+            pool.shutdown();
+            boolean finished =
+                    pool.awaitTermination(DEADLINE, TimeUnit.MILLISECONDS);
+            long millis =
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            Map<String, Object> result = createResult(name, millis, finished);
+            writeResult(name, result);
+            return result;
+        } finally {
+            for (Member member : members) {
+                if (member.hz.getLifecycleService().isRunning()) {
+                    member.hz.shutdown();
+                }
+            }
+            pageServer.stop();
+        }
+    }
+
+    public int getTotalJobs() {
+        return parents + parents * children;
+    }
+
+    public Map<Long, AtomicInteger> getCompleted() {
+        return completed;
+    }
+
+    /**
+     * <p>
+     * Jobs lost by killed member that were not run again, as they were
+     * finished by its transaction that committed after the kill.
+     * @return lost jobs not run again
+     */
+    public Set<Long> getCommittedByCrashed() {
+        return lostJobs;
+    }
+
+    public void setMemberCount(final int memberCount) {
+        this.memberCount = memberCount;
+    }
+
+    public void setThreads(final int threads) {
+        this.threads = threads;
+    }
+
+    public void setParents(final int parents) {
+        this.parents = parents;
+    }
+
+    public void setChildren(final int children) {
+        this.children = children;
+    }
+
+    public void setJobStore(final String jobStore) {
+        this.jobStore = jobStore;
+    }
+
+    public void setLocators(final String locators) {
+        this.locators = locators;
+    }
+
+    public void setKillAfter(final double killAfter) {
+        this.killAfter = killAfter;
+    }
+
+    private void seed(final Member member) throws Exception {
+        for (int i = 0; i < parents; i++) {
+            String url = locators.equals("file") ? pageServer.getFileUrl(i)
+                    : pageServer.getHttpUrl(i);
+            JobInfo jobInfo = factory.createJobInfo("page-" + i, "loadGroup",
+                    "loadTask", "loadSteps", "loadDef");
+            jobInfo.setId(member.mediator.getJobIdSequence());
+            parentIds.put(jobInfo.getId(), true);
+            Locator locator =
+                    factory.createLocator("page-" + i, "loadGroup", url);
+            member.mediator.pushJob(
+                    factory.createPayload(jobInfo, null, locator));
+        }
+    }
+
+    /*
+     * take and run jobs till store is done, same loop as JobRunner but the
+     * task is run inline
+     */
+    private void work(final Member member) {
+        long deadline = System.currentTimeMillis() + DEADLINE;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                member.store.resetCrashedJobs();
+                long takeStart = System.nanoTime();
+                List<Payload> payloads = member.store.takeJobs(TAKE_BATCH);
+                takeLatency.update(TimeUnit.NANOSECONDS
+                        .toMicros(System.nanoTime() - takeStart));
+                for (Payload payload : payloads) {
+                    long jobId = payload.getJobInfo().getId();
+                    member.inFlight.add(jobId);
+                    run(member, payload);
+                    member.inFlight.remove(jobId);
+                    complete(jobId);
+                }
+            } catch (NoSuchElementException | TimeoutException e) {
+                if (member.store.isDone()) {
+                    return;
+                }
+                snooze.sleepUninterruptibly(RETRY_DELAY);
+            } catch (TransactionException | JobStateException e) {
+                // jobs taken by other members, retry as JobRunner does
+                conflicts.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                if (!member.hz.getLifecycleService().isRunning()) {
+                    return; // member killed
+                }
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private void run(final Member member, final Payload payload)
+            throws InterruptedException {
+        long jobId = payload.getJobInfo().getId();
+        if (payload.getData() instanceof Locator) {
+            Locator locator = (Locator) payload.getData();
+            byte[] page;
+            try {
+                page = IOUtils.toByteArray(new URL(locator.getUrl()));
+            } catch (IOException e) {
+                fetchErrors.incrementAndGet();
+                member.mediator.resetTakenJob(jobId);
+                return;
+            }
+            List<Payload> payloads = new ArrayList<>();
+            for (int i = 0; i < children; i++) {
+                JobInfo jobInfo = factory.createJobInfo(locator.getName(),
+                        locator.getGroup(), "loadTask", "loadSteps",
+                        "loadDef");
+                jobInfo.setId(member.mediator.getJobIdSequence());
+                Document document = factory.createDocument(locator.getName(),
+                        null, locator.getUrl(), locator.getGroup(),
+                        locator.getFingerprint());
+                document.setDocumentObject(page);
+                payloads.add(factory.createPayload(jobInfo, null, document));
+            }
+            member.mediator.pushJobs(payloads, jobId);
+        } else {
+            member.mediator.markJobFinished(jobId);
+        }
+    }
+
+    private void complete(final long jobId) {
+        completed.computeIfAbsent(jobId, k -> new AtomicInteger())
+                .incrementAndGet();
+        if (lostJobs.remove(jobId)) {
+            rerunJobs.incrementAndGet();
+            rerunAt.set(System.nanoTime());
+        }
+    }
+
+    /*
+     * terminate last member, its taken jobs are recovered by crash cleaner of
+     * survivors on member leave
+     */
+    private void killMember() {
+        long deadline = System.currentTimeMillis() + DEADLINE;
+        while (completed.size() < getTotalJobs() * killAfter
+                && System.currentTimeMillis() < deadline) {
+            snooze.sleepUninterruptibly(RETRY_DELAY / 2);
+        }
+        Member victim = members.get(members.size() - 1);
+        lostJobs.addAll(victim.inFlight);
+        lostCount = lostJobs.size();
+        killedAt.set(System.nanoTime());
+        victim.hz.getLifecycleService().terminate();
+    }
+
+    private Map<String, Object> createResult(final String name,
+            final long millis, final boolean finished) {
+        long completedParents = completed.keySet().stream()
+                .filter(parentIds::containsKey).count();
+        Snapshot snapshot = takeLatency.getSnapshot();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", takeLatency.getCount());
+        latency.put("p50", (long) snapshot.getMedian());
+        latency.put("p90", (long) snapshot.getValue(0.9));
+        latency.put("p99", (long) snapshot.get99thPercentile());
+        latency.put("max", snapshot.getMax());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("name", name);
+        result.put("jobStore", jobStore);
+        result.put("locators", locators);
+        result.put("members", memberCount);
+        result.put("threads", threads);
+        result.put("parents", parents);
+        result.put("children", children);
+        result.put("pageSize", pageSize);
+        result.put("finished", finished);
+        result.put("jobs", getTotalJobs());
+        result.put("completedJobs", completed.size());
+        result.put("completedParents", completedParents);
+        result.put("fetchErrors", fetchErrors.get());
+        result.put("takeConflicts", conflicts.get());
+        result.put("millis", millis);
+        result.put("jobsPerSec", completed.size() * 1000L / Math.max(1, millis));
+        result.put("takeLatencyMicros", latency);
+        if (killAfter > 0) {
+            // lost job not run again was finished by tx of crashed member,
+            // its commit outlives member, but member never saw the result
+            long lastRerun =
+                    rerunJobs.get() > 0 ? rerunAt.get() : killedAt.get();
+            Map<String, Object> kill = new LinkedHashMap<>();
+            kill.put("killAfter", killAfter);
+            kill.put("lostJobs", lostCount);
+            kill.put("rerunJobs", rerunJobs.get());
+            kill.put("committedByCrashed", lostJobs.size());
+            kill.put("recoveryMillis", TimeUnit.NANOSECONDS
+                    .toMillis(lastRerun - killedAt.get()));
+            result.put("kill", kill);
+        }
+        return result;
+    }
+
+    private void writeResult(final String name,
+            final Map<String, Object> result) throws IOException {
+        ObjectMapper mapper =
+                new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File file = new File("target/load", name + ".json");
+        file.getParentFile().mkdirs();
+        mapper.writeValue(file, result);
+        LOG.info("load result {}", file.getAbsolutePath());
+    }
+
+    private void startMembers() throws Exception {
+        String clusterName = UUID.randomUUID().toString();
+        HazelcastInstance leader = null;
+        for (int i = 0; i < memberCount; i++) {
+            HazelcastInstance hz = startMember(clusterName);
+            if (leader == null) {
+                leader = hz;
+            }
+            members.add(createMember(hz, leader));
+        }
+    }
+
+    /*
+     * member with store and mediator wired as in ClusterModule, configs
+     * answer defaults
+     */
+    private Member createMember(final HazelcastInstance hz,
+            final HazelcastInstance leader) throws Exception {
+        IClusterJobStore store = createStore(jobStore, hz, leader);
+
+        JobMediator mediator = new JobMediator();
+        inject(mediator, "jobStore", store);
+        inject(mediator, "snooze", snooze);
+        inject(mediator, "errors", Mockito.mock(Errors.class));
+
+        return new Member(hz, store, mediator);
+    }
+
+    /*
+     * member and jobs it has taken but not yet completed
+     */
+    private static class Member {
+        private final HazelcastInstance hz;
+        private final IClusterJobStore store;
+        private final JobMediator mediator;
+        private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+        Member(final HazelcastInstance hz, final IClusterJobStore store,
+                final JobMediator mediator) {
+            this.hz = hz;
+            this.store = store;
+            this.mediator = mediator;
+        }
+    }
+}
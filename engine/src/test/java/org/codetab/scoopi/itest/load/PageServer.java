@@ -0,0 +1,91 @@
+package org.codetab.scoopi.itest.load;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+/**
+ * Serves generated pages of the load test, over http from an embedded Jetty
+ * and as local files. Page n is /page/n and page-n.html, every page has
+ * same size.
+ * @author m
+ *
+ */
+public class PageServer {
+
+    private final byte[] page;
+
+    private Server server;
+    private Path dir;
+
+    public PageServer(final int pageSize) {
+        page = createPage(pageSize);
+    }
+
+    public void start() throws Exception {
+        server = new Server(0);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(final String target, final Request baseRequest,
+                    final HttpServletRequest request,
+                    final HttpServletResponse response) throws IOException {
+                if (!target.startsWith("/page/")) {
+                    return;
+                }
+                response.setContentType("text/html");
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getOutputStream().write(page);
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+        dir = Files.createTempDirectory("scoopi-load");
+    }
+
+    public void stop() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+        if (dir != null) {
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+    }
+
+    public String getHttpUrl(final int n) {
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        return "http://localhost:" + port + "/page/" + n;
+    }
+
+    /**
+     * Writes the page file on first call.
+     */
+    public String getFileUrl(final int n) throws IOException {
+        Path file = dir.resolve("page-" + n + ".html");
+        if (!Files.exists(file)) {
+            Files.write(file, page);
+        }
+        return file.toUri().toString();
+    }
+
+    private byte[] createPage(final int pageSize) {
+        StringBuilder sb = new StringBuilder("<html><body><table>");
+        int row = 0;
+        while (sb.length() < pageSize) {
+            sb.append("<tr><td>item ").append(row).append("</td><td>")
+                    .append(row * 31 % 1000).append("</td></tr>");
+            row++;
+        }
+        sb.append("</table></body></html>");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
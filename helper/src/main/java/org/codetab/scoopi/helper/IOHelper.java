@@ -6,9 +6,11 @@ import static java.util.Objects.nonNull;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.net.MalformedURLException;
@@ -201,4 +203,11 @@ public class IOHelper {
         FileUtils.forceMkdirParent(file);
         return new PrintWriter(file);
     }
+
+    public OutputStream getOutputStream(final String fileName)
+            throws IOException {
+        File file = new File(fileName);
+        FileUtils.forceMkdirParent(file);
+        return new FileOutputStream(file);
+    }
 }
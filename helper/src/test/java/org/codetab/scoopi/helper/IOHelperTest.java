@@ -6,6 +6,7 @@ import static org.junit.Assert.assertThrows;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.InputStream;
 import java.io.Reader;
 import java.net.MalformedURLException;
@@ -184,6 +185,17 @@ public class IOHelperTest {
         assertThat(Files.exists(Paths.get(fileName))).isTrue();
     }
 
+    @Test
+    public void testGetOutputStream() throws IOException {
+        String fileName = testTmpDir + "/scoopitest/stream/sample.txt";
+
+        try (OutputStream out = ioHelper.getOutputStream(fileName)) {
+            out.write('a');
+        }
+        assertThat(Files.readAllBytes(Paths.get(fileName)))
+                .containsExactly('a');
+    }
+
     // @Test
     // public void test() throws IOException, URISyntaxException {
     // String dir = String.format("%s%s%s", "jar:file:", userDir,
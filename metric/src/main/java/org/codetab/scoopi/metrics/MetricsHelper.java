@@ -11,14 +11,15 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Consumer;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codetab.scoopi.metrics.serialize.Serializer;
+import org.codetab.scoopi.metrics.serialize.SnapshotWriter;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
@@ -44,6 +45,10 @@ public class MetricsHelper {
         return METRICS.counter(getName(clz, names));
     }
 
+    public Histogram getHistogram(final Object clz, final String... names) {
+        return METRICS.histogram(getName(clz, names));
+    }
+
     public <T> void registerGuage(final T value, final Object clz,
             final String... names) {
         String guageName = getName(clz, names);
@@ -74,23 +79,22 @@ public class MetricsHelper {
     }
 
     /**
-     * Serialize Metrics Registry as JSON bytes array and add it to metrics
-     * distributed map on specified intervals
+     * Serialize Metrics Registry as JSON and add it to metrics distributed map
+     * on specified intervals, as delta encoded binary snapshots. Full snapshot
+     * is written once in keyframe intervals and in between only the changed
+     * metrics, see {@link SnapshotWriter}.
      * @param memberId
      * @param metricsMap
+     * @param period
+     *            interval in seconds
+     * @param keyframe
+     *            full snapshot is written once in keyframe intervals
      */
     public Serializer startJsonSerializer(final String memberId,
-            final Map<String, byte[]> metricsMap, final int period) {
-        Consumer<byte[]> outputter = metricsJsonData -> {
-            try {
-                metricsMap.put(memberId, metricsJsonData);
-            } catch (Exception e) {
-                LOG.error("unable to put metrics json to metrics map {}",
-                        e.getMessage());
-                LOG.debug("{}", e);
-                // throw e;
-            }
-        };
+            final Map<String, byte[]> metricsMap, final int period,
+            final int keyframe) {
+        SnapshotWriter outputter =
+                new SnapshotWriter(memberId, metricsMap, keyframe);
         Serializer serializer = Serializer.forRegistry(METRICS)
                 .consumer(outputter).convertRatesTo(TimeUnit.SECONDS)
                 .convertDurationsTo(TimeUnit.SECONDS)
@@ -1,25 +1,50 @@
 package org.codetab.scoopi.metrics.aggregate;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.codetab.scoopi.metrics.serialize.Counter;
 import org.codetab.scoopi.metrics.serialize.Gauge;
 import org.codetab.scoopi.metrics.serialize.Meter;
 import org.codetab.scoopi.metrics.serialize.Metrics;
+import org.codetab.scoopi.metrics.serialize.Snapshots;
 import org.codetab.scoopi.metrics.serialize.Timer;
 
-import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
+/**
+ * <p>
+ * Aggregates metrics snapshots of members. Member state, full snapshot with
+ * the latest delta applied, is cached and a member is decoded again only
+ * when the header of its frames shows a new snapshot. Aggregated json is
+ * cached and reused by requests that arrive within CACHE_MILLIS, and when no
+ * member has changed.
+ */
 public class Aggregator {
 
+    static final long CACHE_MILLIS = 1000;
+
+    private static final String REMOVED = "removed";
+
     private ObjectMapper mapper;
     private Metrics metrics; // aggregated metrics
     private Map<String, byte[]> metricsJsonData;
 
+    private final Map<String, MemberState> members = new HashMap<>();
+    private byte[] json;
+    private long aggregatedAt;
+
     public Aggregator() {
         mapper = new ObjectMapper();
     }
@@ -28,22 +53,99 @@ public class Aggregator {
         this.metricsJsonData = metricsJsonData;
     }
 
-    public void aggregate()
-            throws JsonParseException, JsonMappingException, IOException {
-        metrics = null;
-        for (String memberId : metricsJsonData.keySet()) {
-            byte[] jsonData = metricsJsonData.get(memberId);
-            Metrics memberMetrics = mapper.readValue(jsonData, Metrics.class);
-            if (metrics == null) {
-                metrics = memberMetrics;
-            } else {
-                aggregate(memberMetrics);
+    public synchronized void aggregate() throws IOException {
+        long now = System.currentTimeMillis();
+        if (nonNull(json) && now - aggregatedAt < CACHE_MILLIS) {
+            return;
+        }
+        aggregatedAt = now;
+
+        Set<String> memberIds = metricsJsonData.keySet().stream()
+                .map(Snapshots::memberId).collect(Collectors.toSet());
+        boolean changed = members.keySet().retainAll(memberIds);
+        for (String memberId : memberIds) {
+            changed |= refresh(memberId);
+        }
+
+        if (changed || isNull(json)) {
+            metrics = null;
+            for (MemberState state : members.values()) {
+                if (isNull(state.merged)) {
+                    continue;
+                }
+                Metrics memberMetrics =
+                        mapper.treeToValue(state.merged, Metrics.class);
+                if (metrics == null) {
+                    metrics = memberMetrics;
+                } else {
+                    aggregate(memberMetrics);
+                }
+            }
+            json = mapper.writeValueAsBytes(metrics);
+        }
+    }
+
+    public synchronized byte[] getJson() throws JsonProcessingException {
+        if (isNull(json)) {
+            return mapper.writeValueAsBytes(metrics);
+        }
+        return json;
+    }
+
+    /*
+     * Delta is read first and full only when delta is based on a full not yet
+     * seen. Writer puts full with an empty delta based on it, so a new full
+     * is always seen through its delta.
+     */
+    private boolean refresh(final String memberId) throws IOException {
+        MemberState state =
+                members.computeIfAbsent(memberId, k -> new MemberState());
+        byte[] delta = metricsJsonData.get(Snapshots.deltaKey(memberId));
+        if (isNull(delta)) {
+            return false;
+        }
+        long deltaSeq = Snapshots.seq(delta);
+        if (deltaSeq == state.deltaSeq) {
+            return false;
+        }
+        long baseSeq = Snapshots.baseSeq(delta);
+        if (baseSeq != state.fullSeq) {
+            byte[] full = metricsJsonData.get(Snapshots.fullKey(memberId));
+            if (isNull(full) || Snapshots.seq(full) != baseSeq) {
+                return false; // full and delta of different writes, next time
             }
+            state.full = (ObjectNode) mapper.readTree(Snapshots.decode(full));
+            state.fullSeq = baseSeq;
         }
+        state.merged = apply(state.full,
+                (ObjectNode) mapper.readTree(Snapshots.decode(delta)));
+        state.deltaSeq = deltaSeq;
+        return true;
     }
 
-    public byte[] getJson() throws JsonProcessingException {
-        return mapper.writeValueAsBytes(metrics);
+    private ObjectNode apply(final ObjectNode full, final ObjectNode delta) {
+        ObjectNode merged = full.deepCopy();
+        Iterator<Entry<String, JsonNode>> sections = delta.fields();
+        while (sections.hasNext()) {
+            Entry<String, JsonNode> section = sections.next();
+            if (section.getKey().equals(REMOVED)) {
+                for (JsonNode removed : section.getValue()) {
+                    String[] parts = removed.asText().split("/", 2);
+                    JsonNode target = merged.get(parts[0]);
+                    if (target instanceof ObjectNode) {
+                        ((ObjectNode) target).remove(parts[1]);
+                    }
+                }
+                continue;
+            }
+            JsonNode target = merged.get(section.getKey());
+            if (target instanceof ObjectNode) {
+                ((ObjectNode) target).setAll((ObjectNode) section.getValue());
+            } else {
+                merged.set(section.getKey(), section.getValue());
+            }
+        }
+        return merged;
     }
 
     private void aggregate(final Metrics memberMetrics) {
@@ -96,4 +198,14 @@ public class Aggregator {
             }
         }
     }
+
+    /*
+     * decoded snapshots of a member and their sequences
+     */
+    private static class MemberState {
+        private long fullSeq = -1;
+        private long deltaSeq = -1;
+        private ObjectNode full;
+        private ObjectNode merged;
+    }
 }
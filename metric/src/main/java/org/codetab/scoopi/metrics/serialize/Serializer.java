@@ -20,7 +20,6 @@ import com.codahale.metrics.ScheduledReporter;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.json.MetricsModule;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * On scheduled intervals, converts MetricsRegistry measurements to json and
@@ -190,7 +189,6 @@ public class Serializer extends ScheduledReporter {
         MetricsModule metricsModule =
                 new MetricsModule(rateUnit, durationUnit, false, filter);
         mapper = new ObjectMapper().registerModule(metricsModule);
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
     }
 
     @Override
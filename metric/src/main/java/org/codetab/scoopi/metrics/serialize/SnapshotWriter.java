@@ -0,0 +1,175 @@
+package org.codetab.scoopi.metrics.serialize;
+
+import static java.util.Objects.isNull;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * <p>
+ * Writes metrics json of a member to metrics map as delta encoded binary
+ * frames, see {@link Snapshots}. Full snapshot is written once in keyframe
+ * reports and in between only metrics changed since the full snapshot are
+ * written as delta. Write is skipped when delta is same as the last one, so
+ * an idle member doesn't write at all.
+ * <p>
+ * Delta is against the full snapshot and not the previous delta, so a reader
+ * that misses some deltas still gets the latest state from full and the last
+ * delta. Accept is synchronized.
+ * @author m
+ *
+ */
+public class SnapshotWriter implements Consumer<byte[]> {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    static final String REMOVED = "removed";
+
+    private final String memberId;
+    private final Map<String, byte[]> metricsMap;
+    private final int keyframe;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ObjectNode base;
+    private ObjectNode lastDelta;
+    private long seq;
+    private long baseSeq;
+    private int reports;
+
+    /**
+     * <p>
+     * Constructor.
+     * @param memberId
+     *            member id
+     * @param metricsMap
+     *            metrics map
+     * @param keyframe
+     *            full snapshot is written once in keyframe reports
+     */
+    public SnapshotWriter(final String memberId,
+            final Map<String, byte[]> metricsMap, final int keyframe) {
+        notNull(memberId, "memberId must not be null");
+        notNull(metricsMap, "metricsMap must not be null");
+        isTrue(keyframe > 0, "keyframe must be positive");
+        this.memberId = memberId;
+        this.metricsMap = metricsMap;
+        this.keyframe = keyframe;
+    }
+
+    @Override
+    public synchronized void accept(final byte[] json) {
+        try {
+            ObjectNode snapshot = (ObjectNode) mapper.readTree(json);
+            seq++;
+            reports++;
+            if (isNull(base) || reports >= keyframe) {
+                writeFull(snapshot, json);
+                return;
+            }
+            ObjectNode delta = diff(base, snapshot);
+            if (delta.equals(lastDelta)) {
+                return; // no change since last write
+            }
+            // large delta, full is as cheap to read
+            if (count(delta) > count(snapshot) / 2) {
+                writeFull(snapshot, json);
+                return;
+            }
+            metricsMap.put(Snapshots.deltaKey(memberId), Snapshots.encode(seq,
+                    baseSeq, mapper.writeValueAsBytes(delta)));
+            lastDelta = delta;
+        } catch (IOException | RuntimeException e) {
+            LOG.error("unable to put metrics snapshot to metrics map {}",
+                    e.getMessage());
+            LOG.debug("{}", e);
+        }
+    }
+
+    /*
+     * full and an empty delta, based on it, in one call
+     */
+    private void writeFull(final ObjectNode snapshot, final byte[] json)
+            throws IOException {
+        ObjectNode delta = mapper.createObjectNode();
+        Map<String, byte[]> frames = new HashMap<>();
+        frames.put(Snapshots.fullKey(memberId),
+                Snapshots.encode(seq, seq, json));
+        frames.put(Snapshots.deltaKey(memberId),
+                Snapshots.encode(seq, seq, mapper.writeValueAsBytes(delta)));
+        metricsMap.putAll(frames);
+        base = snapshot;
+        baseSeq = seq;
+        lastDelta = delta;
+        reports = 0;
+    }
+
+    /**
+     * <p>
+     * Metrics of snapshot that are new or changed in each section, and names
+     * of metrics removed from base as section/name.
+     * @param base
+     *            full snapshot
+     * @param snapshot
+     *            current snapshot
+     * @return delta
+     */
+    ObjectNode diff(final ObjectNode base, final ObjectNode snapshot) {
+        ObjectNode delta = mapper.createObjectNode();
+        ArrayNode removed = mapper.createArrayNode();
+        Iterator<Entry<String, JsonNode>> sections = snapshot.fields();
+        while (sections.hasNext()) {
+            Entry<String, JsonNode> section = sections.next();
+            JsonNode baseSection = base.path(section.getKey());
+            ObjectNode changed = mapper.createObjectNode();
+            Iterator<Entry<String, JsonNode>> metrics =
+                    section.getValue().fields();
+            while (metrics.hasNext()) {
+                Entry<String, JsonNode> metric = metrics.next();
+                if (!metric.getValue()
+                        .equals(baseSection.get(metric.getKey()))) {
+                    changed.set(metric.getKey(), metric.getValue());
+                }
+            }
+            if (changed.size() > 0) {
+                delta.set(section.getKey(), changed);
+            }
+        }
+        Iterator<Entry<String, JsonNode>> baseSections = base.fields();
+        while (baseSections.hasNext()) {
+            Entry<String, JsonNode> section = baseSections.next();
+            Iterator<String> names = section.getValue().fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!snapshot.path(section.getKey()).has(name)) {
+                    removed.add(section.getKey() + "/" + name);
+                }
+            }
+        }
+        if (removed.size() > 0) {
+            delta.set(REMOVED, removed);
+        }
+        return delta;
+    }
+
+    private int count(final ObjectNode snapshot) {
+        int count = 0;
+        for (JsonNode section : snapshot) {
+            count += section.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,117 @@
+package org.codetab.scoopi.metrics.serialize;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ * Binary frame of metrics snapshot held in metrics map. Frame is a header of
+ * sequence and base sequence followed by deflated json. Full snapshot is base
+ * of itself and delta snapshot holds metrics changed since its base, so
+ * reader can check, from header alone, whether a frame is new and whether a
+ * delta applies to full snapshot it holds.
+ * <p>
+ * Each member writes two entries, memberId:full and memberId:delta.
+ * @author m
+ *
+ */
+public final class Snapshots {
+
+    public static final String FULL = ":full";
+    public static final String DELTA = ":delta";
+
+    private static final int HEADER_SIZE = 2 * Long.BYTES;
+    private static final int BUFFER_SIZE = 4096;
+
+    private Snapshots() {
+    }
+
+    public static String fullKey(final String memberId) {
+        return memberId + FULL;
+    }
+
+    public static String deltaKey(final String memberId) {
+        return memberId + DELTA;
+    }
+
+    /**
+     * <p>
+     * Get member id of a metrics map key.
+     * @param key
+     *            full or delta key
+     * @return member id
+     */
+    public static String memberId(final String key) {
+        int index = key.lastIndexOf(':');
+        if (index < 0) {
+            return key;
+        }
+        return key.substring(0, index);
+    }
+
+    public static byte[] encode(final long seq, final long baseSeq,
+            final byte[] json) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(json);
+            deflater.finish();
+            ByteArrayOutputStream out =
+                    new ByteArrayOutputStream(HEADER_SIZE + json.length / 2);
+            out.write(ByteBuffer.allocate(HEADER_SIZE).putLong(seq)
+                    .putLong(baseSeq).array(), 0, HEADER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] decode(final byte[] frame) {
+        checkFrame(frame);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(frame, HEADER_SIZE, frame.length - HEADER_SIZE);
+            ByteArrayOutputStream out =
+                    new ByteArrayOutputStream(frame.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && !inflater.finished()
+                        && inflater.needsInput()) {
+                    throw new DataFormatException("truncated frame");
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException(e));
+        } finally {
+            inflater.end();
+        }
+    }
+
+    public static long seq(final byte[] frame) {
+        checkFrame(frame);
+        return ByteBuffer.wrap(frame).getLong(0);
+    }
+
+    public static long baseSeq(final byte[] frame) {
+        checkFrame(frame);
+        return ByteBuffer.wrap(frame).getLong(Long.BYTES);
+    }
+
+    private static void checkFrame(final byte[] frame) {
+        isTrue(frame.length >= HEADER_SIZE, "not a metrics snapshot frame");
+    }
+}
@@ -13,8 +13,8 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedMap;
 
-import org.assertj.core.util.Arrays;
 import org.codetab.scoopi.metrics.serialize.Serializer;
+import org.codetab.scoopi.metrics.serialize.Snapshots;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -23,6 +23,7 @@ import org.mockito.MockitoAnnotations;
 
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Snapshot;
@@ -42,6 +43,19 @@ public class MetricsHelperTest {
         metricRegistry = metricsHelper.METRICS;
     }
 
+    @Test
+    public void testGetHistogram() {
+        Object clz = Mockito.mock(Object.class);
+        String[] names = {"Foo", "Histogram"};
+
+        Histogram actual = metricsHelper.getHistogram(clz, names);
+
+        SortedMap<String, Histogram> map = metricRegistry.getHistograms();
+
+        assertEquals(1, map.size());
+        assertSame(map.get("Object.Foo.Histogram"), actual);
+    }
+
     @Test
     public void testGetTimer() {
         Object clz = Mockito.mock(Object.class);
@@ -146,13 +160,16 @@ public class MetricsHelperTest {
 
         when(e.getMessage()).thenReturn(apple);
 
-        Serializer actual =
-                metricsHelper.startJsonSerializer(memberId, metricsMap, period);
+        Serializer actual = metricsHelper.startJsonSerializer(memberId,
+                metricsMap, period, 12);
 
         actual.report();
 
-        assertEquals(metricsMap.size(), 1);
-        assertEquals(695, Arrays.asList(metricsMap.get(memberId)).size());
+        // full and delta snapshots
+        assertEquals(2, metricsMap.size());
+        assertNotNull(metricsMap.get(Snapshots.fullKey(memberId)));
+        assertNotNull(metricsMap.get(Snapshots.deltaKey(memberId)));
+        actual.stop();
     }
 
     @Test
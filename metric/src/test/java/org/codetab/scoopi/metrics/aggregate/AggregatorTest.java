@@ -1,41 +1,35 @@
 package org.codetab.scoopi.metrics.aggregate;
 
-import static org.junit.Assert.assertArrayEquals;
-import static org.junit.Assert.assertEquals;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertSame;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
-import org.assertj.core.util.Maps;
-import org.codetab.scoopi.metrics.serialize.Counter;
-import org.codetab.scoopi.metrics.serialize.Gauge;
-import org.codetab.scoopi.metrics.serialize.Meter;
-import org.codetab.scoopi.metrics.serialize.Metrics;
-import org.codetab.scoopi.metrics.serialize.Timer;
+import org.codetab.scoopi.metrics.serialize.Snapshots;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.Mockito;
-import org.mockito.MockitoAnnotations;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class AggregatorTest {
-    @InjectMocks
-    private Aggregator aggregator;
 
-    @Mock
+    private Aggregator aggregator;
     private ObjectMapper mapper;
-    @Mock
-    private Map<String, byte[]> metricsJsonData;
+    private Map<String, byte[]> metricsMap;
 
     @Before
     public void setUp() throws Exception {
-        MockitoAnnotations.openMocks(this);
+        aggregator = new Aggregator();
+        mapper = new ObjectMapper();
+        metricsMap = new HashMap<>();
+        aggregator.setMetricsJsonData(metricsMap);
     }
 
     @Test
@@ -50,183 +44,152 @@ public class AggregatorTest {
 
     @Test
     public void testAggregate() throws Exception {
-
-        Metrics metrics = Mockito.mock(Metrics.class); // aggregated metrics
-        Metrics memberMetrics = Mockito.mock(Metrics.class);
-
-        Map<String, Gauge> grape = new HashMap<>();
-
-        // gauge
-        String gaugeId = "g1";
-        Gauge gauge = new Gauge();
-        String gaugeValueKey = "poolSize";
-        gauge.setValue(Maps.newHashMap(gaugeValueKey, 64));
-        grape.put(gaugeId, gauge);
-
-        Map<String, Gauge> ag = new HashMap<>();
-        Gauge agGauge = new Gauge();
-        agGauge.setValue(Maps.newHashMap(gaugeValueKey, 32));
-        ag.put(gaugeId, agGauge);
-
-        // counter
-        Map<String, Counter> orange = new HashMap<>();
-        String counterId = "c1";
-        Counter counter = new Counter();
-        counter.setCount(5);
-        orange.put(counterId, counter);
-
-        Map<String, Counter> ag2 = new HashMap<>();
-        Counter agCounter = new Counter();
-        agCounter.setCount(2);
-        ag2.put(counterId, agCounter);
-
-        // meter
-        Map<String, Meter> kiwi = new HashMap<>();
-        Map<String, Meter> ag4 = new HashMap<>();
-
-        String meterId = "m1";
-        Meter meter = new Meter();
-        meter.m15_rate = 12.1;
-        kiwi.put(meterId, meter);
-
-        Meter agMeter = new Meter();
-        agMeter.m15_rate = 3.2;
-        ag4.put(meterId, agMeter);
-
-        // timer
-        Map<String, Timer> mango = new HashMap<>();
-        Map<String, Timer> ag6 = new HashMap<>();
-
-        String timerId = "t1";
-        Timer timer = new Timer();
-        timer.m15_rate = 31.2;
-        mango.put(timerId, timer);
-
-        Timer agTimer = new Timer();
-        agTimer.m15_rate = 5.3;
-        ag6.put(timerId, agTimer);
-
-        String memberId = "Foo";
-        byte[] jsonDataAggregate = {};
-        String memberId2 = "Bar";
-        byte[] jsonData = {};
-
-        Map<String, byte[]> jsonDataMap = new HashMap<>();
-        jsonDataMap.put(memberId, jsonDataAggregate);
-        jsonDataMap.put(memberId2, jsonData);
-
-        when(memberMetrics.getCounters()).thenReturn(orange);
-        when(metrics.getCounters()).thenReturn(ag2);
-
-        aggregator.setMetricsJsonData(jsonDataMap);
-
-        when(mapper.readValue(jsonData, Metrics.class)).thenReturn(metrics)
-                .thenReturn(memberMetrics);
-        when(memberMetrics.getGauges()).thenReturn(grape);
-        when(metrics.getGauges()).thenReturn(ag);
-
-        when(memberMetrics.getMeters()).thenReturn(kiwi);
-        when(metrics.getMeters()).thenReturn(ag4);
-        when(memberMetrics.getTimers()).thenReturn(mango);
-        when(metrics.getTimers()).thenReturn(ag6);
+        putFull("Foo", 1, snapshot(2, 32, 3.2, 5.3));
+        putFull("Bar", 1, snapshot(5, 64, 12.1, 31.2));
 
         aggregator.aggregate();
-
-        // assert aggregated metrics
-        assertEquals(96, ag.get(gaugeId).getValue().get(gaugeValueKey));
-        assertEquals(7, ag2.get(counterId).getCount());
-        assertEquals(7.65, ag4.get(meterId).m15_rate, 0);
-        assertEquals(18.25, ag6.get(timerId).m15_rate, 0);
+        JsonNode actual = mapper.readTree(aggregator.getJson());
+
+        assertThat(actual.at("/counters/c1/count").asLong()).isEqualTo(7);
+        assertThat(actual.at("/gauges/g1/value/poolSize").asInt())
+                .isEqualTo(96);
+        assertThat(actual.at("/meters/m1/m15_rate").asDouble())
+                .isEqualTo(7.65);
+        assertThat(actual.at("/timers/t1/m15_rate").asDouble())
+                .isEqualTo(18.25);
     }
 
     @Test
-    public void testAggregateNoEntryInAggregate() throws Exception {
+    public void testAggregateDelta() throws Exception {
+        ObjectNode full = snapshot(2, 32, 3.2, 5.3);
+        full.with("counters").set("c2", counter(9));
+        putFull("Foo", 1, full);
 
-        Metrics metrics = Mockito.mock(Metrics.class); // aggregated metrics
-        Metrics memberMetrics = Mockito.mock(Metrics.class);
+        ObjectNode delta = mapper.createObjectNode();
+        delta.with("counters").set("c1", counter(20));
+        delta.putArray("removed").add("counters/c2");
+        metricsMap.put(Snapshots.deltaKey("Foo"), Snapshots.encode(3, 1,
+                mapper.writeValueAsBytes(delta)));
+
+        aggregator.aggregate();
+        JsonNode actual = mapper.readTree(aggregator.getJson());
+
+        assertThat(actual.at("/counters/c1/count").asLong()).isEqualTo(20);
+        assertThat(actual.at("/counters/c2").isMissingNode()).isTrue();
+        assertThat(actual.at("/gauges/g1/value/poolSize").asInt())
+                .isEqualTo(32);
+    }
 
-        Map<String, Gauge> grape = new HashMap<>();
+    @Test
+    public void testAggregateDeltaOfNewFull() throws Exception {
+        putFull("Foo", 1, snapshot(2, 32, 3.2, 5.3));
+        aggregator.aggregate();
 
-        // gauge
-        String gaugeId = "g1";
-        Gauge gauge = new Gauge();
-        String gaugeValueKey = "poolSize";
-        gauge.setValue(Maps.newHashMap(gaugeValueKey, 64));
-        grape.put(gaugeId, gauge);
+        // full written again, old delta is replaced by one based on new full
+        putFull("Foo", 5, snapshot(8, 32, 3.2, 5.3));
+        expireCache();
+        aggregator.aggregate();
+        JsonNode actual = mapper.readTree(aggregator.getJson());
 
-        Map<String, Gauge> ag = new HashMap<>(); // no entry in aggregate
+        assertThat(actual.at("/counters/c1/count").asLong()).isEqualTo(8);
+    }
 
-        // counter
-        Map<String, Counter> orange = new HashMap<>();
-        String counterId = "c1";
-        Counter counter = new Counter();
-        counter.setCount(5);
-        orange.put(counterId, counter);
+    @Test
+    public void testAggregateStaleFull() throws Exception {
+        putFull("Foo", 1, snapshot(2, 32, 3.2, 5.3));
+        // delta of next full, written before the full
+        metricsMap.put(Snapshots.deltaKey("Foo"), Snapshots.encode(7, 6,
+                mapper.writeValueAsBytes(mapper.createObjectNode())));
 
-        Map<String, Counter> ag2 = new HashMap<>(); // no entry in aggregate
+        aggregator.aggregate();
 
-        // meter
-        Map<String, Meter> kiwi = new HashMap<>();
-        Map<String, Meter> ag4 = new HashMap<>(); // no entry in aggregate
+        assertThat(mapper.readTree(aggregator.getJson()).isNull()).isTrue();
+    }
 
-        String meterId = "m1";
-        Meter meter = new Meter();
-        meter.m15_rate = 12.1;
-        kiwi.put(meterId, meter);
+    @Test
+    public void testAggregateCached() throws Exception {
+        putFull("Foo", 1, snapshot(2, 32, 3.2, 5.3));
+        aggregator.aggregate();
+        byte[] json = aggregator.getJson();
 
-        // timer
-        Map<String, Timer> mango = new HashMap<>();
-        Map<String, Timer> ag6 = new HashMap<>(); // no entry in aggregate
+        putFull("Foo", 2, snapshot(4, 32, 3.2, 5.3));
+        aggregator.aggregate();
 
-        String timerId = "t1";
-        Timer timer = new Timer();
-        timer.m15_rate = 31.2;
-        mango.put(timerId, timer);
+        // within cache time
+        assertSame(json, aggregator.getJson());
 
-        String memberId = "Foo";
-        byte[] jsonDataAggregate = {};
-        String memberId2 = "Bar";
-        byte[] jsonData = {};
+        expireCache();
+        aggregator.aggregate();
 
-        Map<String, byte[]> jsonDataMap = new HashMap<>();
-        jsonDataMap.put(memberId, jsonDataAggregate);
-        jsonDataMap.put(memberId2, jsonData);
+        assertThat(mapper.readTree(aggregator.getJson())
+                .at("/counters/c1/count").asLong()).isEqualTo(4);
+    }
 
-        when(memberMetrics.getCounters()).thenReturn(orange);
-        when(metrics.getCounters()).thenReturn(ag2);
+    @Test
+    public void testAggregateUnchangedMember() throws Exception {
+        Map<String, byte[]> map = spy(new HashMap<String, byte[]>());
+        aggregator.setMetricsJsonData(map);
+        metricsMap = map;
+        putFull("Foo", 1, snapshot(2, 32, 3.2, 5.3));
 
-        aggregator.setMetricsJsonData(jsonDataMap);
+        aggregator.aggregate();
+        byte[] json = aggregator.getJson();
+        expireCache();
+        aggregator.aggregate();
 
-        when(mapper.readValue(jsonData, Metrics.class)).thenReturn(metrics)
-                .thenReturn(memberMetrics);
-        when(memberMetrics.getGauges()).thenReturn(grape);
-        when(metrics.getGauges()).thenReturn(ag);
+        // full is decoded once and json is reused
+        verify(map, times(1)).get(Snapshots.fullKey("Foo"));
+        verify(map, times(2)).get(Snapshots.deltaKey("Foo"));
+        assertSame(json, aggregator.getJson());
+    }
 
-        when(memberMetrics.getMeters()).thenReturn(kiwi);
-        when(metrics.getMeters()).thenReturn(ag4);
-        when(memberMetrics.getTimers()).thenReturn(mango);
-        when(metrics.getTimers()).thenReturn(ag6);
+    @Test
+    public void testAggregateMemberRemoved() throws Exception {
+        putFull("Foo", 1, snapshot(2, 32, 3.2, 5.3));
+        putFull("Bar", 1, snapshot(5, 64, 12.1, 31.2));
+        aggregator.aggregate();
 
+        metricsMap.remove(Snapshots.fullKey("Bar"));
+        metricsMap.remove(Snapshots.deltaKey("Bar"));
+        expireCache();
         aggregator.aggregate();
 
-        // assert aggregated metrics
-        assertEquals(64, ag.get(gaugeId).getValue().get(gaugeValueKey));
-        assertEquals(5, ag2.get(counterId).getCount());
-        assertEquals(12.1, ag4.get(meterId).m15_rate, 0);
-        assertEquals(31.2, ag6.get(timerId).m15_rate, 0);
+        assertThat(mapper.readTree(aggregator.getJson())
+                .at("/counters/c1/count").asLong()).isEqualTo(2);
     }
 
     @Test
-    public void testGetJson() throws Exception {
-        byte[] apple = {};
+    public void testGetJsonNoMembers() throws Exception {
+        aggregator.aggregate();
+
+        assertThat(new String(aggregator.getJson())).isEqualTo("null");
+    }
 
-        Metrics metrics = Mockito.mock(Metrics.class); // aggregated metrics
-        FieldUtils.writeDeclaredField(aggregator, "metrics", metrics, true);
+    private void expireCache() throws IllegalAccessException {
+        FieldUtils.writeDeclaredField(aggregator, "aggregatedAt", 0L, true);
+    }
 
-        when(mapper.writeValueAsBytes(metrics)).thenReturn(apple);
+    private void putFull(final String memberId, final long seq,
+            final ObjectNode snapshot) throws Exception {
+        metricsMap.put(Snapshots.fullKey(memberId),
+                Snapshots.encode(seq, seq, mapper.writeValueAsBytes(snapshot)));
+        metricsMap.put(Snapshots.deltaKey(memberId), Snapshots.encode(seq, seq,
+                mapper.writeValueAsBytes(mapper.createObjectNode())));
+    }
 
-        byte[] actual = aggregator.getJson();
+    private ObjectNode snapshot(final long count, final int poolSize,
+            final double meterRate, final double timerRate) {
+        ObjectNode snapshot = mapper.createObjectNode();
+        snapshot.with("gauges").with("g1").with("value").put("poolSize",
+                poolSize);
+        snapshot.with("counters").set("c1", counter(count));
+        snapshot.with("meters").with("m1").put("m15_rate", meterRate);
+        snapshot.with("timers").with("t1").put("m15_rate", timerRate);
+        snapshot.putObject("histograms");
+        return snapshot;
+    }
 
-        assertArrayEquals(apple, actual);
+    private ObjectNode counter(final long count) {
+        return mapper.createObjectNode().put("count", count);
     }
 }
@@ -0,0 +1,132 @@
+package org.codetab.scoopi.metrics.serialize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class SnapshotWriterTest {
+
+    private SnapshotWriter writer;
+    private Map<String, byte[]> metricsMap;
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        metricsMap = spy(new HashMap<String, byte[]>());
+        writer = new SnapshotWriter("Foo", metricsMap, 4);
+        mapper = new ObjectMapper();
+    }
+
+    @Test
+    public void testAcceptFirstIsFull() throws Exception {
+        writer.accept(json(1, 1, 1, 1));
+
+        verify(metricsMap).putAll(anyMap());
+        byte[] full = metricsMap.get(Snapshots.fullKey("Foo"));
+        byte[] delta = metricsMap.get(Snapshots.deltaKey("Foo"));
+        assertThat(Snapshots.seq(full)).isEqualTo(1);
+        assertThat(Snapshots.seq(delta)).isEqualTo(1);
+        assertThat(Snapshots.baseSeq(delta)).isEqualTo(1);
+        assertThat(mapper.readTree(Snapshots.decode(full)))
+                .isEqualTo(mapper.readTree(json(1, 1, 1, 1)));
+        assertThat(mapper.readTree(Snapshots.decode(delta)).size())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void testAcceptDelta() throws Exception {
+        writer.accept(json(1, 1, 1, 1));
+        writer.accept(json(2, 1, 1, 1));
+
+        byte[] delta = metricsMap.get(Snapshots.deltaKey("Foo"));
+        assertThat(Snapshots.seq(delta)).isEqualTo(2);
+        assertThat(Snapshots.baseSeq(delta)).isEqualTo(1);
+        JsonNode node = mapper.readTree(Snapshots.decode(delta));
+        assertThat(node.at("/counters/c1/count").asLong()).isEqualTo(2);
+        assertThat(node.at("/counters/c2").isMissingNode()).isTrue();
+        assertThat(node.has("meters")).isFalse();
+        // full is not written again
+        assertThat(Snapshots.seq(metricsMap.get(Snapshots.fullKey("Foo"))))
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void testAcceptCoalesce() throws Exception {
+        writer.accept(json(1, 1, 1, 1));
+        writer.accept(json(1, 1, 1, 1)); // no change
+        writer.accept(json(2, 1, 1, 1));
+        writer.accept(json(2, 1, 1, 1)); // same delta
+
+        verify(metricsMap, times(1)).putAll(anyMap());
+        verify(metricsMap, times(1)).put(any(), any());
+    }
+
+    @Test
+    public void testAcceptKeyframe() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            writer.accept(json(i, 1, 1, 1));
+        }
+        verify(metricsMap, times(1)).putAll(anyMap());
+
+        writer.accept(json(9, 1, 1, 1));
+
+        verify(metricsMap, times(2)).putAll(anyMap());
+        byte[] full = metricsMap.get(Snapshots.fullKey("Foo"));
+        assertThat(Snapshots.seq(full)).isEqualTo(5);
+        assertThat(Snapshots.baseSeq(metricsMap.get(Snapshots.deltaKey("Foo"))))
+                .isEqualTo(5);
+    }
+
+    @Test
+    public void testAcceptLargeDeltaIsFull() throws Exception {
+        writer.accept(json(1, 1, 1, 1));
+        writer.accept(json(2, 2, 2, 1));
+
+        verify(metricsMap, times(2)).putAll(anyMap());
+        verify(metricsMap, never()).put(any(), any());
+    }
+
+    @Test
+    public void testAcceptInvalidJson() throws Exception {
+        writer.accept("not json".getBytes());
+
+        verify(metricsMap, never()).putAll(anyMap());
+    }
+
+    @Test
+    public void testDiffRemoved() throws Exception {
+        ObjectNode base = (ObjectNode) mapper.readTree(json(1, 1, 1, 1));
+        ObjectNode snapshot = (ObjectNode) mapper.readTree(json(1, 1, 1, 1));
+        ((ObjectNode) snapshot.get("counters")).remove("c2");
+
+        ObjectNode delta = writer.diff(base, snapshot);
+
+        assertThat(delta.get(SnapshotWriter.REMOVED).get(0).asText())
+                .isEqualTo("counters/c2");
+        assertThat(delta.has("counters")).isFalse();
+    }
+
+    private byte[] json(final long c1, final long c2, final long c3,
+            final double rate) throws Exception {
+        ObjectNode node = mapper.createObjectNode();
+        node.with("counters").with("c1").put("count", c1);
+        node.with("counters").with("c2").put("count", c2);
+        node.with("counters").with("c3").put("count", c3);
+        node.with("meters").with("m1").put("m1_rate", rate);
+        return mapper.writeValueAsBytes(node);
+    }
+}
@@ -0,0 +1,46 @@
+package org.codetab.scoopi.metrics.serialize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+public class SnapshotsTest {
+
+    @Test
+    public void testEncodeDecode() {
+        byte[] json = ("{\"counters\":{\"c1\":{\"count\":1}},\"gauges\":"
+                + StringUtils.repeat("{}", 500) + "}")
+                        .getBytes(StandardCharsets.UTF_8);
+
+        byte[] frame = Snapshots.encode(7, 3, json);
+
+        assertThat(frame.length).isLessThan(json.length);
+        assertThat(Snapshots.seq(frame)).isEqualTo(7);
+        assertThat(Snapshots.baseSeq(frame)).isEqualTo(3);
+        assertThat(Snapshots.decode(frame)).isEqualTo(json);
+    }
+
+    @Test
+    public void testEncodeEmpty() {
+        byte[] frame = Snapshots.encode(1, 1, new byte[0]);
+
+        assertThat(Snapshots.decode(frame)).isEmpty();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSeqNotFrame() {
+        Snapshots.seq(new byte[] {1, 2});
+    }
+
+    @Test
+    public void testKeys() {
+        assertThat(Snapshots.fullKey("Foo")).isEqualTo("Foo:full");
+        assertThat(Snapshots.deltaKey("Foo")).isEqualTo("Foo:delta");
+        assertThat(Snapshots.memberId("Foo:full")).isEqualTo("Foo");
+        assertThat(Snapshots.memberId("Foo:delta")).isEqualTo("Foo");
+        assertThat(Snapshots.memberId("Foo")).isEqualTo("Foo");
+    }
+}
@@ -10,11 +10,16 @@ public class ClusterJob implements Serializable {
     private static final long serialVersionUID = 1416824813601110840L;
 
     private final long jobId;
+    // epoch millis, ids are not time ordered across members
+    private long created;
     private boolean taken;
     private String memberId;
+    // lease of member that spawned the job, epoch millis, zero if not leased
+    private long leaseUntil;
 
     ClusterJob(final long jobId) {
         this.jobId = jobId;
+        created = System.currentTimeMillis();
         taken = false;
     }
 
@@ -30,6 +35,14 @@ public class ClusterJob implements Serializable {
         return jobId;
     }
 
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(final long created) {
+        this.created = created;
+    }
+
     public String getMemberId() {
         return memberId;
     }
@@ -38,6 +51,14 @@ public class ClusterJob implements Serializable {
         this.memberId = memberId;
     }
 
+    public long getLeaseUntil() {
+        return leaseUntil;
+    }
+
+    public void setLeaseUntil(final long leaseUntil) {
+        this.leaseUntil = leaseUntil;
+    }
+
     @Override
     public boolean equals(final Object obj) {
         ClusterJob rhs = (ClusterJob) obj;
@@ -82,6 +82,14 @@ public class Document implements Serializable {
         }
     }
 
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void setCompressed(final boolean compressed) {
+        this.compressed = compressed;
+    }
+
     /**
      * Gets the value of the name property.
      *
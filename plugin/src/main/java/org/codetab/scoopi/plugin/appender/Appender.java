@@ -2,20 +2,25 @@ package org.codetab.scoopi.plugin.appender;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 
 import javax.inject.Inject;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.exception.DefNotFoundException;
 import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Plugin;
 import org.codetab.scoopi.model.PrintPayload;
 
+import com.codahale.metrics.Timer;
+
 /**
  * <p>
  * Abstract Appender Task.
@@ -45,6 +50,10 @@ public abstract class Appender implements Runnable {
     private IPluginDef pluginDef;
     @Inject
     protected Errors errors;
+    @Inject
+    protected MetricsHelper metricsHelper;
+    @Inject
+    private Backpressure backpressure;
 
     /**
      * Queue to hold objects pushed to appenders.
@@ -53,6 +62,8 @@ public abstract class Appender implements Runnable {
     private String name;
     private boolean initialized = false;
     private Plugin plugin;
+    private int shard = -1;
+    private DedupFilter dedupFilter;
 
     /**
      * <p>
@@ -70,36 +81,135 @@ public abstract class Appender implements Runnable {
     /**
      * <p>
      * Initialises the blocking queue which is used to hold the objected pushed
-     * to appender. By default, queue size is 4096 and it is configurable
-     * globally with scoopi.appender.queuesize config. It is also possible to
-     * override global size and configure size for an appender by adding
-     * queuesize field to appender definition.
-     * <p>
-     * When large number of objects are appended to queue with inadequate
-     * capacity then application may hang.
+     * to appender. Queue is bounded by weight of payloads, roughly chars of
+     * their data, see {@link WeightedQueue}. By default, capacity is 32 MB
+     * and it is configurable globally with scoopi.appender.queueBytes config.
+     * It is also possible to override global capacity and configure it for
+     * an appender by adding queueBytes field to appender definition. Capacity
+     * of a sharded appender is split equally across its shards. Count based
+     * queueSize config and field are no longer used and are warned.
      * <p>
-     * If size is invalid, then queue is not initialized.
+     * When queue is near full, parsers are slowed through
+     * {@link Backpressure}, so that output doesn't pile up in memory.
      */
     public void initializeQueue() {
-        String configKey = "scoopi.appender.queueSize";
-        final int defaultValue = 4096;
+        warnQueueSize();
 
-        int qSize = configs.getInt(configKey, defaultValue);
+        String configKey = "scoopi.appender.queueBytes";
+        final int defaultValue = 33554432;
 
-        String qSizeInPlugin = null;
+        int qBytes = configs.getInt(configKey, defaultValue);
+
+        String qBytesInPlugin = null;
         try {
-            qSizeInPlugin = pluginDef.getValue(plugin, "queueSize");
-            qSize = Integer.parseInt(qSizeInPlugin);
+            qBytesInPlugin = pluginDef.getValue(plugin, "queueBytes");
+            qBytes = Integer.parseInt(qBytesInPlugin);
         } catch (DefNotFoundException e) {
         } catch (NumberFormatException e) {
             LOG.error(
-                    "invalid queueSize in appender plugin, use default: {}, parse error:",
-                    qSize, e);
+                    "invalid queueBytes in appender plugin, use default: {}, parse error:",
+                    qBytes, e);
+        }
+
+        if (shard >= 0) {
+            // capacity is of the appender, split across its shards
+            int shards = Integer.parseInt(getPluginField("shards", "1"));
+            qBytes = Math.max(1, qBytes / shards);
+        }
+
+        queue = new WeightedQueue(qBytes, backpressure);
+        LOG.info("initialized appender: {}, queue bytes: {}", name, qBytes);
+
+    }
+
+    /*
+     * queue was bounded by count of payloads, which doesn't map to bytes, so
+     * old keys are ignored and only warned
+     */
+    private void warnQueueSize() {
+        for (String key : new String[] {"scoopi.appender.queueSize",
+                "scoopi.appender.queuesize"}) {
+            if (configs.getProperty(key) != null) {
+                LOG.warn("config {} is deprecated and ignored, use {}", key,
+                        "scoopi.appender.queueBytes");
+            }
+        }
+        try {
+            pluginDef.getValue(plugin, "queueSize");
+            LOG.warn(
+                    "appender: {}, plugin field queueSize is deprecated and ignored, use queueBytes",
+                    name);
+        } catch (DefNotFoundException e) {
         }
+    }
 
-        queue = new ArrayBlockingQueue<>(qSize);
-        LOG.info("initialized appender: {}, queue size: {}", name, qSize);
+    /**
+     * <p>
+     * Put payload to queue, wait if queue is full. Time spent waiting on full
+     * queue is in metrics timer simpleName.appenderName.queue.full, it shows
+     * when output is the bottleneck.
+     * @param printPayload
+     *            payload
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    protected void putToQueue(final PrintPayload printPayload)
+            throws InterruptedException {
+        if (!queue.offer(printPayload)) {
+            Timer.Context queueFull = metricsHelper
+                    .getTimer(this, name, "queue", "full").time();
+            try {
+                queue.put(printPayload);
+            } finally {
+                queueFull.stop();
+            }
+        }
+    }
 
+    /**
+     * <p>
+     * Get short member id, last segment of cluster member id or solo.
+     * @return member id
+     */
+    protected String getShortMemberId() {
+        String memberId = configs.getConfig("scoopi.cluster.memberId", "solo");
+        String shortId = StringUtils.substringAfterLast(memberId, "-");
+        return StringUtils.isBlank(shortId) ? memberId : shortId;
+    }
+
+    /**
+     * <p>
+     * Get id to name output files so that members and shards don't overwrite
+     * each other, short member id and for a shard s + shard index.
+     * @return output id
+     */
+    protected String getOutputId() {
+        String memberId = getShortMemberId();
+        return shard < 0 ? memberId : memberId + "s" + shard;
+    }
+
+    /**
+     * <p>
+     * Merge output of shards, called once after all shards of a sharded
+     * appender are finished. Appender that supports merge overrides it, by
+     * default output is left as shards.
+     * @param shards
+     *            shards, each of same type as this
+     */
+    public void merge(final List<Appender> shards) {
+        LOG.info("appender: {}, merge not supported, output left as shards",
+                name);
+    }
+
+    /**
+     * <p>
+     * Called once after all shards of a sharded appender are finished, after
+     * merge if any. Appender whose shards share resources overrides it to
+     * release them, by default does nothing.
+     * @param shards
+     *            shards, each of same type as this
+     */
+    public void finish(final List<Appender> shards) {
     }
 
     public BlockingQueue<PrintPayload> getQueue() {
@@ -123,12 +233,48 @@ public abstract class Appender implements Runnable {
         this.initialized = initialized;
     }
 
+    public Plugin getPlugin() {
+        return plugin;
+    }
+
     public void setPlugin(final Plugin plugin) {
         this.plugin = plugin;
     }
 
+    /**
+     * <p>
+     * Get shard index.
+     * @return shard index or -1 if appender is not a shard
+     */
+    public int getShard() {
+        return shard;
+    }
+
+    public void setShard(final int shard) {
+        this.shard = shard;
+    }
+
+    /**
+     * <p>
+     * Get dedup filter, present when plugin field dedup is true. Items it
+     * contains are not appended again, see DataAppender.
+     * @return dedup filter
+     */
+    public Optional<DedupFilter> getDedupFilter() {
+        return Optional.ofNullable(dedupFilter);
+    }
+
+    public void setDedupFilter(final DedupFilter dedupFilter) {
+        this.dedupFilter = dedupFilter;
+    }
+
     public String getPluginField(final String field)
             throws DefNotFoundException {
         return pluginDef.getValue(plugin, field);
     }
+
+    public String getPluginField(final String field,
+            final String defaultValue) {
+        return pluginDef.getValue(plugin, field, defaultValue);
+    }
 }
@@ -1,10 +1,17 @@
 package org.codetab.scoopi.plugin.appender;
 
+import static org.codetab.scoopi.util.Util.dashit;
 import static org.codetab.scoopi.util.Util.spaceit;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.di.DInjector;
 import org.codetab.scoopi.exception.DefNotFoundException;
 import org.codetab.scoopi.model.Plugin;
@@ -14,13 +21,54 @@ public class AppenderFactory {
 
     @Inject
     private DInjector di;
+    @Inject
+    private IPluginDef pluginDef;
+    @Inject
+    private Configs configs;
 
+    /**
+     * <p>
+     * Create appender of plugin class. When plugin field shards is more than
+     * one, create a ShardedAppender that routes to shards number of appenders
+     * of plugin class. When plugin field dedup is true, appender is given a
+     * dedup filter.
+     * @param appenderName
+     *            name
+     * @param plugin
+     *            appender plugin
+     * @return appender
+     */
     public synchronized Appender createAppender(final String appenderName,
             final Plugin plugin) throws ClassCastException,
             ClassNotFoundException, DefNotFoundException {
-        Appender appender = di.instance(plugin.getClassName(), Appender.class);
+        int shards = getShards(plugin);
+        Appender appender;
+        if (shards > 1) {
+            ShardedAppender router = di.instance(ShardedAppender.class);
+            for (int shard = 0; shard < shards; shard++) {
+                router.addShard(initAppender(
+                        di.instance(plugin.getClassName(), Appender.class),
+                        dashit(appenderName, String.valueOf(shard)), plugin,
+                        shard));
+            }
+            appender = initAppender(router, appenderName, plugin, -1);
+        } else {
+            appender = initAppender(
+                    di.instance(plugin.getClassName(), Appender.class),
+                    appenderName, plugin, -1);
+        }
+        String dedup = pluginDef.getValue(plugin, "dedup", "false");
+        if (Boolean.parseBoolean(dedup)) {
+            appender.setDedupFilter(createDedupFilter(appenderName, plugin));
+        }
+        return appender;
+    }
+
+    private Appender initAppender(final Appender appender,
+            final String appenderName, final Plugin plugin, final int shard) {
         appender.setName(appenderName);
         appender.setPlugin(plugin);
+        appender.setShard(shard);
         appender.init();
         if (appender.isInitialized()) {
             appender.initializeQueue();
@@ -31,4 +79,35 @@ public class AppenderFactory {
         return appender;
     }
 
+    /*
+     * filter files are in datastore path/dedup, named after appender
+     */
+    private DedupFilter createDedupFilter(final String appenderName,
+            final Plugin plugin) {
+        Path dir = Paths.get(configs.getConfig("scoopi.datastore.path", "data"),
+                "dedup");
+        try {
+            long expectedItems = Long.parseLong(
+                    pluginDef.getValue(plugin, "dedupItems", "1000000"));
+            double fpp = Double.parseDouble(
+                    pluginDef.getValue(plugin, "dedupFpp", "0.01"));
+            int spillSize = Integer.parseInt(
+                    pluginDef.getValue(plugin, "dedupSpillSize", "65536"));
+            return new DedupFilter(dir, appenderName, expectedItems, fpp,
+                    spillSize);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException(
+                    spaceit("unable to create dedup filter:", appenderName), e);
+        }
+    }
+
+    private int getShards(final Plugin plugin) {
+        String shards = pluginDef.getValue(plugin, "shards", "1");
+        try {
+            return Integer.parseInt(shards);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(
+                    spaceit("invalid shards:", shards), e);
+        }
+    }
 }
@@ -2,6 +2,7 @@ package org.codetab.scoopi.plugin.appender;
 
 import static java.util.Objects.isNull;
 
+import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -47,12 +48,27 @@ public class AppenderMediator {
         Appender appender = appenders.get(appenderName);
         if (isNull(appender)) {
             appender = appenderFactory.createAppender(appenderName, plugin);
-            appenderPoolService.submit("appender", appender); //$NON-NLS-1$
+            if (appender instanceof ShardedAppender) {
+                submitShards((ShardedAppender) appender);
+            } else {
+                appenderPoolService.submit("appender", appender); //$NON-NLS-1$
+            }
             appenders.put(appenderName, appender);
         }
         return appender;
     }
 
+    /*
+     * shards run in pool of their own, sized to number of shards
+     */
+    private void submitShards(final ShardedAppender appender) {
+        String poolName = appender.getPoolName();
+        int poolSize = appender.getShards().size();
+        for (Runnable task : appender.getShardTasks()) {
+            appenderPoolService.submit(poolName, poolSize, task);
+        }
+    }
+
     @GuardedBy("this")
     public synchronized void closeAll() {
         for (String appenderName : appenders.keySet()) {
@@ -70,7 +86,22 @@ public class AppenderMediator {
         }
     }
 
+    /**
+     * <p>
+     * Wait for appenders to finish and then close their dedup filters.
+     */
     public void waitForFinish() {
         appenderPoolService.waitForFinish();
+        for (Appender appender : appenders.values()) {
+            if (appender.getDedupFilter().isPresent()) {
+                try {
+                    appender.getDedupFilter().get().close();
+                } catch (IOException e) {
+                    errors.inc();
+                    LOG.error("close dedup filter of appender: {} [{}]",
+                            appender.getName(), ERROR.INTERNAL, e);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,102 @@
+package org.codetab.scoopi.plugin.appender;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
+
+import com.codahale.metrics.Timer;
+
+/**
+ * <p>
+ * Signal from appender queues to parsers. Queue near full turns pressure on
+ * and turns it off once drained, see {@link WeightedQueue}. While any queue
+ * is under pressure, parser calls to {@link #await()} wait till pressure is
+ * off but at most scoopi.appender.backpressure.maxWait millis (default 1000),
+ * so parsers slow down to the pace of appenders but never block on them.
+ * Time waited is in metrics timer Backpressure.wait.
+ * @author m
+ *
+ */
+@Singleton
+public class Backpressure {
+
+    @Inject
+    private Configs configs;
+    @Inject
+    private MetricsHelper metricsHelper;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition relieved = lock.newCondition();
+
+    @GuardedBy("lock")
+    private int queues;
+
+    /**
+     * <p>
+     * Turn pressure of a queue on or off, each on is followed by an off.
+     * @param on
+     *            true when queue is near full, false when it is drained
+     */
+    void signal(final boolean on) {
+        lock.lock();
+        try {
+            if (on) {
+                queues++;
+            } else {
+                queues = Math.max(0, queues - 1);
+                if (queues == 0) {
+                    relieved.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Whether any queue is under pressure.
+     * @return true if under pressure
+     */
+    public boolean isOn() {
+        lock.lock();
+        try {
+            return queues > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Wait while any queue is under pressure, at most maxWait millis.
+     * Returns at once when there is no pressure.
+     */
+    public void await() {
+        if (!isOn()) {
+            return;
+        }
+        long maxWait =
+                configs.getInt("scoopi.appender.backpressure.maxWait", 1000);
+        Timer.Context waitTimer = metricsHelper.getTimer(this, "wait").time();
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+            while (queues > 0 && nanos > 0) {
+                nanos = relieved.awaitNanos(nanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+            waitTimer.stop();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.exception.DefNotFoundException;
+import org.codetab.scoopi.model.ERROR;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+
+import com.codahale.metrics.Histogram;
+
+/**
+ * <p>
+ * Appends rows of columnar encoder to columnar files, see
+ * {@link ColumnarFile}. Rows of payloads are collected into a batch, which is
+ * written to its own file base-member-seq.ext. Batch is written when it holds
+ * rowsPerFile rows (default 65536) or when linger millis (default 200) elapse
+ * since its first payload, payloads of batch are finished after file is
+ * synced to disk. Payload is not split across files.
+ * <p>
+ * File is written under temporary name and renamed when complete, so readers
+ * never see a partial file.
+ * @author m
+ *
+ */
+public final class ColumnarAppender extends Appender {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    private Configs configs;
+    @Inject
+    private JobFilePath jobFilePath;
+
+    private String baseDir;
+    private String fileDir;
+    private String fileBaseName;
+    private String fileExtension;
+    private String dirTimestamp;
+    private String member;
+    private int rowsPerFile;
+    private long linger;
+    private int seq;
+
+    @Inject
+    private ColumnarAppender() {
+    }
+
+    @Override
+    public void init() {
+        try {
+            String filePath = getPluginField("file");
+            baseDir = configs.getConfig("scoopi.appender.file.baseDir", "");
+            fileDir = FilenameUtils.getFullPath(filePath);
+            fileBaseName = FilenameUtils.getBaseName(filePath);
+            fileExtension = FilenameUtils.getExtension(filePath);
+            DateTimeFormatter formatter =
+                    DateTimeFormatter.ofPattern(configs.getConfig(
+                            "outputDirTimestampPattern", "yyyyMMMdd-HHmmss"));
+            dirTimestamp = configs.getRunDateTime().format(formatter);
+            rowsPerFile =
+                    Integer.parseInt(getPluginField("rowsPerFile", "65536"));
+            linger = Long.parseLong(getPluginField("linger", "200"));
+            Validate.isTrue(rowsPerFile > 0, "rowsPerFile must be positive");
+            Validate.isTrue(linger >= 0, "linger must not be negative");
+            member = getOutputId();
+            setInitialized(true);
+        } catch (DefNotFoundException | IllegalArgumentException e) {
+            errors.inc();
+            LOG.error("unable to create appender: {} [{}]", getName(),
+                    ERROR.DATAERROR, e);
+        }
+    }
+
+    /**
+     * Collect payloads into batch and write batch to a file until
+     * Marker.END_OF_STREAM.
+     */
+    @Override
+    public void run() {
+        int count = 0;
+        Histogram fileRows = metricsHelper.getHistogram(this, "file", "rows");
+        List<PrintPayload> batch = new ArrayList<>();
+
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            batch.clear();
+            ColumnarRows rows = new ColumnarRows();
+            try {
+                PrintPayload printPayload = getQueue().take();
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(linger);
+                while (nonNull(printPayload)) {
+                    if (printPayload.getData() == Marker.END_OF_STREAM) {
+                        endOfStream = true;
+                        break;
+                    }
+                    addRows(printPayload, rows);
+                    batch.add(printPayload);
+                    if (rows.size() >= rowsPerFile) {
+                        break;
+                    }
+                    printPayload = getQueue().poll(
+                            deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (final InterruptedException e) {
+                errors.inc();
+                LOG.error("appender: {} [{}]", getName(), ERROR.INTERNAL, e);
+                Thread.currentThread().interrupt();
+            }
+            if (rows.size() > 0) {
+                count += writeFile(batch, rows);
+                fileRows.update(rows.size());
+            }
+            for (PrintPayload printPayload : batch) {
+                printPayload.finished();
+            }
+        }
+        LOG.info("appender: {}, {} rows appended", getName(), count);
+    }
+
+    /**
+     * Append object to appender queue.
+     * @param printPayload
+     *            object to append, not null
+     * @throws InterruptedException
+     *             if interrupted while queue put operation
+     */
+    @Override
+    public void append(final PrintPayload printPayload)
+            throws InterruptedException {
+        Validate.notNull(printPayload, "printPayload must not be null");
+        if (isInitialized()) {
+            putToQueue(printPayload);
+        }
+    }
+
+    private void addRows(final PrintPayload printPayload,
+            final ColumnarRows rows) {
+        Object data = printPayload.getData();
+        if (data instanceof ColumnarRows) {
+            rows.addRows((ColumnarRows) data);
+            printPayload.setProcessed(true);
+        } else {
+            printPayload.setProcessed(false);
+            LOG.error("appender: {} expects columnar rows, not {} [{}]",
+                    getName(), isNull(data) ? null : data.getClass().getName(),
+                    ERROR.DATAERROR);
+        }
+    }
+
+    private int writeFile(final List<PrintPayload> batch,
+            final ColumnarRows rows) {
+        File file = new File(jobFilePath.getRollingPath(baseDir, fileDir,
+                fileBaseName, fileExtension, dirTimestamp, member, ++seq));
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            FileUtils.forceMkdirParent(file);
+            try (FileOutputStream fos = new FileOutputStream(tmpFile);
+                    OutputStream out = new BufferedOutputStream(fos)) {
+                ColumnarFile.write(rows, out);
+                out.flush();
+                fos.getChannel().force(true);
+            }
+            Files.move(tmpFile.toPath(), file.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            return rows.size();
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(tmpFile);
+            batch.forEach(printPayload -> printPayload.setProcessed(false));
+            // recoverable - so no data error
+            LOG.error("appender: {} file path: {} [{}]", getName(), file,
+                    ERROR.ERROR, e);
+            return 0;
+        }
+    }
+}
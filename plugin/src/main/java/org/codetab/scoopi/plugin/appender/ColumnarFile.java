@@ -0,0 +1,192 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static java.util.Objects.isNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+
+/**
+ * <p>
+ * Columnar file format. File holds a batch of rows stored column by column,
+ * so a reader scans only the columns it needs and repeating dims such as
+ * date or item name compress well.
+ * <p>
+ * Layout: magic SCOL, version, row count, column count and then for each
+ * column its name, encoding and data. Low cardinality column is dictionary
+ * encoded, distinct values followed by code of each row in 1, 2 or 4 bytes as
+ * required by dictionary size; other columns are plain, value of each row.
+ * Null is written as flag before value. All ints are big endian and strings
+ * are modified UTF-8 as in {@link DataOutputStream#writeUTF}, at most 64K
+ * bytes.
+ * @author m
+ *
+ */
+final class ColumnarFile {
+
+    static final int MAGIC = 0x53434F4C; // SCOL
+    static final byte VERSION = 1;
+
+    static final byte PLAIN = 0;
+    static final byte DICTIONARY = 1;
+
+    private ColumnarFile() {
+    }
+
+    /**
+     * <p>
+     * Write rows. Column is dictionary encoded when its distinct values are
+     * at most half of rows.
+     * @param rows
+     *            rows to write
+     * @param out
+     *            stream, not closed
+     * @throws IOException
+     *             on write error
+     */
+    static void write(final ColumnarRows rows, final OutputStream out)
+            throws IOException {
+        DataOutputStream dos = new DataOutputStream(out);
+        List<String> columns = rows.getColumns();
+        dos.writeInt(MAGIC);
+        dos.writeByte(VERSION);
+        dos.writeInt(rows.size());
+        dos.writeInt(columns.size());
+        for (int c = 0; c < columns.size(); c++) {
+            dos.writeUTF(columns.get(c));
+            Map<String, Integer> dictionary = new HashMap<>();
+            List<String> values = new ArrayList<>();
+            int[] codes = new int[rows.size()];
+            for (int r = 0; r < rows.size(); r++) {
+                String value = rows.getValue(r, c);
+                Integer code = dictionary.get(value);
+                if (isNull(code)) {
+                    code = values.size();
+                    dictionary.put(value, code);
+                    values.add(value);
+                }
+                codes[r] = code;
+            }
+            if (values.size() * 2 <= rows.size()) {
+                dos.writeByte(DICTIONARY);
+                dos.writeInt(values.size());
+                for (String value : values) {
+                    writeValue(dos, value);
+                }
+                int width = codeWidth(values.size());
+                for (int code : codes) {
+                    writeCode(dos, code, width);
+                }
+            } else {
+                dos.writeByte(PLAIN);
+                for (int r = 0; r < rows.size(); r++) {
+                    writeValue(dos, rows.getValue(r, c));
+                }
+            }
+        }
+        dos.flush();
+    }
+
+    /**
+     * <p>
+     * Read rows.
+     * @param in
+     *            stream, not closed
+     * @return rows
+     * @throws IOException
+     *             on read error or if stream is not a columnar file
+     */
+    static ColumnarRows read(final InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(in);
+        if (dis.readInt() != MAGIC || dis.readByte() != VERSION) {
+            throw new IOException("not a columnar file");
+        }
+        int rowCount = dis.readInt();
+        int columnCount = dis.readInt();
+        List<String> names = new ArrayList<>(columnCount);
+        String[][] columns = new String[columnCount][];
+        for (int c = 0; c < columnCount; c++) {
+            names.add(dis.readUTF());
+            String[] column = new String[rowCount];
+            byte encoding = dis.readByte();
+            if (encoding == DICTIONARY) {
+                String[] values = new String[dis.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = readValue(dis);
+                }
+                int width = codeWidth(values.length);
+                for (int r = 0; r < rowCount; r++) {
+                    column[r] = values[readCode(dis, width)];
+                }
+            } else if (encoding == PLAIN) {
+                for (int r = 0; r < rowCount; r++) {
+                    column[r] = readValue(dis);
+                }
+            } else {
+                throw new IOException("unknown column encoding " + encoding);
+            }
+            columns[c] = column;
+        }
+        ColumnarRows rows = new ColumnarRows();
+        for (int r = 0; r < rowCount; r++) {
+            String[] row = new String[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                row[c] = columns[c][r];
+            }
+            rows.addRow(names, Arrays.asList(row));
+        }
+        return rows;
+    }
+
+    private static int codeWidth(final int dictionarySize) {
+        if (dictionarySize <= 1 << Byte.SIZE) {
+            return Byte.BYTES;
+        } else if (dictionarySize <= 1 << Short.SIZE) {
+            return Short.BYTES;
+        }
+        return Integer.BYTES;
+    }
+
+    private static void writeCode(final DataOutputStream dos, final int code,
+            final int width) throws IOException {
+        if (width == Byte.BYTES) {
+            dos.writeByte(code);
+        } else if (width == Short.BYTES) {
+            dos.writeShort(code);
+        } else {
+            dos.writeInt(code);
+        }
+    }
+
+    private static int readCode(final DataInputStream dis, final int width)
+            throws IOException {
+        if (width == Byte.BYTES) {
+            return dis.readUnsignedByte();
+        } else if (width == Short.BYTES) {
+            return dis.readUnsignedShort();
+        }
+        return dis.readInt();
+    }
+
+    private static void writeValue(final DataOutputStream dos,
+            final String value) throws IOException {
+        dos.writeBoolean(isNull(value));
+        if (!isNull(value)) {
+            dos.writeUTF(value);
+        }
+    }
+
+    private static String readValue(final DataInputStream dis)
+            throws IOException {
+        return dis.readBoolean() ? null : dis.readUTF();
+    }
+}
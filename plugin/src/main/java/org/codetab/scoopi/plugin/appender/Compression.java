@@ -0,0 +1,122 @@
+package org.codetab.scoopi.plugin.appender;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream.BLOCKSIZE;
+
+/**
+ * <p>
+ * Output compression of file appender, set by plugin field compression: none
+ * (default), lz4 or gzip. Flush of compressed stream ends the current block
+ * (lz4 frame block, gzip sync flush), so data flushed before a crash can be
+ * read from a partially written file. Compressed streams written one after
+ * another to a file, such as merged shards, read as one stream.
+ * @author m
+ *
+ */
+enum Compression {
+
+    NONE("") {
+        @Override
+        OutputStream wrap(final OutputStream out) {
+            return out;
+        }
+
+        @Override
+        InputStream unwrap(final InputStream in) {
+            return in;
+        }
+    },
+    LZ4(".lz4") {
+        @Override
+        OutputStream wrap(final OutputStream out) throws IOException {
+            return new LZ4FrameOutputStream(out, BLOCKSIZE.SIZE_64KB);
+        }
+
+        @Override
+        InputStream unwrap(final InputStream in) throws IOException {
+            return new LZ4FrameInputStream(in, false);
+        }
+    },
+    GZIP(".gz") {
+        @Override
+        OutputStream wrap(final OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE, true);
+        }
+
+        @Override
+        InputStream unwrap(final InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    };
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String extension;
+
+    Compression(final String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * <p>
+     * Wrap stream in compressor, closing compressor finishes compressed
+     * stream and closes the stream.
+     * @param out
+     *            stream
+     * @return compressed stream
+     * @throws IOException
+     *             on write error
+     */
+    abstract OutputStream wrap(OutputStream out) throws IOException;
+
+    /**
+     * <p>
+     * Wrap stream in decompressor.
+     * @param in
+     *            compressed stream
+     * @return decompressed stream
+     * @throws IOException
+     *             on read error
+     */
+    abstract InputStream unwrap(InputStream in) throws IOException;
+
+    /**
+     * <p>
+     * Get extension to add to file name.
+     * @return extension with dot or empty for none
+     */
+    String getExtension() {
+        return extension;
+    }
+
+    /**
+     * <p>
+     * Get compression by name.
+     * @param name
+     *            none, lz4 or gzip, case insensitive; blank is none
+     * @return compression
+     * @throws IllegalArgumentException
+     *             if compression is not supported
+     */
+    static Compression of(final String name) {
+        if (StringUtils.isBlank(name)) {
+            return NONE;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(
+                    "compression not supported: " + name, e);
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static java.util.Objects.nonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.model.Axis;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * <p>
+ * Persistent set of item fingerprints, used to skip items already appended
+ * in earlier runs. Fingerprint is 64 bit hash of data name, dataDef and axis
+ * values of item.
+ * <p>
+ * Lookup goes to a Bloom filter first, which answers most new items in
+ * memory. Items the filter may contain are checked exactly against recently
+ * added fingerprints and then the spill runs, files of sorted fingerprints
+ * which are memory mapped and binary searched. Memory is bounded by filter
+ * size, set by expected items and false positive rate, and by spillSize, the
+ * number of fingerprints held before they are written as a new run; runs are
+ * in page cache and not on heap. When more than expected items are added the
+ * filter answers maybe more often, which costs run lookups but not
+ * correctness.
+ * <p>
+ * Runs are merged in tiers: a new run is merged with the previous run as
+ * long as the previous is not larger, so there are about log2(n / spillSize)
+ * runs and each fingerprint is rewritten as many times, instead of rewriting
+ * all fingerprints on every spill.
+ * <p>
+ * Files dir/name.bloom and dir/name.spill.seq are written on close. Filter
+ * file is deleted when opened, so that after a crash it is rebuilt from runs.
+ * Thread safe, lookups take no lock and only add and close are synchronized.
+ * @author m
+ *
+ */
+public final class DedupFilter implements Closeable {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    // fingerprints of largest run that can be memory mapped
+    private static final int MAX_RUN_SIZE = Integer.MAX_VALUE / Long.BYTES;
+
+    private final Path dir;
+    private final String spillPrefix;
+    private final Path bloomFile;
+    private final int spillSize;
+
+    private final BloomFilter<Long> bloom;
+    private final Set<Long> added = ConcurrentHashMap.newKeySet();
+    // oldest first, replaced and not modified so that lookups need no lock
+    private volatile List<Run> runs = Collections.emptyList();
+    private long nextSeq;
+
+    /**
+     * <p>
+     * Open filter, load fingerprints of earlier runs if any.
+     * @param dir
+     *            dir of filter files, created if not exists
+     * @param name
+     *            file name without extension
+     * @param expectedItems
+     *            expected number of fingerprints, sizes Bloom filter
+     * @param fpp
+     *            false positive rate of Bloom filter
+     * @param spillSize
+     *            number of fingerprints held in memory before spill
+     * @throws IOException
+     *             on read error
+     */
+    public DedupFilter(final Path dir, final String name,
+            final long expectedItems, final double fpp, final int spillSize)
+            throws IOException {
+        Validate.notNull(dir, "dir must not be null");
+        Validate.notBlank(name, "name must not be blank");
+        Validate.isTrue(expectedItems > 0, "expectedItems must be positive");
+        Validate.isTrue(fpp > 0 && fpp < 1, "fpp must be between 0 and 1");
+        Validate.isTrue(spillSize > 0, "spillSize must be positive");
+
+        Files.createDirectories(dir);
+        this.dir = dir;
+        spillPrefix = name + ".spill.";
+        bloomFile = dir.resolve(name + ".bloom");
+        this.spillSize = spillSize;
+
+        openRuns();
+        if (Files.exists(bloomFile)) {
+            try (InputStream in = new BufferedInputStream(
+                    Files.newInputStream(bloomFile))) {
+                bloom = BloomFilter.readFrom(in, Funnels.longFunnel());
+            }
+            Files.delete(bloomFile);
+        } else {
+            bloom = BloomFilter.create(Funnels.longFunnel(),
+                    Math.max(expectedItems, getSpillCount()), fpp);
+            rebuildBloom();
+        }
+    }
+
+    /**
+     * <p>
+     * Whether fingerprint is added in this or earlier run.
+     * @param fingerprint
+     *            fingerprint
+     * @return true if added
+     */
+    public boolean contains(final long fingerprint) {
+        if (!bloom.mightContain(fingerprint)) {
+            return false;
+        }
+        // spill publishes runs before it clears added, so check added first
+        if (added.contains(fingerprint)) {
+            return true;
+        }
+        for (Run run : runs) {
+            if (run.contains(fingerprint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * <p>
+     * Add fingerprint, writes fingerprints as new spill run when spillSize is
+     * reached.
+     * @param fingerprint
+     *            fingerprint
+     * @throws IOException
+     *             on spill error
+     */
+    public synchronized void add(final long fingerprint) throws IOException {
+        if (contains(fingerprint)) {
+            return;
+        }
+        bloom.put(fingerprint);
+        added.add(fingerprint);
+        if (added.size() >= spillSize) {
+            spill();
+        }
+    }
+
+    /**
+     * <p>
+     * Spill fingerprints and write Bloom filter.
+     * @throws IOException
+     *             on write error
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!added.isEmpty()) {
+            spill();
+        }
+        Path tmpFile = getTmpFile(bloomFile);
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(tmpFile))) {
+            bloom.writeTo(out);
+        }
+        Files.move(tmpFile, bloomFile, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * <p>
+     * Get number of spill runs.
+     * @return runs
+     */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * <p>
+     * Get number of spilled fingerprints.
+     * @return count
+     */
+    long getSpillCount() {
+        long count = 0;
+        for (Run run : runs) {
+            count += run.size();
+        }
+        return count;
+    }
+
+    /**
+     * <p>
+     * Get fingerprint of item.
+     * @param data
+     *            data of item
+     * @param item
+     *            item
+     * @return fingerprint
+     */
+    public static long fingerprint(final Data data, final Item item) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putString(hasher, data.getName());
+        putString(hasher, data.getDataDef());
+        for (Axis axis : item.getAxes()) {
+            putString(hasher, axis.getAxisName());
+            putString(hasher, axis.getValue());
+        }
+        return hasher.hash().asLong();
+    }
+
+    private static void putString(final Hasher hasher, final String value) {
+        if (nonNull(value)) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            hasher.putInt(bytes.length).putBytes(bytes);
+        } else {
+            hasher.putInt(-1);
+        }
+    }
+
+    /*
+     * write sorted fingerprints as new run and merge it with previous runs
+     * that are not larger; runs are published before added is cleared.
+     */
+    private void spill() throws IOException {
+        long[] fingerprints = new long[added.size()];
+        int i = 0;
+        for (long fingerprint : added) {
+            fingerprints[i++] = fingerprint;
+        }
+        Arrays.sort(fingerprints);
+
+        List<Run> tiers = new ArrayList<>(runs);
+        List<Run> merged = new ArrayList<>();
+        tiers.add(writeRun(LongBuffer.wrap(fingerprints), null));
+        while (tiers.size() > 1) {
+            Run last = tiers.get(tiers.size() - 1);
+            Run prev = tiers.get(tiers.size() - 2);
+            if (prev.size() > last.size()
+                    || prev.size() + last.size() > MAX_RUN_SIZE) {
+                break;
+            }
+            tiers.set(tiers.size() - 2, writeRun(prev.values, last.values));
+            tiers.remove(tiers.size() - 1);
+            merged.add(prev);
+            merged.add(last);
+        }
+        runs = Collections.unmodifiableList(tiers);
+        added.clear();
+
+        for (Run run : merged) {
+            deleteRun(run);
+        }
+    }
+
+    /*
+     * merge sorted values, other may be null, into new run file
+     */
+    private Run writeRun(final LongBuffer values, final LongBuffer other)
+            throws IOException {
+        Path file = dir.resolve(spillPrefix + nextSeq++);
+        Path tmpFile = getTmpFile(file);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+            int a = 0;
+            int b = 0;
+            int aSize = values.limit();
+            int bSize = nonNull(other) ? other.limit() : 0;
+            while (a < aSize || b < bSize) {
+                if (b >= bSize
+                        || (a < aSize && values.get(a) < other.get(b))) {
+                    out.writeLong(values.get(a++));
+                } else {
+                    out.writeLong(other.get(b++));
+                }
+            }
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return new Run(file);
+    }
+
+    /*
+     * a lookup may still read the old run, mapping stays valid until it is
+     * collected; where mapped file can't be deleted, it is merged again on
+     * next open.
+     */
+    private void deleteRun(final Run run) {
+        try {
+            Files.deleteIfExists(run.file);
+        } catch (IOException e) {
+            LOG.debug("unable to delete merged spill run {}", run.file, e);
+        }
+    }
+
+    private void openRuns() throws IOException {
+        List<Long> seqs = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(dir, spillPrefix + "*")) {
+            for (Path file : stream) {
+                String suffix = file.getFileName().toString()
+                        .substring(spillPrefix.length());
+                if (suffix.matches("\\d+")) {
+                    seqs.add(Long.valueOf(suffix));
+                }
+            }
+        }
+        Collections.sort(seqs);
+        List<Run> loaded = new ArrayList<>();
+        for (long seq : seqs) {
+            loaded.add(new Run(dir.resolve(spillPrefix + seq)));
+            nextSeq = seq + 1;
+        }
+        runs = Collections.unmodifiableList(loaded);
+    }
+
+    private void rebuildBloom() {
+        for (Run run : runs) {
+            for (int i = 0; i < run.size(); i++) {
+                bloom.put(run.values.get(i));
+            }
+        }
+    }
+
+    private Path getTmpFile(final Path file) {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * <p>
+     * Sorted fingerprints of a spill file, memory mapped read only. Absolute
+     * get doesn't change buffer state, so it is safe for concurrent lookups.
+     */
+    private static final class Run {
+
+        private final Path file;
+        private final LongBuffer values;
+
+        Run(final Path file) throws IOException {
+            this.file = file;
+            try (FileChannel channel =
+                    FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                Validate.validState(size <= Integer.MAX_VALUE,
+                        "spill run too large: %s", file);
+                values = channel.map(MapMode.READ_ONLY, 0, size)
+                        .asLongBuffer();
+            }
+        }
+
+        int size() {
+            return values.limit();
+        }
+
+        boolean contains(final long fingerprint) {
+            int low = 0;
+            int high = values.limit() - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = values.get(mid);
+                if (value < fingerprint) {
+                    low = mid + 1;
+                } else if (value > fingerprint) {
+                    high = mid - 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
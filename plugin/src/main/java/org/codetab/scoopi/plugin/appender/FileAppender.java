@@ -1,15 +1,26 @@
 package org.codetab.scoopi.plugin.appender;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -20,10 +31,30 @@ import org.codetab.scoopi.exception.DefNotFoundException;
 import org.codetab.scoopi.helper.IOHelper;
 import org.codetab.scoopi.model.ERROR;
 import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.encoder.EncodedStream;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 
 /**
  * <p>
  * File based appender. Writes output to file.
+ * <p>
+ * In default mode, job, output of each job is written to its own file. In
+ * rolling mode, output is appended to a long lived file of the member which
+ * rolls by size, record count or age as set by plugin fields rollSize
+ * (bytes), rollRecords and rollInterval (seconds), zero disables a limit. Age
+ * is checked on write, an idle file is not rolled till next write.
+ * <p>
+ * Up to batchSize (default 64) payloads are written and flushed together,
+ * size and time of flush batches are in metrics FileAppender.flush.batch and
+ * FileAppender.flush.time.
+ * <p>
+ * Plugin field compression, none (default), lz4 or gzip, compresses output,
+ * see {@link Compression}.
+ * <p>
+ * Output of stream encoder, {@link EncodedStream}, is encoded directly into
+ * the file buffer.
  * @author Maithilish
  *
  */
@@ -44,6 +75,10 @@ public final class FileAppender extends Appender {
     private String fileExtension;
     private String dirTimestamp;
 
+    private RollingFileWriter rollingWriter;
+    private Compression compression;
+    private int batchSize;
+
     @Inject
     private FileAppender() {
     }
@@ -60,72 +95,241 @@ public final class FileAppender extends Appender {
                     DateTimeFormatter.ofPattern(configs.getConfig(
                             "outputDirTimestampPattern", "yyyyMMMdd-HHmmss"));
             dirTimestamp = configs.getRunDateTime().format(formatter);
+            compression = Compression.of(getPluginField("compression", "none"));
+            batchSize = Integer.parseInt(getPluginField("batchSize", "64"));
+            Validate.isTrue(batchSize > 0, "batchSize must be positive");
+            if ("rolling".equalsIgnoreCase(getPluginField("mode", "job"))) {
+                rollingWriter = createRollingWriter();
+            }
             setInitialized(true);
-        } catch (DefNotFoundException e) {
+        } catch (DefNotFoundException | IllegalArgumentException e) {
             errors.inc();
             LOG.error("unable to create appender: {} [{}]", getName(),
                     ERROR.DATAERROR, e);
         }
     }
 
+    private RollingFileWriter createRollingWriter() {
+        long rollSize = Long.parseLong(getPluginField("rollSize", "67108864"));
+        int rollRecords = Integer.parseInt(getPluginField("rollRecords", "0"));
+        long rollMillis = TimeUnit.SECONDS
+                .toMillis(Long.parseLong(getPluginField("rollInterval", "0")));
+        int bufferSize = Integer.parseInt(getPluginField("bufferSize", "65536"));
+        boolean frame = Boolean.parseBoolean(getPluginField("frame", "true"));
+        String member = getOutputId();
+        return new RollingFileWriter(
+                seq -> jobFilePath.getRollingPath(baseDir, fileDir,
+                        fileBaseName, fileExtension, dirTimestamp, member, seq),
+                rollSize, rollRecords, rollMillis, bufferSize, frame,
+                compression);
+    }
+
     /**
      * Creates a file (PrintWriter) from appenders file field. Write the objects
-     * taken from blocking queue until object is Marker.EOF.
+     * taken from blocking queue until object is Marker.EOF. In rolling mode,
+     * output is written to rolling writer which is closed on Marker.EOF.
+     * <p>
+     * Payloads are committed in groups: appender takes a payload, drains up to
+     * batchSize payloads waiting in queue, writes them, flushes once and then
+     * marks all of them finished. Payload is finished only after its data is
+     * flushed, as before, but waiting pool threads share one flush. Payload
+     * whose encoder throws is marked not processed and batch is finished even
+     * on error, so that the appender thread and its waiters don't hang.
      */
     @Override
     public void run() {
         int count = 0;
-        // int jobCount = 0;
-        // Random random = new Random();
+        Histogram batchSizes = metricsHelper.getHistogram(this, "flush", "batch");
+        Timer flushTime = metricsHelper.getTimer(this, "flush", "time");
+        List<PrintPayload> batch = new ArrayList<>(batchSize);
 
-        for (;;) {
-            PrintPayload printPayload = null;
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            batch.clear();
             try {
-                printPayload = getQueue().take();
-                if (printPayload.getData() == Marker.END_OF_STREAM) {
-                    break;
-                }
+                batch.add(getQueue().take());
+                getQueue().drainTo(batch, batchSize - 1);
             } catch (final InterruptedException e) {
                 errors.inc();
                 LOG.error("appender: {} [{}]", getName(), ERROR.INTERNAL, e);
                 Thread.currentThread().interrupt();
             }
-            if (nonNull(printPayload)) {
-                String filePath = jobFilePath.getPath(baseDir, fileDir,
-                        fileBaseName, fileExtension, dirTimestamp,
-                        printPayload.getJobInfo().getId());
-                try (PrintWriter writer = ioHelper.getPrintWriter(filePath)) {
-
-                    // int r = (jobCount++) % (random.nextInt(10) + 2);
-                    // if (r == 0) {
-                    // throw new IOException("force error");
-                    // }
-
-                    Object data = printPayload.getData();
-                    if (data instanceof List) {
-                        List<? extends Object> list = (List<?>) data;
-                        for (Object o : list) {
-                            writer.println(o.toString());
-                            count++;
-                        }
-                    } else {
-                        writer.println(data);
-                        count++;
+            endOfStream = batch.removeIf(
+                    printPayload -> printPayload.getData() == Marker.END_OF_STREAM);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            Timer.Context flushTimer = flushTime.time();
+            try {
+                if (nonNull(rollingWriter)) {
+                    count += appendRolling(batch);
+                } else {
+                    for (PrintPayload printPayload : batch) {
+                        count += appendJob(printPayload);
                     }
-                    printPayload.setProcessed(true);
-                } catch (IOException e) {
-                    printPayload.setProcessed(false);
-                    // recoverable - so no data error
-                    LOG.error("appender: {} file path: {} [{}]", getName(),
-                            jobFilePath, ERROR.ERROR);
-                    LOG.error("hello");
                 }
-                printPayload.finished();
+            } catch (RuntimeException e) {
+                errors.inc();
+                LOG.error("appender: {} [{}]", getName(), ERROR.INTERNAL, e);
+            } finally {
+                // waiting pool threads are released even on error
+                flushTimer.stop();
+                batchSizes.update(batch.size());
+                for (PrintPayload printPayload : batch) {
+                    printPayload.finished();
+                }
             }
         }
+        closeRollingWriter();
         LOG.info("appender: {}, {} item appended", getName(), count);
     }
 
+    /**
+     * Write payload to its own file.
+     * @param printPayload
+     *            payload
+     * @return records written
+     */
+    private int appendJob(final PrintPayload printPayload) {
+        int count = 0;
+        String filePath = jobFilePath.getPath(baseDir, fileDir, fileBaseName,
+                fileExtension, dirTimestamp, printPayload.getJobInfo().getId());
+        try (PrintWriter writer = getPrintWriter(filePath)) {
+            Object data = printPayload.getData();
+            if (data instanceof EncodedStream) {
+                count += ((EncodedStream) data).writeTo(writer);
+            } else if (data instanceof List) {
+                List<? extends Object> list = (List<?>) data;
+                for (Object o : list) {
+                    writer.println(o.toString());
+                    count++;
+                }
+            } else {
+                writer.println(data);
+                count++;
+            }
+            printPayload.setProcessed(true);
+        } catch (IOException e) {
+            printPayload.setProcessed(false);
+            // recoverable - so no data error
+            LOG.error("appender: {} file path: {} [{}]", getName(), filePath,
+                    ERROR.ERROR, e);
+        } catch (RuntimeException e) {
+            // encoder error, output of job is partial
+            printPayload.setProcessed(false);
+            errors.inc();
+            LOG.error("appender: {} file path: {} [{}]", getName(), filePath,
+                    ERROR.DATAERROR, e);
+        }
+        return count;
+    }
+
+    private PrintWriter getPrintWriter(final String filePath)
+            throws IOException {
+        if (compression == Compression.NONE) {
+            return ioHelper.getPrintWriter(filePath);
+        }
+        OutputStream out = compression.wrap(ioHelper
+                .getOutputStream(filePath + compression.getExtension()));
+        return new PrintWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write each payload of batch as a frame to rolling file and flush once,
+     * payloads are marked processed only when batch is handed over to OS.
+     * @param batch
+     *            payloads
+     * @return records written
+     */
+    private int appendRolling(final List<PrintPayload> batch) {
+        int count = 0;
+        List<PrintPayload> written = new ArrayList<>(batch.size());
+        for (PrintPayload printPayload : batch) {
+            Object data = printPayload.getData();
+            long jobId = printPayload.getJobInfo().getId();
+            try {
+                if (data instanceof EncodedStream) {
+                    count += rollingWriter.write(jobId, (EncodedStream) data);
+                } else if (data instanceof List) {
+                    count += rollingWriter.write(jobId, (List<?>) data);
+                } else {
+                    count += rollingWriter.write(jobId,
+                            Collections.singletonList(data));
+                }
+                written.add(printPayload);
+            } catch (IOException e) {
+                printPayload.setProcessed(false);
+                // recoverable - so no data error
+                LOG.error("appender: {} rolling file [{}]", getName(),
+                        ERROR.ERROR, e);
+            } catch (RuntimeException e) {
+                // encoder error, frame is cut short without trailer
+                printPayload.setProcessed(false);
+                errors.inc();
+                LOG.error("appender: {} rolling file [{}]", getName(),
+                        ERROR.DATAERROR, e);
+            }
+        }
+        try {
+            rollingWriter.flush();
+            written.forEach(printPayload -> printPayload.setProcessed(true));
+            return count;
+        } catch (IOException e) {
+            written.forEach(printPayload -> printPayload.setProcessed(false));
+            LOG.error("appender: {} flush rolling file [{}]", getName(),
+                    ERROR.ERROR, e);
+            return 0;
+        }
+    }
+
+    /**
+     * In rolling mode, concatenate files of all shards, in shard and roll
+     * order, to base-member.ext and delete shard files. Frames are not split,
+     * so merged file holds whole frames. In job mode, output is per job and
+     * is not merged.
+     */
+    @Override
+    public void merge(final List<Appender> shards) {
+        if (isNull(rollingWriter)) {
+            super.merge(shards);
+            return;
+        }
+        List<String> files = new ArrayList<>();
+        for (Appender shard : shards) {
+            files.addAll(((FileAppender) shard).rollingWriter.getFiles());
+        }
+        String mergedPath = jobFilePath.getMergedPath(baseDir, fileDir,
+                fileBaseName, fileExtension, dirTimestamp, getShortMemberId())
+                + compression.getExtension();
+        try (FileOutputStream out = new FileOutputStream(mergedPath)) {
+            for (String file : files) {
+                Files.copy(Paths.get(file), out);
+            }
+            out.getChannel().force(true);
+        } catch (IOException e) {
+            errors.inc();
+            LOG.error("appender: {} merge to: {}, shard files retained [{}]",
+                    getName(), mergedPath, ERROR.ERROR, e);
+            return;
+        }
+        files.forEach(file -> FileUtils.deleteQuietly(new File(file)));
+        LOG.info("appender: {}, merged {} files to {}", getName(),
+                files.size(), mergedPath);
+    }
+
+    private void closeRollingWriter() {
+        if (nonNull(rollingWriter)) {
+            try {
+                rollingWriter.close();
+            } catch (IOException e) {
+                errors.inc();
+                LOG.error("appender: {} close rolling file [{}]", getName(),
+                        ERROR.ERROR, e);
+            }
+        }
+    }
+
     /**
      * Append object to appender queue.
      * @param printPayload
@@ -138,7 +342,7 @@ public final class FileAppender extends Appender {
             throws InterruptedException {
         Validate.notNull(printPayload, "printPayload must not be null");
         if (isInitialized()) {
-            getQueue().put(printPayload);
+            putToQueue(printPayload);
         }
     }
 }
@@ -166,4 +370,35 @@ class JobFilePath {
         }
         return FilenameUtils.separatorsToSystem(path);
     }
+
+    /**
+     * Construct path of merged file, fileBaseName-memberId.fileExtension,
+     * prefixed with baseDir as in {@link #getPath}.
+     */
+    public String getMergedPath(final String baseDir, final String fileDir,
+            final String fileBaseName, final String fileExtension,
+            final String dirTimestamp, final String memberId) {
+        String path = String.join("", fileDir, "/", dirTimestamp, "/",
+                fileBaseName, "-", memberId, ".", fileExtension);
+        if (!Paths.get(path).isAbsolute() && StringUtils.isNotBlank(baseDir)) {
+            path = String.join("/", baseDir, path);
+        }
+        return FilenameUtils.separatorsToSystem(path);
+    }
+
+    /**
+     * Construct path of rolling file, fileBaseName-memberId-seq.fileExtension,
+     * prefixed with baseDir as in {@link #getPath}.
+     */
+    public String getRollingPath(final String baseDir, final String fileDir,
+            final String fileBaseName, final String fileExtension,
+            final String dirTimestamp, final String memberId, final int seq) {
+        String path = String.join("", fileDir, "/", dirTimestamp, "/",
+                fileBaseName, "-", memberId, "-", String.format("%05d", seq),
+                ".", fileExtension);
+        if (!Paths.get(path).isAbsolute() && StringUtils.isNotBlank(baseDir)) {
+            path = String.join("/", baseDir, path);
+        }
+        return FilenameUtils.separatorsToSystem(path);
+    }
 }
@@ -0,0 +1,299 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.exception.DefNotFoundException;
+import org.codetab.scoopi.model.ERROR;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+
+/**
+ * <p>
+ * Inserts rows of columnar encoder into a database table with batched
+ * prepared inserts, so that data goes to database without intermediate csv
+ * output. Column of row is inserted into table column of same name, quoted
+ * with quote string of database, so table has to define columns such as
+ * task, group and axis names col, row and fact.
+ * <p>
+ * Plugin fields: url, user, password, table, batchSize (rows per jdbc batch,
+ * default 500) and commitSize (payloads per transaction, default 64).
+ * Appender takes a payload, drains up to commitSize payloads waiting in queue
+ * and inserts them in one transaction; payloads are finished after commit or
+ * rollback. Connections come from {@link JdbcConnectionPool}, idle ones are
+ * closed when appender, or all its shards, are finished.
+ * @author m
+ *
+ */
+public final class JdbcAppender extends Appender {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final Pattern IDENTIFIER = Pattern
+            .compile("[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)?");
+
+    @Inject
+    private JdbcConnectionPool connectionPool;
+
+    private String table;
+    private int batchSize;
+    private int commitSize;
+    private final Map<List<String>, String> insertSqls = new HashMap<>();
+
+    @Inject
+    private JdbcAppender() {
+    }
+
+    @Override
+    public void init() {
+        try {
+            getPluginField("url");
+            table = getPluginField("table");
+            Validate.isTrue(IDENTIFIER.matcher(table).matches(),
+                    "invalid table name: %s", table);
+            batchSize = Integer.parseInt(getPluginField("batchSize", "500"));
+            commitSize = Integer.parseInt(getPluginField("commitSize", "64"));
+            Validate.isTrue(batchSize > 0, "batchSize must be positive");
+            Validate.isTrue(commitSize > 0, "commitSize must be positive");
+            setInitialized(true);
+        } catch (DefNotFoundException | IllegalArgumentException e) {
+            errors.inc();
+            LOG.error("unable to create appender: {} [{}]", getName(),
+                    ERROR.DATAERROR, e);
+        }
+    }
+
+    /**
+     * Insert payloads taken from queue until Marker.END_OF_STREAM, one
+     * transaction for payloads drained together.
+     */
+    @Override
+    public void run() {
+        int count = 0;
+        Histogram commitRows =
+                metricsHelper.getHistogram(this, "commit", "rows");
+        Timer commitTime = metricsHelper.getTimer(this, "commit", "time");
+        List<PrintPayload> batch = new ArrayList<>(commitSize);
+
+        boolean endOfStream = false;
+        while (!endOfStream) {
+            batch.clear();
+            try {
+                batch.add(getQueue().take());
+                getQueue().drainTo(batch, commitSize - 1);
+            } catch (final InterruptedException e) {
+                errors.inc();
+                LOG.error("appender: {} [{}]", getName(), ERROR.INTERNAL, e);
+                Thread.currentThread().interrupt();
+            }
+            endOfStream = batch.removeIf(printPayload -> printPayload
+                    .getData() == Marker.END_OF_STREAM);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            Timer.Context commitTimer = commitTime.time();
+            int rows = insert(batch);
+            commitTimer.stop();
+            commitRows.update(rows);
+            count += rows;
+            for (PrintPayload printPayload : batch) {
+                printPayload.finished();
+            }
+        }
+        if (getShard() < 0) {
+            connectionPool.clear(getPlugin());
+        }
+        LOG.info("appender: {}, {} rows inserted", getName(), count);
+    }
+
+    /**
+     * Shards share connections of plugin, close them once all shards are
+     * finished.
+     * @param shards
+     *            shards of appender
+     */
+    @Override
+    public void finish(final List<Appender> shards) {
+        connectionPool.clear(getPlugin());
+    }
+
+    /**
+     * Append object to appender queue.
+     * @param printPayload
+     *            object to append, not null
+     * @throws InterruptedException
+     *             if interrupted while queue put operation
+     */
+    @Override
+    public void append(final PrintPayload printPayload)
+            throws InterruptedException {
+        Validate.notNull(printPayload, "printPayload must not be null");
+        if (isInitialized()) {
+            putToQueue(printPayload);
+        }
+    }
+
+    /*
+     * insert rows of batch in a transaction, payloads of valid rows are
+     * processed if transaction commits
+     */
+    private int insert(final List<PrintPayload> batch) {
+        List<PrintPayload> inserted = new ArrayList<>();
+        Map<List<String>, Insert> inserts = new LinkedHashMap<>();
+        Connection connection = null;
+        int count = 0;
+        try {
+            connection = connectionPool.borrowObject(getPlugin());
+            for (PrintPayload printPayload : batch) {
+                ColumnarRows rows = getRows(printPayload);
+                if (nonNull(rows)) {
+                    addRows(connection, inserts, rows);
+                    inserted.add(printPayload);
+                    count += rows.size();
+                }
+            }
+            for (Insert insert : inserts.values()) {
+                insert.execute();
+            }
+            connection.commit();
+            inserted.forEach(printPayload -> printPayload.setProcessed(true));
+            return count;
+        } catch (Exception e) {
+            batch.forEach(printPayload -> printPayload.setProcessed(false));
+            rollback(connection);
+            // recoverable - so no data error
+            LOG.error("appender: {} table: {} [{}]", getName(), table,
+                    ERROR.ERROR, e);
+            return 0;
+        } finally {
+            for (Insert insert : inserts.values()) {
+                insert.close();
+            }
+            if (nonNull(connection)) {
+                connectionPool.returnObject(getPlugin(), connection);
+            }
+        }
+    }
+
+    private ColumnarRows getRows(final PrintPayload printPayload) {
+        Object data = printPayload.getData();
+        if (data instanceof ColumnarRows) {
+            ColumnarRows rows = (ColumnarRows) data;
+            for (String column : rows.getColumns()) {
+                if (!IDENTIFIER.matcher(column).matches()) {
+                    printPayload.setProcessed(false);
+                    LOG.error("appender: {} invalid column name: {} [{}]",
+                            getName(), column, ERROR.DATAERROR);
+                    return null;
+                }
+            }
+            return rows;
+        }
+        printPayload.setProcessed(false);
+        LOG.error("appender: {} expects columnar rows, not {} [{}]", getName(),
+                isNull(data) ? null : data.getClass().getName(),
+                ERROR.DATAERROR);
+        return null;
+    }
+
+    private void addRows(final Connection connection,
+            final Map<List<String>, Insert> inserts, final ColumnarRows rows)
+            throws SQLException {
+        List<String> columns = rows.getColumns();
+        Insert insert = inserts.get(columns);
+        if (insert == null) {
+            String sql = getInsertSql(connection, columns);
+            insert = new Insert(connection.prepareStatement(sql));
+            inserts.put(columns, insert);
+        }
+        for (int r = 0; r < rows.size(); r++) {
+            for (int c = 0; c < columns.size(); c++) {
+                insert.statement.setString(c + 1, rows.getValue(r, c));
+            }
+            insert.add();
+        }
+    }
+
+    private String getInsertSql(final Connection connection,
+            final List<String> columns) throws SQLException {
+        String sql = insertSqls.get(columns);
+        if (sql == null) {
+            String quote = connection.getMetaData().getIdentifierQuoteString()
+                    .trim();
+            List<String> names = new ArrayList<>();
+            for (String column : columns) {
+                names.add(quote + column + quote);
+            }
+            List<String> params = Collections.nCopies(columns.size(), "?");
+            sql = "INSERT INTO " + table + " (" + String.join(", ", names)
+                    + ") VALUES (" + String.join(", ", params) + ")";
+            insertSqls.put(columns, sql);
+        }
+        return sql;
+    }
+
+    private void rollback(final Connection connection) {
+        if (nonNull(connection)) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                LOG.error("appender: {} rollback [{}]", getName(), ERROR.ERROR,
+                        e);
+            }
+        }
+    }
+
+    /*
+     * prepared insert of a column list, executed every batchSize rows
+     */
+    private final class Insert {
+
+        private final PreparedStatement statement;
+        private int pending;
+
+        Insert(final PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        void add() throws SQLException {
+            statement.addBatch();
+            if (++pending >= batchSize) {
+                execute();
+            }
+        }
+
+        void execute() throws SQLException {
+            if (pending > 0) {
+                statement.executeBatch();
+                pending = 0;
+            }
+        }
+
+        void close() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOG.warn("appender: {} close statement", getName(), e);
+            }
+        }
+    }
+}
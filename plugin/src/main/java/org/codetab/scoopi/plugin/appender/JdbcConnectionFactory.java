@@ -0,0 +1,61 @@
+package org.codetab.scoopi.plugin.appender;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+import javax.inject.Inject;
+
+import org.apache.commons.pool2.BaseKeyedPooledObjectFactory;
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.Plugin;
+
+/**
+ * <p>
+ * Creates connections of jdbc appender plugin from its fields url, user and
+ * password. Connection is not in auto commit mode.
+ * @author m
+ *
+ */
+class JdbcConnectionFactory
+        extends BaseKeyedPooledObjectFactory<Plugin, Connection> {
+
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    @Inject
+    private IPluginDef pluginDef;
+
+    @Override
+    public Connection create(final Plugin plugin) throws Exception {
+        String url = pluginDef.getValue(plugin, "url");
+        String user = pluginDef.getValue(plugin, "user", "");
+        String password = pluginDef.getValue(plugin, "password", "");
+        Connection connection =
+                DriverManager.getConnection(url, user, password);
+        connection.setAutoCommit(false);
+        return connection;
+    }
+
+    @Override
+    public PooledObject<Connection> wrap(final Connection value) {
+        return new DefaultPooledObject<Connection>(value);
+    }
+
+    @Override
+    public boolean validateObject(final Plugin plugin,
+            final PooledObject<Connection> p) {
+        try {
+            return p.getObject().isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void destroyObject(final Plugin plugin,
+            final PooledObject<Connection> p) throws Exception {
+        p.getObject().close();
+    }
+}
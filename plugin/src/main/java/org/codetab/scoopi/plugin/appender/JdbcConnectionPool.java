@@ -0,0 +1,37 @@
+package org.codetab.scoopi.plugin.appender;
+
+import java.sql.Connection;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.pool2.impl.GenericKeyedObjectPool;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.model.Plugin;
+
+/**
+ * <p>
+ * Pool of connections of jdbc appenders, keyed by appender plugin so that
+ * shards of an appender share connections. Pool size per plugin is
+ * scoopi.appender.jdbc.poolSize, default 2. Connection is validated on
+ * borrow.
+ * @author m
+ *
+ */
+@Singleton
+public class JdbcConnectionPool
+        extends GenericKeyedObjectPool<Plugin, Connection> {
+
+    private static final int DEFAULT_POOL_SIZE = 2;
+
+    @Inject
+    public JdbcConnectionPool(final JdbcConnectionFactory factory,
+            final Configs configs) {
+        super(factory);
+        int poolSize = configs.getInt("scoopi.appender.jdbc.poolSize",
+                DEFAULT_POOL_SIZE);
+        setMaxTotalPerKey(poolSize);
+        setMaxIdlePerKey(poolSize);
+        setTestOnBorrow(true);
+    }
+}
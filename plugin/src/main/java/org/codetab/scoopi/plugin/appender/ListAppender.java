@@ -72,7 +72,7 @@ public final class ListAppender extends Appender {
             throws InterruptedException {
         notNull(printPayload, "object must not be null");
         if (isInitialized()) {
-            getQueue().put(printPayload);
+            putToQueue(printPayload);
         }
     }
 
@@ -0,0 +1,243 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.codetab.scoopi.plugin.encoder.EncodedStream;
+
+/**
+ * <p>
+ * Long lived buffered writer that rolls to a new file when size, record
+ * count or age of the current file reaches its limit; limit of zero is no
+ * limit. Size is chars written before compression, which is bytes for ASCII
+ * output. File is synced to disk before it is closed on roll.
+ * <p>
+ * Output is compressed as set by compression, file name gets its extension.
+ * Flush ends a compressed block, so flushed frames are readable even if the
+ * file is not closed.
+ * <p>
+ * Records of a job are written as one frame and a frame never spans files.
+ * When frame is enabled, the frame starts with line #job jobId and ends with
+ * line #end jobId count, so that a reader can detect and drop a frame cut
+ * short by a crash. Not thread safe, it is used by the appender thread.
+ * @author m
+ *
+ */
+class RollingFileWriter implements Closeable {
+
+    static final String FRAME_HEADER = "#job";
+    static final String FRAME_TRAILER = "#end";
+
+    private static final String EOL = System.lineSeparator();
+
+    private final IntFunction<String> pathOfSeq;
+    private final long rollSize;
+    private final int rollRecords;
+    private final long rollMillis;
+    private final int bufferSize;
+    private final boolean frame;
+    private final Compression compression;
+
+    private final List<String> files = new ArrayList<>();
+
+    private FileOutputStream fileStream;
+    private CountingWriter out;
+    private int seq;
+    private int records;
+    private long openedAt;
+
+    /**
+     * <p>
+     * Constructor.
+     * @param pathOfSeq
+     *            path of file for a sequence number, starts with 1
+     * @param rollSize
+     *            max chars per file
+     * @param rollRecords
+     *            max records per file
+     * @param rollMillis
+     *            max age of file
+     * @param bufferSize
+     *            write buffer size
+     * @param frame
+     *            write frame header and trailer
+     * @param compression
+     *            output compression
+     */
+    RollingFileWriter(final IntFunction<String> pathOfSeq, final long rollSize,
+            final int rollRecords, final long rollMillis, final int bufferSize,
+            final boolean frame, final Compression compression) {
+        notNull(pathOfSeq, "pathOfSeq must not be null");
+        notNull(compression, "compression must not be null");
+        isTrue(rollSize >= 0 && rollRecords >= 0 && rollMillis >= 0,
+                "roll limits must not be negative");
+        isTrue(bufferSize > 0, "bufferSize must be positive");
+        this.pathOfSeq = pathOfSeq;
+        this.rollSize = rollSize;
+        this.rollRecords = rollRecords;
+        this.rollMillis = rollMillis;
+        this.bufferSize = bufferSize;
+        this.frame = frame;
+        this.compression = compression;
+    }
+
+    /**
+     * <p>
+     * Write records of a job as a frame, roll file if required before write.
+     * Frame is buffered, call flush to hand it over to OS.
+     * @param jobId
+     *            job id
+     * @param data
+     *            records of job
+     * @return number of records written
+     * @throws IOException
+     *             on write error
+     */
+    int write(final long jobId, final List<?> data) throws IOException {
+        return write(jobId, w -> {
+            for (Object record : data) {
+                w.write(String.valueOf(record));
+                w.write(EOL);
+            }
+            return data.size();
+        });
+    }
+
+    /**
+     * <p>
+     * Write records of a job, encoded directly to file buffer, as a frame.
+     * @param jobId
+     *            job id
+     * @param stream
+     *            encoded records of job
+     * @return number of records written
+     * @throws IOException
+     *             on write error
+     */
+    int write(final long jobId, final EncodedStream stream)
+            throws IOException {
+        if (isNull(out) || isRollDue()) {
+            roll();
+        }
+        if (frame) {
+            out.write(FRAME_HEADER + " " + jobId + EOL);
+        }
+        int count = stream.writeTo(out);
+        if (frame) {
+            out.write(FRAME_TRAILER + " " + jobId + " " + count + EOL);
+        }
+        records += count;
+        return count;
+    }
+
+    void flush() throws IOException {
+        if (nonNull(out)) {
+            out.flush();
+        }
+    }
+
+    /**
+     * <p>
+     * Flush, sync and close current file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (nonNull(out)) {
+            try {
+                // flush and end compressed stream, file is shielded
+                out.close();
+                fileStream.getChannel().force(true);
+            } finally {
+                fileStream.close();
+                out = null;
+                fileStream = null;
+            }
+        }
+    }
+
+    int getSeq() {
+        return seq;
+    }
+
+    /**
+     * <p>
+     * Get files written, in roll order.
+     * @return paths of files
+     */
+    List<String> getFiles() {
+        return new ArrayList<>(files);
+    }
+
+    private boolean isRollDue() {
+        return (rollSize > 0 && out.count >= rollSize)
+                || (rollRecords > 0 && records >= rollRecords)
+                || (rollMillis > 0
+                        && System.currentTimeMillis() - openedAt >= rollMillis);
+    }
+
+    private void roll() throws IOException {
+        close();
+        File file =
+                new File(pathOfSeq.apply(++seq) + compression.getExtension());
+        FileUtils.forceMkdirParent(file);
+        files.add(file.getPath());
+        fileStream = new FileOutputStream(file);
+        OutputStream stream =
+                compression.wrap(new CloseShieldOutputStream(fileStream));
+        out = new CountingWriter(new BufferedWriter(
+                new OutputStreamWriter(stream, StandardCharsets.UTF_8),
+                bufferSize));
+        records = 0;
+        openedAt = System.currentTimeMillis();
+    }
+
+    /*
+     * counts chars written
+     */
+    private static class CountingWriter extends FilterWriter {
+
+        private long count;
+
+        CountingWriter(final Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final int c) throws IOException {
+            super.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len)
+                throws IOException {
+            super.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len)
+                throws IOException {
+            super.write(str, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.codetab.scoopi.util.Util.dashit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.model.PrintPayload;
+
+/**
+ * <p>
+ * Routes payloads of an appender to its shards. Each shard is an appender of
+ * plugin class with its own queue and output and payloads of a job always go
+ * to same shard. Shards run in their own pool, appender-name, sized to number
+ * of shards, so one output is written by many threads. Created by
+ * AppenderFactory when plugin field shards is more than one.
+ * <p>
+ * When plugin field merge is true, shard which finishes last calls
+ * {@link Appender#merge(List)} to merge output of all shards and then
+ * {@link Appender#finish(List)} to release resources shared by shards.
+ * @author m
+ *
+ */
+public final class ShardedAppender extends Appender {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private final List<Appender> shards = new ArrayList<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private boolean merge;
+
+    @Inject
+    private ShardedAppender() {
+    }
+
+    public void addShard(final Appender shard) {
+        Validate.notNull(shard, "shard must not be null");
+        shards.add(shard);
+    }
+
+    public List<Appender> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    @Override
+    public void init() {
+        merge = Boolean.parseBoolean(getPluginField("merge", "false"));
+        boolean initialized = !shards.isEmpty();
+        for (Appender shard : shards) {
+            initialized &= shard.isInitialized();
+        }
+        setInitialized(initialized);
+        LOG.info("created {}, name: {}, shards: {}, merge: {}",
+                this.getClass().getSimpleName(), getName(), shards.size(),
+                merge);
+    }
+
+    /**
+     * Payloads are queued by shards, router has no queue.
+     */
+    @Override
+    public void initializeQueue() {
+    }
+
+    /**
+     * Shards run in their own threads, see {@link #getShardTasks()}.
+     */
+    @Override
+    public void run() {
+    }
+
+    /**
+     * <p>
+     * Get pool to run shards, it should be sized to number of shards so that
+     * no shard waits for a thread.
+     * @return pool name
+     */
+    public String getPoolName() {
+        return dashit("appender", getName());
+    }
+
+    /**
+     * <p>
+     * Get task of each shard to run in pool. Task that finishes last merges
+     * output, if enabled, and finishes the shards.
+     * @return tasks
+     */
+    public List<Runnable> getShardTasks() {
+        running.set(shards.size());
+        List<Runnable> tasks = new ArrayList<>();
+        for (Appender shard : shards) {
+            tasks.add(() -> {
+                try {
+                    shard.run();
+                } finally {
+                    if (running.decrementAndGet() == 0) {
+                        finish();
+                    }
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private void finish() {
+        Appender first = shards.get(0);
+        try {
+            if (merge) {
+                first.merge(shards);
+            }
+        } finally {
+            first.finish(shards);
+        }
+    }
+
+    /**
+     * Append payload to shard of its job, end of stream marker is appended to
+     * all shards.
+     * @param printPayload
+     *            object to append, not null
+     * @throws InterruptedException
+     *             if interrupted while queue put operation
+     */
+    @Override
+    public void append(final PrintPayload printPayload)
+            throws InterruptedException {
+        Validate.notNull(printPayload, "printPayload must not be null");
+        if (!isInitialized()) {
+            return;
+        }
+        if (printPayload.getData() == Marker.END_OF_STREAM) {
+            for (Appender shard : shards) {
+                shard.append(printPayload);
+            }
+        } else {
+            long jobId = printPayload.getJobInfo().getId();
+            int index = Math.floorMod(Long.hashCode(jobId), shards.size());
+            shards.get(index).append(printPayload);
+        }
+    }
+}
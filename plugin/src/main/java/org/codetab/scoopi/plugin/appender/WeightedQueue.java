@@ -0,0 +1,333 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static java.util.Objects.nonNull;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.Validate;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+import org.codetab.scoopi.plugin.encoder.EncodedStream;
+
+/**
+ * <p>
+ * Appender queue bounded by weight of payloads instead of their count, so
+ * that a payload of one line and one of thousands of rows take their share
+ * of capacity. Weight is approximate size in chars: length of string, sum of
+ * element lengths of list or of values of columnar rows, or weight estimated
+ * by encoded stream whose size is known only when written; other data weighs
+ * {@link #OTHER_WEIGHT}. Payload heavier than capacity is accepted when
+ * queue is empty.
+ * <p>
+ * When weight reaches {@link #HIGH_WATER} of capacity, queue turns on
+ * backpressure and turns it off when weight falls to {@link #LOW_WATER}, see
+ * {@link Backpressure}.
+ * @author m
+ *
+ */
+final class WeightedQueue extends AbstractQueue<PrintPayload>
+        implements BlockingQueue<PrintPayload> {
+
+    static final double HIGH_WATER = 0.8;
+    static final double LOW_WATER = 0.5;
+    static final int OTHER_WEIGHT = 1024;
+
+    private final int capacity;
+    private final Backpressure backpressure;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private long weight;
+    private boolean pressure;
+
+    /**
+     * <p>
+     * Create queue.
+     * @param capacity
+     *            total weight, positive
+     * @param backpressure
+     *            backpressure to signal when near full
+     */
+    WeightedQueue(final int capacity, final Backpressure backpressure) {
+        Validate.isTrue(capacity > 0, "capacity must be positive");
+        Validate.notNull(backpressure, "backpressure must not be null");
+        this.capacity = capacity;
+        this.backpressure = backpressure;
+    }
+
+    @Override
+    public boolean offer(final PrintPayload printPayload) {
+        Validate.notNull(printPayload, "printPayload must not be null");
+        int payloadWeight = weigh(printPayload);
+        lock.lock();
+        try {
+            if (!fits(payloadWeight)) {
+                return false;
+            }
+            enqueue(printPayload, payloadWeight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean offer(final PrintPayload printPayload, final long timeout,
+            final TimeUnit unit) throws InterruptedException {
+        Validate.notNull(printPayload, "printPayload must not be null");
+        int payloadWeight = weigh(printPayload);
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!fits(payloadWeight)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            enqueue(printPayload, payloadWeight);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void put(final PrintPayload printPayload)
+            throws InterruptedException {
+        Validate.notNull(printPayload, "printPayload must not be null");
+        int payloadWeight = weigh(printPayload);
+        lock.lockInterruptibly();
+        try {
+            while (!fits(payloadWeight)) {
+                notFull.await();
+            }
+            enqueue(printPayload, payloadWeight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintPayload take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                notEmpty.await();
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintPayload poll() {
+        lock.lock();
+        try {
+            return entries.isEmpty() ? null : dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintPayload poll(final long timeout, final TimeUnit unit)
+            throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (entries.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PrintPayload peek() {
+        lock.lock();
+        try {
+            Entry entry = entries.peekFirst();
+            return nonNull(entry) ? entry.printPayload : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Get weight that can be added before queue is full.
+     * @return remaining weight
+     */
+    @Override
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return (int) Math.max(0, capacity - weight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int drainTo(final Collection<? super PrintPayload> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(final Collection<? super PrintPayload> c,
+            final int maxElements) {
+        Validate.notNull(c, "collection must not be null");
+        Validate.isTrue(c != this, "cannot drain to self");
+        lock.lock();
+        try {
+            int count = 0;
+            while (count < maxElements && !entries.isEmpty()) {
+                c.add(dequeue());
+                count++;
+            }
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Iterator over snapshot of queue, remove is not supported.
+     * @return iterator
+     */
+    @Override
+    public Iterator<PrintPayload> iterator() {
+        lock.lock();
+        try {
+            List<PrintPayload> snapshot = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                snapshot.add(entry.printPayload);
+            }
+            return Collections.unmodifiableList(snapshot).iterator();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Get total weight of queued payloads.
+     * @return weight
+     */
+    long getWeight() {
+        lock.lock();
+        try {
+            return weight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Get weight of payload.
+     * @param printPayload
+     *            payload
+     * @return weight, at least 1
+     */
+    static int weigh(final PrintPayload printPayload) {
+        Object data = printPayload.getData();
+        long dataWeight;
+        if (data instanceof CharSequence) {
+            dataWeight = ((CharSequence) data).length();
+        } else if (data instanceof Collection) {
+            dataWeight = 0;
+            for (Object element : (Collection<?>) data) {
+                // one for line separator
+                dataWeight += element instanceof CharSequence
+                        ? ((CharSequence) element).length() + 1
+                        : OTHER_WEIGHT;
+            }
+        } else if (data instanceof ColumnarRows) {
+            ColumnarRows rows = (ColumnarRows) data;
+            int columns = rows.getColumns().size();
+            dataWeight = 0;
+            for (int r = 0; r < rows.size(); r++) {
+                for (int c = 0; c < columns; c++) {
+                    String value = rows.getValue(r, c);
+                    dataWeight += nonNull(value) ? value.length() + 1 : 1;
+                }
+            }
+        } else if (data instanceof EncodedStream
+                && ((EncodedStream) data).weight() >= 0) {
+            dataWeight = ((EncodedStream) data).weight();
+        } else {
+            dataWeight = OTHER_WEIGHT;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, dataWeight));
+    }
+
+    private boolean fits(final int payloadWeight) {
+        return entries.isEmpty() || weight + payloadWeight <= capacity;
+    }
+
+    private void enqueue(final PrintPayload printPayload,
+            final int payloadWeight) {
+        entries.addLast(new Entry(printPayload, payloadWeight));
+        weight += payloadWeight;
+        notEmpty.signal();
+        if (!pressure && weight >= capacity * HIGH_WATER) {
+            pressure = true;
+            backpressure.signal(true);
+        }
+    }
+
+    private PrintPayload dequeue() {
+        Entry entry = entries.removeFirst();
+        weight -= entry.weight;
+        // payloads differ in weight, every waiting producer rechecks
+        notFull.signalAll();
+        if (pressure && weight <= capacity * LOW_WATER) {
+            pressure = false;
+            backpressure.signal(false);
+        }
+        return entry.printPayload;
+    }
+
+    private static final class Entry {
+
+        private final PrintPayload printPayload;
+        private final int weight;
+
+        Entry(final PrintPayload printPayload, final int weight) {
+            this.printPayload = printPayload;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.commons.lang3.Validate.validState;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.Axis;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.TaskInfo;
+
+/**
+ * <p>
+ * Encodes data as rows of columns task, group, optionally page, index and
+ * item tags, and a column per axis. To be used with columnar appender.
+ * Encodes item by item, see {@link IItemEncoder}.
+ * @author m
+ *
+ */
+public class ColumnarEncoder implements IItemEncoder<ColumnarRows> {
+
+    @Inject
+    private TaskInfo taskInfo;
+    @Inject
+    private IPluginDef pluginDef;
+
+    private Plugin plugin;
+
+    @Override
+    public ColumnarRows encode(final Data data) {
+        Rows rows = rows(data);
+        for (Item item : data.getItems()) {
+            rows.accept(item);
+        }
+        return rows.finish();
+    }
+
+    @Override
+    public ItemSink<ColumnarRows> start(final Data data) {
+        return rows(data);
+    }
+
+    @Override
+    public void setPlugin(final Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    private Rows rows(final Data data) {
+        notNull(data, "data must not be null");
+        validState(nonNull(plugin), "plugin is not set");
+
+        boolean includeTags = Boolean
+                .valueOf(pluginDef.getValue(plugin, "includeTags", "false"));
+        return new Rows(includeTags, taskInfo.getName(), taskInfo.getGroup());
+    }
+
+    private static final class Rows implements ItemSink<ColumnarRows> {
+
+        private final ColumnarRows rows = new ColumnarRows();
+        private final boolean includeTags;
+        private final String name;
+        private final String group;
+
+        Rows(final boolean includeTags, final String name,
+                final String group) {
+            this.includeTags = includeTags;
+            this.name = name;
+            this.group = group;
+        }
+
+        @Override
+        public void accept(final Item item) {
+            List<String> names = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            names.add("task");
+            values.add(name);
+            names.add("group");
+            values.add(group);
+            if (includeTags) {
+                for (String tag : new String[] {"page", "index", "item"}) {
+                    names.add(tag);
+                    values.add(toString(item.getParent().getTagValue(tag)));
+                }
+            }
+            for (Axis axis : item.getAxes()) {
+                names.add(axis.getAxisName());
+                values.add(axis.getValue());
+            }
+            rows.addRow(names, values);
+        }
+
+        @Override
+        public ColumnarRows finish() {
+            return rows;
+        }
+
+        private String toString(final Object value) {
+            return isNull(value) ? null : value.toString();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Rows of named columns, output of columnar encoder and input of columnar
+ * appender. Rows may be added with columns not yet known, column is added and
+ * earlier rows hold null for it.
+ * @author m
+ *
+ */
+public final class ColumnarRows {
+
+    private final Map<String, Integer> columns = new LinkedHashMap<>();
+    private final List<String[]> rows = new ArrayList<>();
+
+    /**
+     * <p>
+     * Add a row.
+     * @param names
+     *            column names
+     * @param values
+     *            value of each column, may be null
+     */
+    public void addRow(final List<String> names, final List<String> values) {
+        notNull(names, "names must not be null");
+        notNull(values, "values must not be null");
+        isTrue(names.size() == values.size(),
+                "names and values size mismatch");
+        for (String name : names) {
+            columns.putIfAbsent(name, columns.size());
+        }
+        String[] row = new String[columns.size()];
+        for (int i = 0; i < names.size(); i++) {
+            row[columns.get(names.get(i))] = values.get(i);
+        }
+        rows.add(row);
+    }
+
+    /**
+     * <p>
+     * Add all rows of other.
+     * @param other
+     *            rows to add
+     */
+    public void addRows(final ColumnarRows other) {
+        List<String> names = other.getColumns();
+        for (int r = 0; r < other.size(); r++) {
+            List<String> values = new ArrayList<>(names.size());
+            for (int c = 0; c < names.size(); c++) {
+                values.add(other.getValue(r, c));
+            }
+            addRow(names, values);
+        }
+    }
+
+    public List<String> getColumns() {
+        return Collections.unmodifiableList(new ArrayList<>(columns.keySet()));
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * <p>
+     * Get value.
+     * @param row
+     *            row index
+     * @param column
+     *            column index
+     * @return value or null if row has no value for column
+     */
+    public String getValue(final int row, final int column) {
+        String[] values = rows.get(row);
+        return column < values.length ? values[column] : null;
+    }
+}
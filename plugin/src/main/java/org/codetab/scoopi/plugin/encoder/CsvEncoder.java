@@ -16,7 +16,15 @@ import org.codetab.scoopi.model.Item;
 import org.codetab.scoopi.model.Plugin;
 import org.codetab.scoopi.model.TaskInfo;
 
-public class CsvEncoder implements IEncoder<List<String>> {
+/**
+ * <p>
+ * Encodes data as lines of task, group, optionally page, index and item
+ * tags, and axis values separated by delimiter. Encodes item by item, see
+ * {@link IItemEncoder}.
+ * @author m
+ *
+ */
+public class CsvEncoder implements IItemEncoder<List<String>> {
 
     @Inject
     private TaskInfo taskInfo;
@@ -28,22 +36,56 @@ public class CsvEncoder implements IEncoder<List<String>> {
     // TODO add sort (also update document)
     @Override
     public List<String> encode(final Data data) {
+        Lines lines = lines(data);
+        for (Item item : data.getItems()) {
+            lines.accept(item);
+        }
+        return lines.finish();
+    }
+
+    @Override
+    public ItemSink<List<String>> start(final Data data) {
+        return lines(data);
+    }
 
+    @Override
+    public void setPlugin(final Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    private Lines lines(final Data data) {
         notNull(data, "data must not be null");
         validState(nonNull(plugin), "plugin is not set");
 
-        List<String> encodedData = new ArrayList<>();
-
         String delimiter = pluginDef.getValue(plugin, "delimiter", ",");
         boolean inlcudeTags = Boolean
                 .valueOf(pluginDef.getValue(plugin, "includeTags", "false"));
+        return new Lines(delimiter, inlcudeTags, taskInfo.getName(),
+                taskInfo.getGroup());
+    }
 
-        // encode and append data
-        for (Item item : data.getItems()) {
+    private static final class Lines implements ItemSink<List<String>> {
+
+        private final List<String> encodedData = new ArrayList<>();
+        private final String delimiter;
+        private final boolean inlcudeTags;
+        private final String name;
+        private final String group;
+
+        Lines(final String delimiter, final boolean inlcudeTags,
+                final String name, final String group) {
+            this.delimiter = delimiter;
+            this.inlcudeTags = inlcudeTags;
+            this.name = name;
+            this.group = group;
+        }
+
+        @Override
+        public void accept(final Item item) {
             StringBuilder sb = new StringBuilder();
-            sb.append(taskInfo.getName());
+            sb.append(name);
             sb.append(delimiter);
-            sb.append(taskInfo.getGroup());
+            sb.append(group);
             if (inlcudeTags) {
                 sb.append(delimiter);
                 sb.append(item.getParent().getTagValue("page"));
@@ -59,11 +101,10 @@ public class CsvEncoder implements IEncoder<List<String>> {
 
             encodedData.add(sb.toString());
         }
-        return encodedData;
-    }
 
-    @Override
-    public void setPlugin(final Plugin plugin) {
-        this.plugin = plugin;
+        @Override
+        public List<String> finish() {
+            return encodedData;
+        }
     }
 }
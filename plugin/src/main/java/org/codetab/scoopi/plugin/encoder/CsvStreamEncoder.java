@@ -0,0 +1,147 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.commons.lang3.Validate.validState;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+
+import javax.inject.Inject;
+
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.Axis;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.TaskInfo;
+
+/**
+ * <p>
+ * Streaming variant of CsvEncoder, same fields and columns, writes records
+ * directly to appender output. Field that contains delimiter, quote or line
+ * break is quoted and its quotes are doubled (RFC 4180); null is empty
+ * field. Encoded stream weighs size of first record times items.
+ * @author m
+ *
+ */
+public class CsvStreamEncoder implements IStreamEncoder {
+
+    private static final String EOL = System.lineSeparator();
+
+    @Inject
+    private TaskInfo taskInfo;
+    @Inject
+    private IPluginDef pluginDef;
+
+    private Plugin plugin;
+
+    @Override
+    public EncodedStream encode(final Data data) {
+        notNull(data, "data must not be null");
+        validState(nonNull(plugin), "plugin is not set");
+
+        // resolve now, task info may change before appender writes
+        String delimiter = pluginDef.getValue(plugin, "delimiter", ",");
+        boolean includeTags = Boolean
+                .valueOf(pluginDef.getValue(plugin, "includeTags", "false"));
+        String name = taskInfo.getName();
+        String group = taskInfo.getGroup();
+
+        // weigh as many records as items of size of first record
+        long weight = 0;
+        List<Item> items = data.getItems();
+        if (!items.isEmpty()) {
+            StringWriter first = new StringWriter();
+            try {
+                writeItem(first, items.get(0), delimiter, includeTags, name,
+                        group);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            weight = (long) first.getBuffer().length() * items.size();
+        }
+        return EncodedStream.weighted(weight,
+                out -> encode(data, out, delimiter, includeTags, name, group));
+    }
+
+    @Override
+    public int encode(final Data data, final Writer out) throws IOException {
+        return encode(data).writeTo(out);
+    }
+
+    @Override
+    public void setPlugin(final Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    private int encode(final Data data, final Writer out,
+            final String delimiter, final boolean includeTags,
+            final String name, final String group) throws IOException {
+        int count = 0;
+        for (Item item : data.getItems()) {
+            writeItem(out, item, delimiter, includeTags, name, group);
+            count++;
+        }
+        return count;
+    }
+
+    private void writeItem(final Writer out, final Item item,
+            final String delimiter, final boolean includeTags,
+            final String name, final String group) throws IOException {
+        writeField(out, name, delimiter);
+        out.write(delimiter);
+        writeField(out, group, delimiter);
+        if (includeTags) {
+            for (String tag : new String[] {"page", "index", "item"}) {
+                out.write(delimiter);
+                Object value = item.getParent().getTagValue(tag);
+                writeField(out, isNull(value) ? null : value.toString(),
+                        delimiter);
+            }
+        }
+        for (Axis axis : item.getAxes()) {
+            out.write(delimiter);
+            writeField(out, axis.getValue(), delimiter);
+        }
+        out.write(EOL);
+    }
+
+    /**
+     * <p>
+     * Write field, quoted if required.
+     * @param out
+     *            sink
+     * @param value
+     *            field value
+     * @param delimiter
+     *            delimiter
+     * @throws IOException
+     *             on write error
+     */
+    static void writeField(final Writer out, final String value,
+            final String delimiter) throws IOException {
+        if (isNull(value)) {
+            return;
+        }
+        boolean quote = value.contains(delimiter) || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.write('"');
+            }
+            out.write(c);
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,66 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * <p>
+ * Output of stream encoder. Encoding is deferred till appender writes it to
+ * its sink, so encoded records are not held in memory. As size is known
+ * only when written, stream tells an estimate of it, see {@link #weight()}.
+ * @author m
+ *
+ */
+@FunctionalInterface
+public interface EncodedStream {
+
+    /**
+     * <p>
+     * Encode and write records to sink.
+     * @param out
+     *            sink, not flushed or closed
+     * @return number of records written
+     * @throws IOException
+     *             on write error
+     */
+    int writeTo(Writer out) throws IOException;
+
+    /**
+     * Weight of an item, in chars, when encoder has no better estimate.
+     */
+    int ITEM_WEIGHT = 64;
+
+    /**
+     * <p>
+     * Get approximate size of records in chars, used to weigh payload in
+     * appender queue.
+     * @return weight or -1 if not known
+     */
+    default long weight() {
+        return -1;
+    }
+
+    /**
+     * <p>
+     * Get stream with weight.
+     * @param weight
+     *            approximate size in chars
+     * @param stream
+     *            stream to write
+     * @return weighted stream
+     */
+    static EncodedStream weighted(final long weight,
+            final EncodedStream stream) {
+        return new EncodedStream() {
+            @Override
+            public int writeTo(final Writer out) throws IOException {
+                return stream.writeTo(out);
+            }
+
+            @Override
+            public long weight() {
+                return weight;
+            }
+        };
+    }
+}
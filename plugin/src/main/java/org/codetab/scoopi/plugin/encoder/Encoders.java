@@ -4,8 +4,10 @@ import static java.util.Objects.nonNull;
 import static org.codetab.scoopi.util.Util.dashit;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -19,6 +21,14 @@ import org.codetab.scoopi.metrics.Errors;
 import org.codetab.scoopi.model.ERROR;
 import org.codetab.scoopi.model.Plugin;
 
+/**
+ * <p>
+ * Encoders of appenders by appender name. Appenders whose encoder plugins
+ * have same class and definition are given the same encoder instance, so
+ * that appender step can encode data once for all of them.
+ * @author Maithilish
+ *
+ */
 public class Encoders extends HashMap<String, List<IEncoder<?>>> {
 
     private static final long serialVersionUID = -1556127336620930856L;
@@ -34,6 +44,7 @@ public class Encoders extends HashMap<String, List<IEncoder<?>>> {
 
     public void createEncoders(final List<Plugin> plugins,
             final String stepsName, final String stepName) {
+        Map<List<String>, IEncoder<?>> shared = new HashMap<>();
         for (Plugin plugin : plugins) {
             String appenderName = dashit(stepName, plugin.getName());
             Optional<List<Plugin>> encoderPlugins = null;
@@ -45,9 +56,16 @@ public class Encoders extends HashMap<String, List<IEncoder<?>>> {
             if (nonNull(encoderPlugins) && encoderPlugins.isPresent()) {
                 List<IEncoder<?>> encoders = new ArrayList<>();
                 for (Plugin encoderPlugin : encoderPlugins.get()) {
+                    List<String> key = Arrays.asList(
+                            encoderPlugin.getClassName(),
+                            encoderPlugin.getDefJson());
                     try {
-                        IEncoder<?> encoder =
-                                encoderFactory.createEncoder(encoderPlugin);
+                        IEncoder<?> encoder = shared.get(key);
+                        if (encoder == null) {
+                            encoder = encoderFactory
+                                    .createEncoder(encoderPlugin);
+                            shared.put(key, encoder);
+                        }
                         encoders.add(encoder);
                     } catch (ClassCastException | IllegalStateException
                             | ClassNotFoundException | DefNotFoundException e) {
@@ -0,0 +1,66 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import org.codetab.scoopi.exception.EncodeException;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+
+/**
+ * <p>
+ * Encoder that encodes data item by item. Sinks of many such encoders can
+ * be fed from one pass over items of data, so that data appender doesn't
+ * iterate items once per distinct encoder.
+ * @author m
+ *
+ * @param <U>
+ *            output type
+ */
+public interface IItemEncoder<U> extends IEncoder<U> {
+
+    /**
+     * <p>
+     * Start encoding data.
+     * @param data
+     *            data whose items are to be accepted
+     * @return sink of items
+     * @throws EncodeException
+     *             encode error
+     */
+    ItemSink<U> start(Data data) throws EncodeException;
+
+    @Override
+    default U encode(final Data data) throws EncodeException {
+        ItemSink<U> sink = start(data);
+        for (Item item : data.getItems()) {
+            sink.accept(item);
+        }
+        return sink.finish();
+    }
+
+    /**
+     * <p>
+     * Takes items of data, in order, and returns encoded output.
+     * @param <U>
+     *            output type
+     */
+    interface ItemSink<U> {
+
+        /**
+         * <p>
+         * Encode item.
+         * @param item
+         *            next item of data
+         * @throws EncodeException
+         *             encode error
+         */
+        void accept(Item item) throws EncodeException;
+
+        /**
+         * <p>
+         * Get output, called after all items are accepted.
+         * @return encoded output
+         * @throws EncodeException
+         *             encode error
+         */
+        U finish() throws EncodeException;
+    }
+}
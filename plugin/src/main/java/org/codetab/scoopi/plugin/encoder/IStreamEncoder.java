@@ -0,0 +1,42 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.codetab.scoopi.model.Data;
+
+/**
+ * <p>
+ * Encoder that writes records directly to appender output. Encode returns an
+ * {@link EncodedStream} which appender, in its thread, writes to its sink.
+ * Data must not change till appender finishes the payload, which is
+ * guaranteed as data appender waits for it.
+ * @author m
+ *
+ */
+public interface IStreamEncoder extends IEncoder<EncodedStream> {
+
+    /**
+     * <p>
+     * Encode data to sink.
+     * @param data
+     *            to encode
+     * @param out
+     *            sink
+     * @return number of records written
+     * @throws IOException
+     *             on write error
+     */
+    int encode(Data data, Writer out) throws IOException;
+
+    /**
+     * <p>
+     * Stream weighs {@link EncodedStream#ITEM_WEIGHT} per item, encoder that
+     * can estimate size of its records overrides it.
+     */
+    @Override
+    default EncodedStream encode(final Data data) {
+        long weight = (long) data.getItems().size() * EncodedStream.ITEM_WEIGHT;
+        return EncodedStream.weighted(weight, out -> encode(data, out));
+    }
+}
@@ -2,14 +2,23 @@ package org.codetab.scoopi.plugin.appender;
 
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.di.DInjector;
 import org.codetab.scoopi.model.Plugin;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -21,6 +30,10 @@ public class AppenderFactoryTest {
 
     @Mock
     private DInjector di;
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Configs configs;
 
     @Before
     public void setUp() throws Exception {
@@ -35,6 +48,7 @@ public class AppenderFactoryTest {
         Appender appender = Mockito.mock(Appender.class);
         boolean grape = true;
 
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("1");
         when(plugin.getClassName()).thenReturn(apple);
         when(di.instance(apple, Appender.class)).thenReturn(appender);
         when(appender.isInitialized()).thenReturn(grape);
@@ -56,6 +70,7 @@ public class AppenderFactoryTest {
         Appender appender = Mockito.mock(Appender.class);
         boolean grape = false;
 
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("1");
         when(plugin.getClassName()).thenReturn(apple);
         when(di.instance(apple, Appender.class)).thenReturn(appender);
         when(appender.isInitialized()).thenReturn(grape);
@@ -68,4 +83,99 @@ public class AppenderFactoryTest {
         verify(appender).init();
         verify(appender, never()).initializeQueue();
     }
+
+    @Test
+    public void testCreateAppenderSharded() throws Exception {
+        String appenderName = "Foo";
+        Plugin plugin = Mockito.mock(Plugin.class);
+        ShardedAppender sharded = Mockito.mock(ShardedAppender.class);
+        Appender shard = Mockito.mock(Appender.class);
+        Appender otherShard = Mockito.mock(Appender.class);
+
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("2");
+        when(plugin.getClassName()).thenReturn("Bar");
+        when(di.instance(ShardedAppender.class)).thenReturn(sharded);
+        when(di.instance("Bar", Appender.class)).thenReturn(shard)
+                .thenReturn(otherShard);
+        when(shard.isInitialized()).thenReturn(true);
+        when(otherShard.isInitialized()).thenReturn(true);
+        when(sharded.isInitialized()).thenReturn(true);
+
+        Appender actual = appenderFactory.createAppender(appenderName, plugin);
+
+        assertSame(sharded, actual);
+        verify(shard).setName("Foo-0");
+        verify(shard).setShard(0);
+        verify(shard).initializeQueue();
+        verify(otherShard).setName("Foo-1");
+        verify(otherShard).setShard(1);
+        verify(sharded).addShard(shard);
+        verify(sharded).addShard(otherShard);
+        verify(sharded).setName(appenderName);
+        verify(sharded).setPlugin(plugin);
+        verify(sharded).init();
+    }
+
+    @Test
+    public void testCreateAppenderInvalidShards() throws Exception {
+        Plugin plugin = Mockito.mock(Plugin.class);
+
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("x");
+
+        assertThrows(IllegalStateException.class,
+                () -> appenderFactory.createAppender("Foo", plugin));
+    }
+
+    @Test
+    public void testCreateAppenderDedup() throws Exception {
+        String appenderName = "Foo";
+        Plugin plugin = Mockito.mock(Plugin.class);
+        Appender appender = Mockito.mock(Appender.class);
+        Path dir = Files.createTempDirectory("scoopi-dedup");
+        ArgumentCaptor<DedupFilter> captor =
+                ArgumentCaptor.forClass(DedupFilter.class);
+
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("1");
+        when(pluginDef.getValue(plugin, "dedup", "false")).thenReturn("true");
+        when(pluginDef.getValue(plugin, "dedupItems", "1000000"))
+                .thenReturn("100");
+        when(pluginDef.getValue(plugin, "dedupFpp", "0.01")).thenReturn("0.01");
+        when(pluginDef.getValue(plugin, "dedupSpillSize", "65536"))
+                .thenReturn("10");
+        when(configs.getConfig("scoopi.datastore.path", "data"))
+                .thenReturn(dir.toString());
+        when(plugin.getClassName()).thenReturn("Bar");
+        when(di.instance("Bar", Appender.class)).thenReturn(appender);
+        when(appender.isInitialized()).thenReturn(true);
+
+        try {
+            appenderFactory.createAppender(appenderName, plugin);
+
+            verify(appender).setDedupFilter(captor.capture());
+            captor.getValue().close();
+            assertTrue(Files.exists(dir.resolve("dedup").resolve("Foo.bloom")));
+        } finally {
+            FileUtils.deleteQuietly(dir.toFile());
+        }
+    }
+
+    @Test
+    public void testCreateAppenderDedupInvalidField() throws Exception {
+        Plugin plugin = Mockito.mock(Plugin.class);
+        Appender appender = Mockito.mock(Appender.class);
+
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("1");
+        when(pluginDef.getValue(plugin, "dedup", "false")).thenReturn("true");
+        when(pluginDef.getValue(plugin, "dedupItems", "1000000"))
+                .thenReturn("x");
+        when(configs.getConfig("scoopi.datastore.path", "data"))
+                .thenReturn("data");
+        when(plugin.getClassName()).thenReturn("Bar");
+        when(di.instance("Bar", Appender.class)).thenReturn(appender);
+        when(appender.isInitialized()).thenReturn(true);
+
+        assertThrows(IllegalStateException.class,
+                () -> appenderFactory.createAppender("Foo", plugin));
+        verify(appender, never()).setDedupFilter(any());
+    }
 }
@@ -4,11 +4,15 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Optional;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.codetab.scoopi.metrics.Errors;
@@ -18,6 +22,7 @@ import org.codetab.scoopi.model.PrintPayload;
 import org.codetab.scoopi.plugin.appender.Appender.Marker;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -73,6 +78,30 @@ public class AppenderMediatorTest {
         verify(appenderPoolService).submit("appender", appender);
     }
 
+    @Test
+    public void testCreateAppenderSharded() throws Exception {
+        String appenderName = "Foo";
+        Plugin plugin = Mockito.mock(Plugin.class);
+        ShardedAppender appender = Mockito.mock(ShardedAppender.class);
+        Appender shard = Mockito.mock(Appender.class);
+        Runnable task = Mockito.mock(Runnable.class);
+        Runnable otherTask = Mockito.mock(Runnable.class);
+
+        when(appenderFactory.createAppender(appenderName, plugin))
+                .thenReturn(appender);
+        when(appender.getPoolName()).thenReturn("appender-Foo");
+        when(appender.getShards()).thenReturn(Arrays.asList(shard, shard));
+        when(appender.getShardTasks())
+                .thenReturn(Arrays.asList(task, otherTask));
+
+        Appender actual = appenderMediator.createAppender(appenderName, plugin);
+
+        assertSame(appender, actual);
+        verify(appenderPoolService).submit("appender-Foo", 2, task);
+        verify(appenderPoolService).submit("appender-Foo", 2, otherTask);
+        verify(appenderPoolService, never()).submit("appender", appender);
+    }
+
     @Test
     public void testCreateAppenderNotNull() throws Exception {
         String appenderName = "Foo";
@@ -130,4 +159,37 @@ public class AppenderMediatorTest {
 
         verify(appenderPoolService).waitForFinish();
     }
+
+    @Test
+    public void testWaitForFinishCloseDedupFilter() throws IOException {
+        Appender appender = Mockito.mock(Appender.class);
+        Appender other = Mockito.mock(Appender.class);
+        DedupFilter dedupFilter = Mockito.mock(DedupFilter.class);
+        appenders.put("Foo", appender);
+        appenders.put("Bar", other);
+
+        when(appender.getDedupFilter()).thenReturn(Optional.of(dedupFilter));
+        when(other.getDedupFilter()).thenReturn(Optional.empty());
+
+        appenderMediator.waitForFinish();
+
+        InOrder inOrder = inOrder(appenderPoolService, dedupFilter);
+        inOrder.verify(appenderPoolService).waitForFinish();
+        inOrder.verify(dedupFilter).close();
+        verify(errors, never()).inc();
+    }
+
+    @Test
+    public void testWaitForFinishCloseDedupFilterError() throws IOException {
+        Appender appender = Mockito.mock(Appender.class);
+        DedupFilter dedupFilter = Mockito.mock(DedupFilter.class);
+        appenders.put("Foo", appender);
+
+        when(appender.getDedupFilter()).thenReturn(Optional.of(dedupFilter));
+        doThrow(IOException.class).when(dedupFilter).close();
+
+        appenderMediator.waitForFinish();
+
+        verify(errors).inc();
+    }
 }
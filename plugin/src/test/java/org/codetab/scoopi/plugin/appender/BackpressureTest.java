@@ -0,0 +1,102 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.codahale.metrics.Timer;
+
+public class BackpressureTest {
+    @InjectMocks
+    private Backpressure backpressure;
+
+    @Mock
+    private Configs configs;
+    @Mock
+    private MetricsHelper metricsHelper;
+
+    private Timer timer;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        timer = new Timer();
+        when(configs.getInt("scoopi.appender.backpressure.maxWait", 1000))
+                .thenReturn(50);
+        when(metricsHelper.getTimer(backpressure, "wait")).thenReturn(timer);
+    }
+
+    @Test
+    public void testSignal() {
+        assertFalse(backpressure.isOn());
+
+        backpressure.signal(true);
+        backpressure.signal(true);
+        assertTrue(backpressure.isOn());
+
+        backpressure.signal(false);
+        assertTrue(backpressure.isOn());
+
+        backpressure.signal(false);
+        assertFalse(backpressure.isOn());
+
+        // unmatched off is ignored
+        backpressure.signal(false);
+        backpressure.signal(true);
+        assertTrue(backpressure.isOn());
+    }
+
+    @Test
+    public void testAwaitNoPressure() {
+        backpressure.await();
+
+        verifyNoInteractions(configs, metricsHelper);
+    }
+
+    @Test
+    public void testAwaitMaxWait() {
+        backpressure.signal(true);
+
+        long start = System.nanoTime();
+        backpressure.await();
+        long waited = System.nanoTime() - start;
+
+        assertTrue(waited >= 50_000_000L);
+        assertTrue(backpressure.isOn());
+        verify(metricsHelper).getTimer(backpressure, "wait");
+        assertEquals(1, timer.getCount());
+    }
+
+    @Test
+    public void testAwaitRelieved() throws InterruptedException {
+        when(configs.getInt("scoopi.appender.backpressure.maxWait", 1000))
+                .thenReturn(60000);
+        backpressure.signal(true);
+
+        Thread appender = new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            backpressure.signal(false);
+        });
+        appender.start();
+        backpressure.await();
+        appender.join();
+
+        assertFalse(backpressure.isOn());
+        assertEquals(1, timer.getCount());
+    }
+}
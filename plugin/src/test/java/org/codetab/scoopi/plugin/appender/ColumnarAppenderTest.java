@@ -0,0 +1,218 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.exception.DefNotFoundException;
+import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.appender.Appender.Marker;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+
+public class ColumnarAppenderTest {
+    @InjectMocks
+    private ColumnarAppender columnarAppender;
+
+    @Mock
+    private Configs configs;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private JobFilePath jobFilePath;
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Errors errors;
+    @Mock
+    private Plugin plugin;
+
+    private BlockingQueue<PrintPayload> queue;
+    private Histogram histogram;
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        dir = Files.createTempDirectory("scoopi-columnar").toFile();
+        queue = new ArrayBlockingQueue<>(8);
+        FieldUtils.writeField(columnarAppender, "queue", queue, true);
+        histogram = new Histogram(new UniformReservoir());
+
+        when(metricsHelper.getHistogram(columnarAppender, "file", "rows"))
+                .thenReturn(histogram);
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getConfig("scoopi.cluster.memberId", "solo"))
+                .thenReturn("solo");
+        when(configs.getRunDateTime()).thenReturn(ZonedDateTime.of(2020, 01,
+                10, 2, 20, 30, 0, ZoneId.of("Asia/Kolkata")));
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.col");
+        when(pluginDef.getValue(plugin, "rowsPerFile", "65536"))
+                .thenReturn("65536");
+        when(pluginDef.getValue(plugin, "linger", "200")).thenReturn("0");
+        when(jobFilePath.getRollingPath(eq("scoopi"), eq("output/"),
+                eq("data"), eq("col"), eq("2020Jan10-022030"), eq("solo"),
+                anyInt())).thenAnswer(invocation -> new File(dir,
+                        "data-" + invocation.getArgument(6) + ".col")
+                                .getPath());
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir);
+    }
+
+    @Test
+    public void testInit() {
+        columnarAppender.init();
+
+        assertTrue(columnarAppender.isInitialized());
+        verify(errors, never()).inc();
+    }
+
+    @Test
+    public void testInitDefNotFound() throws DefNotFoundException {
+        when(pluginDef.getValue(plugin, "file"))
+                .thenThrow(DefNotFoundException.class);
+
+        columnarAppender.init();
+
+        assertFalse(columnarAppender.isInitialized());
+        verify(errors).inc();
+    }
+
+    @Test
+    public void testInitInvalidRowsPerFile() {
+        when(pluginDef.getValue(plugin, "rowsPerFile", "65536"))
+                .thenReturn("0");
+
+        columnarAppender.init();
+
+        assertFalse(columnarAppender.isInitialized());
+        verify(errors).inc();
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        PrintPayload printPayload = payload(rows("foo"));
+        PrintPayload otherPrintPayload = payload(rows("bar"));
+        queue.put(printPayload);
+        queue.put(otherPrintPayload);
+        queue.put(payload(Marker.END_OF_STREAM));
+
+        columnarAppender.init();
+        columnarAppender.run();
+
+        ColumnarRows actual = read(1);
+        assertEquals(2, actual.size());
+        assertEquals("foo", actual.getValue(0, 0));
+        assertEquals("bar", actual.getValue(1, 0));
+        assertFalse(new File(dir, "data-2.col").exists());
+        assertEquals(1, histogram.getCount());
+        verify(printPayload).setProcessed(true);
+        verify(printPayload).finished();
+        verify(otherPrintPayload).setProcessed(true);
+        verify(otherPrintPayload).finished();
+    }
+
+    @Test
+    public void testRunRowsPerFile() throws Exception {
+        when(pluginDef.getValue(plugin, "rowsPerFile", "65536"))
+                .thenReturn("1");
+        queue.put(payload(rows("foo")));
+        queue.put(payload(rows("bar")));
+        queue.put(payload(Marker.END_OF_STREAM));
+
+        columnarAppender.init();
+        columnarAppender.run();
+
+        assertEquals("foo", read(1).getValue(0, 0));
+        assertEquals("bar", read(2).getValue(0, 0));
+        assertEquals(2, histogram.getCount());
+    }
+
+    @Test
+    public void testRunNotColumnarRows() throws Exception {
+        PrintPayload printPayload = payload("foo");
+        queue.put(printPayload);
+        queue.put(payload(Marker.END_OF_STREAM));
+
+        columnarAppender.init();
+        columnarAppender.run();
+
+        assertFalse(new File(dir, "data-1.col").exists());
+        verify(printPayload).setProcessed(false);
+        verify(printPayload).finished();
+    }
+
+    @Test
+    public void testRunNullData() throws Exception {
+        PrintPayload printPayload = payload(null);
+        queue.put(printPayload);
+        queue.put(payload(Marker.END_OF_STREAM));
+
+        columnarAppender.init();
+        columnarAppender.run();
+
+        assertFalse(new File(dir, "data-1.col").exists());
+        verify(printPayload).setProcessed(false);
+        verify(printPayload).finished();
+    }
+
+    private ColumnarRows rows(final String value) {
+        ColumnarRows rows = new ColumnarRows();
+        rows.addRow(Arrays.asList("item"), Arrays.asList(value));
+        return rows;
+    }
+
+    private PrintPayload payload(final Object data) {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        when(printPayload.getData()).thenReturn(data);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        return printPayload;
+    }
+
+    private ColumnarRows read(final int seq) throws IOException {
+        try (InputStream in =
+                new FileInputStream(new File(dir, "data-" + seq + ".col"))) {
+            return ColumnarFile.read(in);
+        }
+    }
+}
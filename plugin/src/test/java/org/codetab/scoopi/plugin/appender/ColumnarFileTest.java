@@ -0,0 +1,65 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+import org.junit.Test;
+
+public class ColumnarFileTest {
+
+    @Test
+    public void testWriteRead() throws IOException {
+        ColumnarRows rows = new ColumnarRows();
+        for (int i = 0; i < 300; i++) {
+            rows.addRow(Arrays.asList("date", "fact"),
+                    Arrays.asList("2020-01-" + i % 3, String.valueOf(i)));
+        }
+        rows.addRow(Arrays.asList("date", "item"),
+                Arrays.asList(null, "foo"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ColumnarFile.write(rows, out);
+        ColumnarRows actual =
+                ColumnarFile.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(rows.getColumns(), actual.getColumns());
+        assertEquals(rows.size(), actual.size());
+        for (int r = 0; r < rows.size(); r++) {
+            for (int c = 0; c < rows.getColumns().size(); c++) {
+                assertEquals(rows.getValue(r, c), actual.getValue(r, c));
+            }
+        }
+    }
+
+    @Test
+    public void testDictionaryEncoded() throws IOException {
+        ColumnarRows dims = new ColumnarRows();
+        ColumnarRows facts = new ColumnarRows();
+        for (int i = 0; i < 1000; i++) {
+            dims.addRow(Arrays.asList("date"),
+                    Arrays.asList("2020-01-1" + i % 2));
+            facts.addRow(Arrays.asList("date"),
+                    Arrays.asList("2020-01-" + (1000 + i)));
+        }
+
+        ByteArrayOutputStream dimsOut = new ByteArrayOutputStream();
+        ColumnarFile.write(dims, dimsOut);
+        ByteArrayOutputStream factsOut = new ByteArrayOutputStream();
+        ColumnarFile.write(facts, factsOut);
+
+        // two dictionary entries and a byte per row
+        assertTrue(dimsOut.size() < 1100);
+        assertTrue(factsOut.size() > 10000);
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadNotColumnar() throws IOException {
+        ColumnarFile.read(new ByteArrayInputStream(new byte[16]));
+    }
+}
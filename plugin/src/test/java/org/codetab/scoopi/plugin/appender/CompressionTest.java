@@ -0,0 +1,58 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.junit.Test;
+
+public class CompressionTest {
+
+    @Test
+    public void testOf() {
+        assertSame(Compression.NONE, Compression.of(null));
+        assertSame(Compression.NONE, Compression.of(" "));
+        assertSame(Compression.LZ4, Compression.of("lz4"));
+        assertSame(Compression.GZIP, Compression.of("GZip"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOfNotSupported() {
+        Compression.of("zstd");
+    }
+
+    @Test
+    public void testGetExtension() {
+        assertEquals("", Compression.NONE.getExtension());
+        assertEquals(".lz4", Compression.LZ4.getExtension());
+        assertEquals(".gz", Compression.GZIP.getExtension());
+    }
+
+    @Test
+    public void testConcatenatedStreams() throws IOException {
+        for (Compression compression : Compression.values()) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (String part : new String[] {"foo", "bar"}) {
+                try (OutputStream out = compression
+                        .wrap(new CloseShieldOutputStream(bytes))) {
+                    out.write(part.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            try (InputStream in = compression
+                    .unwrap(new ByteArrayInputStream(bytes.toByteArray()))) {
+                assertArrayEquals("foobar".getBytes(StandardCharsets.UTF_8),
+                        IOUtils.toByteArray(in));
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.codetab.scoopi.model.Axis;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DedupFilterTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("scoopi-dedup");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    @Test
+    public void testAddContains() throws IOException {
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 4)) {
+            assertFalse(filter.contains(1L));
+
+            filter.add(1L);
+            filter.add(1L);
+
+            assertTrue(filter.contains(1L));
+            assertFalse(filter.contains(2L));
+        }
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 3)) {
+            for (long i = 10; i > 0; i--) {
+                filter.add(i * 7);
+            }
+
+            // 9 spilled in runs of 6 and 3, 1 in memory
+            assertEquals(9, filter.getSpillCount());
+            assertEquals(2, filter.getRunCount());
+            for (long i = 1; i <= 10; i++) {
+                assertTrue(filter.contains(i * 7));
+                assertFalse(filter.contains(i * 7 + 1));
+            }
+        }
+    }
+
+    @Test
+    public void testSpillTiers() throws IOException {
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 2)) {
+            for (long i = 1; i <= 16; i++) {
+                filter.add(-i);
+            }
+
+            // runs merge like a binary counter, 8 spills to one run
+            assertEquals(16, filter.getSpillCount());
+            assertEquals(1, filter.getRunCount());
+
+            filter.add(17L);
+            filter.add(18L);
+            filter.add(19L);
+            filter.add(20L);
+
+            assertEquals(2, filter.getRunCount());
+            try (DirectoryStream<Path> files =
+                    Files.newDirectoryStream(dir, "foo.spill.*")) {
+                long size = 0;
+                int count = 0;
+                for (Path file : files) {
+                    size += Files.size(file);
+                    count++;
+                }
+                // merged runs are deleted
+                assertEquals(2, count);
+                assertEquals(20 * Long.BYTES, size);
+            }
+            for (long i = 1; i <= 16; i++) {
+                assertTrue(filter.contains(-i));
+            }
+            for (long i = 17; i <= 20; i++) {
+                assertTrue(filter.contains(i));
+            }
+            assertFalse(filter.contains(0L));
+        }
+
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 2)) {
+            assertEquals(20, filter.getSpillCount());
+            assertTrue(filter.contains(-16L));
+            assertTrue(filter.contains(20L));
+        }
+    }
+
+    @Test
+    public void testContainsConcurrentSpill() throws Exception {
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 1000, 0.01, 3)) {
+            AtomicBoolean missed = new AtomicBoolean();
+            AtomicLong last = new AtomicLong();
+            Thread reader = new Thread(() -> {
+                while (last.get() < 500) {
+                    long added = last.get();
+                    for (long i = 1; i <= added; i++) {
+                        if (!filter.contains(i)) {
+                            missed.set(true);
+                        }
+                    }
+                }
+            });
+            reader.start();
+            for (long i = 1; i <= 500; i++) {
+                filter.add(i);
+                last.set(i);
+            }
+            reader.join();
+
+            assertFalse(missed.get());
+        }
+    }
+
+    @Test
+    public void testPersist() throws IOException {
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 3)) {
+            filter.add(1L);
+            filter.add(-5L);
+        }
+        assertTrue(Files.exists(dir.resolve("foo.bloom")));
+
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 3)) {
+            assertFalse(Files.exists(dir.resolve("foo.bloom")));
+            assertTrue(filter.contains(1L));
+            assertTrue(filter.contains(-5L));
+            assertFalse(filter.contains(2L));
+        }
+    }
+
+    @Test
+    public void testRebuildAfterCrash() throws IOException {
+        DedupFilter crashed = new DedupFilter(dir, "foo", 100, 0.01, 2);
+        crashed.add(1L);
+        crashed.add(2L);
+        crashed.add(3L);
+        // not closed, bloom file is not written and 3 is lost
+
+        try (DedupFilter filter = new DedupFilter(dir, "foo", 100, 0.01, 2)) {
+            assertTrue(filter.contains(1L));
+            assertTrue(filter.contains(2L));
+            assertFalse(filter.contains(3L));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidFpp() throws IOException {
+        new DedupFilter(dir, "foo", 100, 1, 2);
+    }
+
+    @Test
+    public void testFingerprint() {
+        ObjectFactory factory = new ObjectFactory();
+        Data data = factory.createData("price");
+        data.setName("acme");
+        Item item = item(factory, "10");
+
+        assertEquals(DedupFilter.fingerprint(data, item),
+                DedupFilter.fingerprint(data, item(factory, "10")));
+        assertNotEquals(DedupFilter.fingerprint(data, item),
+                DedupFilter.fingerprint(data, item(factory, "11")));
+
+        Data other = factory.createData("price");
+        other.setName("foo");
+        assertNotEquals(DedupFilter.fingerprint(data, item),
+                DedupFilter.fingerprint(other, item));
+    }
+
+    private Item item(final ObjectFactory factory, final String value) {
+        Item item = factory.createItem();
+        Axis axis = factory.createAxis("fact", "price");
+        axis.setValue(value);
+        item.addAxis(axis);
+        return item;
+    }
+}
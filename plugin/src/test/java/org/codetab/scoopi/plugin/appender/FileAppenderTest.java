@@ -1,29 +1,45 @@
 package org.codetab.scoopi.plugin.appender;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.exception.DefNotFoundException;
 import org.codetab.scoopi.helper.IOHelper;
 import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.JobInfo;
 import org.codetab.scoopi.model.Plugin;
 import org.codetab.scoopi.model.PrintPayload;
 import org.codetab.scoopi.plugin.appender.Appender.Marker;
+import org.codetab.scoopi.plugin.encoder.EncodedStream;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -31,6 +47,10 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
 public class FileAppenderTest {
     @InjectMocks
     private FileAppender fileAppender;
@@ -40,6 +60,8 @@ public class FileAppenderTest {
     @Mock
     private Configs configs;
     @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
     private JobFilePath jobFilePath;
     @Mock
     private IPluginDef pluginDef;
@@ -49,10 +71,20 @@ public class FileAppenderTest {
     private BlockingQueue<PrintPayload> queue;
     @Mock
     private Plugin plugin;
+    @Mock
+    private Backpressure backpressure;
+
+    private Histogram histogram;
 
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        histogram = new Histogram(new UniformReservoir());
+        when(metricsHelper.getHistogram(fileAppender, "flush", "batch"))
+                .thenReturn(histogram);
+        when(metricsHelper.getTimer(fileAppender, "flush", "time"))
+                .thenReturn(new Timer());
+        when(pluginDef.getValue(plugin, "batchSize", "64")).thenReturn("64");
     }
 
     @Test
@@ -287,11 +319,401 @@ public class FileAppenderTest {
         verify(printPayload).finished();
     }
 
+    @Test
+    public void testRunEncodedStream() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload eosPrintPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        PrintWriter writer = Mockito.mock(PrintWriter.class);
+        EncodedStream data = out -> {
+            out.write("foo");
+            return 1;
+        };
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+        String dataFilePath = "scoopi/output//2020Jan10-022030/data-1.txt";
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(queue.take()).thenReturn(printPayload).thenReturn(eosPrintPayload);
+        when(printPayload.getData()).thenReturn(data);
+        when(eosPrintPayload.getData()).thenReturn(Marker.END_OF_STREAM);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(1L);
+        when(jobFilePath.getPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", 1L)).thenReturn(dataFilePath);
+        when(ioHelper.getPrintWriter(dataFilePath)).thenReturn(writer);
+
+        fileAppender.init();
+        fileAppender.run();
+
+        verify(writer).write("foo");
+        verify(writer, never()).println(any(Object.class));
+        verify(printPayload).setProcessed(true);
+        verify(printPayload).finished();
+    }
+
+    @Test
+    public void testRunEncoderException() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload printPayload2 = Mockito.mock(PrintPayload.class);
+        PrintPayload eosPrintPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        JobInfo jobInfo2 = Mockito.mock(JobInfo.class);
+        PrintWriter writer = Mockito.mock(PrintWriter.class);
+        PrintWriter writer2 = Mockito.mock(PrintWriter.class);
+        EncodedStream data = out -> {
+            throw new NullPointerException("no parent");
+        };
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+        String dataFilePath = "scoopi/output//2020Jan10-022030/data-1.txt";
+        String dataFilePath2 = "scoopi/output//2020Jan10-022030/data-2.txt";
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(queue.take()).thenReturn(printPayload).thenReturn(printPayload2)
+                .thenReturn(eosPrintPayload);
+        when(printPayload.getData()).thenReturn(data);
+        when(printPayload2.getData()).thenReturn("bar");
+        when(eosPrintPayload.getData()).thenReturn(Marker.END_OF_STREAM);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(printPayload2.getJobInfo()).thenReturn(jobInfo2);
+        when(jobInfo.getId()).thenReturn(1L);
+        when(jobInfo2.getId()).thenReturn(2L);
+        when(jobFilePath.getPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", 1L)).thenReturn(dataFilePath);
+        when(jobFilePath.getPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", 2L)).thenReturn(dataFilePath2);
+        when(ioHelper.getPrintWriter(dataFilePath)).thenReturn(writer);
+        when(ioHelper.getPrintWriter(dataFilePath2)).thenReturn(writer2);
+
+        fileAppender.init();
+        fileAppender.run();
+
+        // appender thread survives and waiters are released
+        verify(printPayload).setProcessed(false);
+        verify(printPayload, never()).setProcessed(true);
+        verify(printPayload).finished();
+        verify(writer).close();
+        verify(errors).inc();
+        verify(writer2).println((Object) "bar");
+        verify(printPayload2).setProcessed(true);
+        verify(printPayload2).finished();
+    }
+
+    @Test
+    public void testRunRollingEncoderException() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload printPayload2 = Mockito.mock(PrintPayload.class);
+        PrintPayload eosPrintPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        JobInfo jobInfo2 = Mockito.mock(JobInfo.class);
+        EncodedStream data = out -> {
+            throw new NullPointerException("no parent");
+        };
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+        File dir = Files.createTempDirectory("scoopi-appender").toFile();
+        String dataFilePath = new File(dir, "data-m1-00001.txt").getPath();
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getConfig("scoopi.cluster.memberId", "solo"))
+                .thenReturn("a-b-m1");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "mode", "job")).thenReturn("rolling");
+        when(pluginDef.getValue(plugin, "rollSize", "67108864"))
+                .thenReturn("0");
+        when(pluginDef.getValue(plugin, "rollRecords", "0")).thenReturn("0");
+        when(pluginDef.getValue(plugin, "rollInterval", "0")).thenReturn("0");
+        when(pluginDef.getValue(plugin, "bufferSize", "65536"))
+                .thenReturn("1024");
+        when(pluginDef.getValue(plugin, "frame", "true")).thenReturn("true");
+        when(jobFilePath.getRollingPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", "m1", 1)).thenReturn(dataFilePath);
+        when(queue.take()).thenReturn(printPayload).thenReturn(printPayload2)
+                .thenReturn(eosPrintPayload);
+        when(printPayload.getData()).thenReturn(data);
+        when(printPayload2.getData()).thenReturn("bar");
+        when(eosPrintPayload.getData()).thenReturn(Marker.END_OF_STREAM);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(printPayload2.getJobInfo()).thenReturn(jobInfo2);
+        when(jobInfo.getId()).thenReturn(1L);
+        when(jobInfo2.getId()).thenReturn(2L);
+
+        try {
+            fileAppender.init();
+            fileAppender.run();
+
+            verify(printPayload).setProcessed(false);
+            verify(printPayload, never()).setProcessed(true);
+            verify(printPayload).finished();
+            verify(printPayload2).setProcessed(true);
+            verify(printPayload2).finished();
+            verify(errors).inc();
+            // frame of failed job has no trailer
+            assertEquals(Arrays.asList("#job 1", "#job 2", "bar", "#end 2 1"),
+                    Files.readAllLines(Paths.get(dataFilePath)));
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void testRunCompressed() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload eosPrintPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+        String dataFilePath = "scoopi/output//2020Jan10-022030/data-1.txt";
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "compression", "none"))
+                .thenReturn("lz4");
+        when(queue.take()).thenReturn(printPayload).thenReturn(eosPrintPayload);
+        when(printPayload.getData()).thenReturn(Arrays.asList("foo", "bar"));
+        when(eosPrintPayload.getData()).thenReturn(Marker.END_OF_STREAM);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(1L);
+        when(jobFilePath.getPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", 1L)).thenReturn(dataFilePath);
+        when(ioHelper.getOutputStream(dataFilePath + ".lz4")).thenReturn(out);
+
+        fileAppender.init();
+        fileAppender.run();
+
+        InputStream in = Compression.LZ4
+                .unwrap(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(Arrays.asList("foo", "bar"),
+                IOUtils.readLines(in, StandardCharsets.UTF_8));
+        verify(ioHelper, never()).getPrintWriter(dataFilePath);
+        verify(printPayload).setProcessed(true);
+        verify(printPayload).finished();
+    }
+
+    @Test
+    public void testInitCompressionNotSupported() throws DefNotFoundException {
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "compression", "none"))
+                .thenReturn("zstd");
+
+        fileAppender.init();
+
+        verify(errors).inc();
+        assertFalse(fileAppender.isInitialized());
+    }
+
+    @Test
+    public void testRunGroupCommit() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload otherPrintPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload eosPrintPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        PrintWriter writer = Mockito.mock(PrintWriter.class);
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+        String dataFilePath = "scoopi/output//2020Jan10-022030/data-1.txt";
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "batchSize", "64")).thenReturn("8");
+        when(queue.take()).thenReturn(printPayload);
+        when(queue.drainTo(any(), eq(7))).thenAnswer(invocation -> {
+            List<PrintPayload> batch = invocation.getArgument(0);
+            batch.add(otherPrintPayload);
+            batch.add(eosPrintPayload);
+            return 2;
+        });
+        when(printPayload.getData()).thenReturn("foo");
+        when(otherPrintPayload.getData()).thenReturn("bar");
+        when(eosPrintPayload.getData()).thenReturn(Marker.END_OF_STREAM);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(otherPrintPayload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(1L);
+        when(jobFilePath.getPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", 1L)).thenReturn(dataFilePath);
+        when(ioHelper.getPrintWriter(dataFilePath)).thenReturn(writer);
+
+        fileAppender.init();
+        fileAppender.run();
+
+        verify(queue).take();
+        verify(writer).println((Object) "foo");
+        verify(writer).println((Object) "bar");
+        verify(printPayload).setProcessed(true);
+        verify(otherPrintPayload).setProcessed(true);
+        verify(printPayload).finished();
+        verify(otherPrintPayload).finished();
+        verify(eosPrintPayload, never()).finished();
+        assertEquals(1, histogram.getCount());
+        assertEquals(2, histogram.getSnapshot().getMax());
+    }
+
+    @Test
+    public void testRunRolling() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload eosPrintPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        List<String> data = new ArrayList<>();
+        data.add("foo");
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+        File dir = Files.createTempDirectory("scoopi-appender").toFile();
+        String dataFilePath = new File(dir, "data-m1-00001.txt").getPath();
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getConfig("scoopi.cluster.memberId", "solo"))
+                .thenReturn("a-b-m1");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "mode", "job")).thenReturn("rolling");
+        when(pluginDef.getValue(plugin, "rollSize", "67108864"))
+                .thenReturn("0");
+        when(pluginDef.getValue(plugin, "rollRecords", "0")).thenReturn("0");
+        when(pluginDef.getValue(plugin, "rollInterval", "0")).thenReturn("0");
+        when(pluginDef.getValue(plugin, "bufferSize", "65536"))
+                .thenReturn("1024");
+        when(pluginDef.getValue(plugin, "frame", "true")).thenReturn("true");
+        when(jobFilePath.getRollingPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", "m1", 1)).thenReturn(dataFilePath);
+        when(queue.take()).thenReturn(printPayload).thenReturn(eosPrintPayload);
+        when(printPayload.getData()).thenReturn(data);
+        when(eosPrintPayload.getData()).thenReturn(Marker.END_OF_STREAM);
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(1L);
+
+        try {
+            fileAppender.init();
+            fileAppender.run();
+
+            verify(errors, never()).inc();
+            verify(ioHelper, never()).getPrintWriter(any());
+            verify(printPayload).setProcessed(true);
+            verify(printPayload).finished();
+            assertEquals(Arrays.asList("#job 1", "foo", "#end 1 1"),
+                    Files.readAllLines(Paths.get(dataFilePath)));
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void testMergeRolling() throws Exception {
+        File dir = Files.createTempDirectory("scoopi-merge").toFile();
+        File shard0 = new File(dir, "data-m1s0-00001.txt");
+        File shard1 = new File(dir, "data-m1s1-00001.txt");
+        String mergedPath = new File(dir, "data-m1.txt").getPath();
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getConfig("scoopi.appender.file.baseDir", ""))
+                .thenReturn("scoopi");
+        when(configs.getConfig("scoopi.cluster.memberId", "solo"))
+                .thenReturn("m1");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "mode", "job")).thenReturn("rolling");
+        when(pluginDef.getValue(plugin, "rollSize", "67108864"))
+                .thenReturn("0");
+        when(pluginDef.getValue(plugin, "rollRecords", "0")).thenReturn("0");
+        when(pluginDef.getValue(plugin, "rollInterval", "0")).thenReturn("0");
+        when(pluginDef.getValue(plugin, "bufferSize", "65536"))
+                .thenReturn("1024");
+        when(pluginDef.getValue(plugin, "frame", "true")).thenReturn("false");
+        when(jobFilePath.getRollingPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", "m1s0", 1)).thenReturn(shard0.getPath());
+        when(jobFilePath.getRollingPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", "m1s1", 1)).thenReturn(shard1.getPath());
+        when(jobFilePath.getMergedPath("scoopi", "output/", "data", "txt",
+                "2020Jan10-022030", "m1")).thenReturn(mergedPath);
+
+        try {
+            List<Appender> shards = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                fileAppender.setShard(i);
+                fileAppender.init();
+                RollingFileWriter writer = (RollingFileWriter) FieldUtils
+                        .readField(fileAppender, "rollingWriter", true);
+                writer.write(i, Arrays.asList("shard" + i));
+                writer.close();
+                FileAppender shard = Mockito.mock(FileAppender.class);
+                FieldUtils.writeField(shard, "rollingWriter", writer, true);
+                shards.add(shard);
+            }
+
+            fileAppender.merge(shards);
+
+            assertEquals(Arrays.asList("shard0", "shard1"),
+                    Files.readAllLines(Paths.get(mergedPath)));
+            assertFalse(shard0.exists());
+            assertFalse(shard1.exists());
+            verify(errors, never()).inc();
+        } finally {
+            FileUtils.deleteQuietly(dir);
+        }
+    }
+
+    @Test
+    public void testInitRollingInvalidField() throws DefNotFoundException {
+        ZonedDateTime runDateTime = ZonedDateTime.of(2020, 01, 10, 2, 20, 30, 0,
+                ZoneId.of("Asia/Kolkata"));
+
+        when(configs.getConfig("outputDirTimestampPattern", "yyyyMMMdd-HHmmss"))
+                .thenReturn("yyyyMMMdd-HHmmss");
+        when(configs.getRunDateTime()).thenReturn(runDateTime);
+        when(pluginDef.getValue(plugin, "file")).thenReturn("output/data.txt");
+        when(pluginDef.getValue(plugin, "mode", "job")).thenReturn("rolling");
+        when(pluginDef.getValue(plugin, "rollSize", "67108864"))
+                .thenReturn("x");
+
+        fileAppender.init();
+
+        verify(errors).inc();
+        assertFalse(fileAppender.isInitialized());
+    }
+
     @Test
     public void testAppend() throws Exception {
         PrintPayload printPayload = Mockito.mock(PrintPayload.class);
         boolean initialized = true;
         fileAppender.setInitialized(initialized);
+        fileAppender.setName("foo");
+        when(metricsHelper.getTimer(fileAppender, "foo", "queue", "full"))
+                .thenReturn(new Timer());
 
         fileAppender.append(printPayload);
 
@@ -300,48 +722,87 @@ public class FileAppenderTest {
 
     @Test
     public void testInitializeQueue() throws DefNotFoundException {
-        String configKey = "scoopi.appender.queueSize";
-        int defaultValue = 4096;
-        int qSize = 4096;
-        String qSizeInPlugin = "8192";
+        String configKey = "scoopi.appender.queueBytes";
+        int defaultValue = 33554432;
+        int qBytes = 33554432;
+        String qBytesInPlugin = "8192";
+
+        when(configs.getInt(configKey, defaultValue)).thenReturn(qBytes);
+        when(pluginDef.getValue(plugin, "queueBytes"))
+                .thenReturn(qBytesInPlugin);
+        fileAppender.initializeQueue();
+
+        BlockingQueue<PrintPayload> q = fileAppender.getQueue();
+        assertEquals(Integer.parseInt(qBytesInPlugin), q.remainingCapacity());
+    }
 
-        when(configs.getInt(configKey, defaultValue)).thenReturn(qSize);
-        when(pluginDef.getValue(plugin, "queueSize")).thenReturn(qSizeInPlugin);
+    @Test
+    public void testInitializeQueueShard() throws DefNotFoundException {
+        String configKey = "scoopi.appender.queueBytes";
+        int defaultValue = 33554432;
+
+        when(configs.getInt(configKey, defaultValue)).thenReturn(defaultValue);
+        when(pluginDef.getValue(plugin, "queueBytes")).thenReturn("8192");
+        when(pluginDef.getValue(plugin, "shards", "1")).thenReturn("4");
+        fileAppender.setShard(1);
         fileAppender.initializeQueue();
 
         BlockingQueue<PrintPayload> q = fileAppender.getQueue();
-        assertEquals(Integer.parseInt(qSizeInPlugin), q.remainingCapacity());
+        assertEquals(2048, q.remainingCapacity());
+    }
+
+    @Test
+    public void testInitializeQueueDeprecatedQueueSize()
+            throws DefNotFoundException {
+        String configKey = "scoopi.appender.queueBytes";
+        int defaultValue = 33554432;
+        int qBytes = 2048;
+
+        when(configs.getInt(configKey, defaultValue)).thenReturn(qBytes);
+        when(configs.getProperty("scoopi.appender.queueSize"))
+                .thenReturn("4096");
+        when(pluginDef.getValue(plugin, "queueSize")).thenReturn("4096");
+        when(pluginDef.getValue(plugin, "queueBytes"))
+                .thenThrow(DefNotFoundException.class);
+        fileAppender.initializeQueue();
+
+        // old count based size is warned and ignored
+        verify(configs).getProperty("scoopi.appender.queueSize");
+        verify(pluginDef).getValue(plugin, "queueSize");
+        BlockingQueue<PrintPayload> q = fileAppender.getQueue();
+        assertEquals(qBytes, q.remainingCapacity());
     }
 
     @Test
     public void testInitializeQueueDefNotFoundException()
             throws DefNotFoundException {
-        String configKey = "scoopi.appender.queueSize";
-        int defaultValue = 4096;
-        int qSize = 2048;
+        String configKey = "scoopi.appender.queueBytes";
+        int defaultValue = 33554432;
+        int qBytes = 2048;
 
-        when(configs.getInt(configKey, defaultValue)).thenReturn(qSize);
-        when(pluginDef.getValue(plugin, "queueSize"))
+        when(configs.getInt(configKey, defaultValue)).thenReturn(qBytes);
+        when(pluginDef.getValue(plugin, "queueBytes"))
                 .thenThrow(DefNotFoundException.class);
         fileAppender.initializeQueue();
 
         BlockingQueue<PrintPayload> q = fileAppender.getQueue();
-        assertEquals(qSize, q.remainingCapacity());
+        assertEquals(qBytes, q.remainingCapacity());
     }
 
     @Test
     public void testInitializeQueueInvalidSize() throws DefNotFoundException {
-        String configKey = "scoopi.appender.queueSize";
-        int defaultValue = 4096;
-        int qSize = 2048;
-        String qSizeInPlugin = "invalid-size";
-
-        when(configs.getInt(configKey, defaultValue)).thenReturn(qSize);
-        when(pluginDef.getValue(plugin, "queueSize")).thenReturn(qSizeInPlugin);
+        String configKey = "scoopi.appender.queueBytes";
+        int defaultValue = 33554432;
+        int qBytes = 2048;
+        String qBytesInPlugin = "invalid-size";
+
+        when(configs.getInt(configKey, defaultValue)).thenReturn(qBytes);
+        when(pluginDef.getValue(plugin, "queueBytes"))
+                .thenReturn(qBytesInPlugin);
         fileAppender.initializeQueue();
 
         BlockingQueue<PrintPayload> q = fileAppender.getQueue();
-        assertEquals(qSize, q.remainingCapacity());
+        assertEquals(qBytes, q.remainingCapacity());
     }
 
     @Test
@@ -0,0 +1,196 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Constructor;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.appender.Appender.Marker;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * JdbcAppender against an in-memory H2 database, through the connection
+ * factory and pool that it uses in production. Checks insert, rollback of a
+ * transaction with a bad payload and that shards share connections till all
+ * of them are finished.
+ * <p>
+ * Run with mvn verify -pl plugin -Dit.test=JdbcAppenderIT.
+ * @author m
+ *
+ */
+public class JdbcAppenderIT {
+
+    private static final String URL = "jdbc:h2:mem:scoopi;DB_CLOSE_DELAY=-1";
+
+    private ObjectFactory factory = new ObjectFactory();
+    private IPluginDef pluginDef;
+    private Errors errors;
+    private Plugin plugin;
+    private JdbcConnectionPool connectionPool;
+    private Connection db;
+
+    @Before
+    public void setUp() throws Exception {
+        db = DriverManager.getConnection(URL, "sa", "");
+        try (Statement statement = db.createStatement()) {
+            statement.execute("CREATE TABLE scoopi_data (\"group\" "
+                    + "VARCHAR(32), \"fact\" VARCHAR(32))");
+        }
+
+        plugin = Mockito.mock(Plugin.class);
+        pluginDef = Mockito.mock(IPluginDef.class);
+        when(pluginDef.getValue(plugin, "url")).thenReturn(URL);
+        when(pluginDef.getValue(plugin, "table")).thenReturn("scoopi_data");
+        when(pluginDef.getValue(plugin, "user", "")).thenReturn("sa");
+        when(pluginDef.getValue(plugin, "password", "")).thenReturn("");
+        when(pluginDef.getValue(plugin, "batchSize", "500")).thenReturn("2");
+        when(pluginDef.getValue(plugin, "commitSize", "64")).thenReturn("64");
+
+        Configs configs = Mockito.mock(Configs.class);
+        when(configs.getInt(anyString(), anyInt()))
+                .thenAnswer(i -> i.getArgument(1));
+        errors = Mockito.mock(Errors.class);
+
+        JdbcConnectionFactory connectionFactory = new JdbcConnectionFactory();
+        FieldUtils.writeField(connectionFactory, "pluginDef", pluginDef, true);
+        connectionPool = new JdbcConnectionPool(connectionFactory, configs);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connectionPool.close();
+        try (Statement statement = db.createStatement()) {
+            statement.execute("DROP TABLE scoopi_data");
+        }
+        db.close();
+    }
+
+    @Test
+    public void testInsert() throws Exception {
+        JdbcAppender appender = createAppender(-1);
+        PrintPayload printPayload = payload(rows("a", "b", "c"));
+        PrintPayload otherPayload = payload(rows("d", "e"));
+
+        run(appender, printPayload, otherPayload);
+
+        assertTrue(printPayload.isFinished());
+        assertTrue(otherPayload.isFinished());
+        assertEquals(5, count());
+        verify(errors, never()).inc();
+        // idle connections are closed when appender is finished
+        assertEquals(0, connectionPool.getNumIdle());
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        JdbcAppender appender = createAppender(-1);
+        ColumnarRows unknown = new ColumnarRows();
+        unknown.addRow(Arrays.asList("group", "price"),
+                Arrays.asList("x", "1"));
+        PrintPayload printPayload = payload(rows("a", "b", "c"));
+        PrintPayload otherPayload = payload(unknown);
+
+        run(appender, printPayload, otherPayload);
+
+        assertFalse(printPayload.isFinished());
+        assertFalse(otherPayload.isFinished());
+        assertEquals(0, count());
+    }
+
+    @Test
+    public void testShardsShareConnections() throws Exception {
+        JdbcAppender shard = createAppender(0);
+        JdbcAppender otherShard = createAppender(1);
+        List<Appender> shards = Arrays.asList(shard, otherShard);
+
+        run(shard, payload(rows("a", "b")));
+        assertEquals(1, connectionPool.getNumIdle(plugin));
+
+        run(otherShard, payload(rows("c")));
+        assertEquals(1, connectionPool.getNumIdle(plugin));
+        assertEquals(3, count());
+
+        shard.finish(shards);
+        assertEquals(0, connectionPool.getNumIdle(plugin));
+    }
+
+    private JdbcAppender createAppender(final int shard) throws Exception {
+        Constructor<JdbcAppender> constructor =
+                JdbcAppender.class.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        JdbcAppender appender = constructor.newInstance();
+        FieldUtils.writeField(appender, "pluginDef", pluginDef, true);
+        FieldUtils.writeField(appender, "errors", errors, true);
+        FieldUtils.writeField(appender, "metricsHelper", new MetricsHelper(),
+                true);
+        FieldUtils.writeField(appender, "connectionPool", connectionPool,
+                true);
+        FieldUtils.writeField(appender, "queue", new ArrayBlockingQueue<>(8),
+                true);
+        appender.setName("jdbc");
+        appender.setPlugin(plugin);
+        appender.setShard(shard);
+        appender.init();
+        assertTrue(appender.isInitialized());
+        return appender;
+    }
+
+    private void run(final JdbcAppender appender,
+            final PrintPayload... printPayloads) {
+        for (PrintPayload printPayload : printPayloads) {
+            appender.getQueue().add(printPayload);
+        }
+        appender.getQueue().add(payload(Marker.END_OF_STREAM));
+        appender.run();
+    }
+
+    private int count() throws Exception {
+        try (Statement statement = db.createStatement();
+                ResultSet rs = statement
+                        .executeQuery("SELECT COUNT(*) FROM scoopi_data")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private ColumnarRows rows(final String... groups) {
+        ColumnarRows rows = new ColumnarRows();
+        for (String group : groups) {
+            rows.addRow(Arrays.asList("group", "fact"),
+                    Arrays.asList(group, "1"));
+        }
+        return rows;
+    }
+
+    private PrintPayload payload(final Object data) {
+        return factory.createPrintPayload(
+                factory.createJobInfo("acme", "quote", "price", "steps",
+                        "price"),
+                data);
+    }
+}
@@ -0,0 +1,285 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.exception.DefNotFoundException;
+import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.appender.Appender.Marker;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+public class JdbcAppenderTest {
+    @InjectMocks
+    private JdbcAppender jdbcAppender;
+
+    @Mock
+    private JdbcConnectionPool connectionPool;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Errors errors;
+    @Mock
+    private Plugin plugin;
+    @Mock
+    private Connection connection;
+    @Mock
+    private DatabaseMetaData metaData;
+    @Mock
+    private PreparedStatement statement;
+
+    private BlockingQueue<PrintPayload> queue;
+    private Histogram histogram;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        queue = new ArrayBlockingQueue<>(8);
+        FieldUtils.writeField(jdbcAppender, "queue", queue, true);
+        histogram = new Histogram(new UniformReservoir());
+
+        when(metricsHelper.getHistogram(jdbcAppender, "commit", "rows"))
+                .thenReturn(histogram);
+        when(metricsHelper.getTimer(jdbcAppender, "commit", "time"))
+                .thenReturn(new Timer());
+        when(pluginDef.getValue(plugin, "url")).thenReturn("jdbc:foo:bar");
+        when(pluginDef.getValue(plugin, "table")).thenReturn("scoopi.data");
+        when(pluginDef.getValue(plugin, "batchSize", "500")).thenReturn("2");
+        when(pluginDef.getValue(plugin, "commitSize", "64")).thenReturn("64");
+        when(connectionPool.borrowObject(plugin)).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getIdentifierQuoteString()).thenReturn("\"");
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+    }
+
+    @Test
+    public void testInit() {
+        jdbcAppender.init();
+
+        assertTrue(jdbcAppender.isInitialized());
+        verify(errors, never()).inc();
+    }
+
+    @Test
+    public void testInitDefNotFound() throws DefNotFoundException {
+        when(pluginDef.getValue(plugin, "url"))
+                .thenThrow(DefNotFoundException.class);
+
+        jdbcAppender.init();
+
+        assertFalse(jdbcAppender.isInitialized());
+        verify(errors).inc();
+    }
+
+    @Test
+    public void testInitInvalidTable() throws DefNotFoundException {
+        when(pluginDef.getValue(plugin, "table")).thenReturn("data; drop");
+
+        jdbcAppender.init();
+
+        assertFalse(jdbcAppender.isInitialized());
+        verify(errors).inc();
+    }
+
+    @Test
+    public void testInitInvalidBatchSize() {
+        when(pluginDef.getValue(plugin, "batchSize", "500")).thenReturn("0");
+
+        jdbcAppender.init();
+
+        assertFalse(jdbcAppender.isInitialized());
+        verify(errors).inc();
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        PrintPayload printPayload = createPayload(rows("a", "b", "c"));
+        PrintPayload otherPayload = createPayload(rows("d"));
+        queue.add(printPayload);
+        queue.add(otherPayload);
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(connection).prepareStatement(
+                "INSERT INTO scoopi.data (\"group\", \"fact\") VALUES (?, ?)");
+        verify(statement).setString(1, "a");
+        verify(statement).setString(1, "d");
+        verify(statement, times(4)).setString(2, "1");
+        verify(statement, times(4)).addBatch();
+
+        // batches of 2 rows, one transaction for both payloads
+        InOrder inOrder = inOrder(statement, connection, printPayload);
+        inOrder.verify(statement, times(2)).executeBatch();
+        inOrder.verify(connection).commit();
+        inOrder.verify(printPayload).setProcessed(true);
+        inOrder.verify(printPayload).finished();
+        verify(otherPayload).setProcessed(true);
+        verify(statement).close();
+        verify(connectionPool).returnObject(plugin, connection);
+        verify(connectionPool).clear(plugin);
+        assertEquals(1, histogram.getCount());
+        assertEquals(4, histogram.getSnapshot().getMax());
+    }
+
+    @Test
+    public void testRunShard() throws Exception {
+        queue.add(createPayload(rows("a")));
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        jdbcAppender.setShard(0);
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(connection).commit();
+        verify(connectionPool, never()).clear(plugin);
+
+        jdbcAppender.finish(Arrays.asList(jdbcAppender));
+
+        verify(connectionPool).clear(plugin);
+    }
+
+    @Test
+    public void testRunSQLException() throws Exception {
+        PrintPayload printPayload = createPayload(rows("a"));
+        queue.add(printPayload);
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        doThrow(SQLException.class).when(statement).executeBatch();
+
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(connection, never()).commit();
+        verify(connection).rollback();
+        verify(printPayload, never()).setProcessed(true);
+        verify(printPayload).setProcessed(false);
+        verify(printPayload).finished();
+        verify(connectionPool).returnObject(plugin, connection);
+        verify(errors, never()).inc();
+    }
+
+    @Test
+    public void testRunBorrowException() throws Exception {
+        PrintPayload printPayload = createPayload(rows("a"));
+        queue.add(printPayload);
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        when(connectionPool.borrowObject(plugin))
+                .thenThrow(SQLException.class);
+
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(printPayload).setProcessed(false);
+        verify(printPayload).finished();
+        verify(connectionPool, never()).returnObject(plugin, connection);
+    }
+
+    @Test
+    public void testRunNotColumnarRows() throws Exception {
+        PrintPayload printPayload = createPayload("foo");
+        PrintPayload otherPayload = createPayload(rows("a"));
+        queue.add(printPayload);
+        queue.add(otherPayload);
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(printPayload).setProcessed(false);
+        verify(printPayload, never()).setProcessed(true);
+        verify(otherPayload).setProcessed(true);
+        verify(connection).commit();
+    }
+
+    @Test
+    public void testRunNullData() throws Exception {
+        PrintPayload printPayload = createPayload(null);
+        PrintPayload otherPayload = createPayload(rows("a"));
+        queue.add(printPayload);
+        queue.add(otherPayload);
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(printPayload).setProcessed(false);
+        verify(otherPayload).setProcessed(true);
+        verify(connection).commit();
+    }
+
+    @Test
+    public void testRunInvalidColumn() throws Exception {
+        ColumnarRows rows = new ColumnarRows();
+        rows.addRow(Arrays.asList("a b"), Arrays.asList("x"));
+        PrintPayload printPayload = createPayload(rows);
+        queue.add(printPayload);
+        queue.add(createPayload(Marker.END_OF_STREAM));
+
+        jdbcAppender.init();
+        jdbcAppender.run();
+
+        verify(printPayload).setProcessed(false);
+        verify(connection, never()).prepareStatement(anyString());
+    }
+
+    @Test
+    public void testAppend() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        jdbcAppender.setInitialized(true);
+
+        jdbcAppender.append(printPayload);
+
+        assertEquals(printPayload, queue.take());
+    }
+
+    private ColumnarRows rows(final String... groups) {
+        ColumnarRows rows = new ColumnarRows();
+        for (String group : groups) {
+            rows.addRow(Arrays.asList("group", "fact"),
+                    Arrays.asList(group, "1"));
+        }
+        return rows;
+    }
+
+    private PrintPayload createPayload(final Object data) {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        when(printPayload.getData()).thenReturn(data);
+        return printPayload;
+    }
+}
@@ -0,0 +1,75 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.apache.commons.pool2.PooledObject;
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class JdbcConnectionFactoryTest {
+    @InjectMocks
+    private JdbcConnectionFactory jdbcConnectionFactory;
+
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Plugin plugin;
+    @Mock
+    private Connection connection;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testCreateNoDriver() throws Exception {
+        when(pluginDef.getValue(plugin, "url")).thenReturn("jdbc:foo:bar");
+        when(pluginDef.getValue(plugin, "user", "")).thenReturn("");
+        when(pluginDef.getValue(plugin, "password", "")).thenReturn("");
+
+        assertThrows(SQLException.class,
+                () -> jdbcConnectionFactory.create(plugin));
+    }
+
+    @Test
+    public void testWrap() {
+        PooledObject<Connection> actual = jdbcConnectionFactory.wrap(connection);
+
+        assertSame(connection, actual.getObject());
+    }
+
+    @Test
+    public void testValidateObject() throws SQLException {
+        PooledObject<Connection> p = jdbcConnectionFactory.wrap(connection);
+
+        when(connection.isValid(5)).thenReturn(true).thenReturn(false)
+                .thenThrow(SQLException.class);
+
+        assertTrue(jdbcConnectionFactory.validateObject(plugin, p));
+        assertFalse(jdbcConnectionFactory.validateObject(plugin, p));
+        assertFalse(jdbcConnectionFactory.validateObject(plugin, p));
+    }
+
+    @Test
+    public void testDestroyObject() throws Exception {
+        PooledObject<Connection> p = jdbcConnectionFactory.wrap(connection);
+
+        jdbcConnectionFactory.destroyObject(plugin, p);
+
+        verify(connection).close();
+    }
+}
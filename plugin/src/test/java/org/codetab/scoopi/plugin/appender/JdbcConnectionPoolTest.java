@@ -0,0 +1,30 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import org.codetab.scoopi.config.Configs;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class JdbcConnectionPoolTest {
+
+    @Test
+    public void testJdbcConnectionPool() {
+        JdbcConnectionFactory factory =
+                Mockito.mock(JdbcConnectionFactory.class);
+        Configs configs = Mockito.mock(Configs.class);
+
+        when(configs.getInt("scoopi.appender.jdbc.poolSize", 2)).thenReturn(3);
+
+        try (JdbcConnectionPool jdbcConnectionPool =
+                new JdbcConnectionPool(factory, configs)) {
+            assertSame(factory, jdbcConnectionPool.getFactory());
+            assertEquals(3, jdbcConnectionPool.getMaxTotalPerKey());
+            assertEquals(3, jdbcConnectionPool.getMaxIdlePerKey());
+            assertTrue(jdbcConnectionPool.getTestOnBorrow());
+        }
+    }
+}
@@ -67,4 +67,19 @@ public class JobFilePathTest {
         assertEquals(apricot, actual);
     }
 
+    @Test
+    public void testGetRollingPath() {
+        String actual = jobFilePath.getRollingPath("Foo", "Bar", "Baz", "Qux",
+                "Quux", "m1", 2);
+
+        assertEquals("Foo/Bar/Quux/Baz-m1-00002.Qux", actual);
+    }
+
+    @Test
+    public void testGetMergedPath() {
+        String actual = jobFilePath.getMergedPath("Foo", "Bar", "Baz", "Qux",
+                "Quux", "m1");
+
+        assertEquals("Foo/Bar/Quux/Baz-m1.Qux", actual);
+    }
 }
@@ -14,6 +14,7 @@ import java.util.concurrent.BlockingQueue;
 import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Plugin;
 import org.codetab.scoopi.model.PrintPayload;
 import org.codetab.scoopi.plugin.appender.Appender.Marker;
@@ -24,6 +25,8 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import com.codahale.metrics.Timer;
+
 public class ListAppenderTest {
     @InjectMocks
     private ListAppender listAppender;
@@ -38,6 +41,8 @@ public class ListAppenderTest {
     private BlockingQueue<PrintPayload> queue;
     @Mock
     private Plugin plugin;
+    @Mock
+    private MetricsHelper metricsHelper;
 
     @Before
     public void setUp() throws Exception {
@@ -93,10 +98,29 @@ public class ListAppenderTest {
         PrintPayload printPayload = Mockito.mock(PrintPayload.class);
         boolean initialized = true;
         listAppender.setInitialized(initialized);
+        listAppender.setName("foo");
+        Timer timer = new Timer();
+        when(metricsHelper.getTimer(listAppender, "foo", "queue", "full"))
+                .thenReturn(timer);
 
         listAppender.append(printPayload);
 
+        verify(queue).offer(printPayload);
         verify(queue).put(printPayload);
+        assertEquals(1, timer.getCount());
+    }
+
+    @Test
+    public void testAppendQueueNotFull() throws Exception {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        listAppender.setInitialized(true);
+        when(queue.offer(printPayload)).thenReturn(true);
+
+        listAppender.append(printPayload);
+
+        verify(queue, never()).put(printPayload);
+        verify(metricsHelper, never()).getTimer(listAppender, null, "queue",
+                "full");
     }
 
     @Test
@@ -0,0 +1,164 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RollingFileWriterTest {
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("scoopi-rolling");
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir.toFile());
+    }
+
+    @Test
+    public void testWriteFrame() throws IOException {
+        try (RollingFileWriter writer =
+                new RollingFileWriter(this::path, 0, 0, 0, 1024, true,
+                        Compression.NONE)) {
+            assertEquals(2, writer.write(7L, Arrays.asList("a", "b")));
+        }
+
+        assertEquals(Arrays.asList("#job 7", "a", "b", "#end 7 2"), lines(1));
+    }
+
+    @Test
+    public void testWriteEncodedStream() throws IOException {
+        try (RollingFileWriter writer =
+                new RollingFileWriter(this::path, 0, 0, 0, 1024, true,
+                        Compression.NONE)) {
+            assertEquals(2, writer.write(7L, out -> {
+                out.write("a" + System.lineSeparator());
+                out.write("b" + System.lineSeparator());
+                return 2;
+            }));
+        }
+
+        assertEquals(Arrays.asList("#job 7", "a", "b", "#end 7 2"), lines(1));
+    }
+
+    @Test
+    public void testWriteNoFrame() throws IOException {
+        try (RollingFileWriter writer =
+                new RollingFileWriter(this::path, 0, 0, 0, 1024, false,
+                        Compression.NONE)) {
+            writer.write(7L, Arrays.asList("a", "b"));
+        }
+
+        assertEquals(Arrays.asList("a", "b"), lines(1));
+    }
+
+    @Test
+    public void testRollByRecords() throws IOException {
+        try (RollingFileWriter writer =
+                new RollingFileWriter(this::path, 0, 2, 0, 1024, false,
+                        Compression.NONE)) {
+            writer.write(1L, Arrays.asList("a", "b", "c"));
+            writer.write(2L, Arrays.asList("d"));
+            writer.write(3L, Arrays.asList("e"));
+            assertEquals(2, writer.getSeq());
+        }
+
+        // job is not split across files
+        assertEquals(Arrays.asList("a", "b", "c"), lines(1));
+        assertEquals(Arrays.asList("d", "e"), lines(2));
+    }
+
+    @Test
+    public void testRollBySize() throws IOException {
+        try (RollingFileWriter writer =
+                new RollingFileWriter(this::path, 1, 0, 0, 1024, false,
+                        Compression.NONE)) {
+            writer.write(1L, Arrays.asList("a"));
+            writer.write(2L, Arrays.asList("b"));
+            assertEquals(2, writer.getSeq());
+        }
+
+        assertEquals(Arrays.asList("a"), lines(1));
+        assertEquals(Arrays.asList("b"), lines(2));
+    }
+
+    @Test
+    public void testNoFileWithoutWrite() throws IOException {
+        RollingFileWriter writer =
+                new RollingFileWriter(this::path, 0, 0, 0, 1024, true,
+                        Compression.NONE);
+        writer.close();
+
+        assertFalse(new File(path(1)).exists());
+    }
+
+    @Test
+    public void testCompressedFlushedFramesReadable() throws IOException {
+        for (Compression compression : new Compression[] {Compression.LZ4,
+                Compression.GZIP}) {
+            RollingFileWriter writer = new RollingFileWriter(this::path, 0, 0,
+                    0, 1024, false, compression);
+            writer.write(1L, Arrays.asList("a", "b"));
+            writer.flush();
+
+            // not closed, as after a crash
+            String file = path(1) + compression.getExtension();
+            assertEquals(Arrays.asList("a", "b"), readLines(file, compression));
+
+            writer.write(2L, Arrays.asList("c"));
+            writer.close();
+            assertEquals(Arrays.asList("a", "b", "c"),
+                    readLines(file, compression));
+            assertEquals(Arrays.asList(file), writer.getFiles());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLimit() {
+        new RollingFileWriter(this::path, -1, 0, 0, 1024, true,
+                Compression.NONE);
+    }
+
+    private String path(final int seq) {
+        return dir.resolve("out").resolve("data-" + seq + ".txt").toString();
+    }
+
+    private List<String> readLines(final String file,
+            final Compression compression) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = compression.unwrap(new FileInputStream(file))) {
+            byte[] buffer = new byte[1];
+            // partially written stream ends with error after flushed data
+            while (in.read(buffer) > 0) {
+                bytes.write(buffer);
+            }
+        } catch (IOException e) {
+            // read up to last flushed block
+        }
+        return Arrays.asList(bytes.toString(StandardCharsets.UTF_8.name())
+                .split(System.lineSeparator()));
+    }
+
+    private List<String> lines(final int seq) throws IOException {
+        return Files.readAllLines(new File(path(seq)).toPath(),
+                StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,147 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.appender.Appender.Marker;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class ShardedAppenderTest {
+    @InjectMocks
+    private ShardedAppender shardedAppender;
+
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Plugin plugin;
+    @Mock
+    private Appender shard;
+    @Mock
+    private Appender otherShard;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        shardedAppender.setName("Foo");
+        shardedAppender.setPlugin(plugin);
+        shardedAppender.addShard(shard);
+        shardedAppender.addShard(otherShard);
+        when(shard.isInitialized()).thenReturn(true);
+        when(otherShard.isInitialized()).thenReturn(true);
+        when(pluginDef.getValue(plugin, "merge", "false")).thenReturn("true");
+    }
+
+    @Test
+    public void testInit() {
+        shardedAppender.init();
+
+        assertTrue(shardedAppender.isInitialized());
+    }
+
+    @Test
+    public void testInitShardNotInitialized() {
+        when(otherShard.isInitialized()).thenReturn(false);
+
+        shardedAppender.init();
+
+        assertFalse(shardedAppender.isInitialized());
+    }
+
+    @Test
+    public void testAppendRoutesByJobId() throws Exception {
+        shardedAppender.init();
+        PrintPayload even = payload(2L);
+        PrintPayload odd = payload(3L);
+        PrintPayload otherEven = payload(4L);
+
+        shardedAppender.append(even);
+        shardedAppender.append(odd);
+        shardedAppender.append(otherEven);
+
+        verify(shard).append(even);
+        verify(shard).append(otherEven);
+        verify(otherShard).append(odd);
+        verify(otherShard, never()).append(even);
+    }
+
+    @Test
+    public void testAppendEndOfStream() throws Exception {
+        shardedAppender.init();
+        PrintPayload eos = Mockito.mock(PrintPayload.class);
+        when(eos.getData()).thenReturn(Marker.END_OF_STREAM);
+
+        shardedAppender.append(eos);
+
+        verify(shard).append(eos);
+        verify(otherShard).append(eos);
+    }
+
+    @Test
+    public void testAppendUninitialized() throws Exception {
+        PrintPayload printPayload = payload(2L);
+
+        shardedAppender.append(printPayload);
+
+        verify(shard, never()).append(printPayload);
+    }
+
+    @Test
+    public void testShardTasksMergeOnLastFinish() {
+        shardedAppender.init();
+        List<Runnable> tasks = shardedAppender.getShardTasks();
+        List<Appender> shards = Arrays.asList(shard, otherShard);
+
+        assertEquals(2, tasks.size());
+        tasks.get(0).run();
+        verify(shard).run();
+        verify(shard, never()).merge(shards);
+        verify(shard, never()).finish(shards);
+
+        tasks.get(1).run();
+        verify(otherShard).run();
+        verify(shard).merge(shards);
+        verify(shard).finish(shards);
+        verify(otherShard, never()).finish(shards);
+    }
+
+    @Test
+    public void testShardTasksNoMerge() {
+        when(pluginDef.getValue(plugin, "merge", "false")).thenReturn("false");
+        shardedAppender.init();
+
+        shardedAppender.getShardTasks().forEach(Runnable::run);
+
+        verify(shard, never()).merge(Arrays.asList(shard, otherShard));
+        verify(shard).finish(Arrays.asList(shard, otherShard));
+    }
+
+    @Test
+    public void testGetPoolName() {
+        assertEquals("appender-Foo", shardedAppender.getPoolName());
+    }
+
+    private PrintPayload payload(final long jobId) {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        when(printPayload.getData()).thenReturn("data");
+        when(printPayload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(jobId);
+        return printPayload;
+    }
+}
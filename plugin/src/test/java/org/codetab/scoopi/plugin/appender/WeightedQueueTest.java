@@ -0,0 +1,193 @@
+package org.codetab.scoopi.plugin.appender;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codetab.scoopi.model.PrintPayload;
+import org.codetab.scoopi.plugin.encoder.ColumnarRows;
+import org.codetab.scoopi.plugin.encoder.EncodedStream;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class WeightedQueueTest {
+
+    @Mock
+    private Backpressure backpressure;
+
+    private WeightedQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        queue = new WeightedQueue(10, backpressure);
+    }
+
+    @Test
+    public void testWeigh() {
+        assertEquals(3, WeightedQueue.weigh(createPayload("foo")));
+        assertEquals(1, WeightedQueue.weigh(createPayload("")));
+        assertEquals(7, WeightedQueue
+                .weigh(createPayload(Arrays.asList("foo", "ba"))));
+        assertEquals(WeightedQueue.OTHER_WEIGHT + 4, WeightedQueue
+                .weigh(createPayload(Arrays.asList("foo", new Object()))));
+        assertEquals(WeightedQueue.OTHER_WEIGHT,
+                WeightedQueue.weigh(createPayload(new Object())));
+
+        ColumnarRows rows = new ColumnarRows();
+        rows.addRow(Arrays.asList("a", "b"), Arrays.asList("xy", "z"));
+        rows.addRow(Arrays.asList("a"), Arrays.asList("x"));
+        // values xy, z, x, null
+        assertEquals(8, WeightedQueue.weigh(createPayload(rows)));
+    }
+
+    @Test
+    public void testWeighEncodedStream() {
+        EncodedStream unknown = out -> 0;
+        assertEquals(WeightedQueue.OTHER_WEIGHT,
+                WeightedQueue.weigh(createPayload(unknown)));
+        assertEquals(4096, WeightedQueue.weigh(
+                createPayload(EncodedStream.weighted(4096, unknown))));
+        assertEquals(1, WeightedQueue
+                .weigh(createPayload(EncodedStream.weighted(0, unknown))));
+    }
+
+    @Test
+    public void testOffer() {
+        PrintPayload first = createPayload("123456");
+        PrintPayload second = createPayload("1234");
+
+        assertTrue(queue.offer(first));
+        assertTrue(queue.offer(second));
+        assertFalse(queue.offer(createPayload("1")));
+
+        assertEquals(2, queue.size());
+        assertEquals(10, queue.getWeight());
+        assertEquals(0, queue.remainingCapacity());
+        assertSame(first, queue.peek());
+    }
+
+    @Test
+    public void testOfferOversizeWhenEmpty() {
+        PrintPayload payload = createPayload("123456789012");
+
+        assertTrue(queue.offer(payload));
+        assertFalse(queue.offer(createPayload("1")));
+        assertSame(payload, queue.poll());
+        assertEquals(0, queue.getWeight());
+    }
+
+    @Test
+    public void testOfferTimeout() throws InterruptedException {
+        queue.offer(createPayload("1234567890"));
+
+        assertFalse(queue.offer(createPayload("1"), 1, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void testPollTimeout() throws InterruptedException {
+        assertNull(queue.poll());
+        assertNull(queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPutTake() throws InterruptedException {
+        PrintPayload first = createPayload("1234567890");
+        PrintPayload second = createPayload("12345");
+        queue.put(first);
+
+        Thread consumer = new Thread(() -> {
+            try {
+                assertSame(first, queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        // blocks till consumer takes first
+        queue.put(second);
+        consumer.join();
+
+        assertSame(second, queue.take());
+        assertEquals(0, queue.getWeight());
+    }
+
+    @Test
+    public void testDrainTo() {
+        PrintPayload first = createPayload("12");
+        PrintPayload second = createPayload("34");
+        PrintPayload third = createPayload("56");
+        queue.offer(first);
+        queue.offer(second);
+        queue.offer(third);
+
+        List<PrintPayload> list = new ArrayList<>();
+        assertEquals(2, queue.drainTo(list, 2));
+        assertEquals(Arrays.asList(first, second), list);
+        assertEquals(2, queue.getWeight());
+
+        assertEquals(1, queue.drainTo(list));
+        assertEquals(Arrays.asList(first, second, third), list);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testIterator() {
+        PrintPayload first = createPayload("12");
+        PrintPayload second = createPayload("34");
+        queue.offer(first);
+        queue.offer(second);
+
+        List<PrintPayload> list = new ArrayList<>();
+        queue.iterator().forEachRemaining(list::add);
+
+        assertEquals(Arrays.asList(first, second), list);
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    public void testBackpressure() {
+        queue.offer(createPayload("12"));
+        queue.offer(createPayload("1"));
+        verify(backpressure, never()).signal(true);
+
+        // 8 of 10 is high water
+        queue.offer(createPayload("12345"));
+        verify(backpressure).signal(true);
+
+        // 6 of 10 is above low water
+        queue.poll();
+        verify(backpressure, never()).signal(false);
+
+        // 5 of 10 is low water
+        queue.poll();
+        queue.offer(createPayload("1234"));
+
+        InOrder inOrder = inOrder(backpressure);
+        inOrder.verify(backpressure).signal(true);
+        inOrder.verify(backpressure).signal(false);
+        inOrder.verify(backpressure).signal(true);
+    }
+
+    private PrintPayload createPayload(final Object data) {
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        when(printPayload.getData()).thenReturn(data);
+        return printPayload;
+    }
+}
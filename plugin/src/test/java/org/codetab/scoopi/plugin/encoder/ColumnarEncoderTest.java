@@ -0,0 +1,102 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.Axis;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.TaskInfo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class ColumnarEncoderTest {
+    @InjectMocks
+    private ColumnarEncoder columnarEncoder;
+
+    @Mock
+    private TaskInfo taskInfo;
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Plugin plugin;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        columnarEncoder.setPlugin(plugin);
+    }
+
+    @Test
+    public void testEncode() {
+        Data data = Mockito.mock(Data.class);
+        Item item = Mockito.mock(Item.class);
+        List<Item> items = new ArrayList<>();
+        items.add(item);
+        Axis fact = new Axis("fact", "price");
+        fact.setValue("10");
+        Axis date = new Axis("date", "date");
+        date.setValue("2020-01-10");
+
+        when(pluginDef.getValue(plugin, "includeTags", "false"))
+                .thenReturn("false");
+        when(data.getItems()).thenReturn(items);
+        when(taskInfo.getName()).thenReturn("Foo");
+        when(taskInfo.getGroup()).thenReturn("Bar");
+        when(item.getAxes()).thenReturn(Arrays.asList(fact, date));
+
+        ColumnarRows actual = columnarEncoder.encode(data);
+
+        assertEquals(Arrays.asList("task", "group", "fact", "date"),
+                actual.getColumns());
+        assertEquals(1, actual.size());
+        assertEquals("Foo", actual.getValue(0, 0));
+        assertEquals("Bar", actual.getValue(0, 1));
+        assertEquals("10", actual.getValue(0, 2));
+        assertEquals("2020-01-10", actual.getValue(0, 3));
+    }
+
+    @Test
+    public void testEncodeIncludeTags() {
+        Data data = Mockito.mock(Data.class);
+        Data parent = Mockito.mock(Data.class);
+        Item item = Mockito.mock(Item.class);
+        List<Item> items = new ArrayList<>();
+        items.add(item);
+
+        when(pluginDef.getValue(plugin, "includeTags", "false"))
+                .thenReturn("true");
+        when(data.getItems()).thenReturn(items);
+        when(taskInfo.getName()).thenReturn("Foo");
+        when(taskInfo.getGroup()).thenReturn("Bar");
+        when(item.getParent()).thenReturn(parent);
+        when(parent.getTagValue("page")).thenReturn("page-tag");
+        when(parent.getTagValue("index")).thenReturn(null);
+        when(parent.getTagValue("item")).thenReturn("item-tag");
+        when(item.getAxes()).thenReturn(new ArrayList<>());
+
+        ColumnarRows actual = columnarEncoder.encode(data);
+
+        assertEquals(Arrays.asList("task", "group", "page", "index", "item"),
+                actual.getColumns());
+        assertEquals("page-tag", actual.getValue(0, 2));
+        assertEquals(null, actual.getValue(0, 3));
+        assertEquals("item-tag", actual.getValue(0, 4));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEncodePluginNotSet() {
+        columnarEncoder.setPlugin(null);
+        columnarEncoder.encode(Mockito.mock(Data.class));
+    }
+}
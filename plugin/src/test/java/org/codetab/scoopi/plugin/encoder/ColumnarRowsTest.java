@@ -0,0 +1,45 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ColumnarRowsTest {
+
+    @Test
+    public void testAddRowNewColumn() {
+        ColumnarRows rows = new ColumnarRows();
+        rows.addRow(Arrays.asList("a", "b"), Arrays.asList("1", "2"));
+        rows.addRow(Arrays.asList("b", "c"), Arrays.asList("3", "4"));
+
+        assertEquals(Arrays.asList("a", "b", "c"), rows.getColumns());
+        assertEquals(2, rows.size());
+        assertEquals("1", rows.getValue(0, 0));
+        assertNull(rows.getValue(0, 2));
+        assertNull(rows.getValue(1, 0));
+        assertEquals("3", rows.getValue(1, 1));
+        assertEquals("4", rows.getValue(1, 2));
+    }
+
+    @Test
+    public void testAddRows() {
+        ColumnarRows other = new ColumnarRows();
+        other.addRow(Arrays.asList("b"), Arrays.asList("1"));
+        ColumnarRows rows = new ColumnarRows();
+        rows.addRow(Arrays.asList("a"), Arrays.asList("0"));
+
+        rows.addRows(other);
+
+        assertEquals(Arrays.asList("a", "b"), rows.getColumns());
+        assertEquals(2, rows.size());
+        assertEquals("1", rows.getValue(1, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddRowSizeMismatch() {
+        new ColumnarRows().addRow(Arrays.asList("a"), Arrays.asList());
+    }
+}
@@ -0,0 +1,131 @@
+package org.codetab.scoopi.plugin.encoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codetab.scoopi.defs.IPluginDef;
+import org.codetab.scoopi.model.Axis;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
+import org.codetab.scoopi.model.Plugin;
+import org.codetab.scoopi.model.TaskInfo;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class CsvStreamEncoderTest {
+    @InjectMocks
+    private CsvStreamEncoder csvStreamEncoder;
+
+    @Mock
+    private TaskInfo taskInfo;
+    @Mock
+    private IPluginDef pluginDef;
+    @Mock
+    private Plugin plugin;
+
+    private static final String EOL = System.lineSeparator();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        csvStreamEncoder.setPlugin(plugin);
+        when(pluginDef.getValue(plugin, "delimiter", ",")).thenReturn(",");
+        when(pluginDef.getValue(plugin, "includeTags", "false"))
+                .thenReturn("false");
+        when(taskInfo.getName()).thenReturn("Foo");
+        when(taskInfo.getGroup()).thenReturn("Bar");
+    }
+
+    @Test
+    public void testEncode() throws IOException {
+        Data data = data("Baz", "Qux");
+        StringWriter out = new StringWriter();
+
+        int actual = csvStreamEncoder.encode(data).writeTo(out);
+
+        assertEquals(2, actual);
+        assertEquals("Foo,Bar,Baz" + EOL + "Foo,Bar,Qux" + EOL,
+                out.toString());
+    }
+
+    @Test
+    public void testEncodeEscape() throws IOException {
+        Data data = data("a,b", "say \"hi\"", "line\nbreak", null);
+        StringWriter out = new StringWriter();
+
+        csvStreamEncoder.encode(data, out);
+
+        assertEquals(String.join(EOL, "Foo,Bar,\"a,b\"",
+                "Foo,Bar,\"say \"\"hi\"\"\"", "Foo,Bar,\"line\nbreak\"",
+                "Foo,Bar,") + EOL, out.toString());
+    }
+
+    @Test
+    public void testEncodeIncludeTags() throws IOException {
+        Data data = data("Baz");
+        Data parent = Mockito.mock(Data.class);
+        Item item = data.getItems().get(0);
+
+        when(pluginDef.getValue(plugin, "includeTags", "false"))
+                .thenReturn("true");
+        when(item.getParent()).thenReturn(parent);
+        when(parent.getTagValue("page")).thenReturn("p");
+        when(parent.getTagValue("index")).thenReturn(1);
+        when(parent.getTagValue("item")).thenReturn(null);
+        StringWriter out = new StringWriter();
+
+        csvStreamEncoder.encode(data).writeTo(out);
+
+        assertEquals("Foo,Bar,p,1,,Baz" + EOL, out.toString());
+    }
+
+    @Test
+    public void testEncodeResolvesTaskInfoOnEncode() throws IOException {
+        Data data = data("Baz");
+
+        EncodedStream stream = csvStreamEncoder.encode(data);
+        when(taskInfo.getName()).thenReturn("Other");
+        StringWriter out = new StringWriter();
+        stream.writeTo(out);
+
+        assertEquals("Foo,Bar,Baz" + EOL, out.toString());
+    }
+
+    @Test
+    public void testEncodeWeight() throws IOException {
+        // first record Foo,Bar,Baz and EOL, for each item
+        assertEquals(3 * (11 + EOL.length()),
+                csvStreamEncoder.encode(data("Baz", "Qux", "x")).weight());
+        assertEquals(0, csvStreamEncoder.encode(data()).weight());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEncodePluginNotSet() {
+        csvStreamEncoder.setPlugin(null);
+        csvStreamEncoder.encode(Mockito.mock(Data.class));
+    }
+
+    private Data data(final String... values) {
+        Data data = Mockito.mock(Data.class);
+        List<Item> items = new ArrayList<>();
+        for (String value : values) {
+            Item item = Mockito.mock(Item.class);
+            Axis axis = new Axis("fact", "price");
+            axis.setValue(value);
+            when(item.getAxes()).thenReturn(Arrays.asList(axis));
+            items.add(item);
+        }
+        when(data.getItems()).thenReturn(items);
+        return data;
+    }
+}
@@ -9,6 +9,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
@@ -71,6 +72,49 @@ public class EncodersTest {
         verify(errors, never()).inc();
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCreateEncodersShared() throws Exception {
+        Plugin csvPlugin = Mockito.mock(Plugin.class);
+        Plugin listPlugin = Mockito.mock(Plugin.class);
+        Plugin dbPlugin = Mockito.mock(Plugin.class);
+        List<Plugin> plugins = new ArrayList<>();
+        plugins.add(csvPlugin);
+        plugins.add(listPlugin);
+        plugins.add(dbPlugin);
+
+        String stepName = "Bar";
+        Plugin csvEncoderPlugin = createEncoderPlugin("Csv", "{csv}");
+        Plugin listEncoderPlugin = createEncoderPlugin("Csv", "{csv}");
+        Plugin dbEncoderPlugin = createEncoderPlugin("Csv", "{tab}");
+        @SuppressWarnings("rawtypes")
+        IEncoder encoder = Mockito.mock(IEncoder.class);
+        @SuppressWarnings("rawtypes")
+        IEncoder dbEncoder = Mockito.mock(IEncoder.class);
+
+        when(csvPlugin.getName()).thenReturn("csv");
+        when(listPlugin.getName()).thenReturn("list");
+        when(dbPlugin.getName()).thenReturn("db");
+        when(pluginDef.getPlugins(csvPlugin))
+                .thenReturn(Optional.of(Arrays.asList(csvEncoderPlugin)));
+        when(pluginDef.getPlugins(listPlugin))
+                .thenReturn(Optional.of(Arrays.asList(listEncoderPlugin)));
+        when(pluginDef.getPlugins(dbPlugin))
+                .thenReturn(Optional.of(Arrays.asList(dbEncoderPlugin)));
+        when(encoderFactory.createEncoder(csvEncoderPlugin))
+                .thenReturn(encoder);
+        when(encoderFactory.createEncoder(dbEncoderPlugin))
+                .thenReturn(dbEncoder);
+
+        encoders.createEncoders(plugins, "Foo", stepName);
+
+        assertEquals(3, encoders.size());
+        assertSame(encoder, encoders.get(dashit(stepName, "csv")).get(0));
+        assertSame(encoder, encoders.get(dashit(stepName, "list")).get(0));
+        assertSame(dbEncoder, encoders.get(dashit(stepName, "db")).get(0));
+        verify(encoderFactory, never()).createEncoder(listEncoderPlugin);
+    }
+
     @Test
     public void testCreateEncodersEncoderPluginsNotPresent() throws Exception {
         List<Plugin> plugins = new ArrayList<>();
@@ -169,4 +213,12 @@ public class EncodersTest {
 
         verify(errors).inc();
     }
+
+    private Plugin createEncoderPlugin(final String className,
+            final String defJson) {
+        Plugin plugin = Mockito.mock(Plugin.class);
+        when(plugin.getClassName()).thenReturn(className);
+        when(plugin.getDefJson()).thenReturn(defJson);
+        return plugin;
+    }
 }
@@ -0,0 +1,70 @@
+package org.codetab.scoopi.pool;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * <p>
+ * Lock-free count of tasks submitted to and completed by a pool. Both counts
+ * only grow and a task is in flight till completed count catches up with
+ * submitted count.
+ * @author Maithilish
+ *
+ */
+@ThreadSafe
+public class PoolCounter {
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * <p>
+     * Count a task submitted to pool. Call before handing the task to pool.
+     */
+    public void submitted() {
+        submitted.increment();
+    }
+
+    /**
+     * <p>
+     * Count a task completed, either normally, with exception or rejected by
+     * the pool.
+     */
+    public void completed() {
+        completed.increment();
+    }
+
+    /**
+     * <p>
+     * Is no task in flight.
+     * <p>
+     * Completed is read before submitted. Submit of a task happens before its
+     * completion, so submitted read afterwards includes every completion
+     * already seen and the check never turns true while a task submitted
+     * earlier is still running.
+     * @return true if all submitted tasks are completed
+     */
+    public boolean isIdle() {
+        long done = completed.sum();
+        return submitted.sum() == done;
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    /**
+     * <p>
+     * Get approximate count of tasks in flight.
+     * @return in flight count
+     */
+    public long getInFlight() {
+        long done = completed.sum();
+        return submitted.sum() - done;
+    }
+}
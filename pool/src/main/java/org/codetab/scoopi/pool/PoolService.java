@@ -1,11 +1,11 @@
 package org.codetab.scoopi.pool;
 
+import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.Validate.notNull;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -14,9 +14,6 @@ import javax.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.google.common.util.concurrent.Uninterruptibles;
-
-import net.jcip.annotations.GuardedBy;
 import net.jcip.annotations.ThreadSafe;
 
 /**
@@ -35,17 +32,26 @@ public abstract class PoolService {
     private Pools pools;
 
     /**
-     * futures - shared state variable.
+     * submitted and completed task counts by pool name.
+     */
+    private final Map<String, PoolCounter> counters;
+
+    /**
+     * signalled when all pools turn idle.
+     */
+    private final Object idleLock = new Object();
+
+    /**
+     * called when all pools turn idle.
      */
-    @GuardedBy("this")
-    private List<NamedFuture> futures;
+    private volatile Runnable idleListener;
 
     /**
      * <p>
      * Constructor.
      */
     protected PoolService() {
-        futures = new ArrayList<>();
+        counters = new ConcurrentHashMap<>();
     }
 
     /**
@@ -55,8 +61,7 @@ public abstract class PoolService {
      *            pool name, not null
      * @param task
      *            runnable task, not null
-     * @return true if future returned by pool is successfully added to list of
-     *         futures.
+     * @return true if task is scheduled for execution.
      * @throws RejectedExecutionException
      *             if task is not scheduled for execution.
      */
@@ -65,35 +70,133 @@ public abstract class PoolService {
 
         notNull(poolName, "poolName must not be null");
         notNull(task, "task must not be null");
-        ExecutorService pool = pools.getPool(poolName, this);
-        Future<?> f = pool.submit(task);
-        NamedFuture nf = new NamedFuture(poolName, f);
-        synchronized (this) {
-            return futures.add(nf);
+        return submit(poolName, pools.getPool(poolName, this), task);
+    }
+
+    /**
+     * <p>
+     * Submit task to a pool, the pool, if not exists, is created with
+     * poolSize threads instead of size from config.
+     * @param poolName
+     *            pool name, not null
+     * @param poolSize
+     *            size of pool
+     * @param task
+     *            runnable task, not null
+     * @return true if task is scheduled for execution.
+     * @throws RejectedExecutionException
+     *             if task is not scheduled for execution.
+     */
+    public boolean submit(final String poolName, final int poolSize,
+            final Runnable task) throws RejectedExecutionException {
+
+        notNull(poolName, "poolName must not be null");
+        notNull(task, "task must not be null");
+        return submit(poolName, pools.getPool(poolName, poolSize, this), task);
+    }
+
+    private boolean submit(final String poolName, final ExecutorService pool,
+            final Runnable task) {
+        PoolCounter counter = getCounter(poolName);
+        counter.submitted();
+        try {
+            pool.submit(() -> {
+                try {
+                    task.run();
+                } finally {
+                    counter.completed();
+                    signalIfIdle(counter);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            counter.completed();
+            signalIfIdle(counter);
+            throw e;
         }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Set listener that is called, on the pool thread which completed the last
+     * task, whenever all pools turn idle. Listener should hand off any heavy
+     * work to its own thread.
+     * @param listener
+     *            idle listener
+     */
+    public void setIdleListener(final Runnable listener) {
+        this.idleListener = listener;
     }
 
     /**
      * <p>
      * Is all tasks are completed.
      * <p>
-     * Remove completed futures and check futures list is empty. Calling method
-     * has to ensure synchronization.
+     * Lock-free check of submitted and completed counts of all pools, cost
+     * doesn't grow with number of tasks and it never blocks the submitters.
+     * <p>
+     * Completed counts of all pools are summed before submitted counts. A task
+     * that submits to another pool does so before it completes, so when its
+     * completion is in the first sum, the submit is in the second and pools
+     * are not seen idle while the submitted task is in flight, which checking
+     * pool by pool allows.
      * @return true if all tasks are done
      */
     public final boolean isDone() {
-        synchronized (this) {
-            futures.removeIf(NamedFuture::isDone);
-            return futures.isEmpty();
+        long completed = 0;
+        for (PoolCounter counter : counters.values()) {
+            completed += counter.getCompleted();
+        }
+        long submitted = 0;
+        for (PoolCounter counter : counters.values()) {
+            submitted += counter.getSubmitted();
+        }
+        return completed >= submitted;
+    }
+
+    /**
+     * <p>
+     * Get count of tasks in flight in a pool.
+     * @param poolName
+     *            pool name
+     * @return in flight count, zero if no task is submitted to pool
+     */
+    public long getInFlight(final String poolName) {
+        PoolCounter counter = counters.get(poolName);
+        if (counter == null) {
+            return 0;
+        }
+        return counter.getInFlight();
+    }
+
+    private void signalIfIdle(final PoolCounter counter) {
+        if (counter.isIdle() && isDone()) {
+            synchronized (idleLock) {
+                idleLock.notifyAll();
+            }
+            Runnable listener = idleListener;
+            if (nonNull(listener)) {
+                listener.run();
+            }
         }
     }
 
+    private PoolCounter getCounter(final String poolName) {
+        // avoid bin lock of computeIfAbsent when counter exists
+        PoolCounter counter = counters.get(poolName);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(poolName,
+                    k -> new PoolCounter());
+        }
+        return counter;
+    }
+
     /**
      * <p>
      * Gracefully wait for completion.
      * <p>
      * <ul>
-     * <li>A. loop until all tasks are done.
+     * <li>A. wait until all tasks are done.
      * <li>B. shutdown all pool. [synchronized block]
      * <li>C. wait for all running tasks to complete.
      * </ul>
@@ -103,20 +206,31 @@ public abstract class PoolService {
      * further tasks are accepted by pools. C waits for leftover tasks to
      * finish.
      * <p>
+     * A is woken up by the task which turns pools idle, the timed wait is
+     * just a safety net.
      */
     public void waitForFinish() {
-        final long spinSleep = 1000;
-        while (!isDone()) {
-            Uninterruptibles.sleepUninterruptibly(spinSleep,
-                    TimeUnit.MILLISECONDS);
+        final long idleWait = 1000;
+        boolean interrupted = false;
+        synchronized (idleLock) {
+            while (!isDone()) {
+                try {
+                    idleLock.wait(idleWait);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
         }
 
         pools.shutdownAll();
 
-        while (!pools.isAllTerminated()) {
-            Uninterruptibles.sleepUninterruptibly(spinSleep,
-                    TimeUnit.MILLISECONDS);
+        if (!pools.awaitAllTermination(idleWait)) {
+            interrupted = true;
         }
         LOG.info("pools shutdown complete");
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
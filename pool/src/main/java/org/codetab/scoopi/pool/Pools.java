@@ -5,6 +5,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 
@@ -64,7 +65,26 @@ public class Pools {
             final int defaultPoolSize = 4;
             final String key = "scoopi.poolsize." + poolName; //$NON-NLS-1$
             int poolSize = configs.getInt(key, defaultPoolSize);
+            executor = getPool(poolName, poolSize, guageClz);
+        }
+        return executor;
+    }
 
+    /**
+     * <p>
+     * If poolName is found in executorsMap the ExecutorService is returned.
+     * Otherwise, new FixedThreadPool of poolSize, which is not looked up in
+     * config, is created and added to map and returned.
+     * @param poolName
+     *            pool to return
+     * @param poolSize
+     *            size of new pool
+     * @return executerService
+     */
+    public ExecutorService getPool(final String poolName, final int poolSize,
+            final Object guageClz) {
+        ExecutorService executor = executorsMap.get(poolName);
+        if (executor == null) {
             // lazy init with correct form of double-checked locking idiom
             synchronized (this) {
                 if (executorsMap.containsKey(poolName)) {
@@ -102,4 +122,26 @@ public class Pools {
         return executorsMap.values().stream()
                 .allMatch(ExecutorService::isTerminated);
     }
+
+    /**
+     * <p>
+     * Wait, uninterruptibly, till all executors are terminated. Calling method
+     * has to shutdown executors before the wait.
+     * @param timeout
+     *            wait in millis for an executor before it is checked again
+     * @return false if interrupted while waiting
+     */
+    public boolean awaitAllTermination(final long timeout) {
+        boolean interrupted = false;
+        while (!isAllTerminated()) {
+            for (ExecutorService executor : executorsMap.values()) {
+                try {
+                    executor.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        return !interrupted;
+    }
 }
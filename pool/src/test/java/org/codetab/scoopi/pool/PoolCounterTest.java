@@ -0,0 +1,46 @@
+package org.codetab.scoopi.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PoolCounterTest {
+
+    private PoolCounter poolCounter;
+
+    @Before
+    public void setUp() throws Exception {
+        poolCounter = new PoolCounter();
+    }
+
+    @Test
+    public void testIsIdle() {
+        assertTrue(poolCounter.isIdle());
+
+        poolCounter.submitted();
+        poolCounter.submitted();
+        assertFalse(poolCounter.isIdle());
+
+        poolCounter.completed();
+        assertFalse(poolCounter.isIdle());
+
+        poolCounter.completed();
+        assertTrue(poolCounter.isIdle());
+    }
+
+    @Test
+    public void testGetInFlight() {
+        assertEquals(0, poolCounter.getInFlight());
+
+        poolCounter.submitted();
+        poolCounter.submitted();
+        poolCounter.completed();
+
+        assertEquals(1, poolCounter.getInFlight());
+        assertEquals(2, poolCounter.getSubmitted());
+        assertEquals(1, poolCounter.getCompleted());
+    }
+}
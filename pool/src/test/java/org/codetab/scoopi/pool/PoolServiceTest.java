@@ -0,0 +1,207 @@
+package org.codetab.scoopi.pool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+public class PoolServiceTest {
+    @InjectMocks
+    private TestPoolService poolService;
+
+    @Mock
+    private Pools pools;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testSubmitAndIsDone() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable task = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        when(pools.getPool("foo", poolService)).thenReturn(executor);
+
+        assertTrue(poolService.isDone());
+
+        assertTrue(poolService.submit("foo", task));
+        started.await(1, TimeUnit.SECONDS);
+
+        assertFalse(poolService.isDone());
+        assertEquals(1, poolService.getInFlight("foo"));
+
+        release.countDown();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        assertTrue(poolService.isDone());
+        assertEquals(0, poolService.getInFlight("foo"));
+        assertEquals(0, poolService.getInFlight("bar"));
+    }
+
+    @Test
+    public void testSubmitTaskThrowsException() throws Exception {
+        Runnable task = () -> {
+            throw new IllegalStateException("foo");
+        };
+
+        when(pools.getPool("foo", poolService)).thenReturn(executor);
+
+        poolService.submit("foo", task);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        assertTrue(poolService.isDone());
+    }
+
+    @Test
+    public void testSubmitPoolSize() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        Runnable task = () -> done.countDown();
+
+        when(pools.getPool("foo", 2, poolService)).thenReturn(executor);
+
+        assertTrue(poolService.submit("foo", 2, task));
+        done.await(1, TimeUnit.SECONDS);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        verify(pools, never()).getPool("foo", poolService);
+        assertTrue(poolService.isDone());
+    }
+
+    @Test
+    public void testIsDoneTaskSubmitsToOtherPool() throws Exception {
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch submitted = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        when(pools.getPool("foo", poolService)).thenReturn(executor);
+        when(pools.getPool("bar", poolService)).thenReturn(other);
+
+        poolService.submit("foo", () -> {
+            poolService.submit("bar", blocked);
+            submitted.countDown();
+        });
+        submitted.await(1, TimeUnit.SECONDS);
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+
+        // foo is idle, task it submitted to bar is in flight
+        assertEquals(0, poolService.getInFlight("foo"));
+        assertFalse(poolService.isDone());
+
+        release.countDown();
+        other.shutdown();
+        other.awaitTermination(1, TimeUnit.SECONDS);
+
+        assertTrue(poolService.isDone());
+    }
+
+    @Test
+    public void testSubmitRejected() {
+        ExecutorService pool = Mockito.mock(ExecutorService.class);
+        when(pools.getPool("foo", poolService)).thenReturn(pool);
+        when(pool.submit(any(Runnable.class)))
+                .thenThrow(RejectedExecutionException.class);
+
+        assertThrows(RejectedExecutionException.class,
+                () -> poolService.submit("foo", () -> {
+                }));
+
+        assertTrue(poolService.isDone());
+    }
+
+    @Test
+    public void testSubmitNullParams() {
+        assertThrows(NullPointerException.class,
+                () -> poolService.submit(null, () -> {
+                }));
+        assertThrows(NullPointerException.class,
+                () -> poolService.submit("foo", null));
+    }
+
+    @Test
+    public void testIdleListener() throws Exception {
+        CountDownLatch idle = new CountDownLatch(1);
+
+        when(pools.getPool("foo", poolService)).thenReturn(executor);
+
+        poolService.setIdleListener(idle::countDown);
+        poolService.submit("foo", () -> {
+        });
+
+        assertTrue(idle.await(1, TimeUnit.SECONDS));
+        assertTrue(poolService.isDone());
+    }
+
+    @Test
+    public void testWaitForFinish() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        when(pools.getPool("foo", poolService)).thenReturn(executor);
+        when(pools.awaitAllTermination(1000)).thenReturn(true);
+
+        poolService.submit("foo", () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        new Thread(release::countDown).start();
+
+        poolService.waitForFinish();
+
+        assertTrue(poolService.isDone());
+        assertFalse(Thread.currentThread().isInterrupted());
+        verify(pools).shutdownAll();
+        verify(pools).awaitAllTermination(1000);
+    }
+
+    static class TestPoolService extends PoolService {
+    }
+}
@@ -0,0 +1,14 @@
+package org.codetab.scoopi.step;
+
+/**
+ * <p>
+ * Marker of steps that only compute on the output of previous step, such as
+ * parser, filter and converter. When task fuse is enabled, a CPU bound step
+ * that follows another CPU bound step is run inline by the task of the
+ * previous step. Steps that do I/O, such as loader and appender, are never
+ * fused, so they keep to their own pools and limits.
+ * @author m
+ *
+ */
+public interface ICpuBoundStep extends IStep {
+}
@@ -23,6 +23,13 @@ public interface IStep {
 
     Payload getPayload();
 
+    /**
+     * <p>
+     * Payload of next step when it is fused with this step.
+     * @return payload to run inline or null if handed over to task mediator
+     */
+    Payload getFusedPayload();
+
     void setOutput(Object data);
 
     Object getOutput();
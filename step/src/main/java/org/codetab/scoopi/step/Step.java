@@ -45,6 +45,7 @@ public abstract class Step implements IStep {
 
     private Object output;
     private Payload payload;
+    private Payload fusedPayload;
     private String stepLabel;
     protected Marker jobMarker;
     protected Marker jobAbortedMarker;
@@ -74,7 +75,12 @@ public abstract class Step implements IStep {
                         taskDef.getNextStep(group, taskName, stepName);
                 final Payload nextStepPayload =
                         factory.createPayload(getJobInfo(), nextStep, output);
-                taskMediator.pushPayload(nextStepPayload);
+                if (taskMediator.isFused(this, nextStep)) {
+                    // task runs it inline
+                    fusedPayload = nextStepPayload;
+                } else {
+                    taskMediator.pushPayload(nextStepPayload);
+                }
                 LOG.debug(jobMarker, "{} handover to step: {}", getLabel(),
                         nextStep.getStepName());
             }
@@ -107,6 +113,11 @@ public abstract class Step implements IStep {
         this.payload = payload;
     }
 
+    @Override
+    public Payload getFusedPayload() {
+        return fusedPayload;
+    }
+
     @Override
     public JobInfo getJobInfo() {
         return payload.getJobInfo();
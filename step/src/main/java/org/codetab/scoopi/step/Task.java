@@ -1,5 +1,8 @@
 package org.codetab.scoopi.step;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
 import javax.inject.Inject;
 
 import org.apache.logging.log4j.LogManager;
@@ -11,8 +14,10 @@ import org.codetab.scoopi.exception.StepRunException;
 import org.codetab.scoopi.metrics.Errors;
 import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.ERROR;
+import org.codetab.scoopi.model.Payload;
 import org.codetab.scoopi.model.TaskInfo;
 import org.codetab.scoopi.step.mediator.JobMediator;
+import org.codetab.scoopi.step.mediator.TaskFactory;
 
 import com.codahale.metrics.Timer.Context;
 
@@ -28,6 +33,8 @@ public class Task implements Runnable {
     private TaskInfo taskInfo;
     @Inject
     private JobMediator jobMediator;
+    @Inject
+    private TaskFactory taskFactory;
 
     private IStep step;
 
@@ -39,48 +46,78 @@ public class Task implements Runnable {
         return step;
     }
 
+    /**
+     * <p>
+     * Run the step and, when next step is fused with it, run the next step
+     * inline on the same thread till a step hands over its output to task
+     * mediator or job ends.
+     */
     @Override
     public void run() {
+        IStep current = step;
+        while (nonNull(current)) {
+            current = execute(current);
+        }
+    }
+
+    private IStep execute(final IStep current) {
 
-        Marker jobMarker = step.getJobMarker();
-        Marker jobAbortedMarker = step.getJobAbortedMarker();
-        String stepLabel = step.getLabel();
-        taskInfo.setJobInfo(step.getJobInfo());
+        Marker jobMarker = current.getJobMarker();
+        Marker jobAbortedMarker = current.getJobAbortedMarker();
+        String stepLabel = current.getLabel();
+        taskInfo.setJobInfo(current.getJobInfo());
 
         try {
             Context taskTimer =
-                    metricsHelper.getTimer(step, "task", "time").time();
+                    metricsHelper.getTimer(current, "task", "time").time();
 
-            step.setup();
-            step.initialize();
+            current.setup();
+            current.initialize();
 
             LOG.trace(jobMarker, "execute {}", stepLabel);
 
-            step.load();
-            step.process();
-            step.store();
-            step.handover();
+            current.load();
+            current.process();
+            current.store();
+            current.handover();
 
             LOG.trace(jobMarker, "finish {}", stepLabel);
 
             taskTimer.stop();
+
+            return nextStep(current);
         } catch (JobRunException e) {
             try {
-                long jobId = step.getJobInfo().getId();
+                long jobId = current.getJobInfo().getId();
                 jobMediator.resetTakenJob(jobId);
             } catch (Exception e1) {
                 errors.inc();
                 LOG.error(jobAbortedMarker, "{} [{}]",
-                        step.getLabeled(e.getMessage()), ERROR.DATAERROR, e1);
+                        current.getLabeled(e.getMessage()), ERROR.DATAERROR,
+                        e1);
             }
         } catch (StepRunException | StepPersistenceException e) {
             errors.inc();
             LOG.error(jobAbortedMarker, "{} [{}]",
-                    step.getLabeled(e.getMessage()), ERROR.DATAERROR, e);
+                    current.getLabeled(e.getMessage()), ERROR.DATAERROR, e);
         } catch (Exception e) {
             errors.inc();
             LOG.error(jobAbortedMarker, "{} [{}]",
-                    step.getLabeled(e.getMessage()), ERROR.DATAERROR, e);
+                    current.getLabeled(e.getMessage()), ERROR.DATAERROR, e);
+        }
+        return null;
+    }
+
+    private IStep nextStep(final IStep current) throws ClassNotFoundException,
+            InstantiationException, IllegalAccessException {
+        Payload fusedPayload = current.getFusedPayload();
+        if (isNull(fusedPayload)) {
+            return null;
         }
+        String clzName = fusedPayload.getStepInfo().getClassName();
+        IStep next = taskFactory.createStep(clzName);
+        next.setPayload(fusedPayload);
+        metricsHelper.getMeter(this, "payload", "fused").mark();
+        return next;
     }
 }
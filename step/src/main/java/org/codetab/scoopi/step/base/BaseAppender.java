@@ -4,7 +4,12 @@ import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.Validate.validState;
 import static org.codetab.scoopi.util.Util.spaceit;
 
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 
 import javax.inject.Inject;
@@ -12,12 +17,15 @@ import javax.inject.Inject;
 import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.exception.StepRunException;
 import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
 import org.codetab.scoopi.model.Plugin;
 import org.codetab.scoopi.model.PrintPayload;
 import org.codetab.scoopi.plugin.appender.Appender;
 import org.codetab.scoopi.plugin.appender.Appenders;
 import org.codetab.scoopi.plugin.encoder.Encoders;
 import org.codetab.scoopi.plugin.encoder.IEncoder;
+import org.codetab.scoopi.plugin.encoder.IItemEncoder;
+import org.codetab.scoopi.plugin.encoder.IItemEncoder.ItemSink;
 import org.codetab.scoopi.step.Step;
 
 public abstract class BaseAppender extends Step {
@@ -70,13 +78,105 @@ public abstract class BaseAppender extends Step {
 
     protected Object encode(final List<IEncoder<?>> encodersList)
             throws Exception {
-        Object obj = data;
-        for (IEncoder<?> encoder : encodersList) {
+        return encode(encodersList, data);
+    }
+
+    /**
+     * Encode data with encoders of appender. Each encoder takes Data, so
+     * encoders can't be chained and output of last encoder is what is
+     * appended; only the last encoder is run.
+     * @param encodersList
+     *            encoders of appender
+     * @param encodeData
+     *            data to encode
+     * @return output of last encoder, data if there is no encoder
+     * @throws Exception
+     *             encode error
+     */
+    protected Object encode(final List<IEncoder<?>> encodersList,
+            final Data encodeData) throws Exception {
+        if (encodersList.isEmpty()) {
+            return encodeData;
+        }
+        return encodersList.get(encodersList.size() - 1).encode(encodeData);
+    }
+
+    /**
+     * Encode data, output of an encoder is reused for other appenders that
+     * share the encoder, see {@link Encoders}.
+     * @param encodersList
+     *            encoders of appender
+     * @param encoded
+     *            output of encoders run so far, by encoder
+     * @return output of last encoder, data if there is no encoder
+     * @throws Exception
+     *             encode error
+     */
+    protected Object encode(final List<IEncoder<?>> encodersList,
+            final Map<IEncoder<?>, Object> encoded) throws Exception {
+        if (encodersList.isEmpty()) {
+            return data;
+        }
+        IEncoder<?> encoder = encodersList.get(encodersList.size() - 1);
+        Object obj = encoded.get(encoder);
+        if (obj == null) {
             obj = encoder.encode(data);
+            encoded.put(encoder, obj);
         }
         return obj;
     }
 
+    /**
+     * Encode data with each of the encoders in one pass over its items. Item
+     * encoders are fed each item in turn, other encoders encode whole data.
+     * Output is put to encoded, by encoder; encoder that fails is left out,
+     * so that appender that uses it encodes again, see
+     * {@link #encode(List, Map)}, and handles the error.
+     * @param encodersToRun
+     *            distinct encoders, those in encoded are skipped
+     * @param encoded
+     *            output of encoders, by encoder
+     */
+    protected void encodeAll(final Collection<IEncoder<?>> encodersToRun,
+            final Map<IEncoder<?>, Object> encoded) {
+        Map<IEncoder<?>, ItemSink<?>> sinks = new IdentityHashMap<>();
+        for (IEncoder<?> encoder : encodersToRun) {
+            if (encoded.containsKey(encoder)) {
+                continue;
+            }
+            try {
+                if (encoder instanceof IItemEncoder) {
+                    sinks.put(encoder,
+                            ((IItemEncoder<?>) encoder).start(data));
+                } else {
+                    encoded.put(encoder, encoder.encode(data));
+                }
+            } catch (Exception e) {
+                // left out, encoded again by appender
+            }
+        }
+        if (sinks.isEmpty()) {
+            return;
+        }
+        for (Item item : data.getItems()) {
+            Iterator<ItemSink<?>> it = sinks.values().iterator();
+            while (it.hasNext()) {
+                try {
+                    it.next().accept(item);
+                } catch (Exception e) {
+                    it.remove();
+                }
+            }
+        }
+        for (Entry<IEncoder<?>, ItemSink<?>> entry : sinks.entrySet()) {
+            try {
+                encoded.put(entry.getKey(), entry.getValue().finish());
+            } catch (Exception e) {
+                // left out, encoded again by appender
+            }
+        }
+    }
+
     @Override
     public void load() {
     }
@@ -177,9 +177,10 @@ public abstract class BaseLoader extends Step {
             // no active document, create new one
             byte[] documentObject = null;
             try {
-                fetchThrottle.acquirePermit();
+                String url = locator.getUrl();
+                fetchThrottle.acquirePermit(url);
                 // fetch documentObject as byte[]
-                documentObject = fetchDocumentObject(locator.getUrl());
+                documentObject = fetchDocumentObject(url);
             } catch (final IOException e) {
                 final String message = "unable to fetch document page";
                 throw new StepRunException(message, e);
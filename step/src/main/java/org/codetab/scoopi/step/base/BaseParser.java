@@ -32,6 +32,8 @@ import org.codetab.scoopi.model.Item;
 import org.codetab.scoopi.model.JobInfo;
 import org.codetab.scoopi.model.helper.DataHelper;
 import org.codetab.scoopi.model.helper.Fingerprints;
+import org.codetab.scoopi.plugin.appender.Backpressure;
+import org.codetab.scoopi.step.ICpuBoundStep;
 import org.codetab.scoopi.step.Step;
 import org.codetab.scoopi.step.parse.IValueParser;
 import org.codetab.scoopi.step.parse.Indexer;
@@ -40,7 +42,7 @@ import org.codetab.scoopi.step.parse.ValueProcessor;
 
 import com.codahale.metrics.Counter;
 
-public abstract class BaseParser extends Step {
+public abstract class BaseParser extends Step implements ICpuBoundStep {
 
     private static final Logger LOG = LogManager.getLogger();
 
@@ -62,6 +64,8 @@ public abstract class BaseParser extends Step {
     private IndexerFactory indexerFactory;
     @Inject
     private Persists persists;
+    @Inject
+    private Backpressure backpressure;
 
     private Data data;
     protected Document document;
@@ -169,6 +173,8 @@ public abstract class BaseParser extends Step {
                 metricsHelper.getCounter(this, "data", "reuse");
 
         if (parseData) {
+            // slow down while appenders catch up
+            backpressure.await();
             try {
                 LOG.debug(jobMarker, "{}", getLabeled("parse data"));
                 String dataDefName = getJobInfo().getDataDef();
@@ -6,9 +6,10 @@ import static org.codetab.scoopi.util.Util.spaceit;
 
 import org.codetab.scoopi.exception.StepRunException;
 import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.step.ICpuBoundStep;
 import org.codetab.scoopi.step.Step;
 
-public abstract class BaseProcessor extends Step {
+public abstract class BaseProcessor extends Step implements ICpuBoundStep {
 
     protected Data data;
 
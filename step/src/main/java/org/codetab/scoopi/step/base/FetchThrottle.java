@@ -1,5 +1,11 @@
 package org.codetab.scoopi.step.base;
 
+import static java.util.Objects.isNull;
+import static org.apache.commons.lang3.Validate.isTrue;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -7,32 +13,104 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.store.IRateLimiter;
 
 import com.google.common.util.concurrent.Uninterruptibles;
 
+/**
+ * <p>
+ * Limits fetches. Parallelism limits concurrent fetches of this member and
+ * fetches of a host, across all members, are spaced fetch delay /
+ * parallelism apart.
+ * <p>
+ * Slots of a host are leased, leaseSize at a time, from rate limiter, which
+ * in cluster mode is shared by members, and used locally till lease runs
+ * out; only one in leaseSize fetches costs a remote call. A slot missed by
+ * more than an interval is dropped, as member that leased the slots after it
+ * may already be using them.
+ */
 @Singleton
 public class FetchThrottle {
 
     @Inject
     private Configs configs;
+    @Inject
+    private IRateLimiter rateLimiter;
 
     private Semaphore semaphore;
 
-    private long fetchDelay;
+    private long interval;
+    private int leaseSize;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
 
     public void init() {
-        fetchDelay = configs.getInt("scoopi.loader.fetch.delay", "1000");
+        long fetchDelay = configs.getInt("scoopi.loader.fetch.delay", "1000");
         int permits = configs.getInt("scoopi.loader.fetch.parallelism", "1");
+        leaseSize = configs.getInt("scoopi.loader.fetch.leaseSize", "4");
+        isTrue(leaseSize > 0, "leaseSize must be positive");
         semaphore = new Semaphore(permits, true);
+        interval = fetchDelay / Math.max(permits, 1);
     }
 
-    public void acquirePermit() {
+    public void acquirePermit(final String url) {
         semaphore.acquireUninterruptibly();
-        Uninterruptibles.sleepUninterruptibly(fetchDelay,
-                TimeUnit.MILLISECONDS);
+        long wait = nextSlot(getHost(url)) - System.currentTimeMillis();
+        if (wait > 0) {
+            Uninterruptibles.sleepUninterruptibly(wait, TimeUnit.MILLISECONDS);
+        }
     }
 
     public void releasePermit() {
         semaphore.release();
     }
+
+    /**
+     * <p>
+     * Time of next slot of host, leases new slots when lease runs out.
+     * @param host
+     *            host
+     * @return slot time in millis
+     */
+    long nextSlot(final String host) {
+        if (interval <= 0) {
+            return 0;
+        }
+        Lease lease = leases.computeIfAbsent(host, k -> new Lease());
+        synchronized (lease) {
+            long now = System.currentTimeMillis();
+            while (lease.remaining > 0 && lease.next + interval < now) {
+                lease.next += interval;
+                lease.remaining--;
+            }
+            if (lease.remaining == 0) {
+                lease.next = now + rateLimiter.lease(host, leaseSize, interval);
+                lease.remaining = leaseSize;
+            }
+            long slot = lease.next;
+            lease.next += interval;
+            lease.remaining--;
+            return slot;
+        }
+    }
+
+    String getHost(final String url) {
+        if (isNull(url)) {
+            return "";
+        }
+        try {
+            String host = URI.create(url).getHost();
+            return isNull(host) ? "" : host;
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /*
+     * slots leased for a host, next and remaining
+     */
+    private static class Lease {
+        private long next;
+        private int remaining;
+    }
 }
@@ -1,9 +1,17 @@
 package org.codetab.scoopi.step.load;
 
+import static java.util.Objects.nonNull;
 import static org.codetab.scoopi.util.Util.spaceit;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -11,10 +19,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codetab.scoopi.exception.JobRunException;
 import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.model.Data;
 import org.codetab.scoopi.model.ERROR;
+import org.codetab.scoopi.model.Item;
 import org.codetab.scoopi.model.ObjectFactory;
 import org.codetab.scoopi.model.PrintPayload;
 import org.codetab.scoopi.plugin.appender.Appender;
+import org.codetab.scoopi.plugin.appender.DedupFilter;
 import org.codetab.scoopi.plugin.encoder.IEncoder;
 import org.codetab.scoopi.step.base.BaseAppender;
 
@@ -32,14 +43,46 @@ public class DataAppender extends BaseAppender {
     @Inject
     private Errors errors;
 
+    /**
+     * Encode and append data to each appender. Appender with dedup filter is
+     * given only the items not in filter, and if there are none, nothing is
+     * appended; fingerprints of items are added to filter once the payload is
+     * appended. Appenders that share an encoder share its output, encoded
+     * once, and distinct encoders of appenders without filter are fed in one
+     * pass over items.
+     */
     @Override
     public void process() {
         List<PrintPayload> printPayloads = new ArrayList<>();
+        Map<PrintPayload, Dedup> dedups = new IdentityHashMap<>();
+        Map<IEncoder<?>, Object> encoded = new IdentityHashMap<>();
+        encodeAll(getSharedEncoders(), encoded);
         for (String appenderName : appenders.keySet()) {
             try {
                 Appender appender = appenders.get(appenderName);
                 List<IEncoder<?>> encodersList = encoders.get(appenderName);
-                Object encodedData = encode(encodersList);
+
+                Data appendData = data;
+                Optional<DedupFilter> dedupFilter = appender.getDedupFilter();
+                Dedup dedup = null;
+                if (dedupFilter.isPresent()) {
+                    dedup = new Dedup(dedupFilter.get());
+                    appendData = dedup(dedup);
+                    int skipped = data.getItems().size()
+                            - dedup.fingerprints.size();
+                    metricsHelper.getCounter(this, appenderName, "dedup",
+                            "skipped").inc(skipped);
+                    if (dedup.fingerprints.isEmpty()) {
+                        continue;
+                    }
+                }
+
+                Object encodedData;
+                if (nonNull(dedup)) {
+                    encodedData = encode(encodersList, appendData);
+                } else {
+                    encodedData = encode(encodersList, encoded);
+                }
 
                 PrintPayload printPayload = objectFactory.createPrintPayload(
                         getPayload().getJobInfo(), encodedData);
@@ -47,6 +90,9 @@ public class DataAppender extends BaseAppender {
                 // TODO check whether needs streaming
                 doAppend(appender, printPayload);
                 printPayloads.add(printPayload);
+                if (nonNull(dedup)) {
+                    dedups.put(printPayload, dedup);
+                }
 
             } catch (Exception e) {
                 String message = spaceit("unable to append to:", appenderName);
@@ -60,15 +106,77 @@ public class DataAppender extends BaseAppender {
             for (PrintPayload printPayload : printPayloads) {
                 if (!printPayload.isFinished()) {
                     appendError = true;
+                } else if (dedups.containsKey(printPayload)) {
+                    dedups.get(printPayload).addFingerprints();
                 }
             }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             appendError = true;
+        } catch (IOException e) {
+            // items are appended, they may be appended again in next run
+            errors.inc();
+            LOG.error("{} [{}]", getLabeled("unable to update dedup filter"),
+                    ERROR.INTERNAL, e);
         }
         if (appendError) {
             throw new JobRunException("unable to append data to an appender");
         }
         setOutput(data);
     }
+
+    /*
+     * last encoder of appenders without dedup filter, they encode whole data
+     */
+    private Collection<IEncoder<?>> getSharedEncoders() {
+        Set<IEncoder<?>> shared =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String appenderName : appenders.keySet()) {
+            Appender appender = appenders.get(appenderName);
+            List<IEncoder<?>> encodersList = encoders.get(appenderName);
+            if (nonNull(appender) && nonNull(encodersList)
+                    && !encodersList.isEmpty()
+                    && !appender.getDedupFilter().isPresent()) {
+                shared.add(encodersList.get(encodersList.size() - 1));
+            }
+        }
+        return shared;
+    }
+
+    /*
+     * data of items not in filter, items are not copied
+     */
+    private Data dedup(final Dedup dedup) {
+        Data appendData = objectFactory.createData(data.getDataDef());
+        appendData.setId(data.getId());
+        appendData.setName(data.getName());
+        appendData.setDataDefId(data.getDataDefId());
+        appendData.setDocumentId(data.getDocumentId());
+        appendData.setRunDate(data.getRunDate());
+        data.copyTags(appendData);
+        for (Item item : data.getItems()) {
+            long fingerprint = DedupFilter.fingerprint(data, item);
+            if (!dedup.filter.contains(fingerprint)) {
+                appendData.addItem(item);
+                dedup.fingerprints.add(fingerprint);
+            }
+        }
+        return appendData;
+    }
+
+    private static final class Dedup {
+
+        private final DedupFilter filter;
+        private final List<Long> fingerprints = new ArrayList<>();
+
+        Dedup(final DedupFilter filter) {
+            this.filter = filter;
+        }
+
+        void addFingerprints() throws IOException {
+            for (long fingerprint : fingerprints) {
+                filter.add(fingerprint);
+            }
+        }
+    }
 }
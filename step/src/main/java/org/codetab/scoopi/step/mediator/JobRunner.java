@@ -1,5 +1,6 @@
 package org.codetab.scoopi.step.mediator;
 
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -48,6 +49,7 @@ public class JobRunner extends Thread {
 
         int jobTakeRetryDelay =
                 configs.getInt("scoopi.job.takeRetryDelay", "50");
+        int jobTakeBatchSize = configs.getInt("scoopi.job.takeBatchSize", "4");
 
         LOG.debug("take jobs from jobStore and initiate task");
 
@@ -58,6 +60,12 @@ public class JobRunner extends Thread {
                 break;
             }
 
+            // backpressure, leave jobs in job store till payloads drain
+            if (taskMediator.isOverLimit()) {
+                snooze.sleepUninterruptibly(jobTakeRetryDelay);
+                continue;
+            }
+
             try {
                 jobStore.resetCrashedJobs();
 
@@ -65,8 +73,10 @@ public class JobRunner extends Thread {
                         TimeUnit.MILLISECONDS);
 
                 // job store Semaphore throttles take job
-                Payload payload = jobStore.takeJob();
-                taskMediator.pushPayload(payload);
+                List<Payload> payloads = jobStore.takeJobs(jobTakeBatchSize);
+                for (Payload payload : payloads) {
+                    taskMediator.pushPayload(payload);
+                }
 
             } catch (NoSuchElementException e) {
                 // SPINNER
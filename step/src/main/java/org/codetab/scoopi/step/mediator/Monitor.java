@@ -1,14 +1,29 @@
 package org.codetab.scoopi.step.mediator;
 
+import static java.util.Objects.isNull;
+
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
+import javax.inject.Singleton;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.store.IShutdown;
 
+/**
+ * <p>
+ * Shutdown monitor. Shutdown conditions are checked as soon as task pools turn
+ * idle or done state of any node changes, and also on a fixed delay which is a
+ * safety net for missed events.
+ * @author m
+ *
+ */
+@Singleton
 public class Monitor implements Runnable {
 
     private static final Logger LOG = LogManager.getLogger();
@@ -19,9 +34,15 @@ public class Monitor implements Runnable {
     private StateFliper stateFliper;
     @Inject
     private Factory factory;
+    @Inject
+    private TaskPoolService poolService;
+    @Inject
+    private IShutdown shutdown;
 
     private ScheduledExecutorService scheduler;
 
+    private AtomicBoolean triggered = new AtomicBoolean(false);
+
     public void start() {
         scheduler = factory.newSingleThreadScheduledExecutor();
         final int initialDelay = 1;
@@ -30,6 +51,9 @@ public class Monitor implements Runnable {
         scheduler.scheduleWithFixedDelay(this, initialDelay, delay,
                 TimeUnit.MILLISECONDS);
 
+        poolService.setIdleListener(this::trigger);
+        shutdown.addDoneListener(this::trigger);
+
         LOG.info("shutdown monitor service started");
     }
 
@@ -39,8 +63,27 @@ public class Monitor implements Runnable {
         scheduler.awaitTermination(timeout, TimeUnit.MILLISECONDS);
     }
 
+    /**
+     * <p>
+     * Check shutdown conditions now, without waiting for the next tick. Checks
+     * run on monitor thread and a trigger is ignored while an earlier one is
+     * pending.
+     */
+    public void trigger() {
+        if (isNull(scheduler) || !triggered.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            scheduler.execute(this);
+        } catch (RejectedExecutionException e) {
+            // monitor is stopped
+            triggered.set(false);
+        }
+    }
+
     @Override
     public void run() {
+        triggered.set(false);
         stateFliper.tryTMShutdown();
     }
 }
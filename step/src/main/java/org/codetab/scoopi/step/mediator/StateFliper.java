@@ -52,10 +52,17 @@ public class StateFliper {
             LOG.info(
                     "payloadStore and poolService done, try taskMediator shutdown");
 
-            shutdown.setDone();
+            /*
+             * pools and payload store turn idle whenever this node runs out
+             * of work for a while, set done only when no job is queued or
+             * taken in job store as done of all nodes ends the run
+             */
+            boolean jobStoreDone = shutdown.jobStoreDone();
+            if (jobStoreDone) {
+                shutdown.setDone();
+            }
 
             boolean allNodesDone = shutdown.allNodesDone();
-            boolean jobStoreDone = shutdown.jobStoreDone();
 
             logShutdownStateConditions(payloadStoreDone, poolServiceDone,
                     allNodesDone, jobStoreDone);
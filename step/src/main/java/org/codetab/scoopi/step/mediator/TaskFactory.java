@@ -3,7 +3,11 @@ package org.codetab.scoopi.step.mediator;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.codetab.scoopi.util.Util.spaceit;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.inject.Inject;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.codetab.scoopi.di.DInjector;
@@ -17,6 +21,15 @@ public class TaskFactory {
     @Inject
     private DInjector dInjector;
 
+    /**
+     * step providers by class name, class is loaded and its binding resolved
+     * only on first use.
+     */
+    private final Map<String, Provider<IStep>> stepProviders =
+            new ConcurrentHashMap<>();
+
+    private volatile Provider<Task> taskProvider;
+
     @Inject
     private TaskFactory() {
     }
@@ -63,26 +76,52 @@ public class TaskFactory {
 
         notNull(step, "step must not be null");
 
-        Task task = dInjector.instance(Task.class);
+        Provider<Task> provider = taskProvider;
+        if (provider == null) {
+            provider = dInjector.provider(Task.class);
+            taskProvider = provider;
+        }
+        Task task = provider.get();
         task.setStep(step);
         return task;
     }
 
+    /**
+     * <p>
+     * Create step. Step class is loaded and checked once and its provider is
+     * cached, so that subsequent calls skip reflection and binding lookup.
+     * @param clzName
+     *            step class name
+     * @return new step instance
+     * @throws ClassNotFoundException
+     *             exception
+     * @throws ClassCastException
+     *             if class is not IStep type
+     */
     public IStep createStep(final String clzName) throws ClassNotFoundException,
             InstantiationException, IllegalAccessException {
 
         notNull(clzName, "clzName must not be null");
 
-        IStep step = null;
+        Provider<IStep> provider = stepProviders.get(clzName);
+        if (provider == null) {
+            provider = stepProvider(clzName);
+            stepProviders.put(clzName, provider);
+        }
+        return provider.get();
+    }
+
+    private Provider<IStep> stepProvider(final String clzName)
+            throws ClassNotFoundException {
         Class<?> stepClass = Class.forName(clzName);
-        Object obj = dInjector.instance(stepClass);
-        if (obj instanceof IStep) {
-            step = (IStep) obj;
-        } else {
+        if (!IStep.class.isAssignableFrom(stepClass)) {
             throw new ClassCastException(
                     spaceit("step class:", clzName, "is not IStep type"));
         }
-        return step;
+        @SuppressWarnings("unchecked")
+        Provider<IStep> provider =
+                dInjector.provider((Class<IStep>) stepClass);
+        return provider;
     }
 
 }
@@ -2,14 +2,22 @@ package org.codetab.scoopi.step.mediator;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.ERROR;
 import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.model.StepInfo;
+import org.codetab.scoopi.step.ICpuBoundStep;
+import org.codetab.scoopi.step.IStep;
 import org.codetab.scoopi.step.base.FetchThrottle;
 import org.codetab.scoopi.store.IPayloadStore;
 
@@ -28,9 +36,31 @@ public class TaskMediator {
     private FetchThrottle fetchThrottle;
     @Inject
     private Errors errors;
+    @Inject
+    private Configs configs;
+    @Inject
+    private MetricsHelper metricsHelper;
+
+    /**
+     * whether step class is CPU bound, by class name.
+     */
+    private final Map<String, Boolean> cpuBound = new ConcurrentHashMap<>();
+
+    private volatile boolean fuse;
+
+    /**
+     * <p>
+     * Open payload store. Seeders may push payloads before task mediator is
+     * started, so call it before seeding.
+     */
+    public void init() {
+        payloadStore.open();
+    }
 
     public void start() {
         fetchThrottle.init();
+        fuse = configs.getBoolean("scoopi.task.fuse.enable", false);
+        LOG.info("task fuse enabled: {}", fuse);
         taskRunner.start();
     }
 
@@ -59,6 +89,45 @@ public class TaskMediator {
 
         stateFliper.setTMState(TMState.READY);
         payloadStore.putPayload(payload);
+        metricsHelper.getMeter(this, "payload", "queued").mark();
         return true;
     }
+
+    /**
+     * <p>
+     * Is payload store over its memory limit.
+     * @return true if job runner should hold back new jobs
+     */
+    public boolean isOverLimit() {
+        return payloadStore.isOverLimit();
+    }
+
+    /**
+     * <p>
+     * Whether next step is fused with step. Fused step is run inline by the
+     * task of the previous step instead of pushing its payload to payload
+     * store, which saves a queue hop and a pool hand off. Only a CPU bound
+     * step that follows another CPU bound step is fused, see
+     * {@link ICpuBoundStep}, so that steps that do I/O, and the steps that
+     * follow them, run in their own pools.
+     * @param step
+     *            step that hands over
+     * @param nextStep
+     *            next step
+     * @return true if next step is fused
+     */
+    public boolean isFused(final IStep step, final StepInfo nextStep) {
+        if (!fuse || !(step instanceof ICpuBoundStep)) {
+            return false;
+        }
+        return cpuBound.computeIfAbsent(nextStep.getClassName(), clzName -> {
+            try {
+                return ICpuBoundStep.class
+                        .isAssignableFrom(Class.forName(clzName));
+            } catch (ClassNotFoundException e) {
+                // task factory reports it when step is created
+                return false;
+            }
+        });
+    }
 }
@@ -2,6 +2,7 @@ package org.codetab.scoopi.step;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
@@ -189,6 +190,49 @@ public class StepTest {
         verify(jobMediator, never()).markJobFinished(jobId);
         verify(jobInfo4, never()).getLabel();
         verify(taskMediator).pushPayload(nextStepPayload);
+        assertNull(step.getFusedPayload());
+    }
+
+    @Test
+    public void testHandoverFused() throws Exception {
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        String group = "Foo";
+        StepInfo stepInfo = Mockito.mock(StepInfo.class);
+        String stepName = "Bar";
+        JobInfo jobInfo2 = Mockito.mock(JobInfo.class);
+        String taskName = "Baz";
+        StepInfo stepInfo2 = Mockito.mock(StepInfo.class);
+        String grape = "Qux";
+        StepInfo nextStep = Mockito.mock(StepInfo.class);
+        JobInfo jobInfo5 = Mockito.mock(JobInfo.class);
+        Payload nextStepPayload = Mockito.mock(Payload.class);
+        StepInfo stepInfo3 = Mockito.mock(StepInfo.class);
+        String banana = "Quux";
+        JobInfo jobInfo6 = Mockito.mock(JobInfo.class);
+        String cherry = "Corge";
+        String peach = "Grault";
+
+        when(payload.getJobInfo()).thenReturn(jobInfo).thenReturn(jobInfo2)
+                .thenReturn(jobInfo5).thenReturn(jobInfo6);
+        when(jobInfo.getGroup()).thenReturn(group);
+        when(payload.getStepInfo()).thenReturn(stepInfo).thenReturn(stepInfo2)
+                .thenReturn(stepInfo3);
+        when(stepInfo.getStepName()).thenReturn(stepName);
+        when(jobInfo2.getTask()).thenReturn(taskName);
+        when(stepInfo2.getNextStepName()).thenReturn(grape);
+        when(taskDef.getNextStep(group, taskName, stepName))
+                .thenReturn(nextStep);
+        when(factory.createPayload(jobInfo5, nextStep, output))
+                .thenReturn(nextStepPayload);
+        when(stepInfo3.getStepName()).thenReturn(banana);
+        when(jobInfo6.getLabel()).thenReturn(cherry);
+        when(nextStep.getStepName()).thenReturn(peach);
+        when(taskMediator.isFused(step, nextStep)).thenReturn(true);
+
+        step.handover();
+
+        verify(taskMediator, never()).pushPayload(nextStepPayload);
+        assertSame(nextStepPayload, step.getFusedPayload());
     }
 
     @Test
@@ -14,8 +14,11 @@ import org.codetab.scoopi.exception.StepRunException;
 import org.codetab.scoopi.metrics.Errors;
 import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.model.StepInfo;
 import org.codetab.scoopi.model.TaskInfo;
 import org.codetab.scoopi.step.mediator.JobMediator;
+import org.codetab.scoopi.step.mediator.TaskFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -23,6 +26,7 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
 
@@ -39,6 +43,8 @@ public class TaskTest {
     @Mock
     private JobMediator jobMediator;
     @Mock
+    private TaskFactory taskFactory;
+    @Mock
     private IStep step;
 
     @Before
@@ -95,6 +101,59 @@ public class TaskTest {
         verify(errors, never()).inc();
     }
 
+    @Test
+    public void testRunFused() throws Exception {
+        IStep nextStep = Mockito.mock(IStep.class);
+        Payload fusedPayload = Mockito.mock(Payload.class);
+        StepInfo stepInfo = Mockito.mock(StepInfo.class);
+        String clzName = "Foo";
+        Timer timer = Mockito.mock(Timer.class);
+        Context taskTimer = Mockito.mock(Context.class);
+        Meter meter = Mockito.mock(Meter.class);
+
+        when(metricsHelper.getTimer(step, "task", "time")).thenReturn(timer);
+        when(metricsHelper.getTimer(nextStep, "task", "time"))
+                .thenReturn(timer);
+        when(metricsHelper.getMeter(task, "payload", "fused"))
+                .thenReturn(meter);
+        when(timer.time()).thenReturn(taskTimer);
+        when(step.getFusedPayload()).thenReturn(fusedPayload);
+        when(fusedPayload.getStepInfo()).thenReturn(stepInfo);
+        when(stepInfo.getClassName()).thenReturn(clzName);
+        when(taskFactory.createStep(clzName)).thenReturn(nextStep);
+
+        task.run();
+
+        verify(step).handover();
+        verify(nextStep).setPayload(fusedPayload);
+        verify(nextStep).setup();
+        verify(nextStep).handover();
+        verify(meter).mark();
+        verify(taskTimer, times(2)).stop();
+        verify(errors, never()).inc();
+    }
+
+    @Test
+    public void testRunFusedCreateStepException() throws Exception {
+        Payload fusedPayload = Mockito.mock(Payload.class);
+        StepInfo stepInfo = Mockito.mock(StepInfo.class);
+        String clzName = "Foo";
+        Timer timer = Mockito.mock(Timer.class);
+        Context taskTimer = Mockito.mock(Context.class);
+
+        when(metricsHelper.getTimer(step, "task", "time")).thenReturn(timer);
+        when(timer.time()).thenReturn(taskTimer);
+        when(step.getFusedPayload()).thenReturn(fusedPayload);
+        when(fusedPayload.getStepInfo()).thenReturn(stepInfo);
+        when(stepInfo.getClassName()).thenReturn(clzName);
+        when(taskFactory.createStep(clzName))
+                .thenThrow(ClassNotFoundException.class);
+
+        task.run();
+
+        verify(errors).inc();
+    }
+
     @Test
     public void testRunJobRunException() {
         Marker jobMarker = Mockito.mock(Marker.class);
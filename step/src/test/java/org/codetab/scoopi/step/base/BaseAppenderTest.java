@@ -1,22 +1,33 @@
 package org.codetab.scoopi.step.base;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.apache.logging.log4j.Marker;
 import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.defs.IPluginDef;
 import org.codetab.scoopi.defs.ITaskDef;
+import org.codetab.scoopi.exception.EncodeException;
 import org.codetab.scoopi.exception.StepRunException;
 import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
 import org.codetab.scoopi.model.JobInfo;
 import org.codetab.scoopi.model.ObjectFactory;
 import org.codetab.scoopi.model.Payload;
@@ -27,6 +38,8 @@ import org.codetab.scoopi.plugin.appender.Appender;
 import org.codetab.scoopi.plugin.appender.Appenders;
 import org.codetab.scoopi.plugin.encoder.Encoders;
 import org.codetab.scoopi.plugin.encoder.IEncoder;
+import org.codetab.scoopi.plugin.encoder.IItemEncoder;
+import org.codetab.scoopi.plugin.encoder.IItemEncoder.ItemSink;
 import org.codetab.scoopi.step.mediator.JobMediator;
 import org.codetab.scoopi.step.mediator.TaskMediator;
 import org.junit.Before;
@@ -232,6 +245,141 @@ public class BaseAppenderTest {
         assertSame(obj, actual);
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEncodeLastEncoder() throws Exception {
+        IEncoder<String> encoder = Mockito.mock(IEncoder.class);
+        IEncoder<String> lastEncoder = Mockito.mock(IEncoder.class);
+        List<IEncoder<?>> encodersList = new ArrayList<>();
+        encodersList.add(encoder);
+        encodersList.add(lastEncoder);
+        String obj = "foo";
+
+        when(lastEncoder.encode(data)).thenReturn(obj);
+
+        Object actual = baseAppender.encode(encodersList);
+
+        assertSame(obj, actual);
+        verify(encoder, never()).encode(data);
+    }
+
+    @Test
+    public void testEncodeNoEncoder() throws Exception {
+        Object actual = baseAppender.encode(new ArrayList<>());
+
+        assertSame(data, actual);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEncodeShared() throws Exception {
+        IEncoder<String> encoder = Mockito.mock(IEncoder.class);
+        List<IEncoder<?>> encodersList = new ArrayList<>();
+        encodersList.add(encoder);
+        Map<IEncoder<?>, Object> encoded = new IdentityHashMap<>();
+        String obj = "foo";
+
+        when(encoder.encode(data)).thenReturn(obj);
+
+        assertSame(obj, baseAppender.encode(encodersList, encoded));
+        assertSame(obj, baseAppender.encode(encodersList, encoded));
+
+        verify(encoder).encode(data);
+        assertSame(obj, encoded.get(encoder));
+    }
+
+    @Test
+    public void testEncodeData() throws Exception {
+        List<IEncoder<?>> encodersList = new ArrayList<>();
+        @SuppressWarnings("unchecked")
+        IEncoder<String> encoder = Mockito.mock(IEncoder.class);
+        Data otherData = Mockito.mock(Data.class);
+        String obj = "foo";
+        encodersList.add(encoder);
+
+        when(encoder.encode(otherData)).thenReturn(obj);
+
+        Object actual = baseAppender.encode(encodersList, otherData);
+
+        assertSame(obj, actual);
+        verify(encoder, never()).encode(data);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEncodeAll() throws Exception {
+        IItemEncoder<String> itemEncoder = Mockito.mock(IItemEncoder.class);
+        IItemEncoder<String> otherItemEncoder =
+                Mockito.mock(IItemEncoder.class);
+        IEncoder<String> encoder = Mockito.mock(IEncoder.class);
+        ItemSink<String> sink = Mockito.mock(ItemSink.class);
+        ItemSink<String> otherSink = Mockito.mock(ItemSink.class);
+        Item item = Mockito.mock(Item.class);
+        Item otherItem = Mockito.mock(Item.class);
+        Map<IEncoder<?>, Object> encoded = new IdentityHashMap<>();
+
+        when(data.getItems()).thenReturn(Arrays.asList(item, otherItem));
+        when(itemEncoder.start(data)).thenReturn(sink);
+        when(otherItemEncoder.start(data)).thenReturn(otherSink);
+        when(sink.finish()).thenReturn("foo");
+        when(otherSink.finish()).thenReturn("bar");
+        when(encoder.encode(data)).thenReturn("baz");
+
+        List<Item> accepted = new ArrayList<>();
+        doAnswer(i -> accepted.add(i.getArgument(0))).when(sink)
+                .accept(any(Item.class));
+        doAnswer(i -> accepted.add(i.getArgument(0))).when(otherSink)
+                .accept(any(Item.class));
+
+        baseAppender.encodeAll(
+                Arrays.asList(itemEncoder, otherItemEncoder, encoder),
+                encoded);
+
+        // one pass, both sinks take an item before next item
+        verify(data).getItems();
+        assertEquals(Arrays.asList(item, item, otherItem, otherItem),
+                accepted);
+        verify(itemEncoder, never()).encode(data);
+        assertSame("foo", encoded.get(itemEncoder));
+        assertSame("bar", encoded.get(otherItemEncoder));
+        assertSame("baz", encoded.get(encoder));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testEncodeAllFailed() throws Exception {
+        IItemEncoder<String> itemEncoder = Mockito.mock(IItemEncoder.class);
+        IItemEncoder<String> otherItemEncoder =
+                Mockito.mock(IItemEncoder.class);
+        IEncoder<String> encoder = Mockito.mock(IEncoder.class);
+        IEncoder<String> doneEncoder = Mockito.mock(IEncoder.class);
+        ItemSink<String> sink = Mockito.mock(ItemSink.class);
+        ItemSink<String> otherSink = Mockito.mock(ItemSink.class);
+        Item item = Mockito.mock(Item.class);
+        Item otherItem = Mockito.mock(Item.class);
+        Map<IEncoder<?>, Object> encoded = new IdentityHashMap<>();
+        encoded.put(doneEncoder, "done");
+
+        when(data.getItems()).thenReturn(Arrays.asList(item, otherItem));
+        when(itemEncoder.start(data)).thenReturn(sink);
+        when(otherItemEncoder.start(data)).thenReturn(otherSink);
+        doThrow(EncodeException.class).when(sink).accept(item);
+        when(otherSink.finish()).thenReturn("bar");
+        when(encoder.encode(data)).thenThrow(EncodeException.class);
+
+        baseAppender.encodeAll(Arrays.asList(itemEncoder, otherItemEncoder,
+                encoder, doneEncoder), encoded);
+
+        // failed encoders are left out, sink is not fed after error
+        verify(sink, never()).accept(otherItem);
+        verify(sink, never()).finish();
+        verify(doneEncoder, never()).encode(data);
+        assertFalse(encoded.containsKey(itemEncoder));
+        assertFalse(encoded.containsKey(encoder));
+        assertSame("bar", encoded.get(otherItemEncoder));
+        assertSame("done", encoded.get(doneEncoder));
+    }
+
     @Test
     public void testLoad() {
         baseAppender.load();
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -573,7 +574,7 @@ public class BaseLoaderTest {
 
         baseLoader.process();
 
-        verify(fetchThrottle).acquirePermit();
+        verify(fetchThrottle).acquirePermit(any());
         verify(fetchThrottle).releasePermit();
         verify(newDocument).setDocumentObject(documentObject);
     }
@@ -612,7 +613,7 @@ public class BaseLoaderTest {
 
         assertThrows(StepRunException.class, () -> baseLoader.process());
 
-        verify(fetchThrottle).acquirePermit();
+        verify(fetchThrottle).acquirePermit(any());
         verify(fetchThrottle).releasePermit();
         verify(newDocument, never()).setDocumentObject(documentObject);
     }
@@ -640,7 +641,7 @@ public class BaseLoaderTest {
 
         baseLoader.process();
 
-        verify(fetchThrottle, never()).acquirePermit();
+        verify(fetchThrottle, never()).acquirePermit(any());
         verify(locator, never()).getUrl();
         verify(fetchThrottle, never()).releasePermit();
         verify(configs, never()).getRunDateTime();
@@ -5,6 +5,7 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -39,6 +40,7 @@ import org.codetab.scoopi.model.ObjectFactory;
 import org.codetab.scoopi.model.Payload;
 import org.codetab.scoopi.model.StepInfo;
 import org.codetab.scoopi.model.helper.DataHelper;
+import org.codetab.scoopi.plugin.appender.Backpressure;
 import org.codetab.scoopi.step.mediator.JobMediator;
 import org.codetab.scoopi.step.mediator.TaskMediator;
 import org.codetab.scoopi.step.parse.IValueParser;
@@ -47,6 +49,7 @@ import org.codetab.scoopi.step.parse.IndexerFactory;
 import org.codetab.scoopi.step.parse.ValueProcessor;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -75,6 +78,8 @@ public class BaseParserTest {
     @Mock
     private Persists persists;
     @Mock
+    private Backpressure backpressure;
+    @Mock
     private Data data;
     @Mock
     private Document document;
@@ -576,7 +581,9 @@ public class BaseParserTest {
         when(timer.toString()).thenReturn(airbender);
         baseParser.process();
 
-        verify(dataHelper).addPageTag(data1);
+        InOrder inOrder = inOrder(backpressure, dataHelper);
+        inOrder.verify(backpressure).await();
+        inOrder.verify(dataHelper).addPageTag(data1);
         verify(dataHelper).addItemTag(data1);
         verify(dataHelper).addAxisTags(data1, null);
         verify(valueProcessor).addScriptObject("document", document);
@@ -748,6 +755,7 @@ public class BaseParserTest {
         verify(configs, never()).getRunDateTime();
         verify(dataFactory, never()).createData(dataDefName, banana, cherry,
                 zonedDateTime);
+        verifyNoInteractions(backpressure);
         verify(dataHelper, never()).addPageTag(data1);
         verify(dataHelper, never()).addItemTag(data1);
         verify(dataHelper, never()).addAxisTags(data1, null);
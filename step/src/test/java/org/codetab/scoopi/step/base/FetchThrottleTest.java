@@ -1,11 +1,19 @@
 package org.codetab.scoopi.step.base;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.concurrent.Semaphore;
 
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.store.IRateLimiter;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -19,6 +27,8 @@ public class FetchThrottleTest {
     @Mock
     private Configs configs;
     @Mock
+    private IRateLimiter rateLimiter;
+    @Mock
     private Semaphore semaphore;
 
     @Before
@@ -27,22 +37,102 @@ public class FetchThrottleTest {
     }
 
     @Test
-    public void testInit() {
-        long fetchDelay = 1L;
-        int permits = 1;
-
+    public void testInit() throws IllegalAccessException {
         when(configs.getInt("scoopi.loader.fetch.delay", "1000"))
-                .thenReturn((int) fetchDelay);
+                .thenReturn(1000);
         when(configs.getInt("scoopi.loader.fetch.parallelism", "1"))
-                .thenReturn(permits);
+                .thenReturn(4);
+        when(configs.getInt("scoopi.loader.fetch.leaseSize", "4"))
+                .thenReturn(8);
+
+        fetchThrottle.init();
+
+        assertThat(FieldUtils.readField(fetchThrottle, "interval", true))
+                .isEqualTo(250L);
+        assertThat(FieldUtils.readField(fetchThrottle, "leaseSize", true))
+                .isEqualTo(8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitInvalidLeaseSize() {
+        when(configs.getInt("scoopi.loader.fetch.parallelism", "1"))
+                .thenReturn(1);
+        when(configs.getInt("scoopi.loader.fetch.leaseSize", "4"))
+                .thenReturn(0);
+
         fetchThrottle.init();
     }
 
     @Test
-    public void testAcquirePermit() {
-        fetchThrottle.acquirePermit();
+    public void testAcquirePermit() throws IllegalAccessException {
+        init(100, 4);
+        when(rateLimiter.lease("example.org", 4, 100)).thenReturn(0L);
+
+        fetchThrottle.acquirePermit("http://example.org/foo");
 
         verify(semaphore).acquireUninterruptibly();
+        verify(rateLimiter).lease("example.org", 4, 100);
+    }
+
+    @Test
+    public void testNextSlotLocalTillLeaseRunsOut()
+            throws IllegalAccessException {
+        init(100, 4);
+        when(rateLimiter.lease("example.org", 4, 100)).thenReturn(5000L);
+
+        long now = System.currentTimeMillis();
+        long first = fetchThrottle.nextSlot("example.org");
+        assertThat(first).isBetween(now + 5000,
+                System.currentTimeMillis() + 5000);
+        for (int i = 1; i < 4; i++) {
+            assertThat(fetchThrottle.nextSlot("example.org"))
+                    .isEqualTo(first + i * 100);
+        }
+        verify(rateLimiter, times(1)).lease("example.org", 4, 100);
+
+        fetchThrottle.nextSlot("example.org");
+        verify(rateLimiter, times(2)).lease("example.org", 4, 100);
+    }
+
+    @Test
+    public void testNextSlotPerHost() throws IllegalAccessException {
+        init(100, 4);
+
+        fetchThrottle.nextSlot("example.org");
+        fetchThrottle.nextSlot("example.com");
+
+        verify(rateLimiter).lease("example.org", 4, 100);
+        verify(rateLimiter).lease("example.com", 4, 100);
+    }
+
+    @Test
+    public void testNextSlotDropsMissedSlots() throws IllegalAccessException {
+        init(100, 4);
+        // lease that starts well before now
+        when(rateLimiter.lease("example.org", 4, 100)).thenReturn(-1000L)
+                .thenReturn(0L);
+
+        fetchThrottle.nextSlot("example.org");
+        fetchThrottle.nextSlot("example.org");
+
+        verify(rateLimiter, times(2)).lease("example.org", 4, 100);
+    }
+
+    @Test
+    public void testNextSlotNoDelay() throws IllegalAccessException {
+        init(0, 4);
+
+        assertThat(fetchThrottle.nextSlot("example.org")).isEqualTo(0L);
+        verify(rateLimiter, never()).lease(anyString(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testGetHost() {
+        assertThat(fetchThrottle.getHost("http://example.org:8080/foo?x=1"))
+                .isEqualTo("example.org");
+        assertThat(fetchThrottle.getHost("file:///tmp/foo.html")).isEmpty();
+        assertThat(fetchThrottle.getHost("not a url")).isEmpty();
+        assertThat(fetchThrottle.getHost(null)).isEmpty();
     }
 
     @Test
@@ -51,4 +141,10 @@ public class FetchThrottleTest {
 
         verify(semaphore).release();
     }
+
+    private void init(final long interval, final int leaseSize)
+            throws IllegalAccessException {
+        FieldUtils.writeField(fetchThrottle, "interval", interval, true);
+        FieldUtils.writeField(fetchThrottle, "leaseSize", leaseSize, true);
+    }
 }
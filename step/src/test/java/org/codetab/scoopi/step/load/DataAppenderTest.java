@@ -1,7 +1,10 @@
 package org.codetab.scoopi.step.load;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -9,8 +12,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import org.apache.logging.log4j.Marker;
@@ -20,7 +26,9 @@ import org.codetab.scoopi.defs.ITaskDef;
 import org.codetab.scoopi.exception.JobRunException;
 import org.codetab.scoopi.metrics.Errors;
 import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.Axis;
 import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Item;
 import org.codetab.scoopi.model.JobInfo;
 import org.codetab.scoopi.model.ObjectFactory;
 import org.codetab.scoopi.model.Payload;
@@ -28,17 +36,23 @@ import org.codetab.scoopi.model.PrintPayload;
 import org.codetab.scoopi.model.StepInfo;
 import org.codetab.scoopi.plugin.appender.Appender;
 import org.codetab.scoopi.plugin.appender.Appenders;
+import org.codetab.scoopi.plugin.appender.DedupFilter;
 import org.codetab.scoopi.plugin.encoder.Encoders;
 import org.codetab.scoopi.plugin.encoder.IEncoder;
+import org.codetab.scoopi.plugin.encoder.IItemEncoder;
+import org.codetab.scoopi.plugin.encoder.IItemEncoder.ItemSink;
 import org.codetab.scoopi.step.mediator.JobMediator;
 import org.codetab.scoopi.step.mediator.TaskMediator;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import com.codahale.metrics.Counter;
+
 public class DataAppenderTest {
     @InjectMocks
     private DataAppender dataAppender;
@@ -123,6 +137,178 @@ public class DataAppenderTest {
         verify(errors, never()).inc();
     }
 
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testProcessAppendSharedEncoder() throws Exception {
+        Set<String> set = new LinkedHashSet<>(Arrays.asList("Foo", "Bar"));
+
+        Appender appender = Mockito.mock(Appender.class);
+        Appender otherAppender = Mockito.mock(Appender.class);
+        IEncoder<Object> encoder = Mockito.mock(IEncoder.class);
+        List<IEncoder<?>> encodersList = new ArrayList<>();
+        encodersList.add(encoder);
+
+        Object encodedData = Mockito.mock(Object.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload otherPayload = Mockito.mock(PrintPayload.class);
+
+        when(appenders.keySet()).thenReturn(set);
+        when(appenders.get("Foo")).thenReturn(appender);
+        when(appenders.get("Bar")).thenReturn(otherAppender);
+        when(appender.getDedupFilter()).thenReturn(Optional.empty());
+        when(otherAppender.getDedupFilter()).thenReturn(Optional.empty());
+        when(encoders.get("Foo")).thenReturn(encodersList);
+        when(encoders.get("Bar")).thenReturn(encodersList);
+        when(encoder.encode(data)).thenReturn(encodedData);
+        when(payload.getJobInfo()).thenReturn(jobInfo);
+        when(objectFactory.createPrintPayload(jobInfo, encodedData))
+                .thenReturn(printPayload).thenReturn(otherPayload);
+        when(printPayload.isFinished()).thenReturn(true);
+        when(otherPayload.isFinished()).thenReturn(true);
+
+        dataAppender.process();
+
+        verify(encoder).encode(data);
+        verify(appender).append(printPayload);
+        verify(otherAppender).append(otherPayload);
+        verify(errors, never()).inc();
+        assertSame(data, dataAppender.getOutput());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testProcessAppendItemEncoders() throws Exception {
+        Set<String> set = new LinkedHashSet<>(Arrays.asList("Foo", "Bar"));
+
+        Appender appender = Mockito.mock(Appender.class);
+        Appender otherAppender = Mockito.mock(Appender.class);
+        IItemEncoder<Object> encoder = Mockito.mock(IItemEncoder.class);
+        IItemEncoder<Object> otherEncoder = Mockito.mock(IItemEncoder.class);
+        ItemSink<Object> sink = Mockito.mock(ItemSink.class);
+        ItemSink<Object> otherSink = Mockito.mock(ItemSink.class);
+        Item item = Mockito.mock(Item.class);
+
+        Object encodedData = Mockito.mock(Object.class);
+        Object otherData = Mockito.mock(Object.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        PrintPayload otherPayload = Mockito.mock(PrintPayload.class);
+
+        when(appenders.keySet()).thenReturn(set);
+        when(appenders.get("Foo")).thenReturn(appender);
+        when(appenders.get("Bar")).thenReturn(otherAppender);
+        when(appender.getDedupFilter()).thenReturn(Optional.empty());
+        when(otherAppender.getDedupFilter()).thenReturn(Optional.empty());
+        when(encoders.get("Foo")).thenReturn(Arrays.asList(encoder));
+        when(encoders.get("Bar")).thenReturn(Arrays.asList(otherEncoder));
+        when(data.getItems()).thenReturn(Arrays.asList(item));
+        when(encoder.start(data)).thenReturn(sink);
+        when(otherEncoder.start(data)).thenReturn(otherSink);
+        when(sink.finish()).thenReturn(encodedData);
+        when(otherSink.finish()).thenReturn(otherData);
+        when(payload.getJobInfo()).thenReturn(jobInfo);
+        when(objectFactory.createPrintPayload(jobInfo, encodedData))
+                .thenReturn(printPayload);
+        when(objectFactory.createPrintPayload(jobInfo, otherData))
+                .thenReturn(otherPayload);
+        when(printPayload.isFinished()).thenReturn(true);
+        when(otherPayload.isFinished()).thenReturn(true);
+
+        dataAppender.process();
+
+        // distinct encoders fed in one pass over items
+        verify(data).getItems();
+        verify(sink).accept(item);
+        verify(otherSink).accept(item);
+        verify(encoder, never()).encode(data);
+        verify(otherEncoder, never()).encode(data);
+        verify(appender).append(printPayload);
+        verify(otherAppender).append(otherPayload);
+        verify(errors, never()).inc();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testProcessAppendDedup() throws Exception {
+        String appenderName = "Foo";
+        Set<String> set = new HashSet<>();
+        set.add(appenderName);
+
+        Appender appender = Mockito.mock(Appender.class);
+        DedupFilter dedupFilter = Mockito.mock(DedupFilter.class);
+        List<IEncoder<?>> encodersList = new ArrayList<>();
+        IEncoder<Object> encoder = Mockito.mock(IEncoder.class);
+        encodersList.add(encoder);
+
+        ObjectFactory factory = new ObjectFactory();
+        Item seen = createItem(factory, "10");
+        Item unseen = createItem(factory, "11");
+        Object encodedData = Mockito.mock(Object.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        PrintPayload printPayload = Mockito.mock(PrintPayload.class);
+        Counter skipped = new Counter();
+        ArgumentCaptor<Data> captor = ArgumentCaptor.forClass(Data.class);
+
+        when(appenders.keySet()).thenReturn(set);
+        when(appenders.get(appenderName)).thenReturn(appender);
+        when(appender.getDedupFilter()).thenReturn(Optional.of(dedupFilter));
+        when(encoders.get(appenderName)).thenReturn(encodersList);
+        when(data.getName()).thenReturn("acme");
+        when(data.getDataDef()).thenReturn("price");
+        when(data.getItems()).thenReturn(Arrays.asList(seen, unseen));
+        when(objectFactory.createData("price"))
+                .thenReturn(factory.createData("price"));
+        when(dedupFilter.contains(DedupFilter.fingerprint(data, seen)))
+                .thenReturn(true);
+        when(metricsHelper.getCounter(dataAppender, appenderName, "dedup",
+                "skipped")).thenReturn(skipped);
+        when(encoder.encode(captor.capture())).thenReturn(encodedData);
+        when(payload.getJobInfo()).thenReturn(jobInfo);
+        when(objectFactory.createPrintPayload(jobInfo, encodedData))
+                .thenReturn(printPayload);
+        when(printPayload.isFinished()).thenReturn(true);
+
+        dataAppender.process();
+
+        assertEquals(Arrays.asList(unseen), captor.getValue().getItems());
+        assertEquals(1, skipped.getCount());
+        verify(appender).append(printPayload);
+        verify(dedupFilter).add(DedupFilter.fingerprint(data, unseen));
+        verify(dedupFilter, never()).add(DedupFilter.fingerprint(data, seen));
+        verify(errors, never()).inc();
+    }
+
+    @Test
+    public void testProcessAppendDedupAllSeen() throws Exception {
+        String appenderName = "Foo";
+        Set<String> set = new HashSet<>();
+        set.add(appenderName);
+
+        Appender appender = Mockito.mock(Appender.class);
+        DedupFilter dedupFilter = Mockito.mock(DedupFilter.class);
+        ObjectFactory factory = new ObjectFactory();
+        Item seen = createItem(factory, "10");
+
+        when(appenders.keySet()).thenReturn(set);
+        when(appenders.get(appenderName)).thenReturn(appender);
+        when(appender.getDedupFilter()).thenReturn(Optional.of(dedupFilter));
+        when(data.getItems()).thenReturn(Arrays.asList(seen));
+        when(objectFactory.createData(null))
+                .thenReturn(factory.createData(null));
+        when(dedupFilter.contains(DedupFilter.fingerprint(data, seen)))
+                .thenReturn(true);
+        when(metricsHelper.getCounter(dataAppender, appenderName, "dedup",
+                "skipped")).thenReturn(new Counter());
+
+        dataAppender.process();
+
+        verify(appender, never()).append(any(PrintPayload.class));
+        verify(dedupFilter, never()).add(anyLong());
+        verify(errors, never()).inc();
+        assertSame(data, dataAppender.getOutput());
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testProcessAppendException() throws Exception {
@@ -252,4 +438,12 @@ public class DataAppenderTest {
         verify(appender).append(printPayload);
         verify(errors, never()).inc();
     }
+
+    private Item createItem(final ObjectFactory factory, final String value) {
+        Item item = factory.createItem();
+        Axis axis = factory.createAxis("fact", "price");
+        axis.setValue(value);
+        item.addAxis(axis);
+        return item;
+    }
 }
@@ -2,11 +2,15 @@ package org.codetab.scoopi.step.mediator;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -85,6 +89,29 @@ public class JobRunnerTest {
         verifyNoInteractions(jobStore, taskMediator);
     }
 
+    @Test
+    public void testRunPayloadStoreOverLimit() throws Exception {
+        int jobTakeRetryDelay = 1;
+        Payload payload = Mockito.mock(Payload.class);
+
+        when(configs.getInt("scoopi.job.takeRetryDelay", "50"))
+                .thenReturn(jobTakeRetryDelay);
+
+        when(stateFliper.isTMState(TMState.TERMINATED)).thenReturn(false)
+                .thenReturn(false).thenReturn(true); // to break while
+        when(stateFliper.isTMState(TMState.SHUTDOWN)).thenReturn(false);
+        when(cancelled.get()).thenReturn(false);
+        when(taskMediator.isOverLimit()).thenReturn(true).thenReturn(false);
+
+        when(jobStore.takeJobs(anyInt()))
+                .thenReturn(Collections.singletonList(payload));
+        jobRunner.run();
+
+        verify(snooze).sleepUninterruptibly(jobTakeRetryDelay);
+        verify(jobStore, times(1)).takeJobs(anyInt());
+        verify(taskMediator, times(1)).pushPayload(payload);
+    }
+
     @Test
     public void testRunPushPayload() throws Exception {
         int jobTakeRetryDelay = 1;
@@ -101,7 +128,8 @@ public class JobRunnerTest {
         when(stateFliper.isTMState(TMState.SHUTDOWN)).thenReturn(false);
         when(cancelled.get()).thenReturn(false);
 
-        when(jobStore.takeJob()).thenReturn(payload);
+        when(jobStore.takeJobs(anyInt()))
+                .thenReturn(Collections.singletonList(payload));
         when(stateFliper.getTMState()).thenReturn(tMState);
         jobRunner.run();
 
@@ -112,6 +140,29 @@ public class JobRunnerTest {
         verify(stateFliper).releaseJobToTaskQueueLock();
     }
 
+    @Test
+    public void testRunPushPayloadBatch() throws Exception {
+        int jobTakeBatchSize = 2;
+        Payload payload1 = Mockito.mock(Payload.class);
+        Payload payload2 = Mockito.mock(Payload.class);
+
+        when(configs.getInt("scoopi.job.takeBatchSize", "4"))
+                .thenReturn(jobTakeBatchSize);
+
+        when(stateFliper.isTMState(TMState.TERMINATED)).thenReturn(false)
+                .thenReturn(true); // to break while
+        when(stateFliper.isTMState(TMState.SHUTDOWN)).thenReturn(false);
+        when(cancelled.get()).thenReturn(false);
+
+        when(jobStore.takeJobs(jobTakeBatchSize))
+                .thenReturn(Arrays.asList(payload1, payload2));
+        jobRunner.run();
+
+        verify(taskMediator).pushPayload(payload1);
+        verify(taskMediator).pushPayload(payload2);
+        verify(stateFliper).releaseJobToTaskQueueLock();
+    }
+
     @Test
     public void testRunPushPayloadNoJobException() throws Exception {
         int jobTakeRetryDelay = 1;
@@ -128,7 +179,7 @@ public class JobRunnerTest {
         when(stateFliper.isTMState(TMState.SHUTDOWN)).thenReturn(false);
         when(cancelled.get()).thenReturn(false);
 
-        when(jobStore.takeJob()).thenThrow(NoSuchElementException.class);
+        when(jobStore.takeJobs(anyInt())).thenThrow(NoSuchElementException.class);
         when(stateFliper.getTMState()).thenReturn(tMState);
 
         jobRunner.run();
@@ -157,7 +208,7 @@ public class JobRunnerTest {
         when(stateFliper.isTMState(TMState.SHUTDOWN)).thenReturn(false);
         when(cancelled.get()).thenReturn(false);
 
-        when(jobStore.takeJob()).thenThrow(InterruptedException.class);
+        when(jobStore.takeJobs(anyInt())).thenThrow(InterruptedException.class);
         when(stateFliper.getTMState()).thenReturn(tMState);
 
         jobRunner.run();
@@ -187,7 +238,7 @@ public class JobRunnerTest {
         when(stateFliper.isTMState(TMState.SHUTDOWN)).thenReturn(false);
         when(cancelled.get()).thenReturn(false);
 
-        when(jobStore.takeJob()).thenThrow(IllegalStateException.class);
+        when(jobStore.takeJobs(anyInt())).thenThrow(IllegalStateException.class);
         when(stateFliper.getTMState()).thenReturn(tMState);
 
         jobRunner.run();
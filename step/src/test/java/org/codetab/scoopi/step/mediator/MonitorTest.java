@@ -1,12 +1,19 @@
 package org.codetab.scoopi.step.mediator;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.reflect.FieldUtils;
 import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.store.IShutdown;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -25,6 +32,10 @@ public class MonitorTest {
     private Factory factory;
     @Mock
     private ScheduledExecutorService scheduler;
+    @Mock
+    private TaskPoolService poolService;
+    @Mock
+    private IShutdown shutdown;
 
     @Before
     public void setUp() throws Exception {
@@ -44,6 +55,8 @@ public class MonitorTest {
 
         verify(scheduler).scheduleWithFixedDelay(monitor, initialDelay, delay,
                 TimeUnit.MILLISECONDS);
+        verify(poolService).setIdleListener(any(Runnable.class));
+        verify(shutdown).addDoneListener(any(Runnable.class));
     }
 
     @Test
@@ -61,4 +74,37 @@ public class MonitorTest {
 
         verify(stateFliper).tryTMShutdown();
     }
+
+    @Test
+    public void testTrigger() {
+        monitor.trigger();
+        monitor.trigger();
+
+        verify(scheduler, times(1)).execute(monitor);
+
+        monitor.run();
+        monitor.trigger();
+
+        verify(scheduler, times(2)).execute(monitor);
+    }
+
+    @Test
+    public void testTriggerRejected() {
+        doThrow(RejectedExecutionException.class).when(scheduler)
+                .execute(monitor);
+
+        monitor.trigger();
+        monitor.trigger();
+
+        verify(scheduler, times(2)).execute(monitor);
+    }
+
+    @Test
+    public void testTriggerNotStarted() throws IllegalAccessException {
+        FieldUtils.writeField(monitor, "scheduler", null, true);
+
+        monitor.trigger();
+
+        verify(scheduler, never()).execute(monitor);
+    }
 }
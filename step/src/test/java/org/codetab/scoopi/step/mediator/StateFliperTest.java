@@ -251,7 +251,7 @@ public class StateFliperTest {
         stateFliper.tryTMShutdown();
 
         verify(tmState, never()).set(TMState.SHUTDOWN);
-        verify(shutdown).setDone();
+        verify(shutdown, never()).setDone();
         verify(tmState, never()).set(TMState.SHUTDOWN);
         verify(tmState).set(TMState.READY);
 
@@ -2,9 +2,14 @@ package org.codetab.scoopi.step.mediator;
 
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import javax.inject.Provider;
+
 import org.codetab.scoopi.di.DInjector;
 import org.codetab.scoopi.model.Payload;
 import org.codetab.scoopi.model.StepInfo;
@@ -25,25 +30,35 @@ public class TaskFactoryTest {
     @Mock
     private DInjector dInjector;
 
+    // not a field mock, else it is injected into taskFactory
+    private Provider<IStep> stepProvider;
+    private Provider<Task> taskProvider;
+
+    @SuppressWarnings("unchecked")
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        stepProvider = Mockito.mock(Provider.class);
+        taskProvider = Mockito.mock(Provider.class);
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     @Test
     public void testCreateTask() throws Exception {
         Payload payload = Mockito.mock(Payload.class);
         StepInfo stepInfo = Mockito.mock(StepInfo.class);
         String apple = "org.codetab.scoopi.step.Step";
-        Class<Step> stepClass = Step.class;
+        Class stepClass = Step.class;
         Step obj = Mockito.mock(Step.class);
         IStep step = obj;
         Task task = Mockito.mock(Task.class);
 
         when(payload.getStepInfo()).thenReturn(stepInfo);
         when(stepInfo.getClassName()).thenReturn(apple);
-        when(dInjector.instance(stepClass)).thenReturn(obj);
-        when(dInjector.instance(Task.class)).thenReturn(task);
+        when(dInjector.provider(stepClass)).thenReturn(stepProvider);
+        when(stepProvider.get()).thenReturn(obj);
+        when(dInjector.provider(Task.class)).thenReturn(taskProvider);
+        when(taskProvider.get()).thenReturn(task);
 
         Task actual = taskFactory.createTask(payload);
 
@@ -56,41 +71,57 @@ public class TaskFactoryTest {
     public void testCreateTaskIStep() {
         IStep step = Mockito.mock(IStep.class);
         Task task = Mockito.mock(Task.class);
+        Task task2 = Mockito.mock(Task.class);
 
-        when(dInjector.instance(Task.class)).thenReturn(task);
+        when(dInjector.provider(Task.class)).thenReturn(taskProvider);
+        when(taskProvider.get()).thenReturn(task).thenReturn(task2);
 
         Task actual = taskFactory.createTask(step);
-
         assertSame(task, actual);
+
+        actual = taskFactory.createTask(step);
+        assertSame(task2, actual);
+
         verify(task).setStep(step);
+        verify(task2).setStep(step);
+        verify(dInjector, times(1)).provider(Task.class);
     }
 
+    @SuppressWarnings({"unchecked", "rawtypes"})
     @Test
     public void testCreateStep() throws Exception {
         String clzName = "org.codetab.scoopi.step.Step";
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        Class<IStep> stepClass = (Class) Class.forName(clzName);
-        IStep obj = Mockito.mock(IStep.class);
-        IStep step = obj;
+        Class stepClass = Class.forName(clzName);
+        IStep step = Mockito.mock(IStep.class);
+        IStep step2 = Mockito.mock(IStep.class);
 
-        when(dInjector.instance(stepClass)).thenReturn(obj);
+        when(dInjector.provider(stepClass)).thenReturn(stepProvider);
+        when(stepProvider.get()).thenReturn(step).thenReturn(step2);
 
         IStep actual = taskFactory.createStep(clzName);
-
         assertSame(step, actual);
+
+        actual = taskFactory.createStep(clzName);
+        assertSame(step2, actual);
+
+        verify(dInjector, times(1)).provider(stepClass);
     }
 
     @Test
     public void testCreateStepClassCastException() throws Exception {
         String clzName = "org.codetab.scoopi.step.Task";
-        @SuppressWarnings({"unchecked", "rawtypes"})
-        Class<Task> stepClass = (Class) Class.forName(clzName);
-        Task obj = Mockito.mock(Task.class);
-
-        when(dInjector.instance(stepClass)).thenReturn(obj);
 
         assertThrows(ClassCastException.class,
                 () -> taskFactory.createStep(clzName));
+
+        verify(dInjector, never()).provider(any());
     }
 
+    @Test
+    public void testCreateStepClassNotFoundException() throws Exception {
+        String clzName = "org.codetab.scoopi.step.Xyz";
+
+        assertThrows(ClassNotFoundException.class,
+                () -> taskFactory.createStep(clzName));
+    }
 }
@@ -1,5 +1,6 @@
 package org.codetab.scoopi.step.mediator;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doThrow;
@@ -8,9 +9,18 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import org.codetab.scoopi.config.Configs;
 import org.codetab.scoopi.metrics.Errors;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.model.StepInfo;
+import org.codetab.scoopi.step.ICpuBoundStep;
+import org.codetab.scoopi.step.IStep;
 import org.codetab.scoopi.step.base.FetchThrottle;
+import org.codetab.scoopi.step.extract.PageLoader;
+import org.codetab.scoopi.step.load.DataAppender;
+import org.codetab.scoopi.step.parse.jsoup.Parser;
+import org.codetab.scoopi.step.process.DataFilter;
 import org.codetab.scoopi.store.IPayloadStore;
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +29,8 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import com.codahale.metrics.Meter;
+
 public class TaskMediatorTest {
     @InjectMocks
     private TaskMediator taskMediator;
@@ -33,18 +45,73 @@ public class TaskMediatorTest {
     private FetchThrottle fetchThrottle;
     @Mock
     private Errors errors;
+    @Mock
+    private Configs configs;
+    @Mock
+    private MetricsHelper metricsHelper;
 
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
     }
 
+    @Test
+    public void testInit() {
+        taskMediator.init();
+
+        verify(payloadStore).open();
+    }
+
+    @Test
+    public void testIsOverLimit() {
+        when(payloadStore.isOverLimit()).thenReturn(true).thenReturn(false);
+
+        assertTrue(taskMediator.isOverLimit());
+        assertFalse(taskMediator.isOverLimit());
+    }
+
     @Test
     public void testStart() {
         taskMediator.start();
 
         verify(fetchThrottle).init();
         verify(taskRunner).start();
+        assertFalse(taskMediator.isFused(Mockito.mock(ICpuBoundStep.class),
+                stepInfo(DataFilter.class)));
+    }
+
+    @Test
+    public void testIsFused() {
+        when(configs.getBoolean("scoopi.task.fuse.enable", false))
+                .thenReturn(true);
+
+        taskMediator.start();
+
+        IStep parser = Mockito.mock(ICpuBoundStep.class);
+        IStep loader = Mockito.mock(IStep.class);
+
+        // CPU to CPU
+        assertTrue(taskMediator.isFused(parser, stepInfo(DataFilter.class)));
+        assertTrue(taskMediator.isFused(parser, stepInfo(Parser.class)));
+        // CPU to I/O
+        assertFalse(
+                taskMediator.isFused(parser, stepInfo(DataAppender.class)));
+        assertFalse(taskMediator.isFused(parser, stepInfo(PageLoader.class)));
+        // I/O to CPU
+        assertFalse(taskMediator.isFused(loader, stepInfo(Parser.class)));
+    }
+
+    @Test
+    public void testIsFusedClassNotFound() {
+        when(configs.getBoolean("scoopi.task.fuse.enable", false))
+                .thenReturn(true);
+        StepInfo nextStep = Mockito.mock(StepInfo.class);
+        when(nextStep.getClassName()).thenReturn("com.example.NoSuchStep");
+
+        taskMediator.start();
+
+        assertFalse(taskMediator
+                .isFused(Mockito.mock(ICpuBoundStep.class), nextStep));
     }
 
     @Test
@@ -71,14 +138,18 @@ public class TaskMediatorTest {
     public void testPushPayload() throws Exception {
         Payload payload = Mockito.mock(Payload.class);
         TMState tmState = TMState.READY;
+        Meter meter = Mockito.mock(Meter.class);
 
         when(stateFliper.getTMState()).thenReturn(tmState);
+        when(metricsHelper.getMeter(taskMediator, "payload", "queued"))
+                .thenReturn(meter);
 
         boolean actual = taskMediator.pushPayload(payload);
 
         assertTrue(actual);
         verify(stateFliper).setTMState(TMState.READY);
         verify(payloadStore).putPayload(payload);
+        verify(meter).mark();
     }
 
     @Test
@@ -109,4 +180,10 @@ public class TaskMediatorTest {
         verify(payloadStore, never()).putPayload(payload);
     }
 
+
+    private StepInfo stepInfo(final Class<?> clz) {
+        StepInfo stepInfo = Mockito.mock(StepInfo.class);
+        when(stepInfo.getClassName()).thenReturn(clz.getName());
+        return stepInfo;
+    }
 }
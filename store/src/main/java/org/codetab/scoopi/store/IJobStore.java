@@ -25,6 +25,18 @@ public interface IJobStore {
     Payload takeJob()
             throws InterruptedException, TransactionException, TimeoutException;
 
+    /**
+     * <p>
+     * Take up to count jobs in one go.
+     * @param count
+     *            max jobs to take
+     * @return taken jobs, at least one
+     * @throws java.util.NoSuchElementException
+     *             if no job is available
+     */
+    List<Payload> takeJobs(int count)
+            throws InterruptedException, TransactionException, TimeoutException;
+
     boolean markFinished(long id) throws TransactionException;
 
     boolean resetTakenJob(long jobId);
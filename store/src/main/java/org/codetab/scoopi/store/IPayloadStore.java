@@ -4,12 +4,22 @@ import org.codetab.scoopi.model.Payload;
 
 public interface IPayloadStore {
 
+    void open();
+
     void putPayload(Payload payload) throws InterruptedException;
 
     Payload takePayload(int timeout) throws InterruptedException;
 
     int getPayloadsCount();
 
+    /**
+     * <p>
+     * Is store holding more than its memory limit. Job runner holds back new
+     * jobs while it is so.
+     * @return true if over limit
+     */
+    boolean isOverLimit();
+
     boolean isDone();
 
     void clear();
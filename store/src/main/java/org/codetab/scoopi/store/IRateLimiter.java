@@ -0,0 +1,19 @@
+package org.codetab.scoopi.store;
+
+public interface IRateLimiter {
+
+    /**
+     * <p>
+     * Lease count slots, interval millis apart, for a key. Slots leased by a
+     * member are not leased to others, so members that use slot only at its
+     * time together keep to one use per interval.
+     * @param key
+     *            rate limit key, for example host
+     * @param count
+     *            number of slots
+     * @param interval
+     *            millis between slots
+     * @return millis from now to first slot
+     */
+    long lease(String key, int count, long interval);
+}
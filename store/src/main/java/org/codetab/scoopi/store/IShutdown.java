@@ -17,4 +17,11 @@ public interface IShutdown {
     void cancel();
 
     boolean isCancelled();
+
+    /**
+     * Register listener that is called when done state of any node changes.
+     * Listener is called on store thread and should not block.
+     * @param listener
+     */
+    void addDoneListener(Runnable listener);
 }
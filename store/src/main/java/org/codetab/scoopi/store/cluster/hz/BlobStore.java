@@ -0,0 +1,220 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static java.util.Objects.isNull;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.Document;
+import org.codetab.scoopi.model.Fingerprint;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.model.helper.Fingerprints;
+import org.codetab.scoopi.store.ICluster;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.transaction.TransactionContext;
+import com.hazelcast.transaction.TransactionalMap;
+
+/**
+ * Content addressed store of document bytes. Tasks of a document are pushed
+ * as separate jobs and each payload used to carry its own copy of the
+ * document. Instead, document bytes are stored once in blobs map keyed by
+ * fingerprint of the bytes, and payloads carry a document whose object is the
+ * fingerprint. Blob refs map counts payloads that refer a blob and blob is
+ * removed when the last of them is finished.
+ * <p>
+ * Refs are updated in the transaction of job store, so that count is in sync
+ * with payloads map. For job stores without transaction, refs are updated
+ * under lock of the blob key. Blobs map is near cached, see hazelcast.xml.
+ * @author m
+ *
+ */
+@Singleton
+public class BlobStore {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    @Inject
+    private ICluster cluster;
+    @Inject
+    private ObjectFactory objFactory;
+    @Inject
+    private MetricsHelper metricsHelper;
+
+    private IMap<String, byte[]> blobsMap;
+    private IMap<String, Integer> refsMap;
+
+    public void open() {
+        HazelcastInstance hz = (HazelcastInstance) cluster.getInstance();
+        blobsMap = hz.getMap(DsName.BLOBS_MAP.toString());
+        refsMap = hz.getMap(DsName.BLOB_REFS_MAP.toString());
+    }
+
+    /**
+     * Store document bytes of payload, if not already stored, and increment
+     * its ref count.
+     * @param payload
+     *            payload
+     * @param tx
+     *            active transaction
+     * @return payload with document ref or the payload itself if it doesn't
+     *         hold document bytes
+     */
+    public Payload toRef(final Payload payload, final TransactionContext tx) {
+        Document document = getDocument(payload);
+        if (isNull(document)
+                || !(document.getDocumentObject() instanceof byte[])) {
+            return payload;
+        }
+        byte[] bytes = (byte[]) document.getDocumentObject();
+        String key = Fingerprints.fingerprint(bytes).getValue();
+
+        TransactionalMap<String, Integer> txRefsMap =
+                tx.getMap(DsName.BLOB_REFS_MAP.toString());
+        Integer refs = txRefsMap.getForUpdate(key);
+        if (isNull(refs)) {
+            TransactionalMap<String, byte[]> txBlobsMap =
+                    tx.getMap(DsName.BLOBS_MAP.toString());
+            txBlobsMap.set(key, bytes);
+            refs = 0;
+            metricsHelper.getMeter(this, "blob", "stored").mark();
+        }
+        txRefsMap.set(key, refs + 1);
+        metricsHelper.getMeter(this, "blob", "ref").mark();
+        return createRef(payload, document, key);
+    }
+
+    /**
+     * Non transactional toRef, blob and its ref count are updated under lock
+     * of the key.
+     * @param payload
+     *            payload
+     * @return payload with document ref or the payload itself if it doesn't
+     *         hold document bytes
+     */
+    public Payload toRef(final Payload payload) {
+        Document document = getDocument(payload);
+        if (isNull(document)
+                || !(document.getDocumentObject() instanceof byte[])) {
+            return payload;
+        }
+        byte[] bytes = (byte[]) document.getDocumentObject();
+        String key = Fingerprints.fingerprint(bytes).getValue();
+
+        blobsMap.lock(key);
+        try {
+            Integer refs = refsMap.get(key);
+            if (isNull(refs)) {
+                blobsMap.set(key, bytes);
+                refs = 0;
+                metricsHelper.getMeter(this, "blob", "stored").mark();
+            }
+            refsMap.set(key, refs + 1);
+        } finally {
+            blobsMap.unlock(key);
+        }
+        metricsHelper.getMeter(this, "blob", "ref").mark();
+        return createRef(payload, document, key);
+    }
+
+    private Payload createRef(final Payload payload, final Document document,
+            final String key) {
+        Document docRef = objFactory.createDocument(document.getName(),
+                document.getFromDate(), document.getUrl(), document.getGroup(),
+                document.getLocatorId());
+        docRef.setId(document.getId());
+        docRef.setCompressed(document.isCompressed());
+        docRef.setDocumentObject(new Fingerprint(key));
+        return objFactory.createPayload(payload.getJobInfo(),
+                payload.getStepInfo(), docRef);
+    }
+
+    /**
+     * Replace document ref of payload with document bytes.
+     * @param payload
+     *            payload taken from payloads map
+     * @return payload or null if blob is not found
+     */
+    public Payload resolve(final Payload payload) {
+        Document document = getDocument(payload);
+        if (isNull(document)
+                || !(document.getDocumentObject() instanceof Fingerprint)) {
+            return payload;
+        }
+        String key = ((Fingerprint) document.getDocumentObject()).getValue();
+        byte[] bytes = blobsMap.get(key);
+        if (isNull(bytes)) {
+            LOG.error("blob {} not found, job {}", key,
+                    payload.getJobInfo().getId());
+            return null;
+        }
+        document.setDocumentObject(bytes);
+        return payload;
+    }
+
+    /**
+     * Decrement ref count of the blob referred by payload and remove the blob
+     * when count drops to zero.
+     * @param payload
+     *            payload removed from payloads map
+     * @param tx
+     *            active transaction
+     */
+    public void release(final Payload payload, final TransactionContext tx) {
+        Document document = getDocument(payload);
+        if (isNull(document)
+                || !(document.getDocumentObject() instanceof Fingerprint)) {
+            return;
+        }
+        String key = ((Fingerprint) document.getDocumentObject()).getValue();
+        TransactionalMap<String, Integer> txRefsMap =
+                tx.getMap(DsName.BLOB_REFS_MAP.toString());
+        Integer refs = txRefsMap.getForUpdate(key);
+        if (isNull(refs) || refs <= 1) {
+            TransactionalMap<String, byte[]> txBlobsMap =
+                    tx.getMap(DsName.BLOBS_MAP.toString());
+            txRefsMap.delete(key);
+            txBlobsMap.delete(key);
+        } else {
+            txRefsMap.set(key, refs - 1);
+        }
+    }
+
+    /**
+     * Non transactional release, under lock of the key.
+     * @param payload
+     *            payload removed from payloads map
+     */
+    public void release(final Payload payload) {
+        Document document = getDocument(payload);
+        if (isNull(document)
+                || !(document.getDocumentObject() instanceof Fingerprint)) {
+            return;
+        }
+        String key = ((Fingerprint) document.getDocumentObject()).getValue();
+        blobsMap.lock(key);
+        try {
+            Integer refs = refsMap.get(key);
+            if (isNull(refs) || refs <= 1) {
+                refsMap.delete(key);
+                blobsMap.delete(key);
+            } else {
+                refsMap.set(key, refs - 1);
+            }
+        } finally {
+            blobsMap.unlock(key);
+        }
+    }
+
+    private Document getDocument(final Payload payload) {
+        if (isNull(payload) || !(payload.getData() instanceof Document)) {
+            return null;
+        }
+        return (Document) payload.getData();
+    }
+}
@@ -0,0 +1,498 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.codetab.scoopi.util.Util.spaceit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.exception.ConfigNotFoundException;
+import org.codetab.scoopi.exception.CriticalException;
+import org.codetab.scoopi.exception.JobStateException;
+import org.codetab.scoopi.exception.TransactionException;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.ClusterJob;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.store.ICluster;
+import org.codetab.scoopi.store.cluster.IClusterJobStore;
+
+import com.codahale.metrics.Timer.Context;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicates;
+
+/**
+ * Cluster job store without distributed transactions. State of each job is an
+ * entry in job states map and it moves QUEUED (not taken) -&gt; TAKEN (taken
+ * by member) -&gt; DONE (entry removed). Each transition is an entry processor
+ * that runs atomically on the partition owner and is idempotent - applied
+ * again, it is a no-op - so that calls may be safely retried.
+ * <p>
+ * New job is created taken by the putting member, then its payload is put
+ * and only then it is queued, so that no member takes a job without payload.
+ * If putting member crashes meanwhile, its jobs are reset by CrashCleaner.
+ * Payload is removed after the state. Without transaction, children and
+ * parent of putJobs are not updated atomically; if member crashes between
+ * them, the parent is reset and run again (at least once, as against exactly
+ * once of JobStore). Locality mode of JobStore is not supported.
+ * <p>
+ * Enable with scoopi.cluster.jobStore=cas.
+ * @author m
+ *
+ */
+@Singleton
+public class CasJobStore implements IClusterJobStore {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int STEAL_WINDOW = 4;
+
+    @Inject
+    private Configs configs;
+    @Inject
+    private ICluster cluster;
+    @Inject
+    private CrashCleaner crashCleaner;
+    @Inject
+    private MetricsHelper metricsHelper;
+    @Inject
+    private BlobStore blobStore;
+
+    private HazelcastInstance hz;
+
+    private IMap<Long, ClusterJob> jobStatesMap;
+    private IMap<Long, Payload> payloadsMap;
+    private IMap<String, String> keyStoreMap;
+
+    private String memberId;
+    private IdBlockAllocator jobIdAllocator;
+
+    private int jobTakeLimit;
+    private int jobTakeTimeout;
+    private Semaphore jobTakeThrottle;
+
+    private Random random;
+
+    private final LocalJobIndex jobIndex = new LocalJobIndex();
+
+    @Override
+    public void open() {
+        try {
+            hz = (HazelcastInstance) cluster.getInstance();
+            memberId = configs.getConfig("scoopi.cluster.memberId");
+            jobTakeLimit = configs.getInt("scoopi.job.takeLimit", "4");
+            jobTakeTimeout = configs.getInt("scoopi.job.takeTimeout", "1000");
+            int idBlockSize =
+                    configs.getInt("scoopi.job.idBlockSize", "1000");
+            jobIdAllocator = new IdBlockAllocator(
+                    hz.getMap(DsName.ID_BLOCKS_MAP.toString()), "job_id_seq",
+                    idBlockSize);
+
+            jobStatesMap = hz.getMap(DsName.JOB_STATES_MAP.toString());
+            payloadsMap = hz.getMap(DsName.PAYLOADS_MAP.toString());
+            keyStoreMap = hz.getMap(DsName.KEYSTORE_MAP.toString());
+            blobStore.open();
+            jobIndex.open(hz, jobStatesMap);
+
+            jobTakeThrottle = new Semaphore(jobTakeLimit);
+            random = new Random();
+        } catch (ConfigNotFoundException e) {
+            throw new CriticalException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        // ScoopiEngine stops cluster
+    }
+
+    @Override
+    public boolean putJob(final Payload payload)
+            throws InterruptedException, TransactionException {
+        notNull(payload, "payload must not be null");
+
+        Context timer =
+                metricsHelper.getTimer(this, "job", "put", "time").time();
+        long jobId = payload.getJobInfo().getId();
+        try {
+            Set<Long> duplicates = queueJobs(
+                    Collections.singletonMap(jobId, blobStore.toRef(payload)));
+            if (!duplicates.isEmpty()) {
+                throw new JobStateException(
+                        spaceit("duplicate job", String.valueOf(jobId)));
+            }
+            LOG.debug("put payload {}", jobId);
+            return true;
+        } catch (Exception e) {
+            String message =
+                    spaceit("put job", payload.getJobInfo().getLabel());
+            throw new TransactionException(message, e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /**
+     * Put payloads and queue their jobs in batch, then finish the parent job.
+     * Parent should be taken by this member.
+     */
+    @Override
+    public boolean putJobs(final List<Payload> payloads, final long jobId)
+            throws InterruptedException, TransactionException {
+        ClusterJob parent = jobStatesMap.get(jobId);
+        if (isNull(parent) || !parent.isTaken()
+                || !memberId.equals(parent.getMemberId())) {
+            throw new JobStateException(
+                    "parent job already removed by another node");
+        }
+        try {
+            Map<Long, Payload> refs = new HashMap<>();
+            for (Payload payload : payloads) {
+                long newJobId = payload.getJobInfo().getId();
+                refs.put(newJobId, blobStore.toRef(payload));
+                LOG.debug("batch put payload {}", newJobId);
+            }
+            Set<Long> duplicates = queueJobs(refs);
+            if (!duplicates.isEmpty()) {
+                LOG.error("duplicate jobs {} of job id {}, not put", duplicates,
+                        jobId);
+            }
+            finish(jobId);
+
+            if (jobTakeThrottle.availablePermits() < jobTakeLimit) {
+                jobTakeThrottle.release();
+            }
+            return true;
+        } catch (Exception e) {
+            String message =
+                    spaceit("put jobs of job id", String.valueOf(jobId));
+            throw new TransactionException(message, e);
+        }
+    }
+
+    /*
+     * create jobs taken by this member, put payloads of created jobs and then
+     * queue them. Payloads of jobs that already exist are not put and their
+     * refs are released. Returns ids of such duplicate jobs.
+     */
+    private Set<Long> queueJobs(final Map<Long, Payload> refs) {
+        Map<Long, Boolean> created =
+                jobStatesMap.executeOnKeys(refs.keySet(), new Queue(memberId));
+        Map<Long, Payload> newRefs = new HashMap<>();
+        Set<Long> duplicates = new TreeSet<>();
+        for (Entry<Long, Payload> entry : refs.entrySet()) {
+            if (Boolean.TRUE.equals(created.get(entry.getKey()))) {
+                newRefs.put(entry.getKey(), entry.getValue());
+            } else {
+                blobStore.release(entry.getValue());
+                duplicates.add(entry.getKey());
+            }
+        }
+        if (!newRefs.isEmpty()) {
+            payloadsMap.putAll(newRefs);
+            jobStatesMap.executeOnKeys(newRefs.keySet(), new Reset(memberId));
+        }
+        return duplicates;
+    }
+
+    @Override
+    public Payload takeJob() throws InterruptedException, TransactionException,
+            TimeoutException {
+        return takeJobs(1).get(0);
+    }
+
+    /**
+     * Acquire permits as JobStore does, select queued jobs - local first,
+     * else steal - and claim them with one executeOnKeys. Jobs claimed by
+     * other members meanwhile are skipped and their permits released.
+     */
+    @Override
+    public List<Payload> takeJobs(final int count) throws InterruptedException,
+            TransactionException, TimeoutException {
+
+        Context timer =
+                metricsHelper.getTimer(this, "job", "take", "time").time();
+        try {
+            boolean acquired = jobTakeThrottle.tryAcquire(jobTakeTimeout,
+                    TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                throw new TimeoutException(
+                        "timeout while acquire job take permit");
+            }
+            int permits = 1;
+            while (permits < count && jobTakeThrottle.tryAcquire()) {
+                permits++;
+            }
+
+            List<Long> candidates = selectJobs(permits);
+            if (candidates.isEmpty()) {
+                jobTakeThrottle.release(permits);
+                throw new NoSuchElementException("jobs queue is empty");
+            }
+
+            Map<Long, Boolean> claims;
+            try {
+                claims = jobStatesMap.executeOnKeys(new HashSet<>(candidates),
+                        new Take(memberId));
+            } catch (RuntimeException e) {
+                // local jobs not claimed are selected again after rebuild
+                jobIndex.invalidate();
+                jobTakeThrottle.release(permits);
+                throw new TransactionException("claim jobs", e);
+            }
+            List<Long> jobIds = new ArrayList<>(permits);
+            for (Long jobId : candidates) {
+                if (Boolean.TRUE.equals(claims.get(jobId))) {
+                    jobIds.add(jobId);
+                }
+            }
+            if (permits > jobIds.size()) {
+                jobTakeThrottle.release(permits - jobIds.size());
+            }
+            if (jobIds.isEmpty()) {
+                throw new NoSuchElementException(
+                        "jobs taken by other members");
+            }
+
+            List<Payload> payloads = getPayloads(jobIds);
+            metricsHelper.getMeter(this, "job", "taken").mark(payloads.size());
+            return payloads;
+        } finally {
+            timer.stop();
+        }
+    }
+
+    /*
+     * local queued jobs from index, else steal
+     */
+    private List<Long> selectJobs(final int count) {
+        List<Long> local = jobIndex.poll(jobStatesMap, count, cJob -> true);
+        if (local.isEmpty()) {
+            Collection<Long> keys = jobStatesMap.keySet(
+                    Predicates.pagingPredicate(Predicates.equal("taken", false),
+                            new JobStore.LifoComparator(),
+                            count * STEAL_WINDOW));
+            if (keys.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Long> stolen = new ArrayList<>(keys);
+            Collections.shuffle(stolen, random);
+            stolen = stolen.subList(0, Math.min(count, stolen.size()));
+            metricsHelper.getMeter(this, "job", "stolen").mark(stolen.size());
+            return stolen;
+        }
+        return local;
+    }
+
+    private List<Payload> getPayloads(final List<Long> jobIds)
+            throws TransactionException {
+        Map<Long, Payload> payloadMap =
+                payloadsMap.getAll(new TreeSet<>(jobIds));
+        List<Payload> payloads = new ArrayList<>(jobIds.size());
+        for (Long jobId : jobIds) {
+            Payload payload = blobStore.resolve(payloadMap.get(jobId));
+            if (isNull(payload)) {
+                // drop the job, else cluster never finishes
+                LOG.error("payload not found jobid {}, drop job", jobId);
+                markFinished(jobId);
+            } else {
+                payloads.add(payload);
+            }
+        }
+        if (payloads.isEmpty()) {
+            throw new NoSuchElementException(
+                    "payloads of taken jobs not found");
+        }
+        return payloads;
+    }
+
+    @Override
+    public boolean markFinished(final long jobId) throws TransactionException {
+        try {
+            if (!finish(jobId)) {
+                throw new JobStateException(spaceit(
+                        "mark finish, no such job:", String.valueOf(jobId)));
+            }
+            if (jobTakeThrottle.availablePermits() < jobTakeLimit) {
+                jobTakeThrottle.release();
+            }
+            return true;
+        } catch (JobStateException e) {
+            throw e;
+        } catch (Exception e) {
+            String message = spaceit("mark finish job", String.valueOf(jobId));
+            throw new TransactionException(message, e);
+        }
+    }
+
+    /*
+     * TAKEN -> DONE, then remove payload and its blob ref
+     */
+    private boolean finish(final long jobId) {
+        Boolean finished = jobStatesMap.executeOnKey(jobId, new Finish());
+        blobStore.release(payloadsMap.remove(jobId));
+        return Boolean.TRUE.equals(finished);
+    }
+
+    /**
+     * TAKEN -&gt; QUEUED. Processor is idempotent, so retry is safe.
+     */
+    @Override
+    public boolean resetTakenJob(final long jobId) {
+        try {
+            LOG.debug("reset taken job {}", jobId);
+            jobStatesMap.executeOnKey(jobId, new Reset(null));
+            if (jobTakeThrottle.availablePermits() < jobTakeLimit) {
+                jobTakeThrottle.release();
+            }
+            return true;
+        } catch (Exception e) {
+            LOG.debug("reset taken job {} failed", jobId, e);
+            return false;
+        }
+    }
+
+    @Override
+    public void resetCrashedJobs() {
+        if (crashCleaner.hasCrashedMembers()) {
+            crashCleaner.resetCrashedJobStates(jobStatesMap);
+        }
+    }
+
+    @Override
+    public void setState(final State state) {
+        keyStoreMap.put(DsName.DATA_GRID_STATE.toString(), state.toString());
+    }
+
+    @Override
+    public long getJobIdSeq() {
+        return jobIdAllocator.nextId();
+    }
+
+    @Override
+    public boolean isDone() {
+        return jobStatesMap.isEmpty();
+    }
+
+    /**
+     * Create job TAKEN by the putting member, false if job exists. Member
+     * queues it, with Reset, after its payload is put.
+     */
+    static class Queue implements EntryProcessor<Long, ClusterJob, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String memberId;
+
+        Queue(final String memberId) {
+            this.memberId = memberId;
+        }
+
+        @Override
+        public Boolean process(final Entry<Long, ClusterJob> entry) {
+            if (nonNull(entry.getValue())) {
+                return false;
+            }
+            ClusterJob cJob =
+                    new ObjectFactory().createClusterJob(entry.getKey());
+            cJob.setTaken(true);
+            cJob.setMemberId(memberId);
+            entry.setValue(cJob);
+            return true;
+        }
+    }
+
+    /**
+     * QUEUED -&gt; TAKEN by member, false if job is not queued.
+     */
+    static class Take implements EntryProcessor<Long, ClusterJob, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String memberId;
+
+        Take(final String memberId) {
+            this.memberId = memberId;
+        }
+
+        @Override
+        public Boolean process(final Entry<Long, ClusterJob> entry) {
+            ClusterJob cJob = entry.getValue();
+            if (isNull(cJob) || cJob.isTaken()) {
+                return false;
+            }
+            cJob.setTaken(true);
+            cJob.setMemberId(memberId);
+            entry.setValue(cJob);
+            return true;
+        }
+    }
+
+    /**
+     * TAKEN -&gt; QUEUED. If member id is set, only the jobs taken by that
+     * member are reset.
+     */
+    static class Reset implements EntryProcessor<Long, ClusterJob, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String memberId;
+
+        Reset(final String memberId) {
+            this.memberId = memberId;
+        }
+
+        @Override
+        public Boolean process(final Entry<Long, ClusterJob> entry) {
+            ClusterJob cJob = entry.getValue();
+            if (isNull(cJob) || !cJob.isTaken() || (nonNull(memberId)
+                    && !memberId.equals(cJob.getMemberId()))) {
+                return false;
+            }
+            cJob.setTaken(false);
+            cJob.setMemberId(null);
+            entry.setValue(cJob);
+            return true;
+        }
+    }
+
+    /**
+     * Any state -&gt; DONE, false if job doesn't exist.
+     */
+    static class Finish implements EntryProcessor<Long, ClusterJob, Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Boolean process(final Entry<Long, ClusterJob> entry) {
+            if (isNull(entry.getValue())) {
+                return false;
+            }
+            entry.setValue(null);
+            return true;
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.codetab.scoopi.store.cluster.hz;
 
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
@@ -16,6 +15,7 @@ import org.codetab.scoopi.store.IShutdown;
 import com.hazelcast.cluster.Member;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.HazelcastInstanceNotActiveException;
+import com.hazelcast.map.IMap;
 
 @Singleton
 public class ClusterShutdown implements IShutdown {
@@ -27,8 +27,8 @@ public class ClusterShutdown implements IShutdown {
     @Inject
     private IJobStore jobStore;
 
-    private Map<String, Boolean> doneMap;
-    private Map<String, Boolean> terminateMap;
+    private IMap<String, Boolean> doneMap;
+    private IMap<String, Boolean> terminateMap;
 
     private HazelcastInstance hz;
 
@@ -49,10 +49,14 @@ public class ClusterShutdown implements IShutdown {
         terminateMap.put(memberId, false);
     }
 
+    /**
+     * Conditional replace updates the map, and fires done event to other
+     * members, only when done state of this member changes.
+     */
     @Override
     public void setDone() {
         if (cluster.isNodeRunning()) {
-            doneMap.put(memberId, true);
+            doneMap.replace(memberId, false, true);
         }
     }
 
@@ -110,6 +114,18 @@ public class ClusterShutdown implements IShutdown {
         }
     }
 
+    /**
+     * Listener is called when done or terminate state of any member is set and
+     * also when a member leaves the cluster.
+     */
+    @Override
+    public void addDoneListener(final Runnable listener) {
+        DoneListener doneListener = new DoneListener(listener);
+        doneMap.addEntryListener(doneListener, false);
+        terminateMap.addEntryListener(doneListener, false);
+        clst.addMembershipListener(doneListener);
+    }
+
     @Override
     public boolean jobStoreDone() {
         return jobStore.isDone();
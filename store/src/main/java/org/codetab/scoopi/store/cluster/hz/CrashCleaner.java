@@ -1,12 +1,17 @@
 package org.codetab.scoopi.store.cluster.hz;
 
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -14,54 +19,137 @@ import javax.inject.Singleton;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.ClusterJob;
 import org.codetab.scoopi.store.ICluster;
 
-import com.hazelcast.collection.IList;
+import com.google.common.collect.Lists;
+import com.hazelcast.config.IndexType;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicates;
 import com.hazelcast.transaction.TransactionContext;
 import com.hazelcast.transaction.TransactionOptions;
-import com.hazelcast.transaction.TransactionalList;
 import com.hazelcast.transaction.TransactionalMap;
 
+/**
+ * Resets jobs taken by crashed members. Taken and job state maps are indexed
+ * on memberId so that jobs of a crashed member are found by predicate on
+ * partition owners instead of streaming the map to leader. Recovery starts as
+ * soon as member leaves the cluster, runs on leader in batches of
+ * scoopi.cluster.crashCleaner.batchSize and time from member leave to its
+ * recovery is recorded in crash recovery timer.
+ * @author m
+ *
+ */
 @Singleton
 public class CrashCleaner {
 
     private static final Logger LOG = LogManager.getLogger();
 
+    private static final String MEMBER_ID = "memberId";
+
     @Inject
     private Configs configs;
     @Inject
     private ICluster cluster;
     @Inject
     private CrashedMembers crashedMembers;
+    @Inject
+    private MetricsHelper metricsHelper;
+    @Inject
+    private MembershipListener membershipListener;
 
     /*
      * set of crashed members that are processed by CrashCleaner
      */
     private Set<String> clearedMembers;
+    /*
+     * crashed member and time when it left the cluster
+     */
+    private final Map<String, Long> leaveTimes = new ConcurrentHashMap<>();
 
-    private Map<Long, ClusterJob> takenJobsMap;
+    private IMap<Long, ClusterJob> takenJobsMap;
+    private IMap<Long, ClusterJob> jobsMap;
+    private IMap<Long, ClusterJob> jobStatesMap;
     private TransactionOptions txOptions;
+    private int batchSize;
 
     private HazelcastInstance hz;
+    private ExecutorService recoveryExecutor;
 
     public void init() {
         hz = (HazelcastInstance) cluster.getInstance();
         txOptions = (TransactionOptions) cluster.getTxOptions(configs);
+        batchSize = configs.getInt("scoopi.cluster.crashCleaner.batchSize",
+                "100");
         takenJobsMap = hz.getMap(DsName.TAKEN_JOBS_MAP.toString());
-        clearedMembers = new HashSet<String>();
+        jobsMap = hz.getMap(DsName.JOBS_MAP.toString());
+        takenJobsMap.addIndex(IndexType.HASH, MEMBER_ID);
+        jobsMap.addIndex(IndexType.HASH, MEMBER_ID);
+        if ("cas".equalsIgnoreCase(
+                configs.getConfig("scoopi.cluster.jobStore", "tx"))) {
+            jobStatesMap = hz.getMap(DsName.JOB_STATES_MAP.toString());
+            jobStatesMap.addIndex(IndexType.HASH, MEMBER_ID);
+        }
+        clearedMembers = ConcurrentHashMap.newKeySet();
+
+        recoveryExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "crash-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        membershipListener.addRemovedListener(this::memberLeft);
     }
 
-    public boolean resetCrashedJobs() {
+    /**
+     * Recover jobs of member that left the cluster, which MembershipListener
+     * has added to crashed members, without waiting for job store to poll.
+     * Recovery runs in cleaner thread as listener should not block on cluster
+     * calls. Done state of member is not a sign of graceful leave as member
+     * may take jobs after it is done, member that left without taken jobs is
+     * cleared in the first cycle.
+     * @param memberId
+     *            member that left
+     */
+    void memberLeft(final String memberId) {
+        long leaveTime = System.currentTimeMillis();
+        recoveryExecutor.execute(() -> {
+            leaveTimes.putIfAbsent(memberId, leaveTime);
+            recover();
+        });
+    }
+
+    /*
+     * reset till crashed members are cleared or reset fails
+     */
+    void recover() {
+        try {
+            boolean reset;
+            do {
+                if (nonNull(jobStatesMap)) {
+                    reset = resetCrashedJobStates(jobStatesMap);
+                } else {
+                    reset = resetCrashedJobs();
+                }
+            } while (reset);
+        } catch (Exception e) {
+            LOG.warn("crash recovery failed, {}", e.getLocalizedMessage());
+            LOG.debug("crash recovery", e);
+        }
+    }
 
+    /*
+     * crashed member yet to be cleared, only leader clears crashed members.
+     */
+    private Optional<String> findCrashedMember() {
         if (crashedMembers.isEmpty()) {
-            return false;
+            return Optional.empty();
         }
 
         String leader = cluster.getLeader();
         if (!cluster.getMemberId().equals(leader)) {
-            return false; // not leader
+            return Optional.empty(); // not leader
         }
 
         /*
@@ -75,57 +163,169 @@ public class CrashCleaner {
                     Arrays.toString(crashedMembers.toArray()));
             LOG.debug("i am {} leader, reset taken jobs",
                     cluster.getShortId(leader));
-        } else {
+        }
+        return crashedMember;
+    }
+
+    /*
+     * no jobs left with crashed member, record time taken to recover
+     */
+    private void cleared(final String crashedMemberId) {
+        clearedMembers.add(crashedMemberId);
+        LOG.debug("no taken jobs by {}, crashed member removed",
+                cluster.getShortId(crashedMemberId));
+        Long leaveTime = leaveTimes.remove(crashedMemberId);
+        if (nonNull(leaveTime)) {
+            long latency = System.currentTimeMillis() - leaveTime;
+            metricsHelper.getTimer(this, "crash", "recovery", "time")
+                    .update(latency, TimeUnit.MILLISECONDS);
+            LOG.info("jobs of crashed member {} recovered in {} ms",
+                    cluster.getShortId(crashedMemberId), latency);
+        }
+    }
+
+    public synchronized boolean resetCrashedJobs() {
+
+        Optional<String> crashedMember = findCrashedMember();
+        if (!crashedMember.isPresent()) {
             return false;
         }
 
         String crashedMemberId = crashedMember.get();
 
-        List<Long> takenJobs = takenJobsMap.values().stream().filter(
-                p -> p.isTaken() && p.getMemberId().equals(crashedMemberId))
-                .map(ClusterJob::getJobId).collect(Collectors.toList());
+        // memberId index, predicate runs on partition owners
+        List<Long> takenJobs = new ArrayList<>(takenJobsMap.keySet(
+                Predicates.and(Predicates.equal(MEMBER_ID, crashedMemberId),
+                        Predicates.equal("taken", true))));
+
+        // jobs leased in locality mode, release them without waiting for expiry
+        List<Long> leasedJobs = new ArrayList<>(jobsMap.keySet(Predicates.and(
+                Predicates.equal(MEMBER_ID, crashedMemberId),
+                Predicates.greaterThan("leaseUntil",
+                        System.currentTimeMillis()))));
 
-        if (takenJobs.isEmpty()) {
+        if (takenJobs.isEmpty() && leasedJobs.isEmpty()) {
             // no taken job by crashed node, add it to cleared set
-            clearedMembers.add(crashedMemberId);
-            LOG.debug("no taken jobs by {}, crashed member removed",
-                    cluster.getShortId(crashedMemberId));
+            cleared(crashedMemberId);
             return false;
-        } else {
-            LOG.info("reset {} jobs taken by {}", takenJobs.size(),
-                    cluster.getShortId(crashedMemberId));
-            TransactionContext tx = hz.newTransactionContext(txOptions);
-            try {
-                tx.beginTransaction();
-                TransactionalList<ClusterJob> txJobsList =
-                        tx.getList(DsName.JOBS_LIST.toString());
-                TransactionalMap<Long, ClusterJob> txTakenJobsMap =
-                        tx.getMap(DsName.TAKEN_JOBS_MAP.toString());
-
-                for (Long jobId : takenJobs) {
+        }
+
+        LOG.info("reset {} jobs taken and {} jobs leased by {}",
+                takenJobs.size(), leasedJobs.size(),
+                cluster.getShortId(crashedMemberId));
+        try {
+            for (List<Long> batch : Lists.partition(takenJobs, batchSize)) {
+                resetTakenJobs(batch);
+            }
+            for (List<Long> batch : Lists.partition(leasedJobs, batchSize)) {
+                releaseLeasedJobs(batch);
+            }
+            LOG.debug(
+                    "reset taken jobs finished, crashed node will be removed in next cycle");
+            return true;
+        } catch (Exception e) {
+            LOG.warn("could not reset jobs taken by {}, {}",
+                    cluster.getShortId(crashedMemberId),
+                    e.getLocalizedMessage());
+            LOG.debug("reset crashed jobs", e);
+            return false;
+        }
+    }
+
+    /*
+     * move a batch of taken jobs back to jobs map in a tx
+     */
+    private void resetTakenJobs(final List<Long> batch) {
+        TransactionContext tx = hz.newTransactionContext(txOptions);
+        try {
+            tx.beginTransaction();
+            TransactionalMap<Long, ClusterJob> txJobsMap =
+                    tx.getMap(DsName.JOBS_MAP.toString());
+            TransactionalMap<Long, ClusterJob> txTakenJobsMap =
+                    tx.getMap(DsName.TAKEN_JOBS_MAP.toString());
+
+            for (Long jobId : batch) {
+                ClusterJob cJob = txTakenJobsMap.remove(jobId);
+                // skip if finished meanwhile
+                if (nonNull(cJob)) {
                     LOG.debug("reset taken job {}", jobId);
-                    ClusterJob cJob = txTakenJobsMap.remove(jobId);
                     cJob.setTaken(false);
                     cJob.setMemberId(null);
-                    txJobsList.add(cJob);
+                    txJobsMap.set(jobId, cJob);
+                }
+            }
+            tx.commitTransaction();
+        } catch (RuntimeException e) {
+            tx.rollbackTransaction();
+            throw e;
+        }
+    }
+
+    /*
+     * release a batch of leased jobs in a tx
+     */
+    private void releaseLeasedJobs(final List<Long> batch) {
+        TransactionContext tx = hz.newTransactionContext(txOptions);
+        try {
+            tx.beginTransaction();
+            TransactionalMap<Long, ClusterJob> txJobsMap =
+                    tx.getMap(DsName.JOBS_MAP.toString());
+            for (Long jobId : batch) {
+                ClusterJob cJob = txJobsMap.getForUpdate(jobId);
+                // skip if taken meanwhile
+                if (nonNull(cJob)) {
+                    cJob.setMemberId(null);
+                    cJob.setLeaseUntil(0);
+                    txJobsMap.set(jobId, cJob);
                 }
-                tx.commitTransaction();
-                LOG.debug(
-                        "reset taken jobs finished, crashed node will be removed in next cycle");
-                return true;
-            } catch (Exception e) {
-                tx.rollbackTransaction();
-                LOG.warn("could not reset jobs taken by {}, {}",
-                        cluster.getShortId(crashedMemberId),
-                        e.getLocalizedMessage());
-                LOG.debug("{}", e);
+            }
+            tx.commitTransaction();
+        } catch (RuntimeException e) {
+            tx.rollbackTransaction();
+            throw e;
+        }
+    }
+
+    /**
+     * Reset jobs, of job states map of CasJobStore, taken by a crashed member.
+     * Reset processor runs on entries selected by member predicate on their
+     * owners, in one call and without transaction, and as it is idempotent,
+     * a partial reset is completed in the next cycle.
+     * @param jobStatesMap
+     *            job states map
+     * @return true if any job is reset
+     */
+    public synchronized boolean resetCrashedJobStates(
+            final IMap<Long, ClusterJob> jobStatesMap) {
+        Optional<String> crashedMember = findCrashedMember();
+        if (!crashedMember.isPresent()) {
+            return false;
+        }
+        String crashedMemberId = crashedMember.get();
+        try {
+            Map<Long, Boolean> reset = jobStatesMap.executeOnEntries(
+                    new CasJobStore.Reset(crashedMemberId),
+                    Predicates.and(Predicates.equal("taken", true),
+                            Predicates.equal(MEMBER_ID, crashedMemberId)));
+            long count = reset.values().stream().filter(Boolean.TRUE::equals)
+                    .count();
+            if (count == 0) {
+                cleared(crashedMemberId);
                 return false;
             }
+            LOG.info("reset {} jobs taken by {}", count,
+                    cluster.getShortId(crashedMemberId));
+            return true;
+        } catch (Exception e) {
+            LOG.warn("could not reset jobs taken by {}, {}",
+                    cluster.getShortId(crashedMemberId),
+                    e.getLocalizedMessage());
+            LOG.debug("reset crashed job states", e);
+            return false;
         }
     }
 
     public void clearDanglingJobs() {
-        IList<ClusterJob> jobsMap = hz.getList(DsName.JOBS_LIST.toString());
         jobsMap.clear();
     }
 
@@ -0,0 +1,45 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.cluster.MembershipListener;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+
+/**
+ * Runs the listener when a member updates its done state or a member leaves
+ * the cluster, so that nodes check shutdown conditions without polling.
+ * @author m
+ *
+ */
+public class DoneListener implements EntryAddedListener<String, Boolean>,
+        EntryUpdatedListener<String, Boolean>, MembershipListener {
+
+    private final Runnable listener;
+
+    public DoneListener(final Runnable listener) {
+        notNull(listener, "listener must not be null");
+        this.listener = listener;
+    }
+
+    @Override
+    public void entryAdded(final EntryEvent<String, Boolean> event) {
+        listener.run();
+    }
+
+    @Override
+    public void entryUpdated(final EntryEvent<String, Boolean> event) {
+        listener.run();
+    }
+
+    @Override
+    public void memberAdded(final MembershipEvent membershipEvent) {
+    }
+
+    @Override
+    public void memberRemoved(final MembershipEvent membershipEvent) {
+        listener.run();
+    }
+}
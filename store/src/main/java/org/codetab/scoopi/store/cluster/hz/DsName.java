@@ -2,8 +2,9 @@ package org.codetab.scoopi.store.cluster.hz;
 
 public enum DsName {
 
-    JOBS_LIST, TAKEN_JOBS_MAP, PAYLOADS_MAP, KEYSTORE_MAP, CRASHED_MEMBERS_MAP,
+    JOBS_MAP, TAKEN_JOBS_MAP, PAYLOADS_MAP, KEYSTORE_MAP, CRASHED_MEMBERS_MAP,
     MEMBER_DONE_MAP, MEMBER_TERMINATE_MAP, DATA_GRID_STATE, SEEDER_ID,
-    STORE_MAP;
+    STORE_MAP, BLOBS_MAP, BLOB_REFS_MAP, JOB_STATES_MAP,
+    ID_BLOCKS_MAP, RATE_LEASES_MAP;
 
 }
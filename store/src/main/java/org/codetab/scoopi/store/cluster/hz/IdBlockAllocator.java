@@ -0,0 +1,108 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * <p>
+ * Hands out ids from blocks reserved in cluster so that only one in blockSize
+ * ids costs a remote call. Block is reserved by an entry processor that
+ * advances the counter on its partition owner and next block is prefetched,
+ * asynchronously, when half of the current block is used.
+ * <p>
+ * Ids are unique across cluster and increase within a member, but, unlike
+ * flake ids, are not ordered by time across members. Ids of a block not fully
+ * used are lost.
+ * @author m
+ *
+ */
+@ThreadSafe
+public class IdBlockAllocator {
+
+    private final IMap<String, Long> counterMap;
+    private final String key;
+    private final int blockSize;
+
+    @GuardedBy("this")
+    private long next;
+    @GuardedBy("this")
+    private long limit;
+    @GuardedBy("this")
+    private CompletableFuture<Long> prefetch;
+
+    /**
+     * <p>
+     * Constructor.
+     * @param counterMap
+     *            map that holds counters
+     * @param key
+     *            counter key
+     * @param blockSize
+     *            ids reserved per remote call
+     */
+    public IdBlockAllocator(final IMap<String, Long> counterMap,
+            final String key, final int blockSize) {
+        notNull(counterMap, "counterMap must not be null");
+        notNull(key, "key must not be null");
+        isTrue(blockSize > 0, "blockSize must be positive");
+        this.counterMap = counterMap;
+        this.key = key;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * <p>
+     * Get next id, remote call only when block is exhausted and prefetched
+     * block is not yet available.
+     * @return id
+     */
+    public synchronized long nextId() {
+        if (next == limit) {
+            if (nonNull(prefetch)) {
+                next = prefetch.join();
+                prefetch = null;
+            } else {
+                next = counterMap.executeOnKey(key, new Reserve(blockSize));
+            }
+            limit = next + blockSize;
+        }
+        if (isNull(prefetch) && limit - next <= blockSize / 2) {
+            prefetch = counterMap.submitToKey(key, new Reserve(blockSize))
+                    .toCompletableFuture();
+        }
+        return next++;
+    }
+
+    /**
+     * Advance counter by size and return its previous value, the base of
+     * reserved block. Ids start from 1.
+     */
+    static class Reserve implements EntryProcessor<String, Long, Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int size;
+
+        Reserve(final int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Long process(final Entry<String, Long> entry) {
+            long base = isNull(entry.getValue()) ? 1 : entry.getValue();
+            entry.setValue(base + size);
+            return base;
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package org.codetab.scoopi.store.cluster.hz;
 
 import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.codetab.scoopi.util.Util.spaceit;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -31,13 +46,12 @@ import org.codetab.scoopi.store.cluster.IClusterJobStore;
 
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
-import com.hazelcast.collection.IList;
 import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.flakeidgen.FlakeIdGenerator;
 import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicate;
+import com.hazelcast.query.Predicates;
 import com.hazelcast.transaction.TransactionContext;
 import com.hazelcast.transaction.TransactionOptions;
-import com.hazelcast.transaction.TransactionalList;
 import com.hazelcast.transaction.TransactionalMap;
 
 /**
@@ -60,15 +74,20 @@ public class JobStore implements IClusterJobStore {
     private CrashCleaner crashCleaner;
     @Inject
     private MetricsHelper metricsHelper;
+    @Inject
+    private BlobStore blobStore;
 
     private HazelcastInstance hz;
 
-    private IList<ClusterJob> jobsList;
+    private static final int STEAL_WINDOW = 4;
+
+    private IMap<Long, ClusterJob> jobsMap;
     private IMap<Long, ClusterJob> takenJobsMap;
+    private IMap<Long, Payload> payloadsMap;
     private IMap<String, String> keyStoreMap;
 
     private String memberId;
-    private FlakeIdGenerator jobIdGenerator;
+    private IdBlockAllocator jobIdAllocator;
 
     private int jobTakeLimit;
     private int jobTakeTimeout;
@@ -80,6 +99,20 @@ public class JobStore implements IClusterJobStore {
 
     private int startCrashCleanerMinThreshold;
 
+    /*
+     * locality mode, jobs spawned by this member are leased to it and their
+     * payloads are held locally till taken, lease expires or another member
+     * takes the job. Leases are in lease time order, oldest first.
+     */
+    private boolean locality;
+    private long leaseTime;
+    private int maxLeased;
+    private final Deque<Lease> leasedJobs = new ConcurrentLinkedDeque<>();
+    private final Map<Long, Payload> leasedPayloads =
+            new ConcurrentHashMap<>();
+
+    private final LocalJobIndex jobIndex = new LocalJobIndex();
+
     @Override
     public void open() {
         try {
@@ -87,16 +120,29 @@ public class JobStore implements IClusterJobStore {
             memberId = configs.getConfig("scoopi.cluster.memberId");
             jobTakeLimit = configs.getInt("scoopi.job.takeLimit", "4");
             jobTakeTimeout = configs.getInt("scoopi.job.takeTimeout", "1000");
-            jobIdGenerator = hz.getFlakeIdGenerator("job_id_seq");
+            int idBlockSize =
+                    configs.getInt("scoopi.job.idBlockSize", "1000");
+            jobIdAllocator = new IdBlockAllocator(
+                    hz.getMap(DsName.ID_BLOCKS_MAP.toString()), "job_id_seq",
+                    idBlockSize);
             startCrashCleanerMinThreshold = configs.getInt(
                     "scoopi.cluster.startCrashCleaner.minThreshold", "10");
+            locality = configs.getBoolean("scoopi.cluster.locality.enable",
+                    false);
+            leaseTime = configs.getInt("scoopi.cluster.locality.leaseTime",
+                    "30000");
+            maxLeased = configs.getInt("scoopi.cluster.locality.maxLeased",
+                    "10000");
 
             txOptions = (TransactionOptions) cluster.getTxOptions(configs);
 
             // create distributed collections
-            jobsList = hz.getList(DsName.JOBS_LIST.toString());
+            jobsMap = hz.getMap(DsName.JOBS_MAP.toString());
             takenJobsMap = hz.getMap(DsName.TAKEN_JOBS_MAP.toString());
+            payloadsMap = hz.getMap(DsName.PAYLOADS_MAP.toString());
             keyStoreMap = hz.getMap(DsName.KEYSTORE_MAP.toString());
+            blobStore.open();
+            jobIndex.open(hz, jobsMap);
 
             jobTakeThrottle = new Semaphore(jobTakeLimit);
             random = new Random();
@@ -120,8 +166,8 @@ public class JobStore implements IClusterJobStore {
 
     /*
      * If txPayloadsMap contains jobId then throws duplicate job, otherwise
-     * create ClusterJob (job taken status and node), push it to txJobsList and
-     * put payload to txPayloadsMap.
+     * create ClusterJob (job taken status and node), push it to txJobsMap and
+     * put payload, with document bytes moved to blob store, to txPayloadsMap.
      */
     @Override
     public boolean putJob(final Payload payload)
@@ -138,8 +184,8 @@ public class JobStore implements IClusterJobStore {
 
         try {
             tx.beginTransaction();
-            TransactionalList<ClusterJob> txJobsList =
-                    tx.getList(DsName.JOBS_LIST.toString());
+            TransactionalMap<Long, ClusterJob> txJobsMap =
+                    tx.getMap(DsName.JOBS_MAP.toString());
             TransactionalMap<Long, Payload> txPayloadsMap =
                     tx.getMap(DsName.PAYLOADS_MAP.toString());
 
@@ -147,8 +193,8 @@ public class JobStore implements IClusterJobStore {
                 throw new JobStateException(
                         spaceit("duplicate job", String.valueOf(jobId)));
             } else {
-                txJobsList.add(cluserJob);
-                txPayloadsMap.set(jobId, payload);
+                txJobsMap.set(jobId, cluserJob);
+                txPayloadsMap.set(jobId, blobStore.toRef(payload, tx));
                 LOG.debug("put payload {}", jobId);
             }
 
@@ -167,6 +213,14 @@ public class JobStore implements IClusterJobStore {
     /**
      * Push cluster jobs and payloads in batch and mark job id as finished. If
      * job id is -1 then it is not marked.
+     * <p>
+     * In locality mode, new jobs are leased to this member for lease time and
+     * their payloads are also held locally, so that they are taken and
+     * executed here without fetching the payload. Other members take them
+     * after the lease expires or, when they are idle, before it. At most
+     * maxLeased jobs are leased at a time, others are put without lease.
+     * Payloads are still put to cluster so that jobs are not lost if this
+     * member crashes.
      * @throws InterruptedException
      * @throws TransactionException
      */
@@ -175,11 +229,18 @@ public class JobStore implements IClusterJobStore {
             throws InterruptedException, TransactionException {
 
         TransactionContext tx = hz.newTransactionContext(txOptions);
+        long leaseUntil = System.currentTimeMillis() + leaseTime;
+        int leases = 0;
+        if (locality) {
+            leases = Math.max(0, maxLeased - leasedPayloads.size());
+        }
+
+        Map<Long, Payload> leased = new LinkedHashMap<>();
 
         try {
             tx.beginTransaction();
-            TransactionalList<ClusterJob> txJobsList =
-                    tx.getList(DsName.JOBS_LIST.toString());
+            TransactionalMap<Long, ClusterJob> txJobsMap =
+                    tx.getMap(DsName.JOBS_MAP.toString());
             TransactionalMap<Long, ClusterJob> txTakenJobsMap =
                     tx.getMap(DsName.TAKEN_JOBS_MAP.toString());
             TransactionalMap<Long, Payload> txPayloadsMap =
@@ -188,7 +249,7 @@ public class JobStore implements IClusterJobStore {
             // remove old job and payload
             if (txTakenJobsMap.containsKey(jobId)) {
                 txTakenJobsMap.delete(jobId);
-                txPayloadsMap.delete(jobId);
+                blobStore.release(txPayloadsMap.remove(jobId), tx);
             } else {
                 throw new JobStateException(
                         "rollback batch put jobs, parent job already removed by another node");
@@ -203,14 +264,25 @@ public class JobStore implements IClusterJobStore {
                 } else {
                     ClusterJob cluserJob =
                             objFactory.createClusterJob(newJobId);
-                    txJobsList.add(cluserJob);
-                    txPayloadsMap.set(newJobId, payload);
+                    if (leased.size() < leases) {
+                        cluserJob.setMemberId(memberId);
+                        cluserJob.setLeaseUntil(leaseUntil);
+                        leased.put(newJobId, payload);
+                    }
+                    txJobsMap.set(newJobId, cluserJob);
+                    // tasks of a document share one blob
+                    txPayloadsMap.set(newJobId, blobStore.toRef(payload, tx));
                     LOG.debug("batch put payload {}", newJobId);
                 }
             }
 
             tx.commitTransaction();
 
+            for (Entry<Long, Payload> entry : leased.entrySet()) {
+                leasedPayloads.put(entry.getKey(), entry.getValue());
+                leasedJobs.addLast(new Lease(entry.getKey(), leaseUntil));
+            }
+
             if (jobTakeThrottle.availablePermits() < jobTakeLimit) {
                 jobTakeThrottle.release();
             }
@@ -227,91 +299,246 @@ public class JobStore implements IClusterJobStore {
     }
 
     /**
-     * Tries to acquire take permit and if succeeds, then take ClusterJob from
-     * jobs queue and update its status to taken, add it takenMap and return the
-     * payload taken from payloadsM.
+     * Take one job, see takeJobs.
      */
     @Override
     public Payload takeJob() throws InterruptedException, TransactionException,
             TimeoutException {
+        return takeJobs(1).get(0);
+    }
+
+    /**
+     * Acquires a take permit, waiting up to take timeout, and as many more as
+     * available without wait up to count. Then, selects jobs, claims them in a
+     * single transaction - remove from jobsMap and add to takenJobsMap with
+     * status taken - and fetches their payloads with one getAll.
+     * <p>
+     * Jobs map is partitioned by job id, so jobs are spread over all members.
+     * Jobs of partitions owned by this member are selected first from
+     * {@link LocalJobIndex} without any remote call or scan, and only when
+     * there are none, jobs are stolen from other members. Job, taken job and
+     * payload of a job id are in same partition. In locality mode, jobs leased
+     * to this member are selected before all others and jobs leased to other
+     * members are skipped till lease expires unless this member is idle, that
+     * is, there is no other job to take.
+     * <p>
+     * Selected jobs which are already claimed by other nodes are skipped and
+     * their permits released.
+     */
+    @Override
+    public List<Payload> takeJobs(final int count) throws InterruptedException,
+            TransactionException, TimeoutException {
 
         Context timer =
                 metricsHelper.getTimer(this, "job", "take", "time").time();
+        try {
+            boolean acquired = jobTakeThrottle.tryAcquire(jobTakeTimeout,
+                    TimeUnit.MILLISECONDS);
+            if (!acquired) {
+                throw new TimeoutException(
+                        "jobs taken limit exceeded, unable to acquire permit");
+            }
+            int permits = 1;
+            while (permits < count && jobTakeThrottle.tryAcquire()) {
+                permits++;
+            }
 
-        boolean acquired = jobTakeThrottle.tryAcquire(jobTakeTimeout,
-                TimeUnit.MILLISECONDS);
-        if (!acquired) {
+            List<Long> candidates = selectJobs(permits);
+            if (candidates.isEmpty()) {
+                jobTakeThrottle.release(permits);
+                throw new NoSuchElementException("jobs queue is empty");
+            }
+
+            List<Long> jobIds = claimJobs(candidates, permits);
+            List<Payload> payloads = getPayloads(jobIds);
+            metricsHelper.getMeter(this, "job", "taken").mark(payloads.size());
+            return payloads;
+        } finally {
             timer.stop();
-            throw new TimeoutException(
-                    "jobs taken limit exceeded, unable to acquire permit");
         }
+    }
 
-        int size = jobsList.size();
-        if (size == 0) {
-            timer.stop();
-            jobTakeThrottle.release();
-            throw new NoSuchElementException("jobs queue is empty");
+    /*
+     * latest jobs first, by creation time, so that jobs started are finished
+     * before new ones are started.
+     */
+    private List<Long> selectJobs(final int count) {
+        long now = System.currentTimeMillis();
+        if (locality) {
+            List<Long> leased = pollLeased(count, now);
+            if (!leased.isEmpty()) {
+                return leased;
+            }
+        }
+        List<Long> jobIds;
+        if (locality) {
+            jobIds = jobIndex.poll(jobsMap, count,
+                    cJob -> cJob.getLeaseUntil() < now
+                            || memberId.equals(cJob.getMemberId()));
+        } else {
+            jobIds = jobIndex.poll(jobsMap, count, cJob -> true);
+        }
+        if (jobIds.isEmpty()) {
+            if (locality) {
+                jobIds = steal(count, leaseExpired(now));
+            } else {
+                jobIds = steal(count, null);
+            }
+        }
+        if (jobIds.isEmpty() && locality) {
+            // idle, take jobs leased to other members before lease expires
+            jobIds = jobIndex.poll(jobsMap, count, cJob -> true);
+            if (jobIds.isEmpty()) {
+                jobIds = steal(count, null);
+            }
+            metricsHelper.getMeter(this, "job", "lease", "stolen")
+                    .mark(jobIds.size());
+        }
+        return jobIds;
+    }
+
+    /*
+     * evict expired leases, oldest first, and poll latest leased jobs
+     */
+    private List<Long> pollLeased(final int count, final long now) {
+        Lease oldest = leasedJobs.peekFirst();
+        while (nonNull(oldest) && oldest.leaseUntil <= now) {
+            if (leasedJobs.removeFirstOccurrence(oldest)) {
+                leasedPayloads.remove(oldest.jobId);
+            }
+            oldest = leasedJobs.peekFirst();
+        }
+        List<Long> leased = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Lease lease = leasedJobs.pollLast();
+            if (isNull(lease)) {
+                break;
+            }
+            leased.add(lease.jobId);
+        }
+        return leased;
+    }
+
+    /*
+     * steal, random pick from a larger page to avoid contention
+     */
+    private List<Long> steal(final int count,
+            final Predicate<Long, ClusterJob> predicate) {
+        Collection<Long> keys;
+        if (nonNull(predicate)) {
+            keys = jobsMap.keySet(Predicates.pagingPredicate(predicate,
+                    new LifoComparator(), count * STEAL_WINDOW));
+        } else {
+            keys = jobsMap.keySet(Predicates.pagingPredicate(
+                    new LifoComparator(), count * STEAL_WINDOW));
+        }
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
         }
+        List<Long> stolen = new ArrayList<>(keys);
+        Collections.shuffle(stolen, random);
+        stolen = stolen.subList(0, Math.min(count, stolen.size()));
+        metricsHelper.getMeter(this, "job", "stolen").mark(stolen.size());
+        return stolen;
+    }
+
+    private Predicate<Long, ClusterJob> leaseExpired(final long now) {
+        return Predicates.lessThan("leaseUntil", now);
+    }
 
+    /*
+     * claim jobs in a transaction, on error rollback and release all permits.
+     */
+    private List<Long> claimJobs(final List<Long> candidates,
+            final int permits) throws TransactionException {
+        List<Long> jobIds = new ArrayList<>(permits);
         TransactionContext tx = hz.newTransactionContext(txOptions);
         try {
-            int index = getLifoIndex(size);
-            ClusterJob cJob = jobsList.get(index);
-
             tx.beginTransaction();
-            TransactionalList<ClusterJob> txJobsList =
-                    tx.getList(DsName.JOBS_LIST.toString());
+            TransactionalMap<Long, ClusterJob> txJobsMap =
+                    tx.getMap(DsName.JOBS_MAP.toString());
             TransactionalMap<Long, ClusterJob> txTakenJobsMap =
                     tx.getMap(DsName.TAKEN_JOBS_MAP.toString());
-            TransactionalMap<Long, Payload> txPayloadsMap =
-                    tx.getMap(DsName.PAYLOADS_MAP.toString());
 
-            long jobId = cJob.getJobId();
-            if (!txJobsList.remove(cJob)) {
-                throw new IllegalStateException(
-                        spaceit("unable to find and remove job",
-                                String.valueOf(jobId)));
-            } else {
-                cJob.setTaken(true);
-                cJob.setMemberId(memberId);
-                txTakenJobsMap.set(jobId, cJob);
-                Payload payload = txPayloadsMap.get(jobId);
-                if (isNull(payload)) {
-                    throw new IllegalStateException(spaceit(
-                            "payload not found jobid", String.valueOf(jobId)));
+            for (Long jobId : candidates) {
+                ClusterJob cJob = txJobsMap.remove(jobId);
+                // skip if taken by another node
+                if (isNull(cJob)) {
+                    leasedPayloads.remove(jobId);
+                } else {
+                    cJob.setTaken(true);
+                    cJob.setMemberId(memberId);
+                    cJob.setLeaseUntil(0);
+                    txTakenJobsMap.set(jobId, cJob);
+                    jobIds.add(jobId);
                 }
-                tx.commitTransaction();
-                LOG.debug("job taken {}", cJob.getJobId());
-                return payload;
             }
-
+            if (jobIds.isEmpty()) {
+                throw new IllegalStateException(
+                        "unable to find and remove jobs, taken by other nodes");
+            }
+            tx.commitTransaction();
+            LOG.debug("jobs taken {}", jobIds);
         } catch (Exception e) {
             try {
                 tx.rollbackTransaction();
             } catch (IllegalStateException e1) {
                 LOG.error("tx rollback, {}", e1.getMessage());
             }
-            jobTakeThrottle.release();
-            String message = e.getMessage();
-            throw new TransactionException(message, e);
-        } finally {
-            timer.stop();
+            // local jobs not claimed are selected again after rebuild
+            jobIndex.invalidate();
+            for (Long jobId : candidates) {
+                leasedPayloads.remove(jobId);
+            }
+            jobTakeThrottle.release(permits);
+            throw new TransactionException(e.getMessage(), e);
+        }
+        int unused = permits - jobIds.size();
+        if (unused > 0) {
+            jobTakeThrottle.release(unused);
         }
+        return jobIds;
     }
 
-    private int getLifoIndex(final int size) {
-        final int windowSize = 10;
-        int offset;
-        if (size > windowSize) {
-            offset = random.nextInt(windowSize);
-        } else {
-            offset = random.nextInt(size);
+    /*
+     * payloads are not changed once put and taken job's payload is removed
+     * only by its taker, so read them outside the tx.
+     */
+    private List<Payload> getPayloads(final List<Long> jobIds)
+            throws TransactionException {
+        Map<Long, Payload> payloadMap = new HashMap<>();
+        Set<Long> keys = new TreeSet<>();
+        for (Long jobId : jobIds) {
+            Payload payload = leasedPayloads.remove(jobId);
+            if (isNull(payload)) {
+                keys.add(jobId);
+            } else {
+                payloadMap.put(jobId, payload);
+            }
+        }
+        if (payloadMap.size() > 0) {
+            metricsHelper.getMeter(this, "job", "local")
+                    .mark(payloadMap.size());
+        }
+        if (!keys.isEmpty()) {
+            payloadMap.putAll(payloadsMap.getAll(keys));
+        }
+        List<Payload> payloads = new ArrayList<>(jobIds.size());
+        for (Long jobId : jobIds) {
+            Payload payload = blobStore.resolve(payloadMap.get(jobId));
+            if (isNull(payload)) {
+                // drop the job, else cluster never finishes
+                LOG.error("payload not found jobid {}, drop job", jobId);
+                markFinished(jobId);
+            } else {
+                payloads.add(payload);
+            }
         }
-        int index = size - offset - 1;
-        if (index < 0) {
-            index = 0;
+        if (payloads.isEmpty()) {
+            throw new NoSuchElementException(
+                    "payloads of taken jobs not found");
         }
-        return index;
+        return payloads;
     }
 
     @Override
@@ -327,7 +554,7 @@ public class JobStore implements IClusterJobStore {
                     tx.getMap(DsName.PAYLOADS_MAP.toString());
 
             try {
-                txPayloadsMap.delete(jobId);
+                blobStore.release(txPayloadsMap.remove(jobId), tx);
             } catch (Exception e) {
                 // ignore if no payload for the job or any other error
             }
@@ -371,8 +598,8 @@ public class JobStore implements IClusterJobStore {
         TransactionContext tx = hz.newTransactionContext(txOptions);
         try {
             tx.beginTransaction();
-            TransactionalList<ClusterJob> txJobsList =
-                    tx.getList(DsName.JOBS_LIST.toString());
+            TransactionalMap<Long, ClusterJob> txJobsMap =
+                    tx.getMap(DsName.JOBS_MAP.toString());
             TransactionalMap<Long, ClusterJob> txTakenJobsMap =
                     tx.getMap(DsName.TAKEN_JOBS_MAP.toString());
 
@@ -380,7 +607,8 @@ public class JobStore implements IClusterJobStore {
             ClusterJob cJob = txTakenJobsMap.remove(jobId);
             cJob.setTaken(false);
             cJob.setMemberId(null);
-            txJobsList.add(cJob);
+            cJob.setLeaseUntil(0);
+            txJobsMap.set(jobId, cJob);
             tx.commitTransaction();
 
             if (jobTakeThrottle.availablePermits() < jobTakeLimit) {
@@ -397,7 +625,7 @@ public class JobStore implements IClusterJobStore {
 
     @Override
     public boolean isDone() {
-        return jobsList.isEmpty() && takenJobsMap.isEmpty();
+        return jobsMap.isEmpty() && takenJobsMap.isEmpty();
     }
 
     @Override
@@ -407,16 +635,54 @@ public class JobStore implements IClusterJobStore {
 
     @Override
     public long getJobIdSeq() {
-        return jobIdGenerator.newId();
+        return jobIdAllocator.nextId();
     }
 
     @Override
     public void resetCrashedJobs() {
-        // perf: avoid cluster access as far as possible
+        /*
+         * CrashCleaner recovers as soon as member leaves, this is fallback
+         * when that fails. perf: avoid cluster access as far as possible
+         */
         if (crashCleaner.hasCrashedMembers()) {
-            if (jobsList.size() < startCrashCleanerMinThreshold) {
+            if (jobsMap.size() < startCrashCleanerMinThreshold) {
                 crashCleaner.resetCrashedJobs();
             }
         }
     }
+
+    /**
+     * Job leased to this member till leaseUntil.
+     */
+    private static final class Lease {
+
+        private final long jobId;
+        private final long leaseUntil;
+
+        Lease(final long jobId, final long leaseUntil) {
+            this.jobId = jobId;
+            this.leaseUntil = leaseUntil;
+        }
+    }
+
+    /**
+     * Orders latest job first, runs on members while stealing. Ids from id
+     * blocks are not time ordered across members, so jobs are ordered by
+     * creation time and then by id, which is time ordered within a member.
+     */
+    static class LifoComparator
+            implements Comparator<Entry<Long, ClusterJob>>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        static final Comparator<ClusterJob> JOBS =
+                Comparator.comparingLong(ClusterJob::getCreated)
+                        .thenComparingLong(ClusterJob::getJobId).reversed();
+
+        @Override
+        public int compare(final Entry<Long, ClusterJob> o1,
+                final Entry<Long, ClusterJob> o2) {
+            return JOBS.compare(o1.getValue(), o2.getValue());
+        }
+    }
 }
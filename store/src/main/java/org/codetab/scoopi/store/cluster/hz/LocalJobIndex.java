@@ -0,0 +1,190 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+import org.codetab.scoopi.model.ClusterJob;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+import com.hazelcast.partition.MigrationListener;
+import com.hazelcast.partition.MigrationState;
+import com.hazelcast.partition.ReplicaMigrationEvent;
+import com.hazelcast.query.Predicates;
+
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * <p>
+ * Index of jobs not yet taken in the partitions owned by this member, latest
+ * created first, so that take selects local jobs without scanning the
+ * partitions. Index is kept up to date by a local entry listener of jobs map
+ * and is rebuilt, with one scan, only when partitions migrate, as migrated
+ * entries fire no entry events.
+ * <p>
+ * Index is a hint: a job selected from it may already be taken by another
+ * member, which the claim has to handle.
+ * @author m
+ *
+ */
+@ThreadSafe
+final class LocalJobIndex implements EntryAddedListener<Long, ClusterJob>,
+        EntryUpdatedListener<Long, ClusterJob>,
+        EntryRemovedListener<Long, ClusterJob>,
+        EntryEvictedListener<Long, ClusterJob>, MigrationListener {
+
+    // latest job first, key is the job as added and value its latest state
+    private final ConcurrentNavigableMap<ClusterJob, ClusterJob> jobs =
+            new ConcurrentSkipListMap<>(JobStore.LifoComparator.JOBS);
+    private final Map<Long, ClusterJob> ids = new ConcurrentHashMap<>();
+
+    private volatile boolean stale = true;
+
+    /**
+     * <p>
+     * Listen to local entries of jobs map and partition migrations.
+     * @param hz
+     *            hazelcast instance
+     * @param map
+     *            jobs map
+     */
+    void open(final HazelcastInstance hz, final IMap<Long, ClusterJob> map) {
+        map.addLocalEntryListener(this, Predicates.alwaysTrue(), true);
+        hz.getPartitionService().addMigrationListener(this);
+    }
+
+    /**
+     * <p>
+     * Remove and return up to count jobs that pass the filter, latest first.
+     * Rebuilds the index if it is stale.
+     * @param map
+     *            jobs map
+     * @param count
+     *            max jobs
+     * @param filter
+     *            jobs to select
+     * @return job ids
+     */
+    List<Long> poll(final IMap<Long, ClusterJob> map, final int count,
+            final Predicate<ClusterJob> filter) {
+        if (stale) {
+            rebuild(map);
+        }
+        List<Long> jobIds = new ArrayList<>(count);
+        Iterator<ClusterJob> it = jobs.values().iterator();
+        while (jobIds.size() < count && it.hasNext()) {
+            ClusterJob cJob = it.next();
+            // only one poller removes the id
+            if (filter.test(cJob) && ids.remove(cJob.getJobId(), cJob)) {
+                jobs.remove(cJob);
+                jobIds.add(cJob.getJobId());
+            }
+        }
+        return jobIds;
+    }
+
+    /**
+     * <p>
+     * Mark index stale so that next poll rebuilds it. Call when selected jobs
+     * are not claimed for an error, so that they are selected again.
+     */
+    void invalidate() {
+        stale = true;
+    }
+
+    int size() {
+        return jobs.size();
+    }
+
+    /*
+     * clear before scan, an entry added meanwhile is either in scan or comes
+     * as event; an entry removed meanwhile may stay, which claim skips.
+     */
+    private synchronized void rebuild(final IMap<Long, ClusterJob> map) {
+        if (!stale) {
+            return;
+        }
+        stale = false;
+        jobs.clear();
+        ids.clear();
+        Set<Long> keys = map.localKeySet(Predicates.equal("taken", false));
+        if (!keys.isEmpty()) {
+            for (Entry<Long, ClusterJob> entry : map.getAll(keys).entrySet()) {
+                update(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /*
+     * creation time and id of a job don't change, so its latest state
+     * replaces the value under the same key.
+     */
+    private void update(final Long jobId, final ClusterJob cJob) {
+        if (cJob == null || cJob.isTaken()) {
+            remove(jobId);
+        } else {
+            ids.put(jobId, cJob);
+            jobs.put(cJob, cJob);
+        }
+    }
+
+    private void remove(final Long jobId) {
+        ClusterJob cJob = ids.remove(jobId);
+        if (cJob != null) {
+            jobs.remove(cJob);
+        }
+    }
+
+    @Override
+    public void entryAdded(final EntryEvent<Long, ClusterJob> event) {
+        update(event.getKey(), event.getValue());
+    }
+
+    @Override
+    public void entryUpdated(final EntryEvent<Long, ClusterJob> event) {
+        update(event.getKey(), event.getValue());
+    }
+
+    @Override
+    public void entryRemoved(final EntryEvent<Long, ClusterJob> event) {
+        remove(event.getKey());
+    }
+
+    @Override
+    public void entryEvicted(final EntryEvent<Long, ClusterJob> event) {
+        remove(event.getKey());
+    }
+
+    @Override
+    public void migrationStarted(final MigrationState state) {
+        // rebuild when finished
+    }
+
+    @Override
+    public void migrationFinished(final MigrationState state) {
+        stale = true;
+    }
+
+    @Override
+    public void replicaMigrationCompleted(final ReplicaMigrationEvent event) {
+        stale = true;
+    }
+
+    @Override
+    public void replicaMigrationFailed(final ReplicaMigrationEvent event) {
+        // owner unchanged
+    }
+}
@@ -1,5 +1,9 @@
 package org.codetab.scoopi.store.cluster.hz;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -17,6 +21,20 @@ public class MembershipListener
     @Inject
     private CrashedMembers crashedMembers;
 
+    private final List<Consumer<String>> removedListeners =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Add listener that is called with member id after a member leaves the
+     * cluster and is added to crashed members. Listener is called in event
+     * thread and should not block.
+     * @param listener
+     *            member removed listener
+     */
+    public void addRemovedListener(final Consumer<String> listener) {
+        removedListeners.add(listener);
+    }
+
     @Override
     public void memberAdded(final MembershipEvent membershipEvent) {
         String addedMemberId = membershipEvent.getMember().getUuid().toString();
@@ -29,6 +47,9 @@ public class MembershipListener
                 membershipEvent.getMember().getUuid().toString();
         LOG.info("member {} left the cluster", crashedMemberId);
         crashedMembers.add(crashedMemberId);
+        for (Consumer<String> listener : removedListeners) {
+            listener.accept(crashedMemberId);
+        }
     }
 
 }
@@ -0,0 +1,64 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static java.util.Objects.isNull;
+
+import java.util.Map.Entry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.codetab.scoopi.store.ICluster;
+import org.codetab.scoopi.store.IRateLimiter;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.EntryProcessor;
+
+/**
+ * <p>
+ * Cluster wide rate limiter. Next free slot of each key is held in rate
+ * leases map and slots are leased by an entry processor that advances it on
+ * the partition owner, so leases of members never overlap. Time is that of
+ * the partition owner and lease returns first slot relative to it, which
+ * keeps leases independent of clock skew between members.
+ * @author m
+ *
+ */
+@Singleton
+public class RateLimiter implements IRateLimiter {
+
+    @Inject
+    private ICluster cluster;
+
+    @Override
+    public long lease(final String key, final int count, final long interval) {
+        HazelcastInstance hz = (HazelcastInstance) cluster.getInstance();
+        return hz.<String, Long>getMap(DsName.RATE_LEASES_MAP.toString())
+                .executeOnKey(key, new Lease(count, interval));
+    }
+
+    /**
+     * Advance next free slot by count intervals and return millis from now
+     * to first leased slot.
+     */
+    static class Lease implements EntryProcessor<String, Long, Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int count;
+        private final long interval;
+
+        Lease(final int count, final long interval) {
+            this.count = count;
+            this.interval = interval;
+        }
+
+        @Override
+        public Long process(final Entry<String, Long> entry) {
+            long now = System.currentTimeMillis();
+            long first = isNull(entry.getValue()) ? now
+                    : Math.max(now, entry.getValue());
+            entry.setValue(first + count * interval);
+            return first - now;
+        }
+    }
+}
@@ -2,24 +2,34 @@ package org.codetab.scoopi.store.solo.simple;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Payload;
 import org.codetab.scoopi.store.solo.ISoloJobStore;
 
 @Singleton
 public class JobStore implements ISoloJobStore {
 
-    // private static final int QUEUE_SIZE = 32768;
+    private static final String DEFAULT_MAX_BYTES = "67108864";
 
-    private Queue<Payload> jobs = new ConcurrentLinkedQueue<>();
+    @Inject
+    private Configs configs;
+    @Inject
+    private MetricsHelper metricsHelper;
+
+    /**
+     * bounded by scoopi.job.queue.maxBytes, overflow is spilled to disk.
+     */
+    private volatile SpillQueue jobs;
 
     private AtomicLong jobIdCounter = new AtomicLong();
 
@@ -28,21 +38,40 @@ public class JobStore implements ISoloJobStore {
 
     @Override
     public void open() {
+        long maxBytes =
+                configs.getInt("scoopi.job.queue.maxBytes", DEFAULT_MAX_BYTES);
+        jobs = new SpillQueue("job", maxBytes);
+        metricsHelper.registerGuage(jobs, this, "job", "queue");
     }
 
     @Override
     public Payload takeJob() throws InterruptedException {
-        Payload payload = jobs.poll();
+        Payload payload = jobs.poll(0);
         if (Objects.isNull(payload)) {
             throw new NoSuchElementException("jobs queue is empty");
         }
         return payload;
     }
 
+    @Override
+    public List<Payload> takeJobs(final int count)
+            throws InterruptedException {
+        List<Payload> payloads = new ArrayList<>(count);
+        Payload payload;
+        while (payloads.size() < count
+                && Objects.nonNull(payload = jobs.poll(0))) {
+            payloads.add(payload);
+        }
+        if (payloads.isEmpty()) {
+            throw new NoSuchElementException("jobs queue is empty");
+        }
+        return payloads;
+    }
+
     @Override
     public boolean putJob(final Payload payload) throws InterruptedException {
         notNull(payload, "payload must not be null");
-        jobs.offer(payload);
+        jobs.put(payload);
         return true;
     }
 
@@ -59,7 +88,7 @@ public class JobStore implements ISoloJobStore {
 
     @Override
     public boolean isDone() {
-        return jobs.size() == 0;
+        return jobs.getSize() == 0;
     }
 
     @Override
@@ -2,29 +2,48 @@ package org.codetab.scoopi.store.solo.simple;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
-
+import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Payload;
 import org.codetab.scoopi.store.IPayloadStore;
 
+/**
+ * <p>
+ * Payloads of tasks. Memory held by queued payloads is bounded by
+ * scoopi.task.queue.maxBytes and payloads beyond it are spilled to disk, so
+ * that put never blocks the pool threads.
+ * @author m
+ *
+ */
 @Singleton
 public class PayloadStore implements IPayloadStore {
 
-    private static final int QUEUE_SIZE = 32768;
+    private static final String DEFAULT_MAX_BYTES = "67108864";
+
+    @Inject
+    private Configs configs;
+    @Inject
+    private MetricsHelper metricsHelper;
 
-    private BlockingQueue<Payload> payloads =
-            new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private volatile SpillQueue payloads;
+
+    @Override
+    public void open() {
+        long maxBytes =
+                configs.getInt("scoopi.task.queue.maxBytes", DEFAULT_MAX_BYTES);
+        payloads = new SpillQueue("payload", maxBytes);
+        metricsHelper.registerGuage(payloads, this, "payload", "queue");
+    }
 
     @Override
     public Payload takePayload(final int timeout) throws InterruptedException {
         if (timeout == 0) {
             return payloads.take();
         } else {
-            return payloads.poll(timeout, TimeUnit.MILLISECONDS);
+            return payloads.poll(timeout);
         }
     }
 
@@ -36,7 +55,12 @@ public class PayloadStore implements IPayloadStore {
 
     @Override
     public int getPayloadsCount() {
-        return payloads.size();
+        return payloads.getSize();
+    }
+
+    @Override
+    public boolean isOverLimit() {
+        return payloads.isOverLimit();
     }
 
     @Override
@@ -46,6 +70,6 @@ public class PayloadStore implements IPayloadStore {
 
     @Override
     public boolean isDone() {
-        return payloads.size() == 0;
+        return payloads.getSize() == 0;
     }
 }
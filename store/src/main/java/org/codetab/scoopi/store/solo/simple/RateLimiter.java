@@ -0,0 +1,32 @@
+package org.codetab.scoopi.store.solo.simple;
+
+import static java.util.Objects.isNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Singleton;
+
+import org.codetab.scoopi.store.IRateLimiter;
+
+/**
+ * Local rate limiter, next free slot of each key is held in a map.
+ * @author m
+ *
+ */
+@Singleton
+public class RateLimiter implements IRateLimiter {
+
+    private final Map<String, Long> nextSlots = new ConcurrentHashMap<>();
+
+    @Override
+    public long lease(final String key, final int count, final long interval) {
+        long now = System.currentTimeMillis();
+        long[] first = new long[1];
+        nextSlots.compute(key, (k, next) -> {
+            first[0] = isNull(next) ? now : Math.max(now, next);
+            return first[0] + count * interval;
+        });
+        return first[0] - now;
+    }
+}
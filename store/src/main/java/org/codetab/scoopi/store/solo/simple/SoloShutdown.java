@@ -45,6 +45,13 @@ public class SoloShutdown implements IShutdown {
         return cancelled.get();
     }
 
+    /**
+     * Solo has no other nodes, this node checks its own done state.
+     */
+    @Override
+    public void addDoneListener(final Runnable listener) {
+    }
+
     @Override
     public boolean allNodesDone() {
         return true;
@@ -0,0 +1,357 @@
+package org.codetab.scoopi.store.solo.simple;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.exception.CriticalException;
+import org.codetab.scoopi.model.Data;
+import org.codetab.scoopi.model.Document;
+import org.codetab.scoopi.model.Payload;
+
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * <p>
+ * Payload queue bounded by bytes held in memory. Payloads that don't fit are
+ * spilled to an append-only file and read back, in order, as memory queue
+ * drains. Once spill starts, new payloads go to file till it is drained so
+ * that order is kept, and file is deleted when drained.
+ * <p>
+ * Size of a payload is an estimate - document bytes or item count - and not
+ * its exact heap usage.
+ * @author m
+ *
+ */
+@ThreadSafe
+public class SpillQueue {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final long BASE_SIZE = 512;
+    private static final long ITEM_SIZE = 256;
+
+    private final String name;
+    private final long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    @GuardedBy("lock")
+    private final Deque<Payload> memory = new ArrayDeque<>();
+    @GuardedBy("lock")
+    private final Deque<Long> sizes = new ArrayDeque<>();
+    @GuardedBy("lock")
+    private long memoryBytes;
+    @GuardedBy("lock")
+    private int spillCount;
+    @GuardedBy("lock")
+    private long spilledTotal;
+    @GuardedBy("lock")
+    private Path spillFile;
+    @GuardedBy("lock")
+    private DataOutputStream spillOut;
+    @GuardedBy("lock")
+    private DataInputStream spillIn;
+
+    /**
+     * <p>
+     * Constructor.
+     * @param name
+     *            queue name, used as spill file prefix
+     * @param maxBytes
+     *            max bytes held in memory
+     */
+    public SpillQueue(final String name, final long maxBytes) {
+        notNull(name, "name must not be null");
+        this.name = name;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * <p>
+     * Add payload, never blocks. Payload is spilled to file if memory limit
+     * is reached, however, it is held in memory when memory queue is empty or
+     * spill fails.
+     * @param payload
+     *            payload, not null
+     */
+    public void put(final Payload payload) {
+        notNull(payload, "payload must not be null");
+        long size = sizeOf(payload);
+        lock.lock();
+        try {
+            if (spillCount == 0 && (memory.isEmpty()
+                    || memoryBytes + size <= maxBytes)) {
+                addToMemory(payload, size);
+            } else if (!spill(payload)) {
+                addToMemory(payload, size);
+            }
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Add payloads.
+     * @param payloads
+     *            payloads, not null
+     */
+    public void putAll(final List<Payload> payloads) {
+        notNull(payloads, "payloads must not be null");
+        for (Payload payload : payloads) {
+            put(payload);
+        }
+    }
+
+    /**
+     * <p>
+     * Retrieve and remove head, waiting if necessary till a payload is
+     * available.
+     * @return payload
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Payload take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (isEmpty()) {
+                notEmpty.await();
+            }
+            return remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Retrieve and remove head, waiting up to timeout if necessary.
+     * @param timeout
+     *            wait in millis
+     * @return payload or null if timeout elapses
+     * @throws InterruptedException
+     *             if interrupted while waiting
+     */
+    public Payload poll(final long timeout) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return remove();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSize() {
+        lock.lock();
+        try {
+            return memory.size() + spillCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getMemoryBytes() {
+        lock.lock();
+        try {
+            return memoryBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getSpillCount() {
+        lock.lock();
+        try {
+            return spillCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getSpilledTotal() {
+        lock.lock();
+        try {
+            return spilledTotal;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * <p>
+     * Is memory limit reached. Producers that can hold back, should do so
+     * while queue is over limit.
+     * @return true if payloads are being spilled
+     */
+    public boolean isOverLimit() {
+        lock.lock();
+        try {
+            return spillCount > 0 || memoryBytes >= maxBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            memory.clear();
+            sizes.clear();
+            memoryBytes = 0;
+            spillCount = 0;
+            closeSpill();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @GuardedBy("lock")
+    private boolean isEmpty() {
+        return memory.isEmpty() && spillCount == 0;
+    }
+
+    @GuardedBy("lock")
+    private void addToMemory(final Payload payload, final long size) {
+        memory.add(payload);
+        sizes.add(size);
+        memoryBytes += size;
+    }
+
+    @GuardedBy("lock")
+    private Payload remove() {
+        if (memory.isEmpty()) {
+            refill();
+        }
+        Payload payload = memory.poll();
+        memoryBytes -= sizes.poll();
+        return payload;
+    }
+
+    @GuardedBy("lock")
+    private boolean spill(final Payload payload) {
+        try {
+            if (isNull(spillOut)) {
+                spillFile = Files.createTempFile("scoopi-" + name + "-",
+                        ".spill");
+                spillFile.toFile().deleteOnExit();
+                spillOut = new DataOutputStream(new BufferedOutputStream(
+                        Files.newOutputStream(spillFile)));
+                LOG.info("{} queue over {} bytes, spill to {}", name,
+                        maxBytes, spillFile);
+            }
+            byte[] bytes = SerializationUtils.serialize(payload);
+            spillOut.writeInt(bytes.length);
+            spillOut.write(bytes);
+            spillCount++;
+            spilledTotal++;
+            return true;
+        } catch (IOException e) {
+            LOG.warn("{} queue, unable to spill, hold in memory. {}", name,
+                    e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Move spilled payloads to memory till half the limit is filled, leaving
+     * room for incoming payloads.
+     */
+    @GuardedBy("lock")
+    private void refill() {
+        try {
+            spillOut.flush();
+            if (isNull(spillIn)) {
+                spillIn = new DataInputStream(new BufferedInputStream(
+                        Files.newInputStream(spillFile)));
+            }
+            do {
+                byte[] bytes = new byte[spillIn.readInt()];
+                spillIn.readFully(bytes);
+                Payload payload = SerializationUtils.deserialize(bytes);
+                spillCount--;
+                addToMemory(payload, sizeOf(payload));
+            } while (spillCount > 0 && memoryBytes < maxBytes / 2);
+        } catch (IOException e) {
+            throw new CriticalException(
+                    String.join(" ", name, "queue, unable to read spill file",
+                            String.valueOf(spillFile)),
+                    e);
+        }
+        if (spillCount == 0) {
+            closeSpill();
+        }
+    }
+
+    @GuardedBy("lock")
+    private void closeSpill() {
+        try {
+            if (nonNull(spillIn)) {
+                spillIn.close();
+            }
+            if (nonNull(spillOut)) {
+                spillOut.close();
+            }
+            if (nonNull(spillFile)) {
+                Files.deleteIfExists(spillFile);
+            }
+        } catch (IOException e) {
+            LOG.warn("{} queue, unable to delete spill file {}. {}", name,
+                    spillFile, e.getMessage());
+        }
+        spillIn = null;
+        spillOut = null;
+        spillFile = null;
+    }
+
+    /**
+     * <p>
+     * Estimate size of payload.
+     * @param payload
+     *            payload
+     * @return estimated bytes
+     */
+    static long sizeOf(final Payload payload) {
+        Object data = payload.getData();
+        if (data instanceof Document) {
+            Object obj = ((Document) data).getDocumentObject();
+            if (obj instanceof byte[]) {
+                return BASE_SIZE + ((byte[]) obj).length;
+            }
+            if (obj instanceof String) {
+                return BASE_SIZE + 2L * ((String) obj).length();
+            }
+        }
+        if (data instanceof Data) {
+            return BASE_SIZE + ITEM_SIZE * ((Data) data).getItems().size();
+        }
+        return BASE_SIZE;
+    }
+}
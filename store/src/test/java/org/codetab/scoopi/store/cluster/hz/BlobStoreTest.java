@@ -0,0 +1,230 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.Document;
+import org.codetab.scoopi.model.Fingerprint;
+import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.model.StepInfo;
+import org.codetab.scoopi.model.helper.Fingerprints;
+import org.codetab.scoopi.store.ICluster;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import com.codahale.metrics.Meter;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.transaction.TransactionContext;
+import com.hazelcast.transaction.TransactionalMap;
+
+public class BlobStoreTest {
+    @InjectMocks
+    private BlobStore blobStore;
+
+    @Mock
+    private ICluster cluster;
+    @Spy
+    private ObjectFactory objFactory;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private TransactionContext tx;
+
+    private IMap<String, byte[]> blobsMap;
+    private IMap<String, Integer> refsMap;
+    private TransactionalMap<Object, Object> txRefsMap;
+    private TransactionalMap<Object, Object> txBlobsMap;
+
+    private byte[] bytes = {1, 2, 3};
+    private String key = Fingerprints.fingerprint(bytes).getValue();
+
+    @SuppressWarnings("unchecked")
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        blobsMap = Mockito.mock(IMap.class);
+        txRefsMap = Mockito.mock(TransactionalMap.class);
+        txBlobsMap = Mockito.mock(TransactionalMap.class);
+        refsMap = Mockito.mock(IMap.class);
+        FieldUtils.writeDeclaredField(blobStore, "blobsMap", blobsMap, true);
+        FieldUtils.writeDeclaredField(blobStore, "refsMap", refsMap, true);
+
+        when(tx.getMap(DsName.BLOB_REFS_MAP.toString())).thenReturn(txRefsMap);
+        when(tx.getMap(DsName.BLOBS_MAP.toString())).thenReturn(txBlobsMap);
+        when(metricsHelper.getMeter(any(), any(), any()))
+                .thenReturn(Mockito.mock(Meter.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOpen() throws Exception {
+        HazelcastInstance hz = Mockito.mock(HazelcastInstance.class);
+        IMap<Object, Object> blobsMap1 = Mockito.mock(IMap.class);
+
+        when(cluster.getInstance()).thenReturn(hz);
+        when(hz.getMap(DsName.BLOBS_MAP.toString())).thenReturn(blobsMap1);
+
+        blobStore.open();
+
+        assertSame(blobsMap1,
+                FieldUtils.readDeclaredField(blobStore, "blobsMap", true));
+    }
+
+    @Test
+    public void testToRefNewBlob() {
+        Payload payload = createPayload(bytes);
+
+        Payload actual = blobStore.toRef(payload, tx);
+
+        verify(txBlobsMap).set(key, bytes);
+        verify(txRefsMap).set(key, 1);
+        Document docRef = (Document) actual.getData();
+        assertThat(docRef.getDocumentObject()).isEqualTo(new Fingerprint(key));
+        assertThat(docRef.isCompressed()).isTrue();
+        assertThat(docRef.getUrl()).isEqualTo("url");
+        assertSame(payload.getJobInfo(), actual.getJobInfo());
+        // original is not modified
+        assertSame(bytes,
+                ((Document) payload.getData()).getDocumentObject());
+    }
+
+    @Test
+    public void testToRefExistingBlob() {
+        Payload payload = createPayload(bytes);
+
+        when(txRefsMap.getForUpdate(key)).thenReturn(2);
+
+        blobStore.toRef(payload, tx);
+
+        verify(txBlobsMap, never()).set(any(), any());
+        verify(txRefsMap).set(key, 3);
+    }
+
+    @Test
+    public void testToRefNoDocument() {
+        Payload payload = Mockito.mock(Payload.class);
+        when(payload.getData()).thenReturn("locator");
+
+        assertSame(payload, blobStore.toRef(payload, tx));
+        verifyNoInteractions(tx);
+    }
+
+    @Test
+    public void testResolve() {
+        Payload payload = createPayload(new Fingerprint(key));
+
+        when(blobsMap.get(key)).thenReturn(bytes);
+
+        Payload actual = blobStore.resolve(payload);
+
+        assertSame(payload, actual);
+        assertSame(bytes, ((Document) actual.getData()).getDocumentObject());
+    }
+
+    @Test
+    public void testResolveBlobNotFound() {
+        Payload payload = createPayload(new Fingerprint(key));
+
+        assertNull(blobStore.resolve(payload));
+    }
+
+    @Test
+    public void testResolveNull() {
+        assertNull(blobStore.resolve(null));
+    }
+
+    @Test
+    public void testReleaseLastRef() {
+        Payload payload = createPayload(new Fingerprint(key));
+
+        when(txRefsMap.getForUpdate(key)).thenReturn(1);
+
+        blobStore.release(payload, tx);
+
+        verify(txRefsMap).delete(key);
+        verify(txBlobsMap).delete(key);
+    }
+
+    @Test
+    public void testRelease() {
+        Payload payload = createPayload(new Fingerprint(key));
+
+        when(txRefsMap.getForUpdate(key)).thenReturn(3);
+
+        blobStore.release(payload, tx);
+
+        verify(txRefsMap).set(key, 2);
+        verify(txBlobsMap, never()).delete(key);
+    }
+
+    @Test
+    public void testReleaseNoRef() {
+        blobStore.release(createPayload(bytes), tx);
+        blobStore.release(null, tx);
+
+        verify(txRefsMap, never()).getForUpdate(eq(key));
+    }
+
+    @Test
+    public void testToRefNoTx() {
+        Payload payload = createPayload(bytes);
+
+        when(refsMap.get(key)).thenReturn(null).thenReturn(1);
+
+        Payload actual = blobStore.toRef(payload);
+        blobStore.toRef(payload);
+
+        assertThat(((Document) actual.getData()).getDocumentObject())
+                .isEqualTo(new Fingerprint(key));
+        verify(blobsMap, Mockito.times(1)).set(key, bytes);
+        verify(refsMap).set(key, 1);
+        verify(refsMap).set(key, 2);
+        verify(blobsMap, Mockito.times(2)).lock(key);
+        verify(blobsMap, Mockito.times(2)).unlock(key);
+        verifyNoInteractions(tx);
+    }
+
+    @Test
+    public void testReleaseNoTx() {
+        Payload payload = createPayload(new Fingerprint(key));
+
+        when(refsMap.get(key)).thenReturn(2).thenReturn(1);
+
+        blobStore.release(payload);
+        verify(refsMap).set(key, 1);
+        verify(blobsMap, never()).delete(key);
+
+        blobStore.release(payload);
+        verify(refsMap).delete(key);
+        verify(blobsMap).delete(key);
+        verify(blobsMap, Mockito.times(2)).unlock(key);
+    }
+
+    private Payload createPayload(final Object documentObject) {
+        ObjectFactory factory = new ObjectFactory();
+        Document document =
+                factory.createDocument("name", null, "url", "group", null);
+        document.setDocumentObject(documentObject);
+        document.setCompressed(true);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        StepInfo stepInfo = Mockito.mock(StepInfo.class);
+        return factory.createPayload(jobInfo, stepInfo, document);
+    }
+}
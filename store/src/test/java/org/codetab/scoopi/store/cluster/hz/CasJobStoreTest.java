@@ -0,0 +1,393 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.exception.JobStateException;
+import org.codetab.scoopi.exception.TransactionException;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.ClusterJob;
+import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.store.ICluster;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+import com.google.common.collect.Sets;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.EntryProcessor;
+import com.hazelcast.map.IMap;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.query.Predicate;
+
+public class CasJobStoreTest {
+    @InjectMocks
+    private CasJobStore jobStore;
+
+    @Mock
+    private Configs configs;
+    @Mock
+    private ICluster cluster;
+    @Mock
+    private CrashCleaner crashCleaner;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private BlobStore blobStore;
+    @Mock
+    private IMap<Long, ClusterJob> jobStatesMap;
+    @Mock
+    private IMap<Long, Payload> payloadsMap;
+    @Mock
+    private Semaphore jobTakeThrottle;
+    @Mock
+    private PartitionService partitionService;
+
+    private Context context;
+
+    private ObjectFactory factory = new ObjectFactory();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", "m1", true);
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeLimit", 2, true);
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout", 1, true);
+
+        Timer timer = Mockito.mock(Timer.class);
+        context = Mockito.mock(Context.class);
+        when(metricsHelper.getTimer(any(), any(), any(), any()))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(any(), any(), any()))
+                .thenReturn(Mockito.mock(Meter.class));
+        when(blobStore.toRef(any())).thenAnswer(i -> i.getArgument(0));
+        when(blobStore.resolve(any())).thenAnswer(i -> i.getArgument(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOpen() throws Exception {
+        HazelcastInstance hz = Mockito.mock(HazelcastInstance.class);
+        IMap<Object, Object> idBlocksMap = Mockito.mock(IMap.class);
+        IMap<Object, Object> jobStatesMap1 = Mockito.mock(IMap.class);
+
+        when(cluster.getInstance()).thenReturn(hz);
+        when(configs.getConfig("scoopi.cluster.memberId")).thenReturn("m2");
+        when(configs.getInt("scoopi.job.takeLimit", "4")).thenReturn(3);
+        when(configs.getInt("scoopi.job.idBlockSize", "1000")).thenReturn(10);
+        when(hz.getMap(DsName.ID_BLOCKS_MAP.toString()))
+                .thenReturn(idBlocksMap);
+        when(hz.getMap(DsName.JOB_STATES_MAP.toString()))
+                .thenReturn(jobStatesMap1);
+        when(hz.getPartitionService()).thenReturn(partitionService);
+
+        jobStore.open();
+
+        assertSame(jobStatesMap1,
+                FieldUtils.readDeclaredField(jobStore, "jobStatesMap", true));
+        assertThat(FieldUtils.readDeclaredField(jobStore, "jobIdAllocator",
+                true)).isInstanceOf(IdBlockAllocator.class);
+        Semaphore throttle = (Semaphore) FieldUtils.readDeclaredField(jobStore,
+                "jobTakeThrottle", true);
+        assertThat(throttle.availablePermits()).isEqualTo(3);
+        verify(blobStore).open();
+        verify(jobStatesMap1).addLocalEntryListener(
+                any(LocalJobIndex.class), any(Predicate.class), eq(true));
+        verify(partitionService)
+                .addMigrationListener(any(LocalJobIndex.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPutJob() throws Exception {
+        Payload payload = createPayload(1L);
+
+        when(jobStatesMap.executeOnKeys(eq(Sets.newHashSet(1L)),
+                any(CasJobStore.Queue.class)))
+                        .thenReturn(Collections.singletonMap(1L, true));
+
+        boolean actual = jobStore.putJob(payload);
+
+        assertTrue(actual);
+        // job is queued only after its payload is put
+        InOrder inOrder = Mockito.inOrder(jobStatesMap, payloadsMap);
+        inOrder.verify(jobStatesMap).executeOnKeys(eq(Sets.newHashSet(1L)),
+                any(CasJobStore.Queue.class));
+        inOrder.verify(payloadsMap)
+                .putAll(Collections.singletonMap(1L, payload));
+        inOrder.verify(jobStatesMap).executeOnKeys(eq(Sets.newHashSet(1L)),
+                any(CasJobStore.Reset.class));
+        verify(blobStore, never()).release(any());
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPutJobDuplicate() throws Exception {
+        Payload payload = createPayload(1L);
+
+        when(jobStatesMap.executeOnKeys(eq(Sets.newHashSet(1L)),
+                any(CasJobStore.Queue.class)))
+                        .thenReturn(Collections.singletonMap(1L, false));
+
+        assertThrows(TransactionException.class,
+                () -> jobStore.putJob(payload));
+        verify(payloadsMap, never()).putAll(any());
+        verify(jobStatesMap, never()).executeOnKeys(any(),
+                any(CasJobStore.Reset.class));
+        verify(blobStore).release(payload);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPutJobs() throws Exception {
+        Payload payload1 = createPayload(2L);
+        Payload payload2 = createPayload(3L);
+        Payload payload3 = createPayload(4L);
+        ClusterJob parent = factory.createClusterJob(1L);
+        parent.setTaken(true);
+        parent.setMemberId("m1");
+        Map<Long, Boolean> created = new HashMap<>();
+        created.put(2L, true);
+        created.put(3L, true);
+        created.put(4L, false); // duplicate
+        Map<Long, Payload> newRefs = new HashMap<>();
+        newRefs.put(2L, payload1);
+        newRefs.put(3L, payload2);
+
+        when(jobStatesMap.get(1L)).thenReturn(parent);
+        when(jobStatesMap.executeOnKeys(eq(Sets.newHashSet(2L, 3L, 4L)),
+                any(CasJobStore.Queue.class))).thenReturn(created);
+        when(jobStatesMap.executeOnKey(eq(1L), any(CasJobStore.Finish.class)))
+                .thenReturn(true);
+        when(jobTakeThrottle.availablePermits()).thenReturn(1);
+
+        boolean actual = jobStore.putJobs(
+                Arrays.asList(payload1, payload2, payload3), 1L);
+
+        assertTrue(actual);
+        verify(payloadsMap).putAll(newRefs);
+        verify(jobStatesMap).executeOnKeys(eq(Sets.newHashSet(2L, 3L)),
+                any(CasJobStore.Reset.class));
+        verify(jobStatesMap, never()).executeOnKey(eq(2L), any());
+        verify(blobStore).release(payload3);
+        verify(blobStore, never()).release(payload1);
+        verify(payloadsMap).remove(1L);
+        verify(jobTakeThrottle).release();
+    }
+
+    @Test
+    public void testPutJobsParentTakenByOther() throws Exception {
+        ClusterJob parent = factory.createClusterJob(1L);
+        parent.setTaken(true);
+        parent.setMemberId("m2");
+
+        when(jobStatesMap.get(1L)).thenReturn(parent).thenReturn(null);
+
+        assertThrows(JobStateException.class, () -> jobStore
+                .putJobs(Arrays.asList(createPayload(2L)), 1L));
+        assertThrows(JobStateException.class, () -> jobStore
+                .putJobs(Arrays.asList(createPayload(2L)), 1L));
+        verify(jobStatesMap, never()).executeOnKeys(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobs() throws Exception {
+        Payload payload = createPayload(3L);
+        Map<Long, Boolean> claims = new HashMap<>();
+        claims.put(3L, true);
+        claims.put(2L, false); // taken by another member
+        Map<Long, Payload> payloads = new HashMap<>();
+        payloads.put(3L, payload);
+
+        when(jobTakeThrottle.tryAcquire(1, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(jobTakeThrottle.tryAcquire()).thenReturn(true);
+        localJobs(1L, 2L, 3L);
+        when(jobStatesMap.executeOnKeys(eq(Sets.newHashSet(2L, 3L)),
+                any(CasJobStore.Take.class))).thenReturn(claims);
+        when(payloadsMap.getAll(any())).thenReturn(payloads);
+
+        List<Payload> actual = jobStore.takeJobs(2);
+
+        assertThat(actual).containsExactly(payload);
+        verify(jobTakeThrottle).release(1);
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsQueueEmpty() throws Exception {
+        when(jobTakeThrottle.tryAcquire(1, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        localJobs();
+        when(jobStatesMap.keySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>());
+
+        assertThrows(NoSuchElementException.class, () -> jobStore.takeJob());
+        verify(jobTakeThrottle).release(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsClaimFailed() throws Exception {
+        when(jobTakeThrottle.tryAcquire(1, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        localJobs(1L);
+        when(jobStatesMap.executeOnKeys(any(), any(CasJobStore.Take.class)))
+                .thenThrow(IllegalStateException.class);
+
+        assertThrows(TransactionException.class, () -> jobStore.takeJob());
+        verify(jobTakeThrottle).release(1);
+
+        // index rebuilt on next take
+        assertThrows(TransactionException.class, () -> jobStore.takeJob());
+        verify(jobStatesMap, Mockito.times(2))
+                .localKeySet(any(Predicate.class));
+    }
+
+    @Test
+    public void testTakeJobsTimeout() throws Exception {
+        when(jobTakeThrottle.tryAcquire(1, TimeUnit.MILLISECONDS))
+                .thenReturn(false);
+
+        assertThrows(TimeoutException.class, () -> jobStore.takeJobs(2));
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMarkFinished() throws Exception {
+        Payload payload = createPayload(1L);
+
+        when(jobStatesMap.executeOnKey(eq(1L), any(CasJobStore.Finish.class)))
+                .thenReturn(true).thenReturn(false);
+        when(payloadsMap.remove(1L)).thenReturn(payload);
+        when(jobTakeThrottle.availablePermits()).thenReturn(1);
+
+        assertTrue(jobStore.markFinished(1L));
+        verify(blobStore).release(payload);
+        verify(jobTakeThrottle).release();
+
+        // second call is a no-op
+        assertThrows(JobStateException.class, () -> jobStore.markFinished(1L));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testResetTakenJob() throws Exception {
+        when(jobStatesMap.executeOnKey(eq(1L), any(CasJobStore.Reset.class)))
+                .thenReturn(true).thenThrow(IllegalStateException.class);
+
+        assertTrue(jobStore.resetTakenJob(1L));
+        assertFalse(jobStore.resetTakenJob(1L));
+    }
+
+    @Test
+    public void testResetCrashedJobs() {
+        when(crashCleaner.hasCrashedMembers()).thenReturn(false)
+                .thenReturn(true);
+
+        jobStore.resetCrashedJobs();
+        jobStore.resetCrashedJobs();
+
+        verify(crashCleaner).resetCrashedJobStates(jobStatesMap);
+    }
+
+    @Test
+    public void testIsDone() {
+        when(jobStatesMap.isEmpty()).thenReturn(true).thenReturn(false);
+
+        assertTrue(jobStore.isDone());
+        assertFalse(jobStore.isDone());
+    }
+
+    @Test
+    public void testJobStateTransitions() {
+        Entry<Long, ClusterJob> entry = new SimpleEntry<>(1L, null);
+        CasJobStore.Queue queue = new CasJobStore.Queue("m0");
+
+        assertFalse(process(new CasJobStore.Take("m1"), entry));
+        assertTrue(process(queue, entry));
+        assertFalse(process(queue, entry));
+        assertThat(entry.getValue().getJobId()).isEqualTo(1L);
+        // created job is taken by putting member till it queues the job
+        assertTrue(entry.getValue().isTaken());
+        assertThat(entry.getValue().getMemberId()).isEqualTo("m0");
+        assertFalse(process(new CasJobStore.Take("m1"), entry));
+        assertTrue(process(new CasJobStore.Reset("m0"), entry));
+        assertFalse(entry.getValue().isTaken());
+
+        assertTrue(process(new CasJobStore.Take("m1"), entry));
+        assertFalse(process(new CasJobStore.Take("m2"), entry));
+        assertThat(entry.getValue().getMemberId()).isEqualTo("m1");
+
+        assertFalse(process(new CasJobStore.Reset("m2"), entry));
+        assertTrue(process(new CasJobStore.Reset("m1"), entry));
+        assertFalse(process(new CasJobStore.Reset(null), entry));
+        assertFalse(entry.getValue().isTaken());
+        assertNull(entry.getValue().getMemberId());
+
+        assertTrue(process(new CasJobStore.Finish(), entry));
+        assertFalse(process(new CasJobStore.Finish(), entry));
+        assertNull(entry.getValue());
+    }
+
+    private boolean process(
+            final EntryProcessor<Long, ClusterJob, Boolean> processor,
+            final Entry<Long, ClusterJob> entry) {
+        return processor.process(entry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void localJobs(final Long... jobIds) {
+        Map<Long, ClusterJob> jobs = new HashMap<>();
+        for (Long jobId : jobIds) {
+            jobs.put(jobId, factory.createClusterJob(jobId));
+        }
+        when(jobStatesMap.localKeySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>(jobs.keySet()));
+        when(jobStatesMap.getAll(jobs.keySet())).thenReturn(jobs);
+    }
+
+    private Payload createPayload(final long jobId) {
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        when(jobInfo.getId()).thenReturn(jobId);
+        return factory.createPayload(jobInfo, null, "data");
+    }
+}
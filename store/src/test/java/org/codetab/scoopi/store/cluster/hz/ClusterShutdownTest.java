@@ -2,6 +2,8 @@ package org.codetab.scoopi.store.cluster.hz;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -79,7 +81,7 @@ public class ClusterShutdownTest {
 
         clusterShutdown.setDone();
 
-        verify(doneMap).put(memberId, true);
+        verify(doneMap).replace(memberId, false, true);
     }
 
     @Test
@@ -93,7 +95,7 @@ public class ClusterShutdownTest {
 
         clusterShutdown.setDone();
 
-        verify(doneMap, never()).put(memberId, true);
+        verify(doneMap, never()).replace(memberId, false, true);
     }
 
     @Test
@@ -211,4 +213,16 @@ public class ClusterShutdownTest {
         when(cancelled.get()).thenReturn(true);
         assertTrue(clusterShutdown.isCancelled());
     }
+
+    @Test
+    public void testAddDoneListener() {
+        Runnable listener = Mockito.mock(Runnable.class);
+
+        clusterShutdown.addDoneListener(listener);
+
+        verify(doneMap).addEntryListener(any(DoneListener.class), eq(false));
+        verify(terminateMap).addEntryListener(any(DoneListener.class),
+                eq(false));
+        verify(clst).addMembershipListener(any(DoneListener.class));
+    }
 }
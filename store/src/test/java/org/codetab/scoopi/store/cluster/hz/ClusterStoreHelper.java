@@ -0,0 +1,129 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.store.ICluster;
+import org.codetab.scoopi.store.cluster.IClusterJobStore;
+import org.mockito.Mockito;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.transaction.TransactionOptions;
+import com.hazelcast.transaction.TransactionOptions.TransactionType;
+
+/**
+ * Embedded cluster members and job stores for benchmark and load tests.
+ * Store is wired as in ClusterModule and its configs answer defaults. Used by
+ * JobStoreBenchmarkIT and, through store test-jar, by engine LoadHarness.
+ * @author m
+ *
+ */
+public final class ClusterStoreHelper {
+
+    private ClusterStoreHelper() {
+    }
+
+    /**
+     * Start member that joins other members of cluster on localhost.
+     * @param clusterName
+     *            cluster name
+     * @return hazelcast instance
+     */
+    public static HazelcastInstance startMember(final String clusterName) {
+        Config cfg = new Config();
+        cfg.setClusterName(clusterName);
+        cfg.setProperty("hazelcast.logging.type", "log4j2");
+        JoinConfig join = cfg.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+        return Hazelcast.newHazelcastInstance(cfg);
+    }
+
+    /**
+     * Create and open job store of member along with its crash cleaner and
+     * blob store.
+     * @param type
+     *            tx or cas
+     * @param hz
+     *            member
+     * @param leader
+     *            leader member
+     * @return opened job store
+     */
+    public static IClusterJobStore createStore(final String type,
+            final HazelcastInstance hz, final HazelcastInstance leader)
+            throws Exception {
+        ObjectFactory factory = new ObjectFactory();
+        String memberId = hz.getLocalEndpoint().getUuid().toString();
+        Configs configs = Mockito.mock(Configs.class);
+        when(configs.getConfig("scoopi.cluster.memberId")).thenReturn(memberId);
+        when(configs.getConfig("scoopi.cluster.jobStore", "tx"))
+                .thenReturn(type);
+        when(configs.getInt(anyString(), anyString()))
+                .thenAnswer(i -> Integer.valueOf(i.getArgument(1)));
+        when(configs.getBoolean(anyString(), anyBoolean()))
+                .thenAnswer(i -> i.getArgument(1));
+
+        ICluster cluster = Mockito.mock(ICluster.class);
+        when(cluster.getInstance()).thenReturn(hz);
+        when(cluster.getMemberId()).thenReturn(memberId);
+        when(cluster.getLeader())
+                .thenReturn(leader.getLocalEndpoint().getUuid().toString());
+        when(cluster.getShortId(anyString())).thenAnswer(i -> i.getArgument(0));
+        when(cluster.getTxOptions(any())).thenReturn(new TransactionOptions()
+                .setTransactionType(TransactionType.TWO_PHASE)
+                .setTimeout(10, TimeUnit.SECONDS));
+
+        MetricsHelper metricsHelper = new MetricsHelper();
+        CrashedMembers crashedMembers = new CrashedMembers();
+
+        // Factory adds listener to hazelcast config, add it to member instead
+        MembershipListener membershipListener = new MembershipListener();
+        inject(membershipListener, "crashedMembers", crashedMembers);
+        hz.getCluster().addMembershipListener(membershipListener);
+
+        CrashCleaner crashCleaner = new CrashCleaner();
+        inject(crashCleaner, "configs", configs);
+        inject(crashCleaner, "cluster", cluster);
+        inject(crashCleaner, "crashedMembers", crashedMembers);
+        inject(crashCleaner, "metricsHelper", metricsHelper);
+        inject(crashCleaner, "membershipListener", membershipListener);
+        crashCleaner.init();
+
+        BlobStore blobStore = new BlobStore();
+        inject(blobStore, "cluster", cluster);
+        inject(blobStore, "objFactory", factory);
+        inject(blobStore, "metricsHelper", metricsHelper);
+
+        IClusterJobStore store;
+        if (type.equals("cas")) {
+            store = new CasJobStore();
+        } else {
+            store = new JobStore();
+            inject(store, "objFactory", factory);
+        }
+        inject(store, "configs", configs);
+        inject(store, "cluster", cluster);
+        inject(store, "crashCleaner", crashCleaner);
+        inject(store, "metricsHelper", metricsHelper);
+        inject(store, "blobStore", blobStore);
+        store.open();
+        return store;
+    }
+
+    public static void inject(final Object target, final String field,
+            final Object value) throws IllegalAccessException {
+        FieldUtils.writeDeclaredField(target, field, value, true);
+    }
+}
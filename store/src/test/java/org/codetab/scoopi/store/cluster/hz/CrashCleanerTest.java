@@ -2,20 +2,27 @@ package org.codetab.scoopi.store.cluster.hz;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.ClusterJob;
 import org.codetab.scoopi.store.ICluster;
 import org.junit.Before;
@@ -25,12 +32,15 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
-import com.hazelcast.collection.IList;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.hazelcast.config.IndexType;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.map.IMap;
+import com.hazelcast.query.Predicate;
 import com.hazelcast.transaction.TransactionContext;
 import com.hazelcast.transaction.TransactionOptions;
-import com.hazelcast.transaction.TransactionalList;
 import com.hazelcast.transaction.TransactionalMap;
 
 public class CrashCleanerTest {
@@ -47,10 +57,20 @@ public class CrashCleanerTest {
     private TransactionOptions txOptions;
     @Mock
     private HazelcastInstance hz;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private MembershipListener membershipListener;
+
+    private IMap<Long, ClusterJob> jobsMap;
 
+    @SuppressWarnings("unchecked")
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        jobsMap = Mockito.mock(IMap.class);
+        FieldUtils.writeDeclaredField(crashCleaner, "jobsMap", jobsMap, true);
+        FieldUtils.writeDeclaredField(crashCleaner, "batchSize", 100, true);
     }
 
     @Test
@@ -59,18 +79,33 @@ public class CrashCleanerTest {
         TransactionOptions txOptions1 = Mockito.mock(TransactionOptions.class);
         @SuppressWarnings("unchecked")
         IMap<Object, Object> takenJobsMap = Mockito.mock(IMap.class);
+        @SuppressWarnings("unchecked")
+        IMap<Object, Object> jobsMap1 = Mockito.mock(IMap.class);
 
         when(cluster.getInstance()).thenReturn(hz1);
+        when(hz1.getMap(DsName.JOBS_MAP.toString())).thenReturn(jobsMap1);
         when(cluster.getTxOptions(configs)).thenReturn(txOptions1);
         when(hz1.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(takenJobsMap);
+        when(configs.getInt("scoopi.cluster.crashCleaner.batchSize", "100"))
+                .thenReturn(100);
         crashCleaner.init();
 
+        verify(takenJobsMap).addIndex(IndexType.HASH, "memberId");
+        verify(jobsMap1).addIndex(IndexType.HASH, "memberId");
+        verify(membershipListener).addRemovedListener(any());
+        assertEquals(100,
+                FieldUtils.readDeclaredField(crashCleaner, "batchSize", true));
+        assertNull(FieldUtils.readDeclaredField(crashCleaner, "jobStatesMap",
+                true));
+
         assertSame(hz1, FieldUtils.readDeclaredField(crashCleaner, "hz", true));
         assertSame(txOptions1,
                 FieldUtils.readDeclaredField(crashCleaner, "txOptions", true));
         assertSame(takenJobsMap, FieldUtils.readDeclaredField(crashCleaner,
                 "takenJobsMap", true));
+        assertSame(jobsMap1,
+                FieldUtils.readDeclaredField(crashCleaner, "jobsMap", true));
         @SuppressWarnings("rawtypes")
         Set clearedMembers = (Set) FieldUtils.readDeclaredField(crashCleaner,
                 "clearedMembers", true);
@@ -141,26 +176,24 @@ public class CrashCleanerTest {
         FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
                 takenJobsMap, true);
 
-        List<Object> takenClusterJobs = new ArrayList<>();
-        ClusterJob takenJob = Mockito.mock(ClusterJob.class);
-        takenClusterJobs.add(takenJob);
-
         when(crashedMembers.isEmpty()).thenReturn(false);
         when(cluster.getLeader()).thenReturn(leader);
         when(cluster.getMemberId()).thenReturn(grape);
         when(crashedMembers.difference(clearedMembers))
                 .thenReturn(notClearedMembers);
-        when(takenJobsMap.values()).thenReturn(takenClusterJobs);
-        when(takenJob.getMemberId()).thenReturn(crashedMemberId);
-        when(takenJob.isTaken()).thenReturn(false); // not taken
+        // predicate selects none
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>());
 
         boolean actual = crashCleaner.resetCrashedJobs();
 
         assertFalse(actual);
+        verify(clearedMembers).add(crashedMemberId);
+        verify(hz, never()).newTransactionContext(txOptions);
     }
 
     @Test
-    public void testResetCrashedJobTakenByAnotherMember() throws Exception {
+    public void testResetCrashed() throws Exception {
         String leader = "Foo";
         String grape = "Foo";
         String crashedMemberId = "Qux";
@@ -178,84 +211,85 @@ public class CrashCleanerTest {
         FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
                 takenJobsMap, true);
 
-        List<Object> takenClusterJobs = new ArrayList<>();
-        ClusterJob takenJob = Mockito.mock(ClusterJob.class);
-        takenClusterJobs.add(takenJob);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        @SuppressWarnings("unchecked")
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        @SuppressWarnings("unchecked")
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        Long jobId = Long.valueOf(1L);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
 
         when(crashedMembers.isEmpty()).thenReturn(false);
         when(cluster.getLeader()).thenReturn(leader);
         when(cluster.getMemberId()).thenReturn(grape);
         when(crashedMembers.difference(clearedMembers))
                 .thenReturn(notClearedMembers);
-        when(takenJobsMap.values()).thenReturn(takenClusterJobs);
-        // taken but by another member
-        when(takenJob.isTaken()).thenReturn(true);
-        when(takenJob.getMemberId()).thenReturn("someOtherMember");
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(Sets.newHashSet(jobId));
+
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(txTakenJobsMap.remove(jobId)).thenReturn(cJob);
 
         boolean actual = crashCleaner.resetCrashedJobs();
 
-        assertFalse(actual);
+        assertTrue(actual);
+
+        verify(tx).beginTransaction();
+        verify(cJob).setTaken(false);
+        verify(cJob).setMemberId(null);
+        verify(txJobsMap).set(jobId, cJob);
+        verify(tx).commitTransaction();
+        verify(tx, never()).rollbackTransaction();
     }
 
+    @SuppressWarnings("unchecked")
     @Test
-    public void testResetCrashed() throws Exception {
+    public void testResetCrashedLeasedJobs() throws Exception {
         String leader = "Foo";
-        String grape = "Foo";
         String crashedMemberId = "Qux";
 
-        @SuppressWarnings("unchecked")
         Set<String> clearedMembers = Mockito.mock(Set.class);
         FieldUtils.writeDeclaredField(crashCleaner, "clearedMembers",
                 clearedMembers, true);
-
         Set<String> notClearedMembers = new HashSet<>();
         notClearedMembers.add(crashedMemberId);
 
-        @SuppressWarnings("unchecked")
         IMap<Object, Object> takenJobsMap = Mockito.mock(IMap.class);
         FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
                 takenJobsMap, true);
 
-        List<Object> takenClusterJobs = new ArrayList<>();
-        ClusterJob takenJob = Mockito.mock(ClusterJob.class);
-        takenClusterJobs.add(takenJob);
-
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        @SuppressWarnings("unchecked")
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
-        @SuppressWarnings("unchecked")
-        TransactionalMap<Object, Object> txTakenJobsMap =
+        TransactionalMap<Object, Object> txJobsMap =
                 Mockito.mock(TransactionalMap.class);
-        Long jobId = Long.valueOf(1L);
+        Long jobId = Long.valueOf(5L);
         ClusterJob cJob = Mockito.mock(ClusterJob.class);
 
         when(crashedMembers.isEmpty()).thenReturn(false);
         when(cluster.getLeader()).thenReturn(leader);
-        when(cluster.getMemberId()).thenReturn(grape);
+        when(cluster.getMemberId()).thenReturn(leader);
         when(crashedMembers.difference(clearedMembers))
                 .thenReturn(notClearedMembers);
-        when(takenJobsMap.values()).thenReturn(takenClusterJobs);
-        when(takenJob.getMemberId()).thenReturn(crashedMemberId);
-        when(takenJob.getJobId()).thenReturn(jobId);
-        when(takenJob.isTaken()).thenReturn(true);
-
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>());
+        when(jobsMap.keySet(any(Predicate.class)))
+                .thenReturn(Sets.newHashSet(jobId));
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
-        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
-                .thenReturn(txTakenJobsMap);
-        when(txTakenJobsMap.remove(jobId)).thenReturn(cJob);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(txJobsMap.getForUpdate(jobId)).thenReturn(cJob);
 
         boolean actual = crashCleaner.resetCrashedJobs();
 
         assertTrue(actual);
-
-        verify(tx).beginTransaction();
-        verify(cJob).setTaken(false);
         verify(cJob).setMemberId(null);
-        verify(txJobsList).add(cJob);
+        verify(cJob).setLeaseUntil(0);
+        verify(txJobsMap).set(jobId, cJob);
         verify(tx).commitTransaction();
-        verify(tx, never()).rollbackTransaction();
+        verify(clearedMembers, never()).add(crashedMemberId);
     }
 
     @Test
@@ -277,14 +311,10 @@ public class CrashCleanerTest {
         FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
                 takenJobsMap, true);
 
-        List<Object> takenClusterJobs = new ArrayList<>();
-        ClusterJob takenJob = Mockito.mock(ClusterJob.class);
-        takenClusterJobs.add(takenJob);
-
         TransactionContext tx = Mockito.mock(TransactionContext.class);
         @SuppressWarnings("unchecked")
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
 
         Long jobId = Long.valueOf(1L);
         ClusterJob cJob = Mockito.mock(ClusterJob.class);
@@ -294,10 +324,8 @@ public class CrashCleanerTest {
         when(cluster.getMemberId()).thenReturn(grape);
         when(crashedMembers.difference(clearedMembers))
                 .thenReturn(notClearedMembers);
-        when(takenJobsMap.values()).thenReturn(takenClusterJobs);
-        when(takenJob.getMemberId()).thenReturn(crashedMemberId);
-        when(takenJob.getJobId()).thenReturn(jobId);
-        when(takenJob.isTaken()).thenReturn(true);
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(Sets.newHashSet(jobId));
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
         doThrow(RuntimeException.class).when(tx).beginTransaction();
@@ -309,17 +337,208 @@ public class CrashCleanerTest {
         verify(tx).beginTransaction();
         verify(cJob, never()).setTaken(false);
         verify(cJob, never()).setMemberId(null);
-        verify(txJobsList, never()).add(cJob);
+        verify(txJobsMap, never()).set(jobId, cJob);
         verify(tx, never()).commitTransaction();
         verify(tx).rollbackTransaction();
     }
 
+    @SuppressWarnings("unchecked")
     @Test
-    public void testClearDanglingJobs() {
+    public void testResetCrashedJobStates() throws Exception {
+        String leader = "Foo";
+        String crashedMemberId = "Qux";
+
+        Set<String> clearedMembers = Mockito.mock(Set.class);
+        FieldUtils.writeDeclaredField(crashCleaner, "clearedMembers",
+                clearedMembers, true);
+        Set<String> notClearedMembers = new HashSet<>();
+        notClearedMembers.add(crashedMemberId);
+
+        IMap<Long, ClusterJob> jobStatesMap = Mockito.mock(IMap.class);
+        Map<Long, Boolean> reset = new HashMap<>();
+        reset.put(1L, true);
+
+        when(crashedMembers.isEmpty()).thenReturn(false);
+        when(cluster.getLeader()).thenReturn(leader);
+        when(cluster.getMemberId()).thenReturn(leader);
+        when(crashedMembers.difference(clearedMembers))
+                .thenReturn(notClearedMembers);
+        when(jobStatesMap.executeOnEntries(any(CasJobStore.Reset.class),
+                any(Predicate.class))).thenReturn(reset)
+                        .thenReturn(new HashMap<>());
+
+        assertTrue(crashCleaner.resetCrashedJobStates(jobStatesMap));
+        verify(clearedMembers, never()).add(crashedMemberId);
+
+        // nothing more to reset, member is cleared
+        assertFalse(crashCleaner.resetCrashedJobStates(jobStatesMap));
+        verify(clearedMembers).add(crashedMemberId);
+    }
+
+    @Test
+    public void testResetCrashedJobStatesNotLeader() {
         @SuppressWarnings("unchecked")
-        IList<Object> jobsMap = Mockito.mock(IList.class);
+        IMap<Long, ClusterJob> jobStatesMap = Mockito.mock(IMap.class);
+
+        when(crashedMembers.isEmpty()).thenReturn(false);
+        when(cluster.getLeader()).thenReturn("Foo");
+        when(cluster.getMemberId()).thenReturn("Bar");
+
+        assertFalse(crashCleaner.resetCrashedJobStates(jobStatesMap));
+        verify(jobStatesMap, never()).executeOnEntries(any(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testInitCas() throws Exception {
+        HazelcastInstance hz1 = Mockito.mock(HazelcastInstance.class);
+        IMap<Object, Object> map = Mockito.mock(IMap.class);
+        IMap<Object, Object> jobStatesMap = Mockito.mock(IMap.class);
+
+        when(cluster.getInstance()).thenReturn(hz1);
+        when(hz1.getMap(any())).thenReturn(map);
+        when(hz1.getMap(DsName.JOB_STATES_MAP.toString()))
+                .thenReturn(jobStatesMap);
+        when(configs.getConfig("scoopi.cluster.jobStore", "tx"))
+                .thenReturn("cas");
+
+        crashCleaner.init();
+
+        assertSame(jobStatesMap, FieldUtils.readDeclaredField(crashCleaner,
+                "jobStatesMap", true));
+        verify(jobStatesMap).addIndex(IndexType.HASH, "memberId");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testResetCrashedBatches() throws Exception {
+        String leader = "Foo";
+        String crashedMemberId = "Qux";
+
+        FieldUtils.writeDeclaredField(crashCleaner, "clearedMembers",
+                new HashSet<>(), true);
+        FieldUtils.writeDeclaredField(crashCleaner, "batchSize", 2, true);
+
+        IMap<Object, Object> takenJobsMap = Mockito.mock(IMap.class);
+        FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
+                takenJobsMap, true);
 
-        when(hz.getList(DsName.JOBS_LIST.toString())).thenReturn(jobsMap);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
+
+        when(crashedMembers.isEmpty()).thenReturn(false);
+        when(cluster.getLeader()).thenReturn(leader);
+        when(cluster.getMemberId()).thenReturn(leader);
+        when(crashedMembers.difference(any()))
+                .thenReturn(Sets.newHashSet(crashedMemberId));
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(Sets.newHashSet(1L, 2L, 3L));
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(txTakenJobsMap.remove(1L)).thenReturn(cJob);
+        when(txTakenJobsMap.remove(2L)).thenReturn(null); // finished
+        when(txTakenJobsMap.remove(3L)).thenReturn(cJob);
+
+        assertTrue(crashCleaner.resetCrashedJobs());
+
+        // 3 jobs in batches of 2
+        verify(tx, times(2)).beginTransaction();
+        verify(tx, times(2)).commitTransaction();
+        verify(txJobsMap).set(1L, cJob);
+        verify(txJobsMap, never()).set(eq(2L), any());
+        verify(txJobsMap).set(3L, cJob);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMemberLeft() throws Exception {
+        String leader = "Foo";
+        String crashedMemberId = "Qux";
+
+        Set<String> clearedMembers = new HashSet<>();
+        FieldUtils.writeDeclaredField(crashCleaner, "clearedMembers",
+                clearedMembers, true);
+        FieldUtils.writeDeclaredField(crashCleaner, "recoveryExecutor",
+                MoreExecutors.newDirectExecutorService(), true);
+        IMap<Object, Object> takenJobsMap = Mockito.mock(IMap.class);
+        FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
+                takenJobsMap, true);
+        Timer timer = Mockito.mock(Timer.class);
+
+        when(crashedMembers.isEmpty()).thenReturn(false);
+        when(cluster.getLeader()).thenReturn(leader);
+        when(cluster.getMemberId()).thenReturn(leader);
+        when(crashedMembers.difference(clearedMembers))
+                .thenReturn(Sets.newHashSet(crashedMemberId))
+                .thenReturn(new HashSet<>());
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>());
+        when(metricsHelper.getTimer(crashCleaner, "crash", "recovery", "time"))
+                .thenReturn(timer);
+
+        crashCleaner.memberLeft(crashedMemberId);
+
+        assertTrue(clearedMembers.contains(crashedMemberId));
+        verify(timer).update(anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMemberLeftAfterDone() throws Exception {
+        String leader = "Foo";
+        String crashedMemberId = "Qux";
+
+        Set<String> clearedMembers = new HashSet<>();
+        FieldUtils.writeDeclaredField(crashCleaner, "clearedMembers",
+                clearedMembers, true);
+        FieldUtils.writeDeclaredField(crashCleaner, "recoveryExecutor",
+                MoreExecutors.newDirectExecutorService(), true);
+        IMap<Object, Object> takenJobsMap = Mockito.mock(IMap.class);
+        FieldUtils.writeDeclaredField(crashCleaner, "takenJobsMap",
+                takenJobsMap, true);
+
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        Long jobId = Long.valueOf(1L);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
+        Timer timer = Mockito.mock(Timer.class);
+
+        // member was done, then took a job and crashed before finishing it
+        when(crashedMembers.isEmpty()).thenReturn(false);
+        when(cluster.getLeader()).thenReturn(leader);
+        when(cluster.getMemberId()).thenReturn(leader);
+        when(crashedMembers.difference(clearedMembers))
+                .thenReturn(Sets.newHashSet(crashedMemberId));
+        when(takenJobsMap.keySet(any(Predicate.class)))
+                .thenReturn(Sets.newHashSet(jobId)).thenReturn(new HashSet<>());
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(txTakenJobsMap.remove(jobId)).thenReturn(cJob);
+        when(metricsHelper.getTimer(crashCleaner, "crash", "recovery", "time"))
+                .thenReturn(timer);
+
+        crashCleaner.memberLeft(crashedMemberId);
+
+        verify(cJob).setTaken(false);
+        verify(txJobsMap).set(jobId, cJob);
+        verify(tx).commitTransaction();
+        assertTrue(clearedMembers.contains(crashedMemberId));
+        verify(timer).update(anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testClearDanglingJobs() {
         crashCleaner.clearDanglingJobs();
 
         verify(jobsMap).clear();
@@ -0,0 +1,59 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.junit.Assert.assertThrows;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.hazelcast.cluster.MembershipEvent;
+import com.hazelcast.core.EntryEvent;
+
+public class DoneListenerTest {
+
+    @Mock
+    private Runnable listener;
+    @Mock
+    private EntryEvent<String, Boolean> entryEvent;
+    @Mock
+    private MembershipEvent membershipEvent;
+
+    private DoneListener doneListener;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        doneListener = new DoneListener(listener);
+    }
+
+    @Test
+    public void testEntryEvents() {
+        doneListener.entryAdded(entryEvent);
+        doneListener.entryUpdated(entryEvent);
+
+        verify(listener, times(2)).run();
+    }
+
+    @Test
+    public void testMemberAdded() {
+        doneListener.memberAdded(membershipEvent);
+
+        verifyNoInteractions(listener);
+    }
+
+    @Test
+    public void testMemberRemoved() {
+        doneListener.memberRemoved(membershipEvent);
+
+        verify(listener).run();
+    }
+
+    @Test
+    public void testNullListener() {
+        assertThrows(NullPointerException.class, () -> new DoneListener(null));
+    }
+}
@@ -0,0 +1,106 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+
+import org.codetab.scoopi.store.cluster.hz.IdBlockAllocator.Reserve;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.hazelcast.map.IMap;
+
+public class IdBlockAllocatorTest {
+
+    @Mock
+    private IMap<String, Long> counterMap;
+
+    private IdBlockAllocator allocator;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        allocator = new IdBlockAllocator(counterMap, "job_id_seq", 4);
+    }
+
+    @Test
+    public void testNextIdFirstBlock() {
+        when(counterMap.executeOnKey(eq("job_id_seq"), any(Reserve.class)))
+                .thenReturn(1L);
+        when(counterMap.submitToKey(eq("job_id_seq"), any(Reserve.class)))
+                .thenReturn(CompletableFuture.completedFuture(5L));
+
+        assertEquals(1L, allocator.nextId());
+        assertEquals(2L, allocator.nextId());
+
+        verify(counterMap).executeOnKey(eq("job_id_seq"), any(Reserve.class));
+    }
+
+    @Test
+    public void testNextIdPrefetch() {
+        when(counterMap.executeOnKey(eq("job_id_seq"), any(Reserve.class)))
+                .thenReturn(1L);
+        when(counterMap.submitToKey(eq("job_id_seq"), any(Reserve.class)))
+                .thenReturn(CompletableFuture.completedFuture(101L))
+                .thenReturn(CompletableFuture.completedFuture(201L));
+
+        for (long i = 1; i <= 4; i++) {
+            assertEquals(i, allocator.nextId());
+        }
+        // next block is prefetched, no blocking call
+        assertEquals(101L, allocator.nextId());
+        assertEquals(102L, allocator.nextId());
+        assertEquals(103L, allocator.nextId());
+
+        verify(counterMap, times(1)).executeOnKey(any(), any());
+        verify(counterMap, times(2)).submitToKey(any(), any(Reserve.class));
+    }
+
+    @Test
+    public void testNextIdBlockOfOne() {
+        IdBlockAllocator single =
+                new IdBlockAllocator(counterMap, "job_id_seq", 1);
+        when(counterMap.executeOnKey(eq("job_id_seq"), any(Reserve.class)))
+                .thenReturn(1L).thenReturn(2L);
+
+        assertThat(single.nextId()).isEqualTo(1L);
+        assertThat(single.nextId()).isEqualTo(2L);
+
+        // no prefetch for block of one
+        verify(counterMap, never()).submitToKey(any(), any(Reserve.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBlockSize() {
+        new IdBlockAllocator(counterMap, "job_id_seq", 0);
+    }
+
+    @Test
+    public void testNoRemoteCallOnCreate() {
+        new IdBlockAllocator(counterMap, "job_id_seq", 10);
+        verifyNoInteractions(counterMap);
+    }
+
+    @Test
+    public void testReserve() {
+        Reserve reserve = new Reserve(100);
+        Entry<String, Long> entry = new SimpleEntry<>("job_id_seq", null);
+
+        assertThat(reserve.process(entry)).isEqualTo(1L);
+        assertThat(entry.getValue()).isEqualTo(101L);
+        assertThat(reserve.process(entry)).isEqualTo(101L);
+        assertThat(entry.getValue()).isEqualTo(201L);
+    }
+}
@@ -0,0 +1,228 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.codetab.scoopi.store.cluster.hz.ClusterStoreHelper.createStore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.codetab.scoopi.exception.TransactionException;
+import org.codetab.scoopi.model.Document;
+import org.codetab.scoopi.model.JobInfo;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.codetab.scoopi.store.cluster.IClusterJobStore;
+import org.junit.After;
+import org.junit.Test;
+
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Benchmark of JobStore (tx) and CasJobStore (cas) on an embedded two member
+ * cluster. Each parent job spawns children that share a document, workers on
+ * both members take and finish jobs till store is done. Crash tests terminate
+ * second member while it holds taken jobs and check that crash cleaner of
+ * first member recovers them on member leave and all jobs are finished.
+ * <p>
+ * Run with mvn verify -pl store -Dit.test=JobStoreBenchmarkIT, results are
+ * logged.
+ * @author m
+ *
+ */
+public class JobStoreBenchmarkIT {
+
+    private static final Logger LOG = LogManager.getLogger();
+
+    private static final int PARENTS = 250;
+    private static final int CHILDREN = 8;
+    private static final int THREADS = 4;
+    private static final int DOC_SIZE = 16 * 1024;
+    private static final long DEADLINE = TimeUnit.SECONDS.toMillis(120);
+
+    private ObjectFactory factory = new ObjectFactory();
+    private List<HazelcastInstance> members = new ArrayList<>();
+
+    private Map<Long, Boolean> parents = new ConcurrentHashMap<>();
+    private Map<Long, AtomicInteger> finished = new ConcurrentHashMap<>();
+
+    @After
+    public void tearDown() {
+        for (HazelcastInstance hz : members) {
+            if (hz.getLifecycleService().isRunning()) {
+                hz.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testTxJobStore() throws Exception {
+        bench("tx");
+    }
+
+    @Test
+    public void testCasJobStore() throws Exception {
+        bench("cas");
+    }
+
+    @Test
+    public void testTxCrashRecovery() throws Exception {
+        crash("tx");
+    }
+
+    @Test
+    public void testCasCrashRecovery() throws Exception {
+        crash("cas");
+    }
+
+    private void bench(final String type) throws Exception {
+        String clusterName = UUID.randomUUID().toString();
+        HazelcastInstance hz1 = startMember(clusterName);
+        IClusterJobStore store1 =
+                createStore(type, hz1, hz1);
+        IClusterJobStore store2 = createStore(type, startMember(clusterName),
+                hz1);
+
+        seed(store1);
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS * 2);
+        for (int i = 0; i < THREADS; i++) {
+            pool.execute(() -> work(store1));
+            pool.execute(() -> work(store2));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(DEADLINE, TimeUnit.MILLISECONDS))
+                .isTrue();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        int jobs = PARENTS * (CHILDREN + 1);
+        LOG.info("{} job store: {} jobs in {} ms, {} jobs/sec", type, jobs,
+                millis, jobs * 1000L / Math.max(1, millis));
+
+        assertThat(store1.isDone()).isTrue();
+        assertThat(finished).hasSize(PARENTS * CHILDREN);
+        assertThat(finished.values()).allMatch(c -> c.get() == 1);
+        assertBlobsReleased(members.get(0));
+    }
+
+    private void crash(final String type) throws Exception {
+        String clusterName = UUID.randomUUID().toString();
+        HazelcastInstance hz1 = startMember(clusterName);
+        IClusterJobStore store1 =
+                createStore(type, hz1, hz1);
+        HazelcastInstance hz2 = startMember(clusterName);
+        IClusterJobStore store2 =
+                createStore(type, hz2, hz1);
+
+        seed(store1);
+
+        // member 2 takes jobs and crashes before finishing them, crash
+        // cleaner of member 1 recovers them on member leave
+        List<Payload> lost = store2.takeJobs(4);
+        hz2.getLifecycleService().terminate();
+
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            pool.execute(() -> work(store1));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(DEADLINE, TimeUnit.MILLISECONDS))
+                .isTrue();
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        LOG.info("{} job store: recovered {} jobs of crashed member in {} ms",
+                type, lost.size(), millis);
+
+        assertThat(store1.isDone()).isTrue();
+        // all children are run, cas may run a child twice (at least once)
+        assertThat(finished).hasSize(PARENTS * CHILDREN);
+        if (type.equals("tx")) {
+            assertThat(finished.values()).allMatch(c -> c.get() == 1);
+        }
+    }
+
+    private void seed(final IClusterJobStore store)
+            throws InterruptedException, TransactionException {
+        for (int i = 0; i < PARENTS; i++) {
+            JobInfo jobInfo = factory.createJobInfo("parent", "group", "task",
+                    "steps", "dataDef");
+            jobInfo.setId(store.getJobIdSeq());
+            parents.put(jobInfo.getId(), true);
+            store.putJob(factory.createPayload(jobInfo, null, "parent"));
+        }
+    }
+
+    /*
+     * parent spawns children with a shared document, child is finished
+     */
+    private void work(final IClusterJobStore store) {
+        long deadline = System.currentTimeMillis() + DEADLINE;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                for (Payload payload : store.takeJobs(4)) {
+                    long jobId = payload.getJobInfo().getId();
+                    if (parents.containsKey(jobId)) {
+                        store.putJobs(createChildren(store), jobId);
+                    } else {
+                        assertThat(((Document) payload.getData())
+                                .getDocumentObject()).isInstanceOf(
+                                        byte[].class);
+                        finished.computeIfAbsent(jobId,
+                                k -> new AtomicInteger()).incrementAndGet();
+                        store.markFinished(jobId);
+                    }
+                }
+            } catch (NoSuchElementException | TimeoutException e) {
+                store.resetCrashedJobs();
+                if (store.isDone()) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (TransactionException e) {
+                LOG.warn("{}", e.getMessage());
+            }
+        }
+    }
+
+    private List<Payload> createChildren(final IClusterJobStore store) {
+        byte[] bytes = new byte[DOC_SIZE];
+        new java.util.Random().nextBytes(bytes);
+        List<Payload> children = new ArrayList<>();
+        for (int i = 0; i < CHILDREN; i++) {
+            JobInfo jobInfo = factory.createJobInfo("child", "group", "task",
+                    "steps", "dataDef");
+            jobInfo.setId(store.getJobIdSeq());
+            Document document =
+                    factory.createDocument("doc", null, "url", "group", null);
+            document.setDocumentObject(bytes);
+            children.add(factory.createPayload(jobInfo, null, document));
+        }
+        return children;
+    }
+
+    private void assertBlobsReleased(final HazelcastInstance hz) {
+        assertThat(hz.getMap(DsName.BLOBS_MAP.toString())).isEmpty();
+        assertThat(hz.getMap(DsName.BLOB_REFS_MAP.toString())).isEmpty();
+        assertThat(hz.getMap(DsName.PAYLOADS_MAP.toString())).isEmpty();
+    }
+
+    private HazelcastInstance startMember(final String clusterName) {
+        HazelcastInstance hz = ClusterStoreHelper.startMember(clusterName);
+        members.add(hz);
+        return hz;
+    }
+}
@@ -1,19 +1,28 @@
 package org.codetab.scoopi.store.cluster.hz;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.AbstractMap.SimpleEntry;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.concurrent.Semaphore;
@@ -41,17 +50,18 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.Snapshot;
 import com.codahale.metrics.Timer;
 import com.codahale.metrics.Timer.Context;
-import com.hazelcast.collection.IList;
+import com.google.common.collect.Sets;
 import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.flakeidgen.FlakeIdGenerator;
 import com.hazelcast.map.IMap;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.query.Predicate;
 import com.hazelcast.transaction.TransactionContext;
 import com.hazelcast.transaction.TransactionOptions;
 import com.hazelcast.transaction.TransactionTimedOutException;
-import com.hazelcast.transaction.TransactionalList;
 import com.hazelcast.transaction.TransactionalMap;
 
 public class JobStoreTest {
@@ -71,23 +81,29 @@ public class JobStoreTest {
     @Mock
     private HazelcastInstance hz;
     @Mock
-    private IList<ClusterJob> jobsList;
+    private BlobStore blobStore;
+    @Mock
+    private IMap<Long, ClusterJob> jobsMap;
     @Mock
     private IMap<Long, ClusterJob> takenJobsMap;
     @Mock
     private IMap<String, String> keyStoreMap;
     @Mock
-    private FlakeIdGenerator jobIdGenerator;
+    private IMap<Long, Payload> payloadsMap;
+    @Mock
+    private IdBlockAllocator jobIdAllocator;
     @Mock
     private Semaphore jobTakeThrottle;
     @Mock
     private TransactionOptions txOptions;
     @Mock
-    private Random random;
+    private PartitionService partitionService;
 
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
+        when(blobStore.toRef(any(), any())).thenAnswer(i -> i.getArgument(0));
+        when(blobStore.resolve(any())).thenAnswer(i -> i.getArgument(0));
     }
 
     @SuppressWarnings("unchecked")
@@ -97,10 +113,10 @@ public class JobStoreTest {
         String memberId = "Foo";
         int jobTakeLimit = 1;
         int jobTakeTimeout = 1;
-        FlakeIdGenerator jobIdGenerator1 = Mockito.mock(FlakeIdGenerator.class);
+        IMap<Object, Object> idBlocksMap = Mockito.mock(IMap.class);
         int startCrashCleanerMinThreshold = 1;
         TransactionOptions txOptions1 = Mockito.mock(TransactionOptions.class);
-        IList<Object> jobsList1 = Mockito.mock(IList.class);
+        IMap<Object, Object> jobsMap1 = Mockito.mock(IMap.class);
         IMap<Object, Object> takenJobsMap1 = Mockito.mock(IMap.class);
         IMap<Object, Object> keyStoreMap1 = Mockito.mock(IMap.class);
 
@@ -110,15 +126,18 @@ public class JobStoreTest {
                 .thenReturn(jobTakeLimit);
         when(configs.getInt("scoopi.job.takeTimeout", "1000"))
                 .thenReturn(jobTakeTimeout);
-        when(hz1.getFlakeIdGenerator("job_id_seq")).thenReturn(jobIdGenerator1);
+        when(configs.getInt("scoopi.job.idBlockSize", "1000")).thenReturn(10);
+        when(hz1.getMap(DsName.ID_BLOCKS_MAP.toString()))
+                .thenReturn(idBlocksMap);
         when(configs.getInt("scoopi.cluster.startCrashCleaner.minThreshold",
                 "10")).thenReturn(startCrashCleanerMinThreshold);
         when(cluster.getTxOptions(configs)).thenReturn(txOptions1);
-        when(hz1.getList(DsName.JOBS_LIST.toString())).thenReturn(jobsList1);
+        when(hz1.getMap(DsName.JOBS_MAP.toString())).thenReturn(jobsMap1);
         when(hz1.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(takenJobsMap1);
         when(hz1.getMap(DsName.KEYSTORE_MAP.toString()))
                 .thenReturn(keyStoreMap1);
+        when(hz1.getPartitionService()).thenReturn(partitionService);
         jobStore.open();
 
         assertSame(hz1, FieldUtils.readDeclaredField(jobStore, "hz", true));
@@ -128,19 +147,24 @@ public class JobStoreTest {
                 FieldUtils.readDeclaredField(jobStore, "jobTakeLimit", true));
         assertEquals(jobTakeTimeout,
                 FieldUtils.readDeclaredField(jobStore, "jobTakeTimeout", true));
-        assertSame(jobIdGenerator1,
-                FieldUtils.readDeclaredField(jobStore, "jobIdGenerator", true));
+        assertThat(FieldUtils.readDeclaredField(jobStore, "jobIdAllocator",
+                true)).isInstanceOf(IdBlockAllocator.class);
         assertEquals(startCrashCleanerMinThreshold,
                 FieldUtils.readDeclaredField(jobStore,
                         "startCrashCleanerMinThreshold", true));
         assertSame(txOptions1,
                 FieldUtils.readDeclaredField(jobStore, "txOptions", true));
-        assertSame(jobsList1,
-                FieldUtils.readDeclaredField(jobStore, "jobsList", true));
+        assertSame(jobsMap1,
+                FieldUtils.readDeclaredField(jobStore, "jobsMap", true));
         assertSame(takenJobsMap1,
                 FieldUtils.readDeclaredField(jobStore, "takenJobsMap", true));
         assertSame(keyStoreMap1,
                 FieldUtils.readDeclaredField(jobStore, "keyStoreMap", true));
+        verify(blobStore).open();
+        verify(jobsMap1).addLocalEntryListener(any(LocalJobIndex.class),
+                any(Predicate.class), eq(true));
+        verify(partitionService)
+                .addMigrationListener(any(LocalJobIndex.class));
         assertNotNull(FieldUtils.readDeclaredField(jobStore, "random", true));
         Semaphore jobTakeThrottle1 = (Semaphore) FieldUtils
                 .readDeclaredField(jobStore, "jobTakeThrottle", true);
@@ -193,8 +217,8 @@ public class JobStoreTest {
         long jobId = 1L;
         ClusterJob cluserJob = Mockito.mock(ClusterJob.class);
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
                 Mockito.mock(TransactionalMap.class);
         boolean mango = true;
@@ -208,7 +232,7 @@ public class JobStoreTest {
         when(grape.getId()).thenReturn(jobId);
         when(objFactory.createClusterJob(jobId)).thenReturn(cluserJob);
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
                 .thenReturn(txPayloadsMap);
         when(txPayloadsMap.containsKey(jobId)).thenReturn(mango);
@@ -218,7 +242,7 @@ public class JobStoreTest {
                 () -> jobStore.putJob(payload));
 
         verify(tx).beginTransaction();
-        verify(txJobsList, never()).add(cluserJob);
+        verify(txJobsMap, never()).set(any(), eq(cluserJob));
         verify(txPayloadsMap, never()).set(jobId, payload);
         verify(tx, never()).commitTransaction();
         verify(tx).rollbackTransaction();
@@ -235,8 +259,8 @@ public class JobStoreTest {
         long jobId = 1L;
         ClusterJob cluserJob = Mockito.mock(ClusterJob.class);
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
                 Mockito.mock(TransactionalMap.class);
         boolean mango = false;
@@ -250,7 +274,7 @@ public class JobStoreTest {
         when(grape.getId()).thenReturn(jobId);
         when(objFactory.createClusterJob(jobId)).thenReturn(cluserJob);
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
                 .thenReturn(txPayloadsMap);
         when(txPayloadsMap.containsKey(jobId)).thenReturn(mango);
@@ -260,7 +284,7 @@ public class JobStoreTest {
 
         assertTrue(actual);
         verify(tx).beginTransaction();
-        verify(txJobsList).add(cluserJob);
+        verify(txJobsMap).set(any(), eq(cluserJob));
         verify(txPayloadsMap).set(jobId, payload);
         verify(tx).commitTransaction();
         verify(tx, never()).rollbackTransaction();
@@ -275,8 +299,8 @@ public class JobStoreTest {
         payloads.add(payload);
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
@@ -290,7 +314,7 @@ public class JobStoreTest {
         FieldUtils.writeDeclaredField(jobStore, "jobTakeLimit", 4, true);
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
         when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
@@ -307,8 +331,8 @@ public class JobStoreTest {
         assertTrue(actual);
         verify(tx).beginTransaction();
         verify(txTakenJobsMap).delete(jobId);
-        verify(txPayloadsMap).delete(jobId);
-        verify(txJobsList).add(cluserJob);
+        verify(txPayloadsMap).remove(jobId);
+        verify(txJobsMap).set(any(), eq(cluserJob));
         verify(txPayloadsMap).set(newJobId, payload);
         verify(tx).commitTransaction();
         verify(jobTakeThrottle, never()).release();
@@ -323,8 +347,8 @@ public class JobStoreTest {
         payloads.add(payload);
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
@@ -338,7 +362,7 @@ public class JobStoreTest {
         FieldUtils.writeDeclaredField(jobStore, "jobTakeLimit", 4, true);
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
         when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
@@ -355,8 +379,8 @@ public class JobStoreTest {
         assertTrue(actual);
         verify(tx).beginTransaction();
         verify(txTakenJobsMap).delete(jobId);
-        verify(txPayloadsMap).delete(jobId);
-        verify(txJobsList).add(cluserJob);
+        verify(txPayloadsMap).remove(jobId);
+        verify(txJobsMap).set(any(), eq(cluserJob));
         verify(txPayloadsMap).set(newJobId, payload);
         verify(tx).commitTransaction();
         verify(jobTakeThrottle).release();
@@ -369,8 +393,8 @@ public class JobStoreTest {
         List<Payload> payloads = new ArrayList<>();
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
@@ -381,7 +405,7 @@ public class JobStoreTest {
         ClusterJob cluserJob = Mockito.mock(ClusterJob.class);
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
         when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
@@ -393,8 +417,8 @@ public class JobStoreTest {
 
         verify(tx).beginTransaction();
         verify(txTakenJobsMap, never()).delete(jobId);
-        verify(txPayloadsMap, never()).delete(jobId);
-        verify(txJobsList, never()).add(cluserJob);
+        verify(txPayloadsMap, never()).remove(jobId);
+        verify(txJobsMap, never()).set(any(), eq(cluserJob));
         verify(txPayloadsMap, never()).set(newJobId, payload);
         verify(tx, never()).commitTransaction();
         verify(jobTakeThrottle, never()).release();
@@ -410,8 +434,8 @@ public class JobStoreTest {
 
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
@@ -424,7 +448,7 @@ public class JobStoreTest {
         ClusterJob cluserJob = Mockito.mock(ClusterJob.class);
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
         when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
@@ -439,8 +463,8 @@ public class JobStoreTest {
 
         verify(tx).beginTransaction();
         verify(txTakenJobsMap).delete(jobId);
-        verify(txPayloadsMap).delete(jobId);
-        verify(txJobsList, never()).add(cluserJob);
+        verify(txPayloadsMap).remove(jobId);
+        verify(txJobsMap, never()).set(any(), eq(cluserJob));
         verify(txPayloadsMap, never()).set(newJobId, payload);
         verify(tx, never()).commitTransaction();
         verify(jobTakeThrottle, never()).release();
@@ -453,8 +477,8 @@ public class JobStoreTest {
         List<Payload> payloads = new ArrayList<>();
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txPayloadsMap =
@@ -471,8 +495,8 @@ public class JobStoreTest {
 
         verify(tx).beginTransaction();
         verify(txTakenJobsMap, never()).delete(jobId);
-        verify(txPayloadsMap, never()).delete(jobId);
-        verify(txJobsList, never()).add(cluserJob);
+        verify(txPayloadsMap, never()).remove(jobId);
+        verify(txJobsMap, never()).set(any(), eq(cluserJob));
         verify(txPayloadsMap, never()).set(newJobId, payload);
         verify(tx, never()).commitTransaction();
         verify(jobTakeThrottle, never()).release();
@@ -503,7 +527,6 @@ public class JobStoreTest {
         Timer apple = Mockito.mock(Timer.class);
         Context timer = Mockito.mock(Context.class);
         boolean acquired = true;
-        int size = 0; // queue empty
         int jobTakeTimeout = 1;
 
         FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
@@ -514,7 +537,8 @@ public class JobStoreTest {
         when(apple.time()).thenReturn(timer);
         when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
                 .thenReturn(acquired);
-        when(jobsList.size()).thenReturn(size);
+        localJobs();
+        when(jobsMap.keySet(any(Predicate.class))).thenReturn(new HashSet<>());
 
         assertThrows(NoSuchElementException.class, () -> jobStore.takeJob());
     }
@@ -522,206 +546,51 @@ public class JobStoreTest {
     @SuppressWarnings("unchecked")
     @Test
     public void testTakeJob() throws Exception {
-        Timer apple = Mockito.mock(Timer.class);
-        Context timer = Mockito.mock(Context.class);
-        boolean acquired = true;
-        int size = 1;
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        Meter meter = Mockito.mock(Meter.class);
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        int windowSize = 10;
-        int offset = 1;
-        int index = 0;
-        ClusterJob cJob = Mockito.mock(ClusterJob.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
-        TransactionalMap<Object, Object> txTakenJobsMap =
+        TransactionalMap<Object, Object> txJobsMap =
                 Mockito.mock(TransactionalMap.class);
-        TransactionalMap<Object, Object> txPayloadsMap =
+        TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
-        long jobId = 1L;
-        boolean lychee = true;
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
         Payload payload = Mockito.mock(Payload.class);
-        long paynkpdg = 1L;
-        Exception e = Mockito.mock(Exception.class);
-        IllegalStateException e1 = Mockito.mock(IllegalStateException.class);
-        String vosxcmie = "Foo";
-        String message = "Bar";
+        Map<Long, Payload> payloads = new HashMap<>();
+        payloads.put(1L, payload);
         int jobTakeTimeout = 1;
-        String memberId = "Baz";
+        String memberId = "Foo";
 
         FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
                 jobTakeTimeout, true);
         FieldUtils.writeDeclaredField(jobStore, "memberId", memberId, true);
 
         when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
-                .thenReturn(apple);
-        when(apple.time()).thenReturn(timer);
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(jobStore, "job", "taken"))
+                .thenReturn(meter);
         when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
-                .thenReturn(acquired);
-        when(jobsList.size()).thenReturn(size);
+                .thenReturn(true);
+        localJobs(1L);
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(random.nextInt(windowSize)).thenReturn(offset);
-        when(random.nextInt(size)).thenReturn(offset);
-        when(jobsList.get(index)).thenReturn(cJob);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
-        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
-                .thenReturn(txPayloadsMap);
-        when(cJob.getJobId()).thenReturn(jobId).thenReturn(paynkpdg);
-        when(txJobsList.remove(cJob)).thenReturn(lychee);
-        when(txPayloadsMap.get(jobId)).thenReturn(payload);
-        when(e1.getMessage()).thenReturn(vosxcmie);
-        when(e.getMessage()).thenReturn(message);
+        when(txJobsMap.remove(1L)).thenReturn(cJob);
+        when(payloadsMap.getAll(any())).thenReturn(payloads);
 
         Payload actual = jobStore.takeJob();
 
         assertSame(payload, actual);
-        verify(timer).stop();
-        verify(jobTakeThrottle, never()).release();
         verify(tx).beginTransaction();
         verify(cJob).setTaken(true);
         verify(cJob).setMemberId(memberId);
-        verify(txTakenJobsMap).set(jobId, cJob);
+        verify(txTakenJobsMap).set(1L, cJob);
         verify(tx).commitTransaction();
         verify(tx, never()).rollbackTransaction();
-        verify(timer, times(1)).stop();
-    }
-
-    @SuppressWarnings("unchecked")
-    @Test
-    public void testTakeJobRemoveJobFailed() throws Exception {
-        Timer apple = Mockito.mock(Timer.class);
-        Context timer = Mockito.mock(Context.class);
-        boolean acquired = true;
-
-        TransactionContext tx = Mockito.mock(TransactionContext.class);
-        int windowSize = 10;
-        int offset = 1;
-        // to cover getLifoIndex()
-        int size = 20;
-        int index = 18;
-
-        ClusterJob cJob = Mockito.mock(ClusterJob.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
-        TransactionalMap<Object, Object> txTakenJobsMap =
-                Mockito.mock(TransactionalMap.class);
-        TransactionalMap<Object, Object> txPayloadsMap =
-                Mockito.mock(TransactionalMap.class);
-        long jobId = 1L;
-        boolean lychee = false; // job to remove not found
-        Payload payload = Mockito.mock(Payload.class);
-        long paynkpdg = 1L;
-        Exception e = Mockito.mock(Exception.class);
-        IllegalStateException e1 = Mockito.mock(IllegalStateException.class);
-        String vosxcmie = "Foo";
-        String message = "Bar";
-        int jobTakeTimeout = 1;
-        String memberId = "Baz";
-
-        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
-                jobTakeTimeout, true);
-        FieldUtils.writeDeclaredField(jobStore, "memberId", memberId, true);
-
-        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
-                .thenReturn(apple);
-        when(apple.time()).thenReturn(timer);
-        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
-                .thenReturn(acquired);
-        when(jobsList.size()).thenReturn(size);
-        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(random.nextInt(windowSize)).thenReturn(offset);
-        when(random.nextInt(size)).thenReturn(offset);
-        when(jobsList.get(index)).thenReturn(cJob);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
-        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
-                .thenReturn(txTakenJobsMap);
-        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
-                .thenReturn(txPayloadsMap);
-        when(cJob.getJobId()).thenReturn(jobId).thenReturn(paynkpdg);
-        when(txJobsList.remove(cJob)).thenReturn(lychee);
-        when(txPayloadsMap.get(jobId)).thenReturn(payload);
-        when(e1.getMessage()).thenReturn(vosxcmie);
-        when(e.getMessage()).thenReturn(message);
-
-        assertThrows(TransactionException.class, () -> jobStore.takeJob());
-
-        verify(jobTakeThrottle, times(1)).release();
-        verify(tx).beginTransaction();
-        verify(cJob, never()).setTaken(true);
-        verify(cJob, never()).setMemberId(memberId);
-        verify(txTakenJobsMap, never()).set(jobId, cJob);
-        verify(tx, never()).commitTransaction();
-        verify(tx).rollbackTransaction();
-        verify(timer, times(1)).stop();
-    }
-
-    @SuppressWarnings("unchecked")
-    @Test
-    public void testTakeJobPayloadNotFound() throws Exception {
-        Timer apple = Mockito.mock(Timer.class);
-        Context timer = Mockito.mock(Context.class);
-        boolean acquired = true;
-        int size = 1;
-        TransactionContext tx = Mockito.mock(TransactionContext.class);
-        int windowSize = 10;
-        int offset = 1;
-        int index = 0;
-        ClusterJob cJob = Mockito.mock(ClusterJob.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
-        TransactionalMap<Object, Object> txTakenJobsMap =
-                Mockito.mock(TransactionalMap.class);
-        TransactionalMap<Object, Object> txPayloadsMap =
-                Mockito.mock(TransactionalMap.class);
-        long jobId = 1L;
-        boolean lychee = true;
-        Payload payload = null; // payload is null
-        long paynkpdg = 1L;
-        Exception e = Mockito.mock(Exception.class);
-        IllegalStateException e1 = Mockito.mock(IllegalStateException.class);
-        String vosxcmie = "Foo";
-        String message = "Bar";
-        int jobTakeTimeout = 1;
-        String memberId = "Baz";
-
-        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
-                jobTakeTimeout, true);
-        FieldUtils.writeDeclaredField(jobStore, "memberId", memberId, true);
-
-        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
-                .thenReturn(apple);
-        when(apple.time()).thenReturn(timer);
-        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
-                .thenReturn(acquired);
-        when(jobsList.size()).thenReturn(size);
-        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(random.nextInt(windowSize)).thenReturn(offset);
-        when(random.nextInt(size)).thenReturn(offset);
-        when(jobsList.get(index)).thenReturn(cJob);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
-        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
-                .thenReturn(txTakenJobsMap);
-        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
-                .thenReturn(txPayloadsMap);
-        when(cJob.getJobId()).thenReturn(jobId).thenReturn(paynkpdg);
-        when(txJobsList.remove(cJob)).thenReturn(lychee);
-        when(txPayloadsMap.get(jobId)).thenReturn(payload);
-        when(e1.getMessage()).thenReturn(vosxcmie);
-        when(e.getMessage()).thenReturn(message);
-        // for test coverage
-        doThrow(IllegalStateException.class).when(tx).rollbackTransaction();
-
-        assertThrows(TransactionException.class, () -> jobStore.takeJob());
-
-        verify(jobTakeThrottle, times(1)).release();
-        verify(tx).beginTransaction();
-        verify(cJob).setTaken(true);
-        verify(cJob).setMemberId(memberId);
-        verify(txTakenJobsMap).set(jobId, cJob);
-        verify(tx, never()).commitTransaction();
-        verify(tx).rollbackTransaction();
-        verify(timer, times(1)).stop();
+        verify(jobTakeThrottle, never()).release(1);
+        verify(context).stop();
     }
 
     @SuppressWarnings("unchecked")
@@ -750,7 +619,8 @@ public class JobStoreTest {
 
         assertTrue(actual);
         verify(tx).beginTransaction();
-        verify(txPayloadsMap).delete(jobId);
+        verify(txPayloadsMap).remove(jobId);
+        verify(blobStore).release(null, tx);
         verify(tx).commitTransaction();
         verify(jobTakeThrottle).release();
         verify(tx, never()).rollbackTransaction();
@@ -779,7 +649,7 @@ public class JobStoreTest {
         when(jobTakeThrottle.availablePermits()).thenReturn(cherry);
         // ignored exception
         doThrow(TransactionTimedOutException.class).when(txPayloadsMap)
-                .delete(jobId);
+                .remove(jobId);
 
         boolean actual = jobStore.markFinished(jobId);
 
@@ -816,7 +686,7 @@ public class JobStoreTest {
 
         assertTrue(actual);
         verify(tx).beginTransaction();
-        verify(txPayloadsMap).delete(jobId);
+        verify(txPayloadsMap).remove(jobId);
         verify(tx).commitTransaction();
         verify(jobTakeThrottle, never()).release();
         verify(tx, never()).rollbackTransaction();
@@ -846,7 +716,7 @@ public class JobStoreTest {
                 () -> jobStore.markFinished(jobId));
 
         verify(tx).beginTransaction();
-        verify(txPayloadsMap).delete(jobId);
+        verify(txPayloadsMap).remove(jobId);
         verify(tx, never()).commitTransaction();
         verify(jobTakeThrottle, never()).release();
         verify(tx).rollbackTransaction();
@@ -873,8 +743,8 @@ public class JobStoreTest {
     public void testResetTakenJob() throws Exception {
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         ClusterJob cJob = Mockito.mock(ClusterJob.class);
@@ -883,7 +753,7 @@ public class JobStoreTest {
         FieldUtils.writeDeclaredField(jobStore, "jobTakeLimit", 2, true);
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
         when(txTakenJobsMap.remove(jobId)).thenReturn(cJob);
@@ -895,7 +765,7 @@ public class JobStoreTest {
         verify(tx).beginTransaction();
         verify(cJob).setTaken(false);
         verify(cJob).setMemberId(null);
-        verify(txJobsList).add(cJob);
+        verify(txJobsMap).set(jobId, cJob);
         verify(tx).commitTransaction();
         verify(jobTakeThrottle, never()).release();
         verify(tx, never()).rollbackTransaction();
@@ -906,8 +776,8 @@ public class JobStoreTest {
     public void testResetTakenJobReleaseJobTakeThrottle() throws Exception {
         long jobId = 1L;
         TransactionContext tx = Mockito.mock(TransactionContext.class);
-        TransactionalList<Object> txJobsList =
-                Mockito.mock(TransactionalList.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
         TransactionalMap<Object, Object> txTakenJobsMap =
                 Mockito.mock(TransactionalMap.class);
         ClusterJob cJob = Mockito.mock(ClusterJob.class);
@@ -916,7 +786,7 @@ public class JobStoreTest {
         FieldUtils.writeDeclaredField(jobStore, "jobTakeLimit", 2, true);
 
         when(hz.newTransactionContext(txOptions)).thenReturn(tx);
-        when(tx.getList(DsName.JOBS_LIST.toString())).thenReturn(txJobsList);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
         when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
                 .thenReturn(txTakenJobsMap);
         when(txTakenJobsMap.remove(jobId)).thenReturn(cJob);
@@ -928,7 +798,7 @@ public class JobStoreTest {
         verify(tx).beginTransaction();
         verify(cJob).setTaken(false);
         verify(cJob).setMemberId(null);
-        verify(txJobsList).add(cJob);
+        verify(txJobsMap).set(jobId, cJob);
         verify(tx).commitTransaction();
         verify(jobTakeThrottle).release();
         verify(tx, never()).rollbackTransaction();
@@ -952,7 +822,7 @@ public class JobStoreTest {
 
     @Test
     public void testIsDone() {
-        when(jobsList.isEmpty()).thenReturn(true).thenReturn(true)
+        when(jobsMap.isEmpty()).thenReturn(true).thenReturn(true)
                 .thenReturn(false);
         when(takenJobsMap.isEmpty()).thenReturn(true).thenReturn(false)
                 .thenReturn(true);
@@ -976,7 +846,7 @@ public class JobStoreTest {
     public void testGetJobIdSeq() {
         long apple = 1L;
 
-        when(jobIdGenerator.newId()).thenReturn(apple);
+        when(jobIdAllocator.nextId()).thenReturn(apple);
 
         long actual = jobStore.getJobIdSeq();
 
@@ -993,7 +863,7 @@ public class JobStoreTest {
                 startCrashCleanerMinThreshold, true);
 
         when(crashCleaner.hasCrashedMembers()).thenReturn(apple);
-        when(jobsList.size()).thenReturn(grape);
+        when(jobsMap.size()).thenReturn(grape);
 
         jobStore.resetCrashedJobs();
 
@@ -1009,11 +879,563 @@ public class JobStoreTest {
 
         when(crashCleaner.hasCrashedMembers()).thenReturn(false)
                 .thenReturn(true);
-        when(jobsList.size()).thenReturn(grape);
+        when(jobsMap.size()).thenReturn(grape);
 
         jobStore.resetCrashedJobs();
         jobStore.resetCrashedJobs(); // or list size not less than threshold
 
         verify(crashCleaner, never()).resetCrashedJobs();
     }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobs() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        Meter meter = Mockito.mock(Meter.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        ClusterJob cJob2 = Mockito.mock(ClusterJob.class);
+        ClusterJob cJob3 = Mockito.mock(ClusterJob.class);
+        Payload payload2 = Mockito.mock(Payload.class);
+        Payload payload3 = Mockito.mock(Payload.class);
+        Map<Long, Payload> payloads = new HashMap<>();
+        payloads.put(2L, payload2);
+        payloads.put(3L, payload3);
+        int jobTakeTimeout = 1;
+        String memberId = "Foo";
+
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", memberId, true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(jobStore, "job", "taken"))
+                .thenReturn(meter);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(jobTakeThrottle.tryAcquire()).thenReturn(true);
+        localJobs(4L, 1L, 2L, 3L);
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        // latest three, 4 is taken by other node
+        when(txJobsMap.remove(4L)).thenReturn(null);
+        when(txJobsMap.remove(3L)).thenReturn(cJob3);
+        when(txJobsMap.remove(2L)).thenReturn(cJob2);
+        when(payloadsMap.getAll(any())).thenReturn(payloads);
+
+        List<Payload> actual = jobStore.takeJobs(3);
+
+        assertThat(actual).containsExactly(payload3, payload2);
+        verify(jobTakeThrottle, times(2)).tryAcquire();
+        verify(cJob3).setTaken(true);
+        verify(cJob3).setMemberId(memberId);
+        verify(txTakenJobsMap).set(3L, cJob3);
+        verify(txTakenJobsMap).set(2L, cJob2);
+        verify(txJobsMap, never()).remove(1L);
+        verify(tx).commitTransaction();
+        verify(tx, never()).rollbackTransaction();
+        // permit of skipped job
+        verify(jobTakeThrottle).release(1);
+        verify(meter).mark(2);
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsSteal() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        Meter taken = Mockito.mock(Meter.class);
+        Meter stolen = Mockito.mock(Meter.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
+        Payload payload = Mockito.mock(Payload.class);
+        Map<Long, Payload> payloads = new HashMap<>();
+        payloads.put(7L, payload);
+        int jobTakeTimeout = 1;
+
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+        FieldUtils.writeDeclaredField(jobStore, "random", new Random(), true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(jobStore, "job", "taken"))
+                .thenReturn(taken);
+        when(metricsHelper.getMeter(jobStore, "job", "stolen"))
+                .thenReturn(stolen);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        // no local jobs
+        localJobs();
+        when(jobsMap.keySet(any(Predicate.class)))
+                .thenReturn(Sets.newHashSet(7L));
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(txJobsMap.remove(7L)).thenReturn(cJob);
+        when(payloadsMap.getAll(any())).thenReturn(payloads);
+
+        List<Payload> actual = jobStore.takeJobs(1);
+
+        assertThat(actual).containsExactly(payload);
+        verify(txTakenJobsMap).set(7L, cJob);
+        verify(stolen).mark(1);
+        verify(taken).mark(1);
+        verify(tx).commitTransaction();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsLeased() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        Meter meter = Mockito.mock(Meter.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txPayloadsMap =
+                Mockito.mock(TransactionalMap.class);
+        Payload payload = Mockito.mock(Payload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
+        long parentJobId = 1L;
+        long jobId = 2L;
+        int jobTakeTimeout = 1;
+        String memberId = "Foo";
+
+        FieldUtils.writeDeclaredField(jobStore, "locality", true, true);
+        FieldUtils.writeDeclaredField(jobStore, "leaseTime", 1000L, true);
+        FieldUtils.writeDeclaredField(jobStore, "maxLeased", 10, true);
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", memberId, true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(any(), any())).thenReturn(meter);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
+                .thenReturn(txPayloadsMap);
+        when(txTakenJobsMap.containsKey(parentJobId)).thenReturn(true);
+        when(payload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(jobId);
+        when(objFactory.createClusterJob(jobId)).thenReturn(cJob);
+        when(txJobsMap.remove(jobId)).thenReturn(cJob);
+
+        jobStore.putJobs(Arrays.asList(payload), parentJobId);
+
+        verify(cJob).setMemberId(memberId);
+        verify(cJob).setLeaseUntil(Mockito.longThat(l -> l > 0));
+        verify(txPayloadsMap).set(jobId, payload);
+
+        List<Payload> actual = jobStore.takeJobs(1);
+
+        assertThat(actual).containsExactly(payload);
+        verify(txTakenJobsMap).set(jobId, cJob);
+        verify(cJob).setLeaseUntil(0);
+        // payload held locally, not fetched from cluster
+        verify(payloadsMap, never()).getAll(any());
+        verify(jobsMap, never()).localKeySet(any(Predicate.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPutJobsLeaseBound() throws Exception {
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txPayloadsMap =
+                Mockito.mock(TransactionalMap.class);
+        Payload payload1 = Mockito.mock(Payload.class);
+        Payload payload2 = Mockito.mock(Payload.class);
+        JobInfo jobInfo1 = Mockito.mock(JobInfo.class);
+        JobInfo jobInfo2 = Mockito.mock(JobInfo.class);
+        ClusterJob cJob1 = Mockito.mock(ClusterJob.class);
+        ClusterJob cJob2 = Mockito.mock(ClusterJob.class);
+        long parentJobId = 1L;
+
+        FieldUtils.writeDeclaredField(jobStore, "locality", true, true);
+        FieldUtils.writeDeclaredField(jobStore, "leaseTime", 1000L, true);
+        FieldUtils.writeDeclaredField(jobStore, "maxLeased", 1, true);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", "Foo", true);
+
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
+                .thenReturn(txPayloadsMap);
+        when(txTakenJobsMap.containsKey(parentJobId)).thenReturn(true);
+        when(payload1.getJobInfo()).thenReturn(jobInfo1);
+        when(payload2.getJobInfo()).thenReturn(jobInfo2);
+        when(jobInfo1.getId()).thenReturn(2L);
+        when(jobInfo2.getId()).thenReturn(3L);
+        when(objFactory.createClusterJob(2L)).thenReturn(cJob1);
+        when(objFactory.createClusterJob(3L)).thenReturn(cJob2);
+
+        jobStore.putJobs(Arrays.asList(payload1, payload2), parentJobId);
+
+        verify(cJob1).setMemberId("Foo");
+        verify(cJob2, never()).setMemberId(any());
+        verify(cJob2, never()).setLeaseUntil(Mockito.anyLong());
+        verify(txPayloadsMap).set(3L, payload2);
+
+        Map<Long, Payload> leasedPayloads = (Map<Long, Payload>) FieldUtils
+                .readDeclaredField(jobStore, "leasedPayloads", true);
+        assertThat(leasedPayloads).containsOnlyKeys(2L);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsLeaseExpired() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        Meter meter = Mockito.mock(Meter.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txPayloadsMap =
+                Mockito.mock(TransactionalMap.class);
+        Payload payload = Mockito.mock(Payload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
+        long parentJobId = 1L;
+        long jobId = 2L;
+        int jobTakeTimeout = 1;
+
+        // lease expires as soon as it is put
+        FieldUtils.writeDeclaredField(jobStore, "locality", true, true);
+        FieldUtils.writeDeclaredField(jobStore, "leaseTime", -1L, true);
+        FieldUtils.writeDeclaredField(jobStore, "maxLeased", 10, true);
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", "Foo", true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(any(), any())).thenReturn(meter);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
+                .thenReturn(txPayloadsMap);
+        when(txTakenJobsMap.containsKey(parentJobId)).thenReturn(true);
+        when(payload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(jobId);
+        when(objFactory.createClusterJob(jobId)).thenReturn(cJob);
+        when(txJobsMap.remove(jobId)).thenReturn(cJob);
+        localJobs(jobId);
+        Map<Long, Payload> payloads = new HashMap<>();
+        payloads.put(jobId, payload);
+        when(payloadsMap.getAll(any())).thenReturn(payloads);
+
+        jobStore.putJobs(Arrays.asList(payload), parentJobId);
+        List<Payload> actual = jobStore.takeJobs(1);
+
+        assertThat(actual).containsExactly(payload);
+        // expired lease is evicted and payload fetched from cluster
+        verify(payloadsMap).getAll(any());
+        Map<Long, Payload> leasedPayloads = (Map<Long, Payload>) FieldUtils
+                .readDeclaredField(jobStore, "leasedPayloads", true);
+        assertThat(leasedPayloads).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsLeasedClaimFailed() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txPayloadsMap =
+                Mockito.mock(TransactionalMap.class);
+        Payload payload = Mockito.mock(Payload.class);
+        JobInfo jobInfo = Mockito.mock(JobInfo.class);
+        ClusterJob cJob = Mockito.mock(ClusterJob.class);
+        long parentJobId = 1L;
+        long jobId = 2L;
+        int jobTakeTimeout = 1;
+
+        FieldUtils.writeDeclaredField(jobStore, "locality", true, true);
+        FieldUtils.writeDeclaredField(jobStore, "leaseTime", 1000L, true);
+        FieldUtils.writeDeclaredField(jobStore, "maxLeased", 10, true);
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", "Foo", true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(tx.getMap(DsName.PAYLOADS_MAP.toString()))
+                .thenReturn(txPayloadsMap);
+        when(txTakenJobsMap.containsKey(parentJobId)).thenReturn(true);
+        when(payload.getJobInfo()).thenReturn(jobInfo);
+        when(jobInfo.getId()).thenReturn(jobId);
+        when(objFactory.createClusterJob(jobId)).thenReturn(cJob);
+        when(txJobsMap.remove(jobId)).thenThrow(IllegalStateException.class);
+
+        jobStore.putJobs(Arrays.asList(payload), parentJobId);
+
+        assertThrows(TransactionException.class, () -> jobStore.takeJobs(1));
+
+        verify(tx).rollbackTransaction();
+        Map<Long, Payload> leasedPayloads = (Map<Long, Payload>) FieldUtils
+                .readDeclaredField(jobStore, "leasedPayloads", true);
+        assertThat(leasedPayloads).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsIdleSteal() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        Meter meter = Mockito.mock(Meter.class);
+        Meter leaseStolen = Mockito.mock(Meter.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        Payload payload = Mockito.mock(Payload.class);
+        Map<Long, Payload> payloads = new HashMap<>();
+        payloads.put(5L, payload);
+        int jobTakeTimeout = 1;
+
+        // local job leased to other member, lease not expired
+        ClusterJob cJob = new ObjectFactory().createClusterJob(5L);
+        cJob.setMemberId("Bar");
+        cJob.setLeaseUntil(Long.MAX_VALUE);
+        Map<Long, ClusterJob> jobs = new HashMap<>();
+        jobs.put(5L, cJob);
+
+        FieldUtils.writeDeclaredField(jobStore, "locality", true, true);
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+        FieldUtils.writeDeclaredField(jobStore, "memberId", "Foo", true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(metricsHelper.getMeter(any(), any())).thenReturn(meter);
+        when(metricsHelper.getMeter(jobStore, "job", "lease", "stolen"))
+                .thenReturn(leaseStolen);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(jobsMap.localKeySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>(jobs.keySet()));
+        when(jobsMap.getAll(jobs.keySet())).thenReturn(jobs);
+        // no expired leases in cluster
+        when(jobsMap.keySet(any(Predicate.class))).thenReturn(new HashSet<>());
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(txJobsMap.remove(5L)).thenReturn(cJob);
+        when(payloadsMap.getAll(any())).thenReturn(payloads);
+
+        List<Payload> actual = jobStore.takeJobs(1);
+
+        assertThat(actual).containsExactly(payload);
+        verify(txTakenJobsMap).set(5L, cJob);
+        verify(leaseStolen).mark(1);
+    }
+
+    @Test
+    public void testTakeJobsTimeout() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        int jobTakeTimeout = 1;
+
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(false);
+
+        assertThrows(TimeoutException.class, () -> jobStore.takeJobs(2));
+        verify(context).stop();
+    }
+
+    @Test
+    public void testTakeJobsQueueEmpty() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        int jobTakeTimeout = 1;
+
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(jobTakeThrottle.tryAcquire()).thenReturn(true).thenReturn(false);
+        localJobs();
+        when(jobsMap.keySet(any(Predicate.class))).thenReturn(new HashSet<>());
+
+        assertThrows(NoSuchElementException.class, () -> jobStore.takeJobs(4));
+        verify(jobTakeThrottle).release(2);
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsAllTaken() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        int jobTakeTimeout = 1;
+
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        when(jobTakeThrottle.tryAcquire()).thenReturn(true);
+        localJobs(1L);
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(txJobsMap.remove(1L)).thenReturn(null);
+
+        assertThrows(TransactionException.class, () -> jobStore.takeJobs(2));
+
+        verify(tx, never()).commitTransaction();
+        verify(tx).rollbackTransaction();
+        verify(jobTakeThrottle).release(2);
+        verify(context).stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testTakeJobsPayloadNotFound() throws Exception {
+        Timer timer = Mockito.mock(Timer.class);
+        Context context = Mockito.mock(Context.class);
+        TransactionContext tx = Mockito.mock(TransactionContext.class);
+        TransactionContext tx2 = Mockito.mock(TransactionContext.class);
+        TransactionalMap<Object, Object> txJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txTakenJobsMap =
+                Mockito.mock(TransactionalMap.class);
+        TransactionalMap<Object, Object> txPayloadsMap =
+                Mockito.mock(TransactionalMap.class);
+        ClusterJob cJob1 = Mockito.mock(ClusterJob.class);
+        int jobTakeTimeout = 1;
+
+        FieldUtils.writeDeclaredField(jobStore, "jobTakeTimeout",
+                jobTakeTimeout, true);
+
+        when(metricsHelper.getTimer(jobStore, "job", "take", "time"))
+                .thenReturn(timer);
+        when(timer.time()).thenReturn(context);
+        when(jobTakeThrottle.tryAcquire(jobTakeTimeout, TimeUnit.MILLISECONDS))
+                .thenReturn(true);
+        localJobs(1L);
+        when(hz.newTransactionContext(txOptions)).thenReturn(tx)
+                .thenReturn(tx2);
+        when(tx.getMap(DsName.JOBS_MAP.toString())).thenReturn(txJobsMap);
+        when(tx.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(tx2.getMap(DsName.TAKEN_JOBS_MAP.toString()))
+                .thenReturn(txTakenJobsMap);
+        when(tx2.getMap(DsName.PAYLOADS_MAP.toString()))
+                .thenReturn(txPayloadsMap);
+        when(txJobsMap.remove(1L)).thenReturn(cJob1);
+        when(txTakenJobsMap.remove(1L)).thenReturn(cJob1);
+        when(payloadsMap.getAll(any())).thenReturn(new HashMap<>());
+
+        assertThrows(NoSuchElementException.class, () -> jobStore.takeJobs(1));
+
+        // job is dropped
+        verify(tx).commitTransaction();
+        verify(tx2).commitTransaction();
+        verify(context).stop();
+    }
+
+    @Test
+    public void testLifoComparator() {
+        ObjectFactory factory = new ObjectFactory();
+        ClusterJob cJob1 = factory.createClusterJob(9L);
+        cJob1.setCreated(100);
+        ClusterJob cJob2 = factory.createClusterJob(2L);
+        cJob2.setCreated(200);
+        ClusterJob cJob3 = factory.createClusterJob(3L);
+        cJob3.setCreated(200);
+        List<Entry<Long, ClusterJob>> entries = new ArrayList<>();
+        entries.add(new SimpleEntry<>(9L, cJob1));
+        entries.add(new SimpleEntry<>(2L, cJob2));
+        entries.add(new SimpleEntry<>(3L, cJob3));
+
+        entries.sort(new JobStore.LifoComparator());
+
+        assertThat(entries).extracting(Entry::getKey).containsExactly(3L, 2L,
+                9L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void localJobs(final Long... jobIds) {
+        ObjectFactory factory = new ObjectFactory();
+        Map<Long, ClusterJob> jobs = new HashMap<>();
+        for (Long jobId : jobIds) {
+            ClusterJob cJob = factory.createClusterJob(jobId);
+            // same creation time, ordered by id
+            cJob.setCreated(0);
+            jobs.put(jobId, cJob);
+        }
+        when(jobsMap.localKeySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>(jobs.keySet()));
+        when(jobsMap.getAll(jobs.keySet())).thenReturn(jobs);
+    }
 }
@@ -0,0 +1,167 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.codetab.scoopi.model.ClusterJob;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryEventType;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+import com.hazelcast.partition.PartitionService;
+import com.hazelcast.query.Predicate;
+
+public class LocalJobIndexTest {
+
+    @Mock
+    private IMap<Long, ClusterJob> jobsMap;
+    @Mock
+    private HazelcastInstance hz;
+    @Mock
+    private PartitionService partitionService;
+
+    private LocalJobIndex jobIndex;
+    private ObjectFactory factory;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        jobIndex = new LocalJobIndex();
+        factory = new ObjectFactory();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testOpen() {
+        when(hz.getPartitionService()).thenReturn(partitionService);
+
+        jobIndex.open(hz, jobsMap);
+
+        verify(jobsMap).addLocalEntryListener(eq(jobIndex),
+                any(Predicate.class), eq(true));
+        verify(partitionService).addMigrationListener(jobIndex);
+    }
+
+    @Test
+    public void testPollRebuild() {
+        localJobs(1L, 3L, 2L);
+
+        assertThat(jobIndex.poll(jobsMap, 2, cJob -> true))
+                .containsExactly(3L, 2L);
+        assertThat(jobIndex.poll(jobsMap, 2, cJob -> true))
+                .containsExactly(1L);
+        assertThat(jobIndex.poll(jobsMap, 2, cJob -> true)).isEmpty();
+
+        // scanned once
+        verify(jobsMap).localKeySet(any());
+    }
+
+    @Test
+    public void testPollFilter() {
+        localJobs(1L, 2L, 3L);
+
+        assertThat(jobIndex.poll(jobsMap, 3, cJob -> cJob.getJobId() != 2L))
+                .containsExactly(3L, 1L);
+        assertEquals(1, jobIndex.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPollCreationOrder() {
+        // id 9 is from an older id block of another member
+        ClusterJob cJob1 = factory.createClusterJob(9L);
+        cJob1.setCreated(100);
+        ClusterJob cJob2 = factory.createClusterJob(2L);
+        cJob2.setCreated(200);
+        Map<Long, ClusterJob> jobs = new HashMap<>();
+        jobs.put(9L, cJob1);
+        jobs.put(2L, cJob2);
+        when(jobsMap.localKeySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>(jobs.keySet()));
+        when(jobsMap.getAll(jobs.keySet())).thenReturn(jobs);
+
+        assertThat(jobIndex.poll(jobsMap, 2, cJob -> true))
+                .containsExactly(2L, 9L);
+    }
+
+    @Test
+    public void testEvents() {
+        localJobs();
+        jobIndex.poll(jobsMap, 1, cJob -> true);
+
+        ClusterJob taken = factory.createClusterJob(2L);
+        taken.setTaken(true);
+        jobIndex.entryAdded(event(1L, factory.createClusterJob(1L)));
+        jobIndex.entryAdded(event(2L, factory.createClusterJob(2L)));
+        jobIndex.entryAdded(event(3L, factory.createClusterJob(3L)));
+        jobIndex.entryAdded(event(4L, factory.createClusterJob(4L)));
+        jobIndex.entryUpdated(event(2L, taken));
+        jobIndex.entryRemoved(event(3L, null));
+        jobIndex.entryEvicted(event(4L, null));
+
+        assertThat(jobIndex.poll(jobsMap, 4, cJob -> true))
+                .containsExactly(1L);
+        assertEquals(0, jobIndex.size());
+    }
+
+    @Test
+    public void testMigrationRebuild() {
+        localJobs(1L);
+        jobIndex.poll(jobsMap, 1, cJob -> true);
+
+        localJobs(5L);
+        jobIndex.migrationFinished(null);
+
+        assertThat(jobIndex.poll(jobsMap, 1, cJob -> true))
+                .containsExactly(5L);
+        verify(jobsMap, times(2)).localKeySet(any());
+    }
+
+    @Test
+    public void testInvalidate() {
+        localJobs(1L);
+        assertThat(jobIndex.poll(jobsMap, 1, cJob -> true))
+                .containsExactly(1L);
+
+        // not claimed, job is still in map
+        jobIndex.invalidate();
+
+        assertThat(jobIndex.poll(jobsMap, 1, cJob -> true))
+                .containsExactly(1L);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void localJobs(final Long... jobIds) {
+        Map<Long, ClusterJob> jobs = new HashMap<>();
+        for (Long jobId : jobIds) {
+            ClusterJob cJob = factory.createClusterJob(jobId);
+            // same creation time, ordered by id
+            cJob.setCreated(0);
+            jobs.put(jobId, cJob);
+        }
+        when(jobsMap.localKeySet(any(Predicate.class)))
+                .thenReturn(new HashSet<>(jobs.keySet()));
+        when(jobsMap.getAll(jobs.keySet())).thenReturn(jobs);
+    }
+
+    private EntryEvent<Long, ClusterJob> event(final Long jobId,
+            final ClusterJob cJob) {
+        return new EntryEvent<>("jobs", null, EntryEventType.ADDED.getType(),
+                jobId, cJob);
+    }
+}
@@ -4,9 +4,11 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -54,4 +56,24 @@ public class MembershipListenerTest {
 
         verify(crashedMembers).add(crashedMemberId);
     }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMemberRemovedListener() {
+        MembershipEvent membershipEvent = Mockito.mock(MembershipEvent.class);
+        Member apple = Mockito.mock(Member.class);
+        UUID grape = Mockito.mock(UUID.class);
+        Consumer<String> listener = Mockito.mock(Consumer.class);
+        String crashedMemberId = "Foo";
+
+        when(membershipEvent.getMember()).thenReturn(apple);
+        when(apple.getUuid()).thenReturn(grape);
+        when(grape.toString()).thenReturn(crashedMemberId);
+        membershipListener.addRemovedListener(listener);
+        membershipListener.memberRemoved(membershipEvent);
+
+        InOrder inOrder = Mockito.inOrder(crashedMembers, listener);
+        inOrder.verify(crashedMembers).add(crashedMemberId);
+        inOrder.verify(listener).accept(crashedMemberId);
+    }
 }
@@ -0,0 +1,76 @@
+package org.codetab.scoopi.store.cluster.hz;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.Map.Entry;
+
+import org.codetab.scoopi.store.ICluster;
+import org.codetab.scoopi.store.cluster.hz.RateLimiter.Lease;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.map.IMap;
+
+public class RateLimiterTest {
+    @InjectMocks
+    private RateLimiter rateLimiter;
+
+    @Mock
+    private ICluster cluster;
+    @Mock
+    private HazelcastInstance hz;
+    @Mock
+    private IMap<String, Long> leasesMap;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    public void testLease() {
+        when(cluster.getInstance()).thenReturn(hz);
+        when(hz.<String, Long>getMap(DsName.RATE_LEASES_MAP.toString()))
+                .thenReturn(leasesMap);
+        when(leasesMap.executeOnKey(eq("example.org"), any(Lease.class)))
+                .thenReturn(300L);
+
+        assertThat(rateLimiter.lease("example.org", 4, 100)).isEqualTo(300L);
+    }
+
+    @Test
+    public void testLeaseProcess() {
+        Lease lease = new Lease(4, 100);
+        Entry<String, Long> entry = new SimpleEntry<>("example.org", null);
+
+        long start = System.currentTimeMillis();
+        assertThat(lease.process(entry)).isEqualTo(0L);
+        assertThat(entry.getValue()).isBetween(start + 400,
+                System.currentTimeMillis() + 400);
+
+        // next lease starts after slots of the first
+        long delay = lease.process(entry);
+        assertThat(delay).isBetween(300L, 400L);
+        assertThat(entry.getValue()).isBetween(start + 800,
+                System.currentTimeMillis() + 800);
+    }
+
+    @Test
+    public void testLeaseProcessPastSlot() {
+        Lease lease = new Lease(2, 100);
+        long past = System.currentTimeMillis() - 5000;
+        Entry<String, Long> entry = new SimpleEntry<>("example.org", past);
+
+        // unused slots in the past are not leased
+        assertThat(lease.process(entry)).isEqualTo(0L);
+        assertThat(entry.getValue()).isGreaterThan(past + 5000);
+    }
+}
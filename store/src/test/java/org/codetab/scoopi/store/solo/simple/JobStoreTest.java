@@ -1,25 +1,29 @@
 package org.codetab.scoopi.store.solo.simple;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
-import org.apache.commons.lang3.reflect.FieldUtils;
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.Payload;
 import org.codetab.scoopi.store.IJobStore;
 import org.codetab.scoopi.store.IJobStore.State;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
@@ -27,26 +31,41 @@ public class JobStoreTest {
     @InjectMocks
     private JobStore jobStore;
 
+    @Mock
+    private Configs configs;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private SpillQueue jobs;
+
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
     }
 
     @Test
-    public void testOpen() {
+    public void testOpen() throws Exception {
+        Payload payload = Mockito.mock(Payload.class);
+
+        when(configs.getInt("scoopi.job.queue.maxBytes", "67108864"))
+                .thenReturn(1024);
+
         jobStore.open();
+
+        verify(metricsHelper).registerGuage(any(SpillQueue.class),
+                eq(jobStore), eq("job"), eq("queue"));
+
+        assertTrue(jobStore.isDone());
+        jobStore.putJob(payload);
+        assertFalse(jobStore.isDone());
+        assertSame(payload, jobStore.takeJob());
     }
 
     @Test
     public void testTakeJob() throws Exception {
-
-        @SuppressWarnings("unchecked")
-        Queue<Payload> jobs = Mockito.mock(ConcurrentLinkedQueue.class);
         Payload payload = Mockito.mock(Payload.class);
 
-        FieldUtils.writeDeclaredField(jobStore, "jobs", jobs, true);
-
-        when(jobs.poll()).thenReturn(payload);
+        when(jobs.poll(0)).thenReturn(payload);
 
         Payload actual = jobStore.takeJob();
 
@@ -55,15 +74,41 @@ public class JobStoreTest {
 
     @Test
     public void testTakeJobPayloadIsNull() throws Exception {
+        when(jobs.poll(0)).thenReturn(null);
+
+        assertThrows(NoSuchElementException.class, () -> jobStore.takeJob());
+    }
 
-        @SuppressWarnings("unchecked")
-        Queue<Payload> jobs = Mockito.mock(ConcurrentLinkedQueue.class);
+    @Test
+    public void testTakeJobs() throws Exception {
+        Payload payload1 = Mockito.mock(Payload.class);
+        Payload payload2 = Mockito.mock(Payload.class);
 
-        FieldUtils.writeDeclaredField(jobStore, "jobs", jobs, true);
+        when(jobs.poll(0)).thenReturn(payload1).thenReturn(payload2)
+                .thenReturn(null);
 
-        when(jobs.poll()).thenReturn(null);
+        List<Payload> actual = jobStore.takeJobs(4);
 
-        assertThrows(NoSuchElementException.class, () -> jobStore.takeJob());
+        assertThat(actual).containsExactly(payload1, payload2);
+    }
+
+    @Test
+    public void testTakeJobsLimit() throws Exception {
+        Payload payload1 = Mockito.mock(Payload.class);
+        Payload payload2 = Mockito.mock(Payload.class);
+
+        when(jobs.poll(0)).thenReturn(payload1).thenReturn(payload2);
+
+        List<Payload> actual = jobStore.takeJobs(1);
+
+        assertThat(actual).containsExactly(payload1);
+    }
+
+    @Test
+    public void testTakeJobsEmpty() throws Exception {
+        when(jobs.poll(0)).thenReturn(null);
+
+        assertThrows(NoSuchElementException.class, () -> jobStore.takeJobs(4));
     }
 
     @Test
@@ -73,6 +118,7 @@ public class JobStoreTest {
         boolean actual = jobStore.putJob(payload);
 
         assertTrue(actual);
+        verify(jobs).put(payload);
     }
 
     @Test
@@ -91,15 +137,11 @@ public class JobStoreTest {
     }
 
     @Test
-    public void testIsDone() throws IllegalAccessException {
+    public void testIsDone() {
         int apple = 0;
 
-        @SuppressWarnings("unchecked")
-        Queue<Payload> jobs = Mockito.mock(ConcurrentLinkedQueue.class);
-
-        FieldUtils.writeDeclaredField(jobStore, "jobs", jobs, true);
 
-        when(jobs.size()).thenReturn(apple);
+        when(jobs.getSize()).thenReturn(apple);
 
         boolean actual = jobStore.isDone();
 
@@ -107,15 +149,11 @@ public class JobStoreTest {
     }
 
     @Test
-    public void testIsDoneNotDone() throws IllegalAccessException {
+    public void testIsDoneNotDone() {
         int apple = 1;
 
-        @SuppressWarnings("unchecked")
-        Queue<Payload> jobs = Mockito.mock(ConcurrentLinkedQueue.class);
-
-        FieldUtils.writeDeclaredField(jobStore, "jobs", jobs, true);
 
-        when(jobs.size()).thenReturn(apple);
+        when(jobs.getSize()).thenReturn(apple);
 
         boolean actual = jobStore.isDone();
 
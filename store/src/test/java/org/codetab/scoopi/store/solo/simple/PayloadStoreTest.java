@@ -4,11 +4,13 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
-
+import org.codetab.scoopi.config.Configs;
+import org.codetab.scoopi.metrics.MetricsHelper;
 import org.codetab.scoopi.model.ObjectFactory;
 import org.codetab.scoopi.model.Payload;
 import org.junit.Before;
@@ -23,7 +25,11 @@ public class PayloadStoreTest {
     private PayloadStore payloadStore;
 
     @Mock
-    private BlockingQueue<Payload> payloads;
+    private Configs configs;
+    @Mock
+    private MetricsHelper metricsHelper;
+    @Mock
+    private SpillQueue payloads;
 
     @Before
     public void setUp() throws Exception {
@@ -31,22 +37,27 @@ public class PayloadStoreTest {
     }
 
     /**
-     * Test queue initialization without mockito.
+     * Test open, which replaces mock queue with real one.
      * @throws Exception
      */
     @Test
-    public void testQueueInit() throws Exception {
+    public void testOpen() throws Exception {
         ObjectFactory factory = new ObjectFactory();
         Payload payload = factory.createPayload(null, null, null);
 
-        PayloadStore pStore = new PayloadStore();
+        when(configs.getInt("scoopi.task.queue.maxBytes", "67108864"))
+                .thenReturn(1024);
 
-        assertEquals(0, pStore.getPayloadsCount());
+        payloadStore.open();
 
-        pStore.putPayload(payload);
-        Payload actual = pStore.takePayload(0);
+        assertEquals(0, payloadStore.getPayloadsCount());
+
+        payloadStore.putPayload(payload);
+        Payload actual = payloadStore.takePayload(0);
 
         assertSame(actual, payload);
+        verify(metricsHelper).registerGuage(any(SpillQueue.class),
+                eq(payloadStore), eq("payload"), eq("queue"));
     }
 
     @Test
@@ -57,7 +68,7 @@ public class PayloadStoreTest {
         when(payloads.take()).thenReturn(grape);
 
         int timeout = 1;
-        when(payloads.poll(timeout, TimeUnit.MILLISECONDS)).thenReturn(orange);
+        when(payloads.poll(timeout)).thenReturn(orange);
 
         Payload actual = payloadStore.takePayload(timeout);
         assertSame(orange, actual);
@@ -72,29 +83,41 @@ public class PayloadStoreTest {
     public void testPutPayload() throws Exception {
         Payload payload = Mockito.mock(Payload.class);
         payloadStore.putPayload(payload);
+
+        verify(payloads).put(payload);
     }
 
     @Test
     public void testGetPayloadsCount() {
         int apple = 1;
 
-        when(payloads.size()).thenReturn(apple);
+        when(payloads.getSize()).thenReturn(apple);
 
         int actual = payloadStore.getPayloadsCount();
 
         assertEquals(apple, actual);
     }
 
+    @Test
+    public void testIsOverLimit() {
+        when(payloads.isOverLimit()).thenReturn(true).thenReturn(false);
+
+        assertTrue(payloadStore.isOverLimit());
+        assertFalse(payloadStore.isOverLimit());
+    }
+
     @Test
     public void testClear() {
         payloadStore.clear();
+
+        verify(payloads).clear();
     }
 
     @Test
     public void testIsDone() {
         int done = 0;
         int notDone = 1;
-        when(payloads.size()).thenReturn(notDone).thenReturn(done);
+        when(payloads.getSize()).thenReturn(notDone).thenReturn(done);
 
         assertFalse(payloadStore.isDone());
         assertTrue(payloadStore.isDone());
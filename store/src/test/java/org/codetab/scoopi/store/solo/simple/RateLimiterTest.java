@@ -0,0 +1,31 @@
+package org.codetab.scoopi.store.solo.simple;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RateLimiterTest {
+
+    private RateLimiter rateLimiter;
+
+    @Before
+    public void setUp() throws Exception {
+        rateLimiter = new RateLimiter();
+    }
+
+    @Test
+    public void testLease() {
+        assertThat(rateLimiter.lease("example.org", 4, 100)).isEqualTo(0L);
+        assertThat(rateLimiter.lease("example.org", 4, 100)).isBetween(300L,
+                400L);
+        assertThat(rateLimiter.lease("example.org", 4, 100)).isBetween(700L,
+                800L);
+    }
+
+    @Test
+    public void testLeasePerKey() {
+        assertThat(rateLimiter.lease("example.org", 4, 100)).isEqualTo(0L);
+        assertThat(rateLimiter.lease("example.com", 4, 100)).isEqualTo(0L);
+    }
+}
@@ -1,6 +1,7 @@
 package org.codetab.scoopi.store.solo.simple;
 
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import org.codetab.scoopi.store.IJobStore;
@@ -8,6 +9,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
 public class SoloShutdownTest {
@@ -75,4 +77,13 @@ public class SoloShutdownTest {
 
         assertTrue(actual);
     }
+
+    @Test
+    public void testAddDoneListener() {
+        Runnable listener = Mockito.mock(Runnable.class);
+
+        soloShutdown.addDoneListener(listener);
+
+        verifyNoInteractions(listener);
+    }
 }
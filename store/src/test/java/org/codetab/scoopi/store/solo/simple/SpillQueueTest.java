@@ -0,0 +1,164 @@
+package org.codetab.scoopi.store.solo.simple;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codetab.scoopi.model.Document;
+import org.codetab.scoopi.model.ObjectFactory;
+import org.codetab.scoopi.model.Payload;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpillQueueTest {
+
+    private static final long PAYLOAD_SIZE = 512;
+
+    private ObjectFactory factory;
+    private SpillQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        factory = new ObjectFactory();
+        // two payloads fit in memory
+        queue = new SpillQueue("test", 2 * PAYLOAD_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        queue.clear();
+    }
+
+    @Test
+    public void testPutTakeInMemory() throws Exception {
+        Payload p1 = createPayload("1");
+        Payload p2 = createPayload("2");
+
+        queue.put(p1);
+        queue.put(p2);
+
+        assertEquals(2, queue.getSize());
+        assertEquals(2 * PAYLOAD_SIZE, queue.getMemoryBytes());
+        assertEquals(0, queue.getSpillCount());
+        assertTrue(queue.isOverLimit());
+
+        assertEquals(p1, queue.take());
+        assertFalse(queue.isOverLimit());
+        assertEquals(p2, queue.take());
+        assertEquals(0, queue.getSize());
+        assertEquals(0, queue.getMemoryBytes());
+    }
+
+    @Test
+    public void testSpillKeepsOrder() throws Exception {
+        List<Payload> payloads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            payloads.add(createPayload(String.valueOf(i)));
+        }
+
+        queue.putAll(payloads);
+
+        assertEquals(10, queue.getSize());
+        assertEquals(8, queue.getSpillCount());
+        assertEquals(8, queue.getSpilledTotal());
+        assertEquals(2 * PAYLOAD_SIZE, queue.getMemoryBytes());
+        assertTrue(queue.isOverLimit());
+
+        // put while spilled goes to spill to keep order
+        queue.take();
+        Payload last = createPayload("10");
+        payloads.add(last);
+        queue.put(last);
+        assertEquals(9, queue.getSpillCount());
+
+        List<Payload> actual = new ArrayList<>();
+        actual.add(payloads.get(0));
+        Payload payload;
+        while ((payload = queue.poll(0)) != null) {
+            actual.add(payload);
+        }
+
+        assertThat(actual).containsExactlyElementsOf(payloads);
+        assertEquals(0, queue.getSpillCount());
+        assertEquals(0, queue.getMemoryBytes());
+        assertFalse(queue.isOverLimit());
+    }
+
+    @Test
+    public void testSpillAgainAfterDrain() throws Exception {
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 4; i++) {
+                queue.put(createPayload(String.valueOf(i)));
+            }
+            assertEquals(2, queue.getSpillCount());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(String.valueOf(i), queue.take().getData());
+            }
+        }
+        assertEquals(4, queue.getSpilledTotal());
+    }
+
+    @Test
+    public void testPollTimeout() throws Exception {
+        assertNull(queue.poll(0));
+        assertNull(queue.poll(1));
+    }
+
+    @Test
+    public void testLargePayloadHeldWhenMemoryEmpty() throws Exception {
+        Document document = factory.createDocument("foo", null, "bar", null, null);
+        document.setDocumentObject(new byte[4096]);
+        Payload payload = factory.createPayload(null, null, document);
+
+        queue.put(payload);
+
+        assertEquals(0, queue.getSpillCount());
+        assertEquals(PAYLOAD_SIZE + 4096, queue.getMemoryBytes());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            queue.put(createPayload(String.valueOf(i)));
+        }
+
+        queue.clear();
+
+        assertEquals(0, queue.getSize());
+        assertEquals(0, queue.getMemoryBytes());
+        assertNull(queue.poll(0));
+    }
+
+    @Test
+    public void testSizeOf() {
+        Document document = factory.createDocument("foo", null, "bar", null, null);
+        document.setDocumentObject(new byte[10]);
+        assertEquals(PAYLOAD_SIZE + 10,
+                SpillQueue.sizeOf(factory.createPayload(null, null, document)));
+
+        document.setDocumentObject("abc");
+        assertEquals(PAYLOAD_SIZE + 6,
+                SpillQueue.sizeOf(factory.createPayload(null, null, document)));
+
+        assertEquals(PAYLOAD_SIZE, SpillQueue.sizeOf(createPayload("foo")));
+    }
+
+    @Test
+    public void testNullParams() {
+        assertThrows(NullPointerException.class,
+                () -> new SpillQueue(null, 1));
+        assertThrows(NullPointerException.class, () -> queue.put(null));
+        assertThrows(NullPointerException.class, () -> queue.putAll(null));
+    }
+
+    private Payload createPayload(final String data) {
+        return factory.createPayload(null, null, data);
+    }
+}